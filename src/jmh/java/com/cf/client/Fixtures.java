@@ -0,0 +1,62 @@
+package com.cf.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * WSS messages for the benchmarks, one message per line:
+ * <ul>
+ * <li>{@value #USDT_BTC}: an {@code "i"} snapshot of USDT_BTC followed by its deltas</li>
+ * <li>{@value #TICKER}: 1002 ticker updates of several currency pairs</li>
+ * </ul>
+ * Both are synthetic, generated in the wire format of the exchange rather
+ * than captured: the public feed cannot be recorded from the build, and fixed
+ * files keep the results comparable between runs. Real traffic has deeper
+ * books, uneven level spacing and bursts of larger messages, so absolute
+ * numbers are a lower bound; replay a {@link com.cf.client.wss.journal.FrameJournal}
+ * capture for production figures.
+ */
+public final class Fixtures {
+    public static final String USDT_BTC = "/wss/usdt_btc.txt";
+    public static final String TICKER = "/wss/ticker.txt";
+    public static final int USDT_BTC_CHANNEL = 121;
+
+    private Fixtures() {
+    }
+
+    public static List<String> lines(String resource) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Fixtures.class.getResourceAsStream(resource), StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the messages in direct buffers, as the event loop hands them over
+     */
+    public static ByteBuf[] buffers(List<String> messages) {
+        return messages
+                .stream()
+                .map(message -> Unpooled.directBuffer(message.length()).writeBytes(message.getBytes(StandardCharsets.UTF_8)))
+                .toArray(ByteBuf[]::new);
+    }
+
+    /**
+     * Trace logging of the handlers would dominate every measurement.
+     */
+    public static void quietLogging() {
+        Configurator.setLevel("com.cf", Level.WARN);
+    }
+}
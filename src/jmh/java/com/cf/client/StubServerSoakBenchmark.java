@@ -0,0 +1,146 @@
+package com.cf.client;
+
+import com.cf.client.poloniex.wss.stub.PoloniexStubServer;
+import com.cf.client.poloniex.wss.stub.SyntheticMarket;
+import com.cf.util.FixedPointUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load and soak run of a client against synthetic markets of the local stub
+ * server; the score is the rate of messages the client decoded:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="StubServerSoakBenchmark -p messagesPerSecond=400000 -i 30"
+ * </pre>
+ * Every measurement iteration starts with a fault, alternately a dropped
+ * connection and a sequence gap, which the client must recover from; the
+ * gaps, resyncs and reconnects are reported next to the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StubServerSoakBenchmark {
+    private static final int FIRST_CHANNEL = 100;
+    private static final int MESSAGES_PER_INVOCATION = 1000;
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    @Param({"200000"})
+    public int messagesPerSecond;
+
+    @Param({"8"})
+    public int markets;
+
+    private PoloniexStubServer server;
+    private WSSClient client;
+    private int faults;
+    private long messages;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Recovery {
+        public long gaps;
+        public long resyncs;
+        public long reconnects;
+        private long lastGaps;
+        private long lastResyncs;
+        private long lastReconnects;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.quietLogging();
+        server = new PoloniexStubServer();
+        client = new WSSClient(server.getUrl(), null, ReconnectPolicy.DEFAULT, TransportProfile.LOW_LATENCY);
+        client.setReuseEvents(true);
+        for (int channelId = FIRST_CHANNEL; channelId < FIRST_CHANNEL + markets; channelId++) {
+            server.addMarket(new SyntheticMarket(channelId, "PAIR_" + channelId, 100 * FixedPointUtils.ONE, channelId));
+            client.subscribeOnOrderBookEvent(channelId, update -> {
+            });
+            client.subscribeOnTopOfBook(channelId);
+        }
+        server.startHeartbeats(1000);
+        client.run();
+        while (server.getSubscriberCount(FIRST_CHANNEL + markets - 1) == 0) {
+            Thread.sleep(1);
+        }
+        server.startActivity(messagesPerSecond);
+    }
+
+    /**
+     * Faults go into measurement only, so warm up sees the steady state.
+     */
+    @Setup(Level.Iteration)
+    public void injectFault(IterationParams params) throws InterruptedException {
+        if (params.getType() != IterationType.MEASUREMENT) {
+            return;
+        }
+        if (++faults % 2 == 1) {
+            server.disconnectAll();
+        } else {
+            server.injectGap(FIRST_CHANNEL);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        server.stopActivity();
+        client.close();
+        server.close();
+    }
+
+    /**
+     * Waits for the next {@value #MESSAGES_PER_INVOCATION} messages of all
+     * markets; fails if the client stops receiving for good.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public long receive(Recovery recovery) {
+        long target = messages + MESSAGES_PER_INVOCATION;
+        long deadline = System.nanoTime() + STALL_NANOS;
+        while ((messages = messageCount()) < target) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("No recovery within " + TimeUnit.NANOSECONDS.toSeconds(STALL_NANOS) + " s");
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        long gaps = client.getGapCount();
+        long resyncs = client.getResyncCount();
+        long reconnects = client.getReconnectCount();
+        recovery.gaps += gaps - recovery.lastGaps;
+        recovery.resyncs += resyncs - recovery.lastResyncs;
+        recovery.reconnects += reconnects - recovery.lastReconnects;
+        recovery.lastGaps = gaps;
+        recovery.lastResyncs = resyncs;
+        recovery.lastReconnects = reconnects;
+        return messages;
+    }
+
+    private long messageCount() {
+        long count = 0;
+        for (int channelId = FIRST_CHANNEL; channelId < FIRST_CHANNEL + markets; channelId++) {
+            count += client.getMessageCount(channelId);
+        }
+        return count;
+    }
+}
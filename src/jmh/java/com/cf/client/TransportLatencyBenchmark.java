@@ -0,0 +1,88 @@
+package com.cf.client;
+
+import com.cf.client.poloniex.wss.stub.PoloniexStubServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wire-to-callback latency of the transport profiles against the local stub
+ * server: every invocation publishes one trade and waits until the listener
+ * got it. Sampled, so the report has the percentiles:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="TransportLatencyBenchmark"
+ * </pre>
+ * {@code epoll} falls back to NIO where the native transport is unavailable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportLatencyBenchmark {
+    private static final int CHANNEL = 121;
+
+    @Param({"nio", "epoll", "epoll_busy_poll"})
+    public String transport;
+
+    private final AtomicLong received = new AtomicLong();
+    private PoloniexStubServer server;
+    private WSSClient client;
+    private long sequence;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.quietLogging();
+        server = new PoloniexStubServer();
+        client = new WSSClient(server.getUrl(), null, ReconnectPolicy.DEFAULT, profile(transport));
+        client.setReuseEvents(true);
+        client.subscribeOnTradeEvent(CHANNEL, trade -> received.lazySet(trade.getTradeId()));
+        client.run();
+        while (server.getSubscriberCount(CHANNEL) == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public long publishToCallback() {
+        long expected = ++sequence;
+        server.publish(CHANNEL, "[" + CHANNEL + "," + expected + ",[[\"t\",\"" + expected
+                + "\",1,\"6343.06999999\",\"0.00126059\",1533000000]]]");
+        while (received.get() < expected) {
+            Thread.yield();
+        }
+        return expected;
+    }
+
+    private static TransportProfile profile(String transport) {
+        switch (transport) {
+            case "nio":
+                return TransportProfile.DEFAULT;
+            case "epoll":
+                return TransportProfile.LOW_LATENCY;
+            case "epoll_busy_poll":
+                return TransportProfile.LOW_LATENCY.withBusyPoll(true);
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + transport);
+        }
+    }
+}
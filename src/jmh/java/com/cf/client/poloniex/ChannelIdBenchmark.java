@@ -0,0 +1,69 @@
+package com.cf.client.poloniex;
+
+import com.cf.client.Fixtures;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channel id lookup of {@link PoloniexWSSClientRouter} on every frame, over
+ * the USDT_BTC and ticker fixtures mixed with heartbeats. Reported
+ * per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelIdBenchmark {
+    private static final int MESSAGES = 1500;
+
+    private ByteBuf[] frames;
+
+    @Setup
+    public void setUp() {
+        List<String> usdtBtc = Fixtures.lines(Fixtures.USDT_BTC);
+        List<String> tickers = Fixtures.lines(Fixtures.TICKER);
+        List<String> messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; messages.size() < MESSAGES; i++) {
+            messages.add(usdtBtc.get(i % usdtBtc.size()));
+            messages.add(tickers.get(i % tickers.size()));
+            if (i % 10 == 0) {
+                messages.add("[1010]");
+            }
+        }
+        frames = Fixtures.buffers(messages.subList(0, MESSAGES));
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int getChannelId() {
+        int sum = 0;
+        for (ByteBuf frame : frames) {
+            sum += PoloniexWSSClientRouter.getChannelId(frame);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,154 @@
+package com.cf.client.poloniex.wss.book;
+
+import com.cf.client.Fixtures;
+import com.cf.client.poloniex.wss.decoder.PoloniexSnapshotDecoder;
+import com.cf.client.poloniex.wss.decoder.PoloniexWSSFrameDecoder;
+import com.cf.client.wss.handler.IMarketEventHandler;
+import com.cf.util.FixedPointUtils;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The book engine alone: the levels and updates of the USDT_BTC
+ * corpus are decoded once up front, then applied to a
+ * {@link PoloniexLiveOrderBook} one update per operation, with and without
+ * the depth queries. When the updates
+ * run out the book is seeded again from the snapshot, that cost is spread
+ * over the updates of one pass.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoloniexLiveOrderBookBenchmark {
+    private static final long SWEEP_AMOUNT = 2 * FixedPointUtils.ONE;
+    private static final int DEPTH_BPS = 10;
+    private static final int DEPTH_LEVELS = 10;
+
+    private final PoloniexLiveOrderBook book = new PoloniexLiveOrderBook(Fixtures.USDT_BTC_CHANNEL);
+    private final Levels snapshot = new Levels();
+    private final Levels updates = new Levels();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ByteBuf[] frames = Fixtures.buffers(Fixtures.lines(Fixtures.USDT_BTC));
+        new PoloniexSnapshotDecoder(id -> snapshot).decode(frames[0]);
+        PoloniexWSSFrameDecoder decoder = new PoloniexWSSFrameDecoder();
+        for (int i = 1; i < frames.length; i++) {
+            decoder.decode(frames[i], updates);
+        }
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+        seed();
+    }
+
+    private void seed() {
+        book.reset();
+        for (int i = 0; i < snapshot.size; i++) {
+            book.load(snapshot.bids[i], snapshot.rates[i], snapshot.amounts[i]);
+        }
+        book.markSeeded();
+        next = 0;
+    }
+
+    @Benchmark
+    public long update() {
+        nextUpdate();
+        return book.bestBidRate() + book.bestAskRate();
+    }
+
+    /**
+     * An update followed by the depth queries a pricer asks on every tick.
+     */
+    @Benchmark
+    public long updateAndQuery() {
+        nextUpdate();
+        return book.asks().vwap(SWEEP_AMOUNT)
+                + book.bids().vwap(SWEEP_AMOUNT)
+                + book.amountWithinBps(true, DEPTH_BPS)
+                + book.amountWithinBps(false, DEPTH_BPS)
+                + book.bids().cumulativeAmount(DEPTH_LEVELS);
+    }
+
+    private void nextUpdate() {
+        if (next == updates.size) {
+            seed();
+        }
+        int i = next++;
+        book.update(updates.bids[i], updates.rates[i], updates.amounts[i]);
+    }
+
+    /**
+     * Collects the order book levels of the decoded messages, trades are skipped.
+     */
+    private static class Levels implements IMarketEventHandler {
+        boolean[] bids = new boolean[1024];
+        long[] rates = new long[1024];
+        long[] amounts = new long[1024];
+        int size;
+
+        private void add(boolean bid, long rate, long amount) {
+            if (size == rates.length) {
+                bids = Arrays.copyOf(bids, size * 2);
+                rates = Arrays.copyOf(rates, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            bids[size] = bid;
+            rates[size] = rate;
+            amounts[size] = amount;
+            size++;
+        }
+
+        @Override
+        public boolean onMessageStart(long sequence) {
+            return true;
+        }
+
+        @Override
+        public void onOrderBookUpdate(boolean bid, long rate, long amount) {
+            add(bid, rate, amount);
+        }
+
+        @Override
+        public void onTrade(long tradeId, boolean buy, long rate, long amount, long epochSecond) {
+        }
+
+        @Override
+        public void onMessageEnd() {
+        }
+
+        @Override
+        public boolean onSnapshotStart(long sequence) {
+            return true;
+        }
+
+        @Override
+        public void onSnapshotLevel(boolean bid, long rate, long amount) {
+            add(bid, rate, amount);
+        }
+
+        @Override
+        public void onSnapshotEnd() {
+        }
+
+        @Override
+        public void handle(String message) {
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.cf.client.poloniex.wss.book;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One event loop publishing the top of book of all pairs while readers take
+ * market wide snapshots of the same {@link PoloniexTopOfBookTable}; run with
+ * {@code -tg 1,N} to change the number of readers.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoloniexTopOfBookTableBenchmark {
+    @Param({"100", "400"})
+    public int pairs;
+
+    private final PoloniexTopOfBookTable table = new PoloniexTopOfBookTable();
+
+    @State(Scope.Thread)
+    public static class Writer {
+        long generation;
+        int pair;
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        PoloniexTopOfBookSnapshot snapshot;
+    }
+
+    @Benchmark
+    @Group("publishAndSnapshot")
+    @GroupThreads(1)
+    public boolean publish(Writer writer) {
+        if (++writer.pair == pairs) {
+            writer.pair = 0;
+            writer.generation++;
+        }
+        long rate = writer.generation + writer.pair;
+        return table.update(writer.pair, rate, writer.generation, rate + 1, writer.generation);
+    }
+
+    @Benchmark
+    @Group("publishAndSnapshot")
+    @GroupThreads(3)
+    public int snapshot(Reader reader) {
+        if (reader.snapshot == null) {
+            reader.snapshot = table.newSnapshot();
+        }
+        return table.snapshot(reader.snapshot);
+    }
+}
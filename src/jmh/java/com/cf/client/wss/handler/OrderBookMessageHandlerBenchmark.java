@@ -0,0 +1,102 @@
+package com.cf.client.wss.handler;
+
+import com.cf.client.Fixtures;
+import com.cf.client.poloniex.wss.decoder.PoloniexSnapshotDecoder;
+import com.cf.client.poloniex.wss.decoder.PoloniexWSSFrameDecoder;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the USDT_BTC corpus, the snapshot and then every delta,
+ * through {@link OrderBookMessageHandler}: once as Strings through
+ * {@link OrderBookMessageHandler#handle(String)} and once as frames through
+ * the snapshot and frame decoders, the path the router takes. Reported per
+ * message; run with {@code -prof gc} for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookMessageHandlerBenchmark {
+    private static final int MESSAGES = 1501;
+
+    @Param({"false", "true"})
+    public boolean liveOrderBook;
+
+    @Param({"false", "true"})
+    public boolean reuseEvents;
+
+    private final PoloniexWSSFrameDecoder frameDecoder = new PoloniexWSSFrameDecoder();
+    private OrderBookMessageHandler handler;
+    private PoloniexSnapshotDecoder snapshotDecoder;
+    private List<String> messages;
+    private ByteBuf[] frames;
+    private long sink;
+
+    @Setup
+    public void setUp() {
+        Fixtures.quietLogging();
+        messages = Fixtures.lines(Fixtures.USDT_BTC);
+        if (messages.size() != MESSAGES) {
+            throw new IllegalStateException("Corpus has " + messages.size() + " messages, expected " + MESSAGES);
+        }
+        frames = Fixtures.buffers(messages);
+
+        handler = new OrderBookMessageHandler(Fixtures.USDT_BTC_CHANNEL);
+        handler.setReuseEvents(reuseEvents);
+        handler.addTradeEventListener(trade -> sink += trade.getAmount());
+        handler.addOrderBookEventListener(update -> sink += update.getRate());
+        if (liveOrderBook) {
+            handler.enableLiveOrderBook();
+        }
+        snapshotDecoder = new PoloniexSnapshotDecoder(id -> handler);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long handleStrings() {
+        handler.onConnectionLost();
+        for (String message : messages) {
+            handler.handle(message);
+        }
+        return sink;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long decodeFrames() {
+        handler.onConnectionLost();
+        snapshotDecoder.reset();
+        if (snapshotDecoder.decode(frames[0]) != PoloniexSnapshotDecoder.Status.COMPLETE) {
+            throw new IllegalStateException("Corpus snapshot was not decoded");
+        }
+        for (int i = 1; i < frames.length; i++) {
+            frameDecoder.decode(frames[i], handler);
+        }
+        return sink;
+    }
+}
@@ -0,0 +1,78 @@
+package com.cf.client.wss.handler;
+
+import com.cf.client.Fixtures;
+import com.cf.client.poloniex.wss.model.PoloniexWSSTicker;
+import com.cf.client.poloniex.wss.ticker.PoloniexTickerTable;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticker channel decoding over the 1002 fixture messages: the Gson and
+ * BigDecimal mapping of {@link TickerMessageHandler} against
+ * {@link TickerTableMessageHandler} decoding straight from the frame into the
+ * ticker table. Reported per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickerMessageHandlerBenchmark {
+    private static final int MESSAGES = 200;
+
+    private final TickerMessageHandler tickerHandler = new TickerMessageHandler();
+    private final TickerTableMessageHandler tableHandler = new TickerTableMessageHandler(new PoloniexTickerTable());
+    private List<String> messages;
+    private ByteBuf[] frames;
+
+    @Setup
+    public void setUp() {
+        Fixtures.quietLogging();
+        messages = Fixtures.lines(Fixtures.TICKER);
+        if (messages.size() != MESSAGES) {
+            throw new IllegalStateException("Fixture has " + messages.size() + " messages, expected " + MESSAGES);
+        }
+        frames = Fixtures.buffers(messages);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void mapMessageToPoloniexTicker(Blackhole blackhole) {
+        for (String message : messages) {
+            PoloniexWSSTicker ticker = tickerHandler.mapMessageToPoloniexTicker(message);
+            blackhole.consume(ticker);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public PoloniexTickerTable tickerTable() {
+        for (ByteBuf frame : frames) {
+            tableHandler.handle(frame);
+        }
+        return tableHandler.getTable();
+    }
+}
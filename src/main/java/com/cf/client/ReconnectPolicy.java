@@ -0,0 +1,49 @@
+package com.cf.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How {@link WSSClient} detects a dead link and reconnects: jittered
+ * exponential backoff between {@code initialDelayMillis} and
+ * {@code maxDelayMillis}. Once the network is back, a reconnect takes at most
+ * {@code maxDelayMillis + connectTimeoutMillis} plus the handshake.
+ */
+public class ReconnectPolicy {
+    public static final ReconnectPolicy DEFAULT = new ReconnectPolicy(100, 30_000, 10_000, 5_000);
+
+    public final long initialDelayMillis;
+    public final long maxDelayMillis;
+    /**
+     * Poloniex sends a 1010 heartbeat every second on an idle connection, so
+     * nothing received for this long means the link is dead.
+     */
+    public final long heartbeatTimeoutMillis;
+    public final int connectTimeoutMillis;
+
+    public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, long heartbeatTimeoutMillis, int connectTimeoutMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.heartbeatTimeoutMillis = heartbeatTimeoutMillis;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * @param attempt number of failed attempts since the connection was lost
+     * @return random delay between half and the full backoff of the attempt
+     */
+    public long delayMillis(int attempt) {
+        long backoff = Math.min(maxDelayMillis, initialDelayMillis << Math.min(attempt, 30));
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "ReconnectPolicy{" +
+                "initialDelayMillis=" + initialDelayMillis +
+                ", maxDelayMillis=" + maxDelayMillis +
+                ", heartbeatTimeoutMillis=" + heartbeatTimeoutMillis +
+                ", connectTimeoutMillis=" + connectTimeoutMillis +
+                '}';
+    }
+}
@@ -0,0 +1,137 @@
+package com.cf.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SelectStrategyFactory;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.nio.channels.spi.SelectorProvider;
+
+/**
+ * Transport settings of a {@link WSSClient}. {@link #DEFAULT} keeps the plain
+ * NIO transport with JDK defaults, {@link #LOW_LATENCY} uses the native epoll
+ * transport, {@code TCP_NODELAY}, a larger receive buffer, pooled direct
+ * buffers and OpenSSL. Native epoll and OpenSSL are only used when available
+ * (Linux and {@code netty-tcnative} on the class path respectively), the client
+ * falls back to NIO and the JDK engine otherwise.
+ * <p>
+ * Busy polling keeps the event loop thread spinning on a non blocking select
+ * instead of parking in the kernel; it saves the wake up latency at the cost
+ * of one fully used core per thread, so it only pays off with pinned, isolated
+ * cores.
+ */
+public class TransportProfile {
+    public static final TransportProfile DEFAULT = new TransportProfile(false, false, 0, false, false, 0, false);
+    public static final TransportProfile LOW_LATENCY = new TransportProfile(true, true, 1 << 20, true, false, 1, true);
+
+    private static final SelectStrategyFactory BUSY_POLL = () -> (selectSupplier, hasTasks) -> selectSupplier.get();
+
+    public final boolean nativeTransport;
+    public final boolean tcpNoDelay;
+    /**
+     * {@code SO_RCVBUF} in bytes, {@code 0} keeps the OS default.
+     */
+    public final int receiveBufferBytes;
+    public final boolean pooledDirectBuffers;
+    public final boolean busyPoll;
+    /**
+     * Event loop threads, {@code 0} uses the Netty default of twice the cores.
+     */
+    public final int threads;
+    public final boolean openSsl;
+
+    public TransportProfile(boolean nativeTransport, boolean tcpNoDelay, int receiveBufferBytes, boolean pooledDirectBuffers,
+                            boolean busyPoll, int threads, boolean openSsl) {
+        this.nativeTransport = nativeTransport;
+        this.tcpNoDelay = tcpNoDelay;
+        this.receiveBufferBytes = receiveBufferBytes;
+        this.pooledDirectBuffers = pooledDirectBuffers;
+        this.busyPoll = busyPoll;
+        this.threads = threads;
+        this.openSsl = openSsl;
+    }
+
+    public TransportProfile withNativeTransport(boolean nativeTransport) {
+        return new TransportProfile(nativeTransport, tcpNoDelay, receiveBufferBytes, pooledDirectBuffers, busyPoll, threads, openSsl);
+    }
+
+    public TransportProfile withBusyPoll(boolean busyPoll) {
+        return new TransportProfile(nativeTransport, tcpNoDelay, receiveBufferBytes, pooledDirectBuffers, busyPoll, threads, openSsl);
+    }
+
+    public TransportProfile withThreads(int threads) {
+        return new TransportProfile(nativeTransport, tcpNoDelay, receiveBufferBytes, pooledDirectBuffers, busyPoll, threads, openSsl);
+    }
+
+    /**
+     * @return {@code true} if the native epoll transport is requested and can be loaded
+     */
+    public boolean isEpoll() {
+        return nativeTransport && Epoll.isAvailable();
+    }
+
+    public SslProvider sslProvider() {
+        return openSsl && OpenSsl.isAvailable() ? SslProvider.OPENSSL : SslProvider.JDK;
+    }
+
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(isEpoll() ? "poloniex-epoll" : "poloniex-nio", true);
+        if (isEpoll()) {
+            return busyPoll
+                    ? new EpollEventLoopGroup(threads, threadFactory, BUSY_POLL)
+                    : new EpollEventLoopGroup(threads, threadFactory);
+        }
+        return busyPoll
+                ? new NioEventLoopGroup(threads, threadFactory, SelectorProvider.provider(), BUSY_POLL)
+                : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    public EventLoopGroup newEventLoopGroup() {
+        return newEventLoopGroup(threads);
+    }
+
+    /**
+     * Sets the channel type matching the group and the socket options of this profile.
+     */
+    public Bootstrap configure(Bootstrap bootstrap, EventLoopGroup group) {
+        Class<? extends SocketChannel> channelClass = group instanceof EpollEventLoopGroup
+                ? EpollSocketChannel.class
+                : NioSocketChannel.class;
+        bootstrap
+                .group(group)
+                .channel(channelClass);
+        if (tcpNoDelay) {
+            bootstrap.option(ChannelOption.TCP_NODELAY, true);
+        }
+        if (receiveBufferBytes > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferBytes);
+        }
+        if (pooledDirectBuffers) {
+            bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        }
+        return bootstrap;
+    }
+
+    @Override
+    public String toString() {
+        return "TransportProfile{" +
+                "nativeTransport=" + nativeTransport +
+                ", tcpNoDelay=" + tcpNoDelay +
+                ", receiveBufferBytes=" + receiveBufferBytes +
+                ", pooledDirectBuffers=" + pooledDirectBuffers +
+                ", busyPoll=" + busyPoll +
+                ", threads=" + threads +
+                ", openSsl=" + openSsl +
+                '}';
+    }
+}
@@ -1,117 +1,650 @@
 package com.cf.client;
 
+import com.cf.client.poloniex.PoloniexCurrencyPairRegistry;
 import com.cf.client.poloniex.PoloniexWSSClientRouter;
+import com.cf.client.poloniex.wss.bar.BarAggregator;
+import com.cf.client.poloniex.wss.bar.PoloniexBar;
+import com.cf.client.poloniex.wss.book.ConflatedTopOfBook;
+import com.cf.client.poloniex.wss.book.PoloniexBookSignal;
+import com.cf.client.poloniex.wss.book.PoloniexBookSignals;
+import com.cf.client.poloniex.wss.book.PoloniexLiveOrderBook;
+import com.cf.client.poloniex.wss.book.PoloniexTopOfBookTable;
+import com.cf.client.poloniex.wss.model.PoloniexMarketBatch;
 import com.cf.client.poloniex.wss.model.PoloniexOrderBookEntry;
+import com.cf.client.poloniex.wss.model.PoloniexOrderBookEvent;
 import com.cf.client.poloniex.wss.model.PoloniexTradeEntry;
+import com.cf.client.poloniex.wss.model.PoloniexTradeEvent;
+import com.cf.client.poloniex.wss.ticker.PoloniexTicker;
+import com.cf.client.poloniex.wss.ticker.PoloniexTickerTable;
+import com.cf.client.wss.dispatch.DispatchPolicy;
+import com.cf.client.wss.journal.FrameJournal;
+import com.cf.client.wss.latency.LatencySnapshot;
+import com.cf.client.wss.reactive.EventPublisher;
+import com.cf.client.wss.reactive.OverflowStrategy;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketClientCompressionHandler;
-import io.netty.handler.proxy.ProxyHandler;
 import io.netty.handler.proxy.Socks5ProxyHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.timeout.IdleStateHandler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
+ * Keeps a WebSocket connection to Poloniex alive: a connection that delivers
+ * no message (not even a heartbeat) within the heartbeat timeout or fails is
+ * reconnected with jittered exponential backoff and all subscriptions are
+ * replayed. See {@link ReconnectPolicy}.
+ *
  * @author thiko
  */
 public class WSSClient implements AutoCloseable {
+    private final static Logger LOG = LogManager.getLogger();
 
     private static final int MAX_CONTENT_BYTES = 8192;
     private static final String SCHEME_WSS = "wss";
+    private static final String SCHEME_WS = "ws";
 
     private final URI uri;
+    private final int port;
     private final SslContext sslCtx;
     private final EventLoopGroup group;
-    private ProxyHandler proxy;
+    private final boolean ownsGroup;
+    private final ProxySettings proxySettings;
     private final PoloniexWSSClientRouter router;
+    private final ReconnectPolicy reconnectPolicy;
+    private volatile PoloniexCurrencyPairRegistry currencyPairRegistry;
+    private final TransportProfile transportProfile;
+    private Bootstrap bootstrap;
+    private volatile Channel channel;
+    private volatile boolean closed;
+
+    private final AtomicLong reconnectCount = new AtomicLong();
+    private final AtomicLong totalDowntimeNanos = new AtomicLong();
+    private volatile long lastReconnectNanos;
+    private volatile long maxReconnectNanos;
+    private volatile long disconnectedAtNanos;
 
     public WSSClient(String url, ProxySettings proxySettings) throws Exception {
-        if (proxySettings != null) {
-            proxy = new Socks5ProxyHandler(new InetSocketAddress(proxySettings.getHost(), proxySettings.getPort()), proxySettings.getUsername(), proxySettings.getPassword());
-        }
+        this(url, proxySettings, ReconnectPolicy.DEFAULT);
+    }
+
+    public WSSClient(String url, ProxySettings proxySettings, ReconnectPolicy reconnectPolicy) throws Exception {
+        this(url, proxySettings, reconnectPolicy, TransportProfile.DEFAULT, null);
+    }
+
+    public WSSClient(String url, ProxySettings proxySettings, ReconnectPolicy reconnectPolicy, EventLoopGroup group) throws Exception {
+        this(url, proxySettings, reconnectPolicy, TransportProfile.DEFAULT, group);
+    }
+
+    public WSSClient(String url, ProxySettings proxySettings, ReconnectPolicy reconnectPolicy, TransportProfile transportProfile) throws Exception {
+        this(url, proxySettings, reconnectPolicy, transportProfile, null);
+    }
+
+    /**
+     * @param group event loop group shared with other clients, it is not shut
+     *              down on {@link #close()}; {@code null} to create an own group
+     *              from the transport profile
+     */
+    public WSSClient(String url, ProxySettings proxySettings, ReconnectPolicy reconnectPolicy, TransportProfile transportProfile,
+                     EventLoopGroup group) throws Exception {
+        this.proxySettings = proxySettings;
+        this.reconnectPolicy = reconnectPolicy;
+        this.transportProfile = transportProfile;
 
         uri = new URI(url);
 
-        if (!SCHEME_WSS.equalsIgnoreCase(uri.getScheme())) {
-            throw new IllegalArgumentException("Only WSS is supported");
+        boolean secure = SCHEME_WSS.equalsIgnoreCase(uri.getScheme());
+        if (!secure && !SCHEME_WS.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("Only WSS and WS are supported");
         }
+        port = uri.getPort() != -1 ? uri.getPort() : secure ? 443 : 80;
 
         // FIXME: use secure trust manager
-        sslCtx = SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE).build();
-        group = new NioEventLoopGroup();
+        sslCtx = secure
+                ? SslContextBuilder.forClient().sslProvider(transportProfile.sslProvider()).trustManager(InsecureTrustManagerFactory.INSTANCE).build()
+                : null;
+        this.ownsGroup = group == null;
+        this.group = ownsGroup ? transportProfile.newEventLoopGroup() : group;
         router = new PoloniexWSSClientRouter(uri);
 
     }
 
+    /**
+     * Connects and waits for the handshake. Later disconnects are handled in
+     * the background until {@link #close()}.
+     */
     public synchronized void run() throws InterruptedException, IOException, URISyntaxException {
-        Bootstrap b = new Bootstrap();
-        b
-                .group(group)
-                .channel(NioSocketChannel.class)
+        bootstrap = transportProfile.configure(new Bootstrap(), group);
+        bootstrap
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, reconnectPolicy.connectTimeoutMillis)
                 .handler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) {
                         ChannelPipeline p = ch.pipeline();
-                        if (proxy != null) {
-                            p.addFirst(proxy);
+                        if (proxySettings != null) {
+                            p.addFirst(new Socks5ProxyHandler(new InetSocketAddress(proxySettings.getHost(), proxySettings.getPort()), proxySettings.getUsername(), proxySettings.getPassword()));
+                        }
+                        if (sslCtx != null) {
+                            p.addLast(sslCtx.newHandler(ch.alloc(), uri.getHost(), port));
                         }
-                        p.addLast(sslCtx.newHandler(ch.alloc(), uri.getHost(), 443));
                         p.addLast(new HttpClientCodec(), new HttpObjectAggregator(MAX_CONTENT_BYTES),
-                                WebSocketClientCompressionHandler.INSTANCE, router);
+                                WebSocketClientCompressionHandler.INSTANCE,
+                                new IdleStateHandler(reconnectPolicy.heartbeatTimeoutMillis, 0, 0, TimeUnit.MILLISECONDS),
+                                router);
                     }
                 });
 
-        Channel channel = b
-                .connect(uri.getHost(), 443)
+        Channel channel = bootstrap
+                .connect(uri.getHost(), port)
                 .sync()
                 .channel();
         router
                 .handshakeFuture()
                 .sync();
+        onConnected(channel);
+    }
 
-//        for (Entry<PoloniexWSSSubscription, IMessageHandler> subscription : subscriptions.entrySet()) {
-//            WebSocketFrame frame = new TextWebSocketFrame(subscription.getKey().toString());
-//            channel.writeAndFlush(frame);
-//        }
+    private void onConnected(Channel channel) {
+        this.channel = channel;
+        long disconnectedAt = disconnectedAtNanos;
+        if (disconnectedAt != 0) {
+            long downtime = System.nanoTime() - disconnectedAt;
+            disconnectedAtNanos = 0;
+            reconnectCount.incrementAndGet();
+            totalDowntimeNanos.addAndGet(downtime);
+            lastReconnectNanos = downtime;
+            maxReconnectNanos = Math.max(maxReconnectNanos, downtime);
+            LOG.info("Reconnected to {} after {} ms", uri, TimeUnit.NANOSECONDS.toMillis(downtime));
+        }
+        channel.closeFuture().addListener(future -> onDisconnected());
+        if (closed) {
+            channel.close();
+        }
+    }
+
+    private void onDisconnected() {
+        channel = null;
+        if (closed) {
+            return;
+        }
+        disconnectedAtNanos = System.nanoTime();
+        LOG.warn("Connection to {} lost, reconnecting", uri);
+        scheduleReconnect(0);
+    }
+
+    private void scheduleReconnect(int attempt) {
+        if (closed) {
+            return;
+        }
+        long delay = reconnectPolicy.delayMillis(attempt);
+        LOG.debug("Reconnect attempt {} in {} ms", attempt + 1, delay);
+        group.schedule(() -> reconnect(attempt), delay, TimeUnit.MILLISECONDS);
+    }
 
-//        long startTime = System.currentTimeMillis();
-//
-//        while (router.isRunning() && (runTimeInMillis < 0 || (startTime + runTimeInMillis > System.currentTimeMillis()))) {
-//            TimeUnit.MINUTES.sleep(1);
-//        }
-//
-//        throw new InterruptedException("Runtime exceeded");
+    private void reconnect(int attempt) {
+        if (closed) {
+            return;
+        }
+        bootstrap
+                .connect(uri.getHost(), port)
+                .addListener((ChannelFuture connected) -> {
+                    if (!connected.isSuccess()) {
+                        LOG.warn("Reconnect attempt {} failed - {}", attempt + 1, connected.cause().getMessage());
+                        scheduleReconnect(attempt + 1);
+                        return;
+                    }
+                    router
+                            .handshakeFuture()
+                            .addListener(handshake -> {
+                                if (handshake.isSuccess()) {
+                                    onConnected(connected.channel());
+                                } else {
+                                    LOG.warn("Reconnect attempt {} failed during handshake - {}", attempt + 1, handshake.cause().getMessage());
+                                    connected.channel().close();
+                                    scheduleReconnect(attempt + 1);
+                                }
+                            });
+                });
     }
 
     @Override
-    public synchronized void close() throws Exception {
+    public synchronized void close() {
+        closed = true;
         router.stop();
-        group.shutdownGracefully();
+        Channel channel = this.channel;
+        if (channel != null) {
+            channel.close();
+        }
+        if (ownsGroup) {
+            group.shutdownGracefully();
+        }
+    }
+
+    /**
+     * Runs the task on the event loop of the connection once the message being
+     * delivered, if any, is done; at once if there is no connection.
+     */
+    void executeAfterDelivery(Runnable task) {
+        Channel channel = this.channel;
+        if (channel == null || channel.eventLoop().inEventLoop()) {
+            task.run();
+        } else {
+            channel.eventLoop().execute(task);
+        }
+    }
+
+    /**
+     * Runs the task once the listeners of the unsubscribed currency pair got
+     * everything delivered to them, also those of its dispatchers; on the
+     * thread that finished last.
+     */
+    void executeAfterDispatch(Integer currencyPairId, Runnable task) {
+        executeAfterDelivery(() -> router.whenDispatched(currencyPairId, task));
+    }
+
+    public boolean isConnected() {
+        return channel != null && router.isRunning();
+    }
+
+    /**
+     * @return number of successful reconnects
+     */
+    public long getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    /**
+     * @return time spent disconnected, summed over all completed reconnects
+     */
+    public long getTotalDowntimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalDowntimeNanos.get());
+    }
+
+    /**
+     * @return time from losing the connection until the last reconnect handshake completed
+     */
+    public long getLastReconnectMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastReconnectNanos);
+    }
+
+    public long getMaxReconnectMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxReconnectNanos);
+    }
+
+    /**
+     * @return number of connections closed because no heartbeat arrived in time
+     */
+    public long getHeartbeatTimeoutCount() {
+        return router.getHeartbeatTimeoutCount();
+    }
+
+    /**
+     * How long a market channel stays subscribed after its last listener was
+     * removed, 5 seconds by default; {@code 0} unsubscribes at once.
+     */
+    public void setUnsubscribeLinger(long lingerMillis) {
+        router.setUnsubscribeLinger(lingerMillis);
+    }
+
+    /**
+     * @return number of malformed or truncated messages dropped; each resynchronises its channel only
+     */
+    public long getDecodeErrorCount() {
+        return router.getDecodeErrorCount();
+    }
+
+    /**
+     * @return number of messages dropped undecoded because nobody subscribed to their channel
+     */
+    public long getSkippedMessageCount() {
+        return router.getSkippedMessageCount();
     }
 
     public void subscribeOnTrade(Integer currencyPairId, Consumer<PoloniexTradeEntry> listener) {
         router.subscribeOnTrade(currencyPairId, listener);
     }
 
+    /**
+     * @param policy where the listener runs, see {@link DispatchPolicy}
+     */
+    public void subscribeOnTrade(Integer currencyPairId, Consumer<PoloniexTradeEntry> listener, DispatchPolicy policy) {
+        router.subscribeOnTrade(currencyPairId, listener, policy);
+    }
+
     public void subscribeOnOrderBook(Integer currencyPairId, Consumer<PoloniexOrderBookEntry> listener) {
         router.subscribeOnOrderBook(currencyPairId, listener);
     }
 
+    /**
+     * @param policy where the listener runs, see {@link DispatchPolicy}
+     */
+    public void subscribeOnOrderBook(Integer currencyPairId, Consumer<PoloniexOrderBookEntry> listener, DispatchPolicy policy) {
+        router.subscribeOnOrderBook(currencyPairId, listener, policy);
+    }
+
+    /**
+     * Resolves the symbols of the {@code String} overloads, e.g.
+     * {@code subscribeOnTopOfBook("USDT_BTC")}; the subscriptions themselves
+     * use the numeric ids.
+     */
+    public void setCurrencyPairRegistry(PoloniexCurrencyPairRegistry currencyPairRegistry) {
+        this.currencyPairRegistry = currencyPairRegistry;
+    }
+
+    public PoloniexCurrencyPairRegistry getCurrencyPairRegistry() {
+        return currencyPairRegistry;
+    }
+
+    private Integer currencyPairId(String symbol) {
+        PoloniexCurrencyPairRegistry registry = this.currencyPairRegistry;
+        if (registry == null) {
+            throw new IllegalStateException("No currency pair registry to resolve " + symbol);
+        }
+        return registry.requireCurrencyPairId(symbol);
+    }
+
+    public void subscribeOnTrade(String currencyPair, Consumer<PoloniexTradeEntry> listener) {
+        subscribeOnTrade(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnTrade(String currencyPair, Consumer<PoloniexTradeEntry> listener, DispatchPolicy policy) {
+        subscribeOnTrade(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnOrderBook(String currencyPair, Consumer<PoloniexOrderBookEntry> listener) {
+        subscribeOnOrderBook(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnOrderBook(String currencyPair, Consumer<PoloniexOrderBookEntry> listener, DispatchPolicy policy) {
+        subscribeOnOrderBook(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnTradeEvent(String currencyPair, Consumer<PoloniexTradeEvent> listener) {
+        subscribeOnTradeEvent(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnTradeEvent(String currencyPair, Consumer<PoloniexTradeEvent> listener, DispatchPolicy policy) {
+        subscribeOnTradeEvent(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnOrderBookEvent(String currencyPair, Consumer<PoloniexOrderBookEvent> listener) {
+        subscribeOnOrderBookEvent(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnOrderBookEvent(String currencyPair, Consumer<PoloniexOrderBookEvent> listener, DispatchPolicy policy) {
+        subscribeOnOrderBookEvent(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnBatch(String currencyPair, Consumer<PoloniexMarketBatch> listener) {
+        subscribeOnBatch(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnBatch(String currencyPair, Consumer<PoloniexMarketBatch> listener, DispatchPolicy policy) {
+        subscribeOnBatch(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnLiveOrderBook(String currencyPair, Consumer<PoloniexLiveOrderBook> listener) {
+        subscribeOnLiveOrderBook(currencyPairId(currencyPair), listener);
+    }
+
+    public ConflatedTopOfBook subscribeOnTopOfBook(String currencyPair) {
+        return subscribeOnTopOfBook(currencyPairId(currencyPair));
+    }
+
+    public void publishTopOfBook(String currencyPair) {
+        publishTopOfBook(currencyPairId(currencyPair));
+    }
+
+    public void unpublishTopOfBook(String currencyPair) {
+        unpublishTopOfBook(currencyPairId(currencyPair));
+    }
+
+    public BarAggregator subscribeOnBars(String currencyPair, long allowedLatenessSeconds, Consumer<PoloniexBar> listener,
+                                         long... periodSeconds) {
+        return subscribeOnBars(currencyPairId(currencyPair), allowedLatenessSeconds, listener, periodSeconds);
+    }
+
+    public void subscribeOnSignals(String currencyPair, Consumer<PoloniexBookSignal> listener) {
+        subscribeOnSignals(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnSignals(String currencyPair, Consumer<PoloniexBookSignal> listener, DispatchPolicy policy) {
+        subscribeOnSignals(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void unsubscribeTrade(String currencyPair, Consumer<PoloniexTradeEntry> listener) {
+        unsubscribeTrade(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeOrderBook(String currencyPair, Consumer<PoloniexOrderBookEntry> listener) {
+        unsubscribeOrderBook(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeTradeEvent(String currencyPair, Consumer<PoloniexTradeEvent> listener) {
+        unsubscribeTradeEvent(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeOrderBookEvent(String currencyPair, Consumer<PoloniexOrderBookEvent> listener) {
+        unsubscribeOrderBookEvent(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeBatch(String currencyPair, Consumer<PoloniexMarketBatch> listener) {
+        unsubscribeBatch(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeLiveOrderBook(String currencyPair, Consumer<PoloniexLiveOrderBook> listener) {
+        unsubscribeLiveOrderBook(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeSignals(String currencyPair, Consumer<PoloniexBookSignal> listener) {
+        unsubscribeSignals(currencyPairId(currencyPair), listener);
+    }
+
+    public void enableSignals(String currencyPair, int depthLevels, double spreadEwmaAlpha) {
+        enableSignals(currencyPairId(currencyPair), depthLevels, spreadEwmaAlpha);
+    }
+
+    public void unsubscribeChannel(String currencyPair) {
+        unsubscribeChannel(currencyPairId(currencyPair));
+    }
+
+    /**
+     * Trades with fixed point rate and amount, cheaper than {@link #subscribeOnTrade(Integer, Consumer)}.
+     */
+    public void subscribeOnTradeEvent(Integer currencyPairId, Consumer<PoloniexTradeEvent> listener) {
+        router.subscribeOnTradeEvent(currencyPairId, listener);
+    }
+
+    /**
+     * Order book updates with fixed point rate and amount, cheaper than {@link #subscribeOnOrderBook(Integer, Consumer)}.
+     */
+    public void subscribeOnOrderBookEvent(Integer currencyPairId, Consumer<PoloniexOrderBookEvent> listener) {
+        router.subscribeOnOrderBookEvent(currencyPairId, listener);
+    }
+
+    public void subscribeOnTradeEvent(Integer currencyPairId, Consumer<PoloniexTradeEvent> listener, DispatchPolicy policy) {
+        router.subscribeOnTradeEvent(currencyPairId, listener, policy);
+    }
+
+    public void subscribeOnOrderBookEvent(Integer currencyPairId, Consumer<PoloniexOrderBookEvent> listener, DispatchPolicy policy) {
+        router.subscribeOnOrderBookEvent(currencyPairId, listener, policy);
+    }
+
+    public void unsubscribeTradeEvent(Integer currencyPairId, Consumer<PoloniexTradeEvent> listener) {
+        router.unsubscribeTradeEvent(currencyPairId, listener);
+    }
+
+    public void unsubscribeOrderBookEvent(Integer currencyPairId, Consumer<PoloniexOrderBookEvent> listener) {
+        router.unsubscribeOrderBookEvent(currencyPairId, listener);
+    }
+
+    /**
+     * Whole messages as one batch of primitive updates and trades, so they can
+     * be applied atomically. See {@link PoloniexMarketBatch}.
+     */
+    public void subscribeOnBatch(Integer currencyPairId, Consumer<PoloniexMarketBatch> listener) {
+        router.subscribeOnBatch(currencyPairId, listener);
+    }
+
+    public void subscribeOnBatch(Integer currencyPairId, Consumer<PoloniexMarketBatch> listener, DispatchPolicy policy) {
+        router.subscribeOnBatch(currencyPairId, listener, policy);
+    }
+
+    public void unsubscribeBatch(Integer currencyPairId, Consumer<PoloniexMarketBatch> listener) {
+        router.unsubscribeBatch(currencyPairId, listener);
+    }
+
+    /**
+     * Trades as a Reactive Streams publisher; subscribers are signalled on the
+     * common pool. See {@link EventPublisher}.
+     */
+    public EventPublisher<PoloniexTradeEvent> publishTradeEvents(Integer currencyPairId, OverflowStrategy strategy, int bufferSize) {
+        return publishTradeEvents(currencyPairId, strategy, bufferSize, ForkJoinPool.commonPool());
+    }
+
+    public EventPublisher<PoloniexTradeEvent> publishTradeEvents(Integer currencyPairId, OverflowStrategy strategy, int bufferSize,
+                                                                 Executor executor) {
+        return new EventPublisher<>(
+                listener -> subscribeOnTradeEvent(currencyPairId, listener),
+                listener -> unsubscribeTradeEvent(currencyPairId, listener),
+                PoloniexTradeEvent::copy, strategy, bufferSize, executor);
+    }
+
+    public EventPublisher<PoloniexOrderBookEvent> publishOrderBookEvents(Integer currencyPairId, OverflowStrategy strategy, int bufferSize) {
+        return publishOrderBookEvents(currencyPairId, strategy, bufferSize, ForkJoinPool.commonPool());
+    }
+
+    public EventPublisher<PoloniexOrderBookEvent> publishOrderBookEvents(Integer currencyPairId, OverflowStrategy strategy, int bufferSize,
+                                                                         Executor executor) {
+        return new EventPublisher<>(
+                listener -> subscribeOnOrderBookEvent(currencyPairId, listener),
+                listener -> unsubscribeOrderBookEvent(currencyPairId, listener),
+                PoloniexOrderBookEvent::copy, strategy, bufferSize, executor);
+    }
+
+    public EventPublisher<PoloniexMarketBatch> publishBatches(Integer currencyPairId, OverflowStrategy strategy, int bufferSize) {
+        return publishBatches(currencyPairId, strategy, bufferSize, ForkJoinPool.commonPool());
+    }
+
+    public EventPublisher<PoloniexMarketBatch> publishBatches(Integer currencyPairId, OverflowStrategy strategy, int bufferSize,
+                                                              Executor executor) {
+        return new EventPublisher<>(
+                listener -> subscribeOnBatch(currencyPairId, listener),
+                listener -> unsubscribeBatch(currencyPairId, listener),
+                PoloniexMarketBatch::copy, strategy, bufferSize, executor);
+    }
+
+    public void subscribeOnLiveOrderBook(Integer currencyPairId, Consumer<PoloniexLiveOrderBook> listener) {
+        router.subscribeOnLiveOrderBook(currencyPairId, listener);
+    }
+
+    public void unsubscribeLiveOrderBook(Integer currencyPairId, Consumer<PoloniexLiveOrderBook> listener) {
+        router.unsubscribeLiveOrderBook(currencyPairId, listener);
+    }
+
+    /**
+     * Conflated best bid and ask for slow consumers: poll the returned slot at
+     * any pace, it only ever holds the latest state. See {@link ConflatedTopOfBook}.
+     */
+    public ConflatedTopOfBook subscribeOnTopOfBook(Integer currencyPairId) {
+        return router.subscribeOnTopOfBook(currencyPairId);
+    }
+
+    public void unsubscribeTopOfBook(ConflatedTopOfBook topOfBook) {
+        router.unsubscribeLiveOrderBook(topOfBook.getCurrencyPairId(), topOfBook);
+    }
+
+    /**
+     * Market wide best bid and ask: every pair published with
+     * {@link #publishTopOfBook(Integer)} has a slot in the returned table, which
+     * any number of threads can read or snapshot without locks or allocation.
+     * See {@link PoloniexTopOfBookTable}.
+     */
+    public PoloniexTopOfBookTable getTopOfBookTable() {
+        return router.getTopOfBookTable();
+    }
+
+    public void publishTopOfBook(Integer currencyPairId) {
+        router.publishTopOfBook(currencyPairId);
+    }
+
+    /**
+     * Stops publishing the pair and clears its slot in the table.
+     */
+    public void unpublishTopOfBook(Integer currencyPairId) {
+        router.unpublishTopOfBook(currencyPairId);
+        PoloniexTopOfBookTable table = router.getTopOfBookTable();
+        executeAfterDelivery(() -> table.clear(currencyPairId));
+    }
+
+    /**
+     * Candles without polling {@code returnChartData}: OHLCV bars of the pair
+     * for all the periods, published the moment the watermark passes the end
+     * of a period. See {@link BarAggregator}.
+     */
+    public BarAggregator subscribeOnBars(Integer currencyPairId, long allowedLatenessSeconds, Consumer<PoloniexBar> listener,
+                                         long... periodSeconds) {
+        return router.subscribeOnBars(currencyPairId, allowedLatenessSeconds, listener, periodSeconds);
+    }
+
+    public void unsubscribeBars(BarAggregator aggregator) {
+        router.unsubscribeTradeEvent(aggregator.getCurrencyPairId(), aggregator);
+    }
+
+    /**
+     * @return {@code true} while connected with bar aggregators, whose bars
+     * then close on the wall clock too
+     */
+    public boolean isBarClockRunning() {
+        return router.isBarClockRunning();
+    }
+
+    /**
+     * Levels summed per side and spread EWMA weight of the signals of the
+     * pair; call before subscribing to change the defaults.
+     */
+    public void enableSignals(Integer currencyPairId, int depthLevels, double spreadEwmaAlpha) {
+        router.enableSignals(currencyPairId, depthLevels, spreadEwmaAlpha);
+    }
+
+    /**
+     * Imbalance, microprice, depth weighted mid and spread EWMA of the live
+     * order book, updated incrementally on every delta. See {@link PoloniexBookSignals}.
+     */
+    public void subscribeOnSignals(Integer currencyPairId, Consumer<PoloniexBookSignal> listener) {
+        router.subscribeOnSignals(currencyPairId, listener);
+    }
+
+    public void subscribeOnSignals(Integer currencyPairId, Consumer<PoloniexBookSignal> listener, DispatchPolicy policy) {
+        router.subscribeOnSignals(currencyPairId, listener, policy);
+    }
+
+    public void unsubscribeSignals(Integer currencyPairId, Consumer<PoloniexBookSignal> listener) {
+        router.unsubscribeSignals(currencyPairId, listener);
+    }
+
     public void unsubscribeOrderBook(Integer currencyPairId, Consumer<PoloniexOrderBookEntry> listener) {
         router.unsubscribeOrderBook(currencyPairId, listener);
     }
@@ -119,4 +652,107 @@ public class WSSClient implements AutoCloseable {
     public void unsubscribeTrade(Integer currencyPairId, Consumer<PoloniexTradeEntry> listener) {
         router.unsubscribeTrade(currencyPairId, listener);
     }
+
+    /**
+     * Latest tickers of all currency pairs, readable from any thread without
+     * locks; subscribes to the ticker channel on first use.
+     */
+    public PoloniexTickerTable getTickerTable() {
+        return router.getTickerTable();
+    }
+
+    /**
+     * Lets the ticker channel be unsubscribed once it has no listeners.
+     */
+    public void releaseTickerTable() {
+        router.releaseTickerTable();
+    }
+
+    /**
+     * The listener runs on the event loop, only for pairs whose ticker changed,
+     * and receives a recycled {@link PoloniexTicker}.
+     */
+    public void subscribeOnTicker(Consumer<PoloniexTicker> listener) {
+        router.subscribeOnTicker(listener);
+    }
+
+    public void unsubscribeTicker(Consumer<PoloniexTicker> listener) {
+        router.unsubscribeTicker(listener);
+    }
+
+    /**
+     * Drops all listeners of the currency pair and unsubscribes from its channel
+     * at the exchange.
+     */
+    public void unsubscribeChannel(Integer currencyPairId) {
+        router.unsubscribeChannel(currencyPairId);
+    }
+
+    /**
+     * @return number of messages received for the currency pair on this connection
+     */
+    public long getMessageCount(Integer currencyPairId) {
+        return router.getMessageCount(currencyPairId);
+    }
+
+    /**
+     * Opt-in allocation free dispatch: {@link PoloniexTradeEvent} and
+     * {@link PoloniexOrderBookEvent} instances are recycled and only valid during
+     * the listener callback, listeners retaining them must {@code copy()} them.
+     */
+    public void setReuseEvents(boolean reuseEvents) {
+        router.setReuseEvents(reuseEvents);
+    }
+
+    /**
+     * @return number of sequence gaps detected over all market channels
+     */
+    public long getGapCount() {
+        return router.getGapCount();
+    }
+
+    /**
+     * @return number of order book resynchronisations requested over all market channels
+     */
+    public long getResyncCount() {
+        return router.getResyncCount();
+    }
+
+    /**
+     * Records decode, queue wait, listener and exchange lag latencies of every
+     * market channel into HDR histograms, see {@link com.cf.client.wss.latency.LatencyMonitor}.
+     */
+    public void setLatencyTracking(boolean latencyTracking) {
+        router.setLatencyTracking(latencyTracking);
+    }
+
+    /**
+     * @return latencies of the currency pair, {@code null} if none were recorded
+     */
+    public LatencySnapshot getLatencySnapshot(Integer currencyPairId) {
+        return router.getLatencyMonitor().snapshot(currencyPairId);
+    }
+
+    public Map<Integer, LatencySnapshot> getLatencySnapshots() {
+        return router.getLatencyMonitor().snapshots();
+    }
+
+    /**
+     * Publishes the latencies of every market channel over JMX, see
+     * {@link com.cf.client.wss.latency.ChannelLatencyMXBean}; the MBeans are
+     * removed again on {@link #close()}.
+     *
+     * @param name distinguishes the MBeans of several clients
+     */
+    public void registerLatencyMBeans(String name) {
+        router.getLatencyMonitor().registerMBeans(name);
+    }
+
+    /**
+     * Captures the raw frames received from now on, {@code null} stops the
+     * capture. The caller closes the journal. See {@link FrameJournal}.
+     */
+    public void setJournal(FrameJournal journal) {
+        router.setJournal(journal);
+    }
 }
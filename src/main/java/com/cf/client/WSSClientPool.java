@@ -0,0 +1,646 @@
+package com.cf.client;
+
+import com.cf.client.poloniex.PoloniexCurrencyPairRegistry;
+import com.cf.client.poloniex.wss.bar.BarAggregator;
+import com.cf.client.poloniex.wss.bar.PoloniexBar;
+import com.cf.client.poloniex.wss.book.ConflatedTopOfBook;
+import com.cf.client.poloniex.wss.book.PoloniexBookSignal;
+import com.cf.client.poloniex.wss.book.PoloniexLiveOrderBook;
+import com.cf.client.poloniex.wss.book.PoloniexTopOfBookTable;
+import com.cf.client.poloniex.wss.model.PoloniexMarketBatch;
+import com.cf.client.poloniex.wss.model.PoloniexOrderBookEntry;
+import com.cf.client.poloniex.wss.model.PoloniexOrderBookEvent;
+import com.cf.client.poloniex.wss.model.PoloniexTradeEntry;
+import com.cf.client.poloniex.wss.model.PoloniexTradeEvent;
+import com.cf.client.poloniex.wss.ticker.PoloniexTicker;
+import com.cf.client.poloniex.wss.ticker.PoloniexTickerTable;
+import com.cf.client.wss.dispatch.DispatchPolicy;
+import com.cf.client.wss.journal.FrameJournal;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Spreads currency pair channels over several {@link WSSClient} connections,
+ * each served by its own event loop thread, so decoding scales across cores.
+ * It offers the subscribe API of a single {@link WSSClient}.
+ * <p>
+ * A new currency pair goes to the connection with the lowest observed message
+ * rate (or the fewest pairs while no rate is known yet). When rebalancing is
+ * enabled the pool periodically compares the message rates of the connections
+ * and, if the busiest one receives more than {@value #IMBALANCE_RATIO} times the
+ * messages of the idlest one, moves a single currency pair between them: it is
+ * unsubscribed on the old connection and all its listeners are subscribed on the
+ * new one, which starts with a fresh {@code "i"} snapshot. Messages arriving
+ * during the hand over are not delivered.
+ */
+public class WSSClientPool implements AutoCloseable {
+    private final static Logger LOG = LogManager.getLogger();
+
+    static final double IMBALANCE_RATIO = 1.5;
+
+    private final EventLoopGroup group;
+    private final WSSClient[] clients;
+    private final long rebalanceIntervalMillis;
+
+    private final Map<Integer, Integer> connectionOfPair = new HashMap<>();
+    private final Map<Integer, List<Subscription>> subscriptions = new HashMap<>();
+    private final Map<Integer, Long> lastMessageCounts = new HashMap<>();
+    private final long[] rates;
+    private final PoloniexTopOfBookTable topOfBookTable = new PoloniexTopOfBookTable();
+    private volatile PoloniexCurrencyPairRegistry currencyPairRegistry;
+    private long moveCount;
+    private ScheduledFuture<?> rebalanceTask;
+
+    public WSSClientPool(String url, ProxySettings proxySettings, int connections) throws Exception {
+        this(url, proxySettings, connections, ReconnectPolicy.DEFAULT, 0);
+    }
+
+    /**
+     * @param rebalanceIntervalMillis how often message rates are compared; {@code 0} disables rebalancing
+     */
+    public WSSClientPool(String url, ProxySettings proxySettings, int connections, ReconnectPolicy reconnectPolicy,
+                         long rebalanceIntervalMillis) throws Exception {
+        this(url, proxySettings, connections, reconnectPolicy, TransportProfile.DEFAULT, rebalanceIntervalMillis);
+    }
+
+    /**
+     * @param transportProfile transport of all connections, its thread count is
+     *                         ignored in favour of one thread per connection
+     */
+    public WSSClientPool(String url, ProxySettings proxySettings, int connections, ReconnectPolicy reconnectPolicy,
+                         TransportProfile transportProfile, long rebalanceIntervalMillis) throws Exception {
+        if (connections < 1) {
+            throw new IllegalArgumentException("At least one connection required: " + connections);
+        }
+        this.rebalanceIntervalMillis = rebalanceIntervalMillis;
+        this.group = transportProfile.newEventLoopGroup(connections);
+        this.clients = new WSSClient[connections];
+        this.rates = new long[connections];
+        for (int i = 0; i < connections; i++) {
+            clients[i] = new WSSClient(url, proxySettings, reconnectPolicy, transportProfile, group);
+        }
+    }
+
+    /**
+     * Connects all connections and waits for their handshakes.
+     */
+    public synchronized void run() throws InterruptedException, IOException, URISyntaxException {
+        for (WSSClient client : clients) {
+            client.run();
+        }
+        if (rebalanceIntervalMillis > 0 && rebalanceTask == null) {
+            rebalanceTask = group.scheduleAtFixedRate(this::rebalance, rebalanceIntervalMillis, rebalanceIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (rebalanceTask != null) {
+            rebalanceTask.cancel(false);
+        }
+        for (WSSClient client : clients) {
+            client.close();
+        }
+        group.shutdownGracefully();
+    }
+
+    public int getConnectionCount() {
+        return clients.length;
+    }
+
+    /**
+     * @return index of the connection serving the currency pair or {@code -1} if it is not subscribed
+     */
+    public synchronized int getConnectionOf(Integer currencyPairId) {
+        return connectionOfPair.getOrDefault(currencyPairId, -1);
+    }
+
+    /**
+     * @return messages per rebalance interval of the connection, as of the last rebalance
+     */
+    public synchronized long getMessageRate(int connection) {
+        return rates[connection];
+    }
+
+    /**
+     * @return number of currency pairs moved between connections by rebalancing
+     */
+    public synchronized long getMoveCount() {
+        return moveCount;
+    }
+
+    public WSSClient getConnection(int connection) {
+        return clients[connection];
+    }
+
+    /**
+     * Compares the message rates observed since the last call and moves at most
+     * one currency pair from the busiest to the idlest connection. Called
+     * periodically when a rebalance interval is configured.
+     */
+    public synchronized void rebalance() {
+        Map<Integer, Long> pairRates = new HashMap<>();
+        Arrays.fill(rates, 0);
+        for (Map.Entry<Integer, Integer> entry : connectionOfPair.entrySet()) {
+            Integer pairId = entry.getKey();
+            long count = clients[entry.getValue()].getMessageCount(pairId);
+            long rate = Math.max(0, count - lastMessageCounts.getOrDefault(pairId, 0L));
+            lastMessageCounts.put(pairId, count);
+            pairRates.put(pairId, rate);
+            rates[entry.getValue()] += rate;
+        }
+
+        int busiest = 0;
+        int idlest = 0;
+        for (int i = 1; i < rates.length; i++) {
+            if (rates[i] > rates[busiest]) {
+                busiest = i;
+            }
+            if (rates[i] < rates[idlest]) {
+                idlest = i;
+            }
+        }
+        if (rates[busiest] == 0 || rates[busiest] <= rates[idlest] * IMBALANCE_RATIO) {
+            return;
+        }
+
+        Map<Integer, Long> candidates = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : connectionOfPair.entrySet()) {
+            if (entry.getValue() == busiest) {
+                candidates.put(entry.getKey(), pairRates.get(entry.getKey()));
+            }
+        }
+        Integer pairId = selectPairToMove(candidates, rates[busiest] - rates[idlest]);
+        if (pairId != null) {
+            move(pairId, busiest, idlest);
+            long rate = pairRates.get(pairId);
+            rates[busiest] -= rate;
+            rates[idlest] += rate;
+        }
+    }
+
+    /**
+     * @param difference message rate difference between the two connections
+     * @return the pair whose move brings the two connections closest to an
+     * equal rate, {@code null} if no move narrows the difference
+     */
+    static Integer selectPairToMove(Map<Integer, Long> pairRates, long difference) {
+        Integer selected = null;
+        long bestRemaining = difference;
+        for (Map.Entry<Integer, Long> entry : pairRates.entrySet()) {
+            long rate = entry.getValue();
+            long remaining = Math.abs(difference - 2 * rate);
+            if (rate > 0 && remaining < bestRemaining) {
+                bestRemaining = remaining;
+                selected = entry.getKey();
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * The listeners are subscribed on the new connection once the old one is
+     * done with them: after the message its event loop may be delivering right
+     * now and after the events queued in the dispatchers of the pair, so that
+     * single writer listeners like {@link BarAggregator} or the
+     * {@link PoloniexTopOfBookTable} never see two threads, whatever their
+     * {@link DispatchPolicy}. Listeners added in the meantime go to the new
+     * connection directly, removed ones are not replayed.
+     */
+    private void move(Integer pairId, int from, int to) {
+        LOG.info("Moving currency pair {} from connection {} to {}", pairId, from, to);
+        clients[from].unsubscribeChannel(pairId);
+        connectionOfPair.put(pairId, to);
+        lastMessageCounts.remove(pairId);
+        List<Subscription> moved = new ArrayList<>(subscriptions.getOrDefault(pairId, new ArrayList<>()));
+        clients[from].executeAfterDispatch(pairId, () -> resubscribe(pairId, to, moved));
+        moveCount++;
+    }
+
+    private synchronized void resubscribe(Integer pairId, int to, List<Subscription> moved) {
+        if (connectionOfPair.getOrDefault(pairId, -1) != to) {
+            return; //moved on again, the later move replays them
+        }
+        List<Subscription> current = subscriptions.getOrDefault(pairId, new ArrayList<>());
+        for (Subscription subscription : moved) {
+            if (current.contains(subscription)) {
+                subscription.subscribe.accept(clients[to]);
+            }
+        }
+    }
+
+    private WSSClient connectionFor(Integer pairId) {
+        Integer connection = connectionOfPair.get(pairId);
+        if (connection == null) {
+            connection = leastLoadedConnection();
+            connectionOfPair.put(pairId, connection);
+        }
+        return clients[connection];
+    }
+
+    private int leastLoadedConnection() {
+        int[] pairs = new int[clients.length];
+        for (Integer connection : connectionOfPair.values()) {
+            pairs[connection]++;
+        }
+        int selected = 0;
+        for (int i = 1; i < clients.length; i++) {
+            if (rates[i] < rates[selected] || rates[i] == rates[selected] && pairs[i] < pairs[selected]) {
+                selected = i;
+            }
+        }
+        return selected;
+    }
+
+    private synchronized void subscribe(Integer pairId, Kind kind, Object listener, Consumer<WSSClient> subscribe) {
+        subscribe.accept(connectionFor(pairId));
+        subscriptions.computeIfAbsent(pairId, id -> new ArrayList<>()).add(new Subscription(kind, listener, subscribe));
+    }
+
+    private synchronized void unsubscribe(Integer pairId, Kind kind, Object listener, Consumer<WSSClient> unsubscribe) {
+        Integer connection = connectionOfPair.get(pairId);
+        if (connection == null) {
+            return;
+        }
+        unsubscribe.accept(clients[connection]);
+        List<Subscription> pairSubscriptions = subscriptions.get(pairId);
+        Iterator<Subscription> iterator = pairSubscriptions.iterator();
+        while (iterator.hasNext()) {
+            Subscription subscription = iterator.next();
+            if (subscription.kind == kind && subscription.listener.equals(listener)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void subscribeOnTrade(Integer currencyPairId, Consumer<PoloniexTradeEntry> listener) {
+        subscribeOnTrade(currencyPairId, listener, DispatchPolicy.INLINE);
+    }
+
+    public void subscribeOnTrade(Integer currencyPairId, Consumer<PoloniexTradeEntry> listener, DispatchPolicy policy) {
+        subscribe(currencyPairId, Kind.TRADE, listener, client -> client.subscribeOnTrade(currencyPairId, listener, policy));
+    }
+
+    public void subscribeOnOrderBook(Integer currencyPairId, Consumer<PoloniexOrderBookEntry> listener) {
+        subscribeOnOrderBook(currencyPairId, listener, DispatchPolicy.INLINE);
+    }
+
+    public void subscribeOnOrderBook(Integer currencyPairId, Consumer<PoloniexOrderBookEntry> listener, DispatchPolicy policy) {
+        subscribe(currencyPairId, Kind.ORDER_BOOK, listener, client -> client.subscribeOnOrderBook(currencyPairId, listener, policy));
+    }
+
+    public void subscribeOnTradeEvent(Integer currencyPairId, Consumer<PoloniexTradeEvent> listener) {
+        subscribeOnTradeEvent(currencyPairId, listener, DispatchPolicy.INLINE);
+    }
+
+    public void subscribeOnTradeEvent(Integer currencyPairId, Consumer<PoloniexTradeEvent> listener, DispatchPolicy policy) {
+        subscribe(currencyPairId, Kind.TRADE_EVENT, listener, client -> client.subscribeOnTradeEvent(currencyPairId, listener, policy));
+    }
+
+    public void subscribeOnOrderBookEvent(Integer currencyPairId, Consumer<PoloniexOrderBookEvent> listener) {
+        subscribeOnOrderBookEvent(currencyPairId, listener, DispatchPolicy.INLINE);
+    }
+
+    public void subscribeOnOrderBookEvent(Integer currencyPairId, Consumer<PoloniexOrderBookEvent> listener, DispatchPolicy policy) {
+        subscribe(currencyPairId, Kind.ORDER_BOOK_EVENT, listener, client -> client.subscribeOnOrderBookEvent(currencyPairId, listener, policy));
+    }
+
+    public void subscribeOnBatch(Integer currencyPairId, Consumer<PoloniexMarketBatch> listener) {
+        subscribeOnBatch(currencyPairId, listener, DispatchPolicy.INLINE);
+    }
+
+    public void subscribeOnBatch(Integer currencyPairId, Consumer<PoloniexMarketBatch> listener, DispatchPolicy policy) {
+        subscribe(currencyPairId, Kind.BATCH, listener, client -> client.subscribeOnBatch(currencyPairId, listener, policy));
+    }
+
+    /**
+     * The listener receives another {@link PoloniexLiveOrderBook} instance after
+     * the currency pair was moved to another connection.
+     */
+    public void subscribeOnLiveOrderBook(Integer currencyPairId, Consumer<PoloniexLiveOrderBook> listener) {
+        subscribe(currencyPairId, Kind.LIVE_ORDER_BOOK, listener, client -> client.subscribeOnLiveOrderBook(currencyPairId, listener));
+    }
+
+    /**
+     * See {@link WSSClient#subscribeOnTopOfBook(Integer)}; the slot keeps being
+     * updated after the currency pair was moved to another connection.
+     */
+    public ConflatedTopOfBook subscribeOnTopOfBook(Integer currencyPairId) {
+        ConflatedTopOfBook topOfBook = new ConflatedTopOfBook(currencyPairId);
+        subscribeOnLiveOrderBook(currencyPairId, topOfBook);
+        return topOfBook;
+    }
+
+    public void unsubscribeTopOfBook(ConflatedTopOfBook topOfBook) {
+        unsubscribeLiveOrderBook(topOfBook.getCurrencyPairId(), topOfBook);
+    }
+
+    /**
+     * One table for the pairs of all the connections, see
+     * {@link WSSClient#getTopOfBookTable()}.
+     */
+    public PoloniexTopOfBookTable getTopOfBookTable() {
+        return topOfBookTable;
+    }
+
+    /**
+     * The pair keeps its slot in the table when it is moved to another connection.
+     */
+    public void publishTopOfBook(Integer currencyPairId) {
+        subscribeOnLiveOrderBook(currencyPairId, topOfBookTable.publisher());
+    }
+
+    /**
+     * Stops publishing the pair and clears its slot in the table, after the
+     * connection of the pair delivered the message it may be publishing.
+     */
+    public void unpublishTopOfBook(Integer currencyPairId) {
+        unsubscribeLiveOrderBook(currencyPairId, topOfBookTable.publisher());
+        int connection = getConnectionOf(currencyPairId);
+        if (connection < 0) {
+            topOfBookTable.clear(currencyPairId);
+        } else {
+            clients[connection].executeAfterDelivery(() -> topOfBookTable.clear(currencyPairId));
+        }
+    }
+
+    /**
+     * See {@link WSSClient#subscribeOnBars(Integer, long, Consumer, long...)}; the
+     * aggregator keeps its open bars when the currency pair is moved to another
+     * connection.
+     */
+    public BarAggregator subscribeOnBars(Integer currencyPairId, long allowedLatenessSeconds, Consumer<PoloniexBar> listener,
+                                         long... periodSeconds) {
+        BarAggregator aggregator = new BarAggregator(currencyPairId, allowedLatenessSeconds, listener, periodSeconds);
+        subscribeOnTradeEvent(currencyPairId, aggregator);
+        return aggregator;
+    }
+
+    public void unsubscribeBars(BarAggregator aggregator) {
+        unsubscribeTradeEvent(aggregator.getCurrencyPairId(), aggregator);
+    }
+
+    /**
+     * See {@link WSSClient#subscribeOnSignals(Integer, Consumer)}; the signals
+     * start over from the snapshot after the currency pair was moved to
+     * another connection.
+     */
+    public void subscribeOnSignals(Integer currencyPairId, Consumer<PoloniexBookSignal> listener) {
+        subscribeOnSignals(currencyPairId, listener, DispatchPolicy.INLINE);
+    }
+
+    public void subscribeOnSignals(Integer currencyPairId, Consumer<PoloniexBookSignal> listener, DispatchPolicy policy) {
+        subscribe(currencyPairId, Kind.SIGNALS, listener, client -> client.subscribeOnSignals(currencyPairId, listener, policy));
+    }
+
+    public void unsubscribeTrade(Integer currencyPairId, Consumer<PoloniexTradeEntry> listener) {
+        unsubscribe(currencyPairId, Kind.TRADE, listener, client -> client.unsubscribeTrade(currencyPairId, listener));
+    }
+
+    public void unsubscribeOrderBook(Integer currencyPairId, Consumer<PoloniexOrderBookEntry> listener) {
+        unsubscribe(currencyPairId, Kind.ORDER_BOOK, listener, client -> client.unsubscribeOrderBook(currencyPairId, listener));
+    }
+
+    public void unsubscribeTradeEvent(Integer currencyPairId, Consumer<PoloniexTradeEvent> listener) {
+        unsubscribe(currencyPairId, Kind.TRADE_EVENT, listener, client -> client.unsubscribeTradeEvent(currencyPairId, listener));
+    }
+
+    public void unsubscribeOrderBookEvent(Integer currencyPairId, Consumer<PoloniexOrderBookEvent> listener) {
+        unsubscribe(currencyPairId, Kind.ORDER_BOOK_EVENT, listener, client -> client.unsubscribeOrderBookEvent(currencyPairId, listener));
+    }
+
+    public void unsubscribeBatch(Integer currencyPairId, Consumer<PoloniexMarketBatch> listener) {
+        unsubscribe(currencyPairId, Kind.BATCH, listener, client -> client.unsubscribeBatch(currencyPairId, listener));
+    }
+
+    public void unsubscribeLiveOrderBook(Integer currencyPairId, Consumer<PoloniexLiveOrderBook> listener) {
+        unsubscribe(currencyPairId, Kind.LIVE_ORDER_BOOK, listener, client -> client.unsubscribeLiveOrderBook(currencyPairId, listener));
+    }
+
+    public void unsubscribeSignals(Integer currencyPairId, Consumer<PoloniexBookSignal> listener) {
+        unsubscribe(currencyPairId, Kind.SIGNALS, listener, client -> client.unsubscribeSignals(currencyPairId, listener));
+    }
+
+    /**
+     * Resolves the symbols of the {@code String} overloads for the pool and
+     * all its connections, see {@link WSSClient#setCurrencyPairRegistry}.
+     */
+    public void setCurrencyPairRegistry(PoloniexCurrencyPairRegistry currencyPairRegistry) {
+        this.currencyPairRegistry = currencyPairRegistry;
+        for (WSSClient client : clients) {
+            client.setCurrencyPairRegistry(currencyPairRegistry);
+        }
+    }
+
+    public PoloniexCurrencyPairRegistry getCurrencyPairRegistry() {
+        return currencyPairRegistry;
+    }
+
+    private Integer currencyPairId(String symbol) {
+        PoloniexCurrencyPairRegistry registry = this.currencyPairRegistry;
+        if (registry == null) {
+            throw new IllegalStateException("No currency pair registry to resolve " + symbol);
+        }
+        return registry.requireCurrencyPairId(symbol);
+    }
+
+    public void subscribeOnTrade(String currencyPair, Consumer<PoloniexTradeEntry> listener) {
+        subscribeOnTrade(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnTrade(String currencyPair, Consumer<PoloniexTradeEntry> listener, DispatchPolicy policy) {
+        subscribeOnTrade(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnOrderBook(String currencyPair, Consumer<PoloniexOrderBookEntry> listener) {
+        subscribeOnOrderBook(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnOrderBook(String currencyPair, Consumer<PoloniexOrderBookEntry> listener, DispatchPolicy policy) {
+        subscribeOnOrderBook(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnTradeEvent(String currencyPair, Consumer<PoloniexTradeEvent> listener) {
+        subscribeOnTradeEvent(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnTradeEvent(String currencyPair, Consumer<PoloniexTradeEvent> listener, DispatchPolicy policy) {
+        subscribeOnTradeEvent(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnOrderBookEvent(String currencyPair, Consumer<PoloniexOrderBookEvent> listener) {
+        subscribeOnOrderBookEvent(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnOrderBookEvent(String currencyPair, Consumer<PoloniexOrderBookEvent> listener, DispatchPolicy policy) {
+        subscribeOnOrderBookEvent(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnBatch(String currencyPair, Consumer<PoloniexMarketBatch> listener) {
+        subscribeOnBatch(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnBatch(String currencyPair, Consumer<PoloniexMarketBatch> listener, DispatchPolicy policy) {
+        subscribeOnBatch(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void subscribeOnLiveOrderBook(String currencyPair, Consumer<PoloniexLiveOrderBook> listener) {
+        subscribeOnLiveOrderBook(currencyPairId(currencyPair), listener);
+    }
+
+    public ConflatedTopOfBook subscribeOnTopOfBook(String currencyPair) {
+        return subscribeOnTopOfBook(currencyPairId(currencyPair));
+    }
+
+    public void publishTopOfBook(String currencyPair) {
+        publishTopOfBook(currencyPairId(currencyPair));
+    }
+
+    public void unpublishTopOfBook(String currencyPair) {
+        unpublishTopOfBook(currencyPairId(currencyPair));
+    }
+
+    public BarAggregator subscribeOnBars(String currencyPair, long allowedLatenessSeconds, Consumer<PoloniexBar> listener,
+                                         long... periodSeconds) {
+        return subscribeOnBars(currencyPairId(currencyPair), allowedLatenessSeconds, listener, periodSeconds);
+    }
+
+    public void subscribeOnSignals(String currencyPair, Consumer<PoloniexBookSignal> listener) {
+        subscribeOnSignals(currencyPairId(currencyPair), listener);
+    }
+
+    public void subscribeOnSignals(String currencyPair, Consumer<PoloniexBookSignal> listener, DispatchPolicy policy) {
+        subscribeOnSignals(currencyPairId(currencyPair), listener, policy);
+    }
+
+    public void unsubscribeTrade(String currencyPair, Consumer<PoloniexTradeEntry> listener) {
+        unsubscribeTrade(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeOrderBook(String currencyPair, Consumer<PoloniexOrderBookEntry> listener) {
+        unsubscribeOrderBook(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeTradeEvent(String currencyPair, Consumer<PoloniexTradeEvent> listener) {
+        unsubscribeTradeEvent(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeOrderBookEvent(String currencyPair, Consumer<PoloniexOrderBookEvent> listener) {
+        unsubscribeOrderBookEvent(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeBatch(String currencyPair, Consumer<PoloniexMarketBatch> listener) {
+        unsubscribeBatch(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeLiveOrderBook(String currencyPair, Consumer<PoloniexLiveOrderBook> listener) {
+        unsubscribeLiveOrderBook(currencyPairId(currencyPair), listener);
+    }
+
+    public void unsubscribeSignals(String currencyPair, Consumer<PoloniexBookSignal> listener) {
+        unsubscribeSignals(currencyPairId(currencyPair), listener);
+    }
+
+    /**
+     * The ticker channel is served by the first connection, see
+     * {@link WSSClient#getTickerTable()}.
+     */
+    public PoloniexTickerTable getTickerTable() {
+        return clients[0].getTickerTable();
+    }
+
+    public void releaseTickerTable() {
+        clients[0].releaseTickerTable();
+    }
+
+    public void subscribeOnTicker(Consumer<PoloniexTicker> listener) {
+        clients[0].subscribeOnTicker(listener);
+    }
+
+    public void unsubscribeTicker(Consumer<PoloniexTicker> listener) {
+        clients[0].unsubscribeTicker(listener);
+    }
+
+    /**
+     * See {@link WSSClient#setReuseEvents(boolean)}.
+     */
+    public void setReuseEvents(boolean reuseEvents) {
+        for (WSSClient client : clients) {
+            client.setReuseEvents(reuseEvents);
+        }
+    }
+
+    /**
+     * See {@link WSSClient#setLatencyTracking(boolean)}; the latencies of a pair
+     * are kept by the connection serving it, see {@link #getConnectionOf(Integer)}.
+     */
+    public void setLatencyTracking(boolean latencyTracking) {
+        for (WSSClient client : clients) {
+            client.setLatencyTracking(latencyTracking);
+        }
+    }
+
+    /**
+     * Captures the frames of all connections into the one journal, each
+     * connection as a stream of its own, see {@link WSSClient#setJournal(FrameJournal)}
+     * and {@link com.cf.client.wss.journal.FrameReplay}.
+     */
+    public void setJournal(FrameJournal journal) {
+        for (WSSClient client : clients) {
+            client.setJournal(journal);
+        }
+    }
+
+    public long getReconnectCount() {
+        long count = 0;
+        for (WSSClient client : clients) {
+            count += client.getReconnectCount();
+        }
+        return count;
+    }
+
+    public long getGapCount() {
+        long count = 0;
+        for (WSSClient client : clients) {
+            count += client.getGapCount();
+        }
+        return count;
+    }
+
+    public long getResyncCount() {
+        long count = 0;
+        for (WSSClient client : clients) {
+            count += client.getResyncCount();
+        }
+        return count;
+    }
+
+    private enum Kind {
+        TRADE, ORDER_BOOK, TRADE_EVENT, ORDER_BOOK_EVENT, BATCH, LIVE_ORDER_BOOK, SIGNALS
+    }
+
+    private static class Subscription {
+        private final Kind kind;
+        private final Object listener;
+        private final Consumer<WSSClient> subscribe;
+
+        private Subscription(Kind kind, Object listener, Consumer<WSSClient> subscribe) {
+            this.kind = kind;
+            this.listener = listener;
+            this.subscribe = subscribe;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.cf.client.poloniex;
+
+import com.cf.data.model.poloniex.PoloniexCurrency;
+import com.cf.data.model.poloniex.PoloniexTicker;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Maps the numeric currency pair ids of the WSS channels (121, 149, ...) to
+ * the {@code "USDT_BTC"} symbols of the REST API and back, and the same for
+ * currencies, as listed by {@code returnTicker} and {@code returnCurrencies}.
+ * <p>
+ * Ids index dense arrays of interned symbols; symbols are found in an open
+ * addressing table over the cached {@link String#hashCode()}, so neither
+ * direction allocates or boxes. Hot paths are meant to stay on int ids and
+ * use the symbols for display and REST calls only.
+ * <p>
+ * A {@link #refresh(PoloniexExchangeService) refresh} builds new tables and
+ * publishes them with a single volatile write, readers on any thread see
+ * either all the old or all the new ones. {@link #scheduleRefresh} picks up
+ * new listings periodically. Ids never change meaning: markets missing from a later listing keep
+ * their entry, newly listed ones are reported to the
+ * {@link #addListingListener(IntConsumer) listing listeners}.
+ */
+public class PoloniexCurrencyPairRegistry {
+    private final static Logger LOG = LogManager.getLogger();
+    private static final String SEPARATOR = "_";
+
+    private final List<IntConsumer> listingListeners = new CopyOnWriteArrayList<>();
+    private volatile Tables tables = Tables.EMPTY;
+
+    public PoloniexCurrencyPairRegistry() {
+    }
+
+    /**
+     * @param tickers    {@code returnTicker} result, currency pair symbol to ticker
+     * @param currencies {@code returnCurrencies} result
+     */
+    public PoloniexCurrencyPairRegistry(Map<String, PoloniexTicker> tickers, Collection<PoloniexCurrency> currencies) {
+        refresh(tickers, currencies);
+    }
+
+    /**
+     * Fetches the current markets and currencies; nothing changes if either
+     * request fails.
+     *
+     * @return number of newly listed currency pairs
+     */
+    public int refresh(PoloniexExchangeService service) {
+        Map<String, PoloniexTicker> tickers = service.returnTicker();
+        List<PoloniexCurrency> currencies = service.getCurrencies();
+        if (tickers == null || tickers.isEmpty() || currencies.isEmpty()) {
+            LOG.warn("Currency pair registry not refreshed, markets or currencies unavailable");
+            return 0;
+        }
+        return refresh(tickers, currencies);
+    }
+
+    /**
+     * Refreshes the registry every period on the executor until the returned
+     * future is cancelled; a failed refresh is logged and retried next period.
+     */
+    public ScheduledFuture<?> scheduleRefresh(ScheduledExecutorService executor, PoloniexExchangeService service, long period,
+                                              TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                refresh(service);
+            } catch (RuntimeException ex) {
+                LOG.warn("Currency pair registry refresh failed", ex);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Adds the given markets and currencies to the known ones.
+     *
+     * @return number of newly listed currency pairs
+     */
+    public synchronized int refresh(Map<String, PoloniexTicker> tickers, Collection<PoloniexCurrency> currencies) {
+        Tables previousTables = this.tables;
+        Index.Builder currencyBuilder = new Index.Builder(previousTables.currencies);
+        for (PoloniexCurrency currency : currencies) {
+            currencyBuilder.put(currency.getId(), currency.getSymbol());
+        }
+        Index.Builder pairBuilder = new Index.Builder(previousTables.pairs);
+        for (Map.Entry<String, PoloniexTicker> ticker : tickers.entrySet()) {
+            if (ticker.getValue() != null && ticker.getValue().id != null) {
+                pairBuilder.put(ticker.getValue().id, ticker.getKey());
+            }
+        }
+        Index previous = previousTables.pairs;
+        Index currencyIndex = currencyBuilder.build();
+        Index pairs = pairBuilder.build(currencyIndex);
+        this.tables = new Tables(pairs, currencyIndex);
+
+        int listed = 0;
+        for (int id = 0; id < pairs.size(); id++) {
+            if (pairs.symbol(id) != null && previous.symbol(id) == null) {
+                listed++;
+                if (previous != Index.EMPTY) {
+                    LOG.info("New currency pair listed: {} {}", id, pairs.symbol(id));
+                }
+                for (IntConsumer listener : listingListeners) {
+                    listener.accept(id);
+                }
+            }
+        }
+        return listed;
+    }
+
+    /**
+     * The listener receives the id of every currency pair that appears in a
+     * refresh, on the refreshing thread; pairs known before it was added are
+     * not reported.
+     */
+    public void addListingListener(IntConsumer listener) {
+        listingListeners.add(listener);
+    }
+
+    public void removeListingListener(IntConsumer listener) {
+        listingListeners.remove(listener);
+    }
+
+    /**
+     * @return number of known currency pairs
+     */
+    public int getCurrencyPairCount() {
+        return tables.pairs.count();
+    }
+
+    /**
+     * @return ids of all known currency pairs in ascending order
+     */
+    public int[] getCurrencyPairIds() {
+        return tables.pairs.ids();
+    }
+
+    /**
+     * @return interned symbol like {@code "USDT_BTC"} or {@code null} if the id is unknown
+     */
+    public String getSymbol(int currencyPairId) {
+        return tables.pairs.symbol(currencyPairId);
+    }
+
+    /**
+     * @return id of the currency pair or {@code -1} if the symbol is unknown
+     */
+    public int getCurrencyPairId(String symbol) {
+        return tables.pairs.id(symbol);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the symbol is unknown
+     */
+    public int requireCurrencyPairId(String symbol) {
+        int id = tables.pairs.id(symbol);
+        if (id < 0) {
+            throw new IllegalArgumentException("Unknown currency pair: " + symbol);
+        }
+        return id;
+    }
+
+    /**
+     * @return interned currency symbol like {@code "BTC"} or {@code null} if the id is unknown
+     */
+    public String getCurrencySymbol(int currencyId) {
+        return tables.currencies.symbol(currencyId);
+    }
+
+    /**
+     * @return id of the currency or {@code -1} if the symbol is unknown
+     */
+    public int getCurrencyId(String symbol) {
+        return tables.currencies.id(symbol);
+    }
+
+    /**
+     * @return id of the currency the pair is quoted in, {@code USDT} of {@code USDT_BTC}, or {@code -1}
+     */
+    public int getBaseCurrencyId(int currencyPairId) {
+        return tables.pairs.baseCurrencyId(currencyPairId);
+    }
+
+    /**
+     * @return id of the currency traded in the pair, {@code BTC} of {@code USDT_BTC}, or {@code -1}
+     */
+    public int getQuoteCurrencyId(int currencyPairId) {
+        return tables.pairs.quoteCurrencyId(currencyPairId);
+    }
+
+    /**
+     * The two indexes of one refresh, published together.
+     */
+    private static final class Tables {
+        static final Tables EMPTY = new Tables(Index.EMPTY, Index.EMPTY);
+
+        final Index pairs;
+        final Index currencies;
+
+        Tables(Index pairs, Index currencies) {
+            this.pairs = pairs;
+            this.currencies = currencies;
+        }
+    }
+
+    /**
+     * Immutable id to symbol array plus symbol to id hash table; for currency
+     * pairs also the ids of their two currencies.
+     */
+    private static final class Index {
+        static final Index EMPTY = new Index(new String[0], new int[0], new int[0], new String[1], new int[1], 0);
+
+        private final String[] symbols;
+        private final int[] baseCurrencyIds;
+        private final int[] quoteCurrencyIds;
+        private final String[] keys;
+        private final int[] values;
+        private final int count;
+
+        private Index(String[] symbols, int[] baseCurrencyIds, int[] quoteCurrencyIds, String[] keys, int[] values, int count) {
+            this.symbols = symbols;
+            this.baseCurrencyIds = baseCurrencyIds;
+            this.quoteCurrencyIds = quoteCurrencyIds;
+            this.keys = keys;
+            this.values = values;
+            this.count = count;
+        }
+
+        int size() {
+            return symbols.length;
+        }
+
+        int count() {
+            return count;
+        }
+
+        String symbol(int id) {
+            return id >= 0 && id < symbols.length ? symbols[id] : null;
+        }
+
+        int baseCurrencyId(int id) {
+            return id >= 0 && id < baseCurrencyIds.length ? baseCurrencyIds[id] : -1;
+        }
+
+        int quoteCurrencyId(int id) {
+            return id >= 0 && id < quoteCurrencyIds.length ? quoteCurrencyIds[id] : -1;
+        }
+
+        int[] ids() {
+            int[] ids = new int[count];
+            for (int id = 0, i = 0; id < symbols.length; id++) {
+                if (symbols[id] != null) {
+                    ids[i++] = id;
+                }
+            }
+            return ids;
+        }
+
+        int id(String symbol) {
+            if (symbol == null) {
+                return -1;
+            }
+            int mask = keys.length - 1;
+            for (int slot = spread(symbol.hashCode()) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key == symbol || key.equals(symbol)) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        static final class Builder {
+            private String[] symbols;
+
+            Builder(Index base) {
+                symbols = base.symbols.clone();
+            }
+
+            void put(int id, String symbol) {
+                if (id < 0 || symbol == null) {
+                    return;
+                }
+                if (id >= symbols.length) {
+                    symbols = Arrays.copyOf(symbols, id + 1);
+                }
+                symbols[id] = symbol.intern();
+            }
+
+            Index build() {
+                return build(null);
+            }
+
+            /**
+             * @param currencies resolves the two currencies of pair symbols, {@code null} for a currency index
+             */
+            Index build(Index currencies) {
+                int count = 0;
+                for (String symbol : symbols) {
+                    if (symbol != null) {
+                        count++;
+                    }
+                }
+                int capacity = Integer.highestOneBit(Math.max(count, 1) * 2 + 1) << 1;
+                String[] keys = new String[capacity];
+                int[] values = new int[capacity];
+                int[] baseCurrencyIds = new int[symbols.length];
+                int[] quoteCurrencyIds = new int[symbols.length];
+                Arrays.fill(baseCurrencyIds, -1);
+                Arrays.fill(quoteCurrencyIds, -1);
+                for (int id = 0; id < symbols.length; id++) {
+                    String symbol = symbols[id];
+                    if (symbol == null) {
+                        continue;
+                    }
+                    int slot = spread(symbol.hashCode()) & (capacity - 1);
+                    while (keys[slot] != null && !keys[slot].equals(symbol)) {
+                        slot = (slot + 1) & (capacity - 1);
+                    }
+                    keys[slot] = symbol;
+                    values[slot] = id;
+                    int separator = symbol.indexOf(SEPARATOR);
+                    if (currencies != null && separator > 0) {
+                        baseCurrencyIds[id] = currencies.id(symbol.substring(0, separator));
+                        quoteCurrencyIds[id] = currencies.id(symbol.substring(separator + 1));
+                    }
+                }
+                return new Index(symbols, baseCurrencyIds, quoteCurrencyIds, keys, values, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.cf.client.poloniex;
+
+import com.cf.client.poloniex.wss.model.PoloniexWSSSubscription;
+import com.cf.client.wss.handler.IMessageHandler;
+import com.cf.client.wss.handler.OrderBookMessageHandler;
+import com.cf.client.wss.handler.TickerTableMessageHandler;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps the channels subscribed at the exchange in line with the listeners of
+ * the router. A market channel is subscribed with its first listener and
+ * unsubscribed once its last listener is gone and none came back within the
+ * linger period, so that quickly re-added listeners do not cost a new
+ * snapshot.
+ * <p>
+ * Subscribe and unsubscribe commands are queued and written by one task on
+ * the event loop with a single flush, however many threads issue them. Handlers
+ * are created and removed inside {@link ConcurrentMap#compute}, so a listener
+ * added while its channel is being dropped either keeps the channel or lands
+ * in a new handler. The command is queued inside the same compute, so the
+ * commands of a channel are written in the order its handler changed; no
+ * frame is written from inside the map.
+ * <p>
+ * Order book and ticker table handlers are counted, other handlers stay
+ * subscribed until they are {@link #remove(Integer) removed}.
+ */
+class PoloniexSubscriptionManager {
+    private final static Logger LOG = LogManager.getLogger();
+
+    static final long DEFAULT_LINGER_MILLIS = 5000;
+
+    private final ConcurrentMap<Integer, IMessageHandler> handlers;
+    private final IntConsumer removal;
+    private final Queue<PoloniexWSSSubscription> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Set<Integer> lingering = ConcurrentHashMap.newKeySet();
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private volatile Channel channel;
+    private volatile long lingerMillis = DEFAULT_LINGER_MILLIS;
+
+    /**
+     * @param removal releases the resources of a channel whose handler is
+     *                removed, e.g. its dispatcher threads; runs while the
+     *                channel cannot be subscribed again
+     */
+    PoloniexSubscriptionManager(ConcurrentMap<Integer, IMessageHandler> handlers, IntConsumer removal) {
+        this.handlers = handlers;
+        this.removal = removal;
+    }
+
+    /**
+     * Registers a listener with the handler of the channel, creating the
+     * handler and subscribing to the channel if there is none.
+     *
+     * @param register adds the listener, called while the channel cannot be dropped
+     */
+    <H extends IMessageHandler> H acquire(Integer channelId, Class<H> type, Function<Integer, H> factory, Consumer<H> register) {
+        boolean[] created = new boolean[1];
+        IMessageHandler handler = handlers.compute(channelId, (id, current) -> {
+            H typed = current == null ? factory.apply(id) : checkType(id, current, type);
+            created[0] = current == null;
+            register.accept(typed);
+            if (created[0]) {
+                LOG.trace("Subscribing on channel: {}", id);
+                enqueue(new PoloniexWSSSubscription(id));
+            }
+            return typed;
+        });
+        if (created[0]) {
+            scheduleFlush();
+        }
+        return type.cast(handler);
+    }
+
+    /**
+     * Removes a listener from the order book handler of the channel; the
+     * channel is unsubscribed after the linger period if that was its last
+     * listener.
+     */
+    void release(Integer channelId, Consumer<OrderBookMessageHandler> unregister) {
+        release(channelId, OrderBookMessageHandler.class, unregister);
+    }
+
+    /**
+     * Removes a listener from the handler of the channel, see {@link #release(Integer, Consumer)}.
+     */
+    <H extends IMessageHandler> void release(Integer channelId, Class<H> type, Consumer<H> unregister) {
+        IMessageHandler handler = handlers.computeIfPresent(channelId, (id, current) -> {
+            unregister.accept(checkType(id, current, type));
+            return current;
+        });
+        if (handler != null && listenerCount(handler) == 0) {
+            scheduleUnsubscribe(channelId);
+        }
+    }
+
+    private static <H extends IMessageHandler> H checkType(Integer channelId, IMessageHandler handler, Class<H> type) {
+        if (!type.isInstance(handler)) {
+            throw new IllegalStateException("Channel " + channelId + " is subscribed with " + handler.getClass().getSimpleName());
+        }
+        return type.cast(handler);
+    }
+
+    /**
+     * @return listeners keeping the channel subscribed, {@code -1} for handlers that are never idle
+     */
+    private static int listenerCount(IMessageHandler handler) {
+        if (handler instanceof OrderBookMessageHandler) {
+            return ((OrderBookMessageHandler) handler).getListenerCount();
+        }
+        if (handler instanceof TickerTableMessageHandler) {
+            return ((TickerTableMessageHandler) handler).getListenerCount();
+        }
+        return -1;
+    }
+
+    private void scheduleUnsubscribe(Integer channelId) {
+        Channel channel = this.channel;
+        long lingerMillis = this.lingerMillis;
+        if (channel == null || lingerMillis <= 0) {
+            unsubscribeIfIdle(channelId);
+        } else if (lingering.add(channelId)) {
+            channel.eventLoop().schedule(() -> {
+                lingering.remove(channelId);
+                unsubscribeIfIdle(channelId);
+            }, lingerMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void unsubscribeIfIdle(Integer channelId) {
+        boolean[] removed = new boolean[1];
+        handlers.computeIfPresent(channelId, (id, current) -> {
+            removed[0] = listenerCount(current) == 0;
+            if (removed[0]) {
+                removal.accept(id);
+                LOG.debug("Unsubscribing from idle channel {}", id);
+                enqueue(PoloniexWSSSubscription.unsubscribe(id));
+            }
+            return removed[0] ? null : current;
+        });
+        if (removed[0]) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Drops the handler of the channel with all its listeners and unsubscribes.
+     */
+    IMessageHandler remove(Integer channelId) {
+        IMessageHandler[] removed = new IMessageHandler[1];
+        handlers.computeIfPresent(channelId, (id, current) -> {
+            removed[0] = current;
+            removal.accept(id);
+            LOG.trace("Unsubscribing from channel: {}", id);
+            enqueue(PoloniexWSSSubscription.unsubscribe(id));
+            return null;
+        });
+        if (removed[0] != null) {
+            scheduleFlush();
+        }
+        return removed[0];
+    }
+
+    /**
+     * Unsubscribes and subscribes again in the same batch, so that the exchange
+     * sends a fresh snapshot; nothing happens if the channel was dropped
+     * meanwhile.
+     */
+    void resubscribe(Integer channelId) {
+        IMessageHandler handler = handlers.computeIfPresent(channelId, (id, current) -> {
+            enqueue(PoloniexWSSSubscription.unsubscribe(id));
+            enqueue(new PoloniexWSSSubscription(id));
+            return current;
+        });
+        if (handler != null) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Queues the command for the next flush, also while disconnected: a
+     * handler created while the connection comes up may be missed by
+     * {@link #onConnected(Channel)} walking the handlers, but not by it
+     * draining the queue. Called inside the compute that changed the handler
+     * of the channel.
+     */
+    private void enqueue(PoloniexWSSSubscription subscription) {
+        pending.add(subscription);
+    }
+
+    /**
+     * Writes the queued commands from the event loop, once for all commands
+     * queued until then.
+     */
+    private void scheduleFlush() {
+        Channel channel = this.channel;
+        if (channel != null && flushScheduled.compareAndSet(false, true)) {
+            channel.eventLoop().execute(this::flush);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        Channel channel = this.channel;
+        int written = 0;
+        for (PoloniexWSSSubscription subscription; (subscription = pending.poll()) != null; ) {
+            if (channel != null) {
+                channel.write(new TextWebSocketFrame(subscription.toString()));
+                written++;
+            }
+        }
+        if (written > 0) {
+            channel.flush();
+            frameCount.addAndGet(written);
+            flushCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Subscribes to the channels of all handlers on the new connection, then
+     * writes the last command queued for each channel unless that channel is
+     * already in that state, so every channel is subscribed once; called on
+     * its event loop.
+     */
+    void onConnected(Channel channel) {
+        this.channel = channel;
+        Set<String> subscribed = new HashSet<>();
+        for (Integer channelId : handlers.keySet()) {
+            LOG.trace("Subscribing on channel: {}", channelId);
+            PoloniexWSSSubscription subscription = new PoloniexWSSSubscription(channelId);
+            subscribed.add(subscription.channel);
+            write(channel, subscription);
+        }
+        Map<String, PoloniexWSSSubscription> latest = new LinkedHashMap<>();
+        for (PoloniexWSSSubscription subscription; (subscription = pending.poll()) != null; ) {
+            latest.put(subscription.channel, subscription);
+        }
+        for (PoloniexWSSSubscription subscription : latest.values()) {
+            if ("unsubscribe".equals(subscription.command) == subscribed.contains(subscription.channel)) {
+                write(channel, subscription);
+            }
+        }
+        channel.flush();
+        flushCount.incrementAndGet();
+    }
+
+    private void write(Channel channel, PoloniexWSSSubscription subscription) {
+        channel.write(new TextWebSocketFrame(subscription.toString()));
+        frameCount.incrementAndGet();
+    }
+
+    /**
+     * Drops the queued commands, the next connection subscribes to all
+     * channels anyway.
+     */
+    void onDisconnected() {
+        channel = null;
+        pending.clear();
+    }
+
+    /**
+     * @param lingerMillis how long a channel without listeners stays subscribed; {@code 0} unsubscribes at once
+     */
+    void setLingerMillis(long lingerMillis) {
+        this.lingerMillis = lingerMillis;
+    }
+
+    long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    long getFrameCount() {
+        return frameCount.get();
+    }
+
+    long getFlushCount() {
+        return flushCount.get();
+    }
+}
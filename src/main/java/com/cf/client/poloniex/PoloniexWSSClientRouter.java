@@ -1,46 +1,128 @@
 package com.cf.client.poloniex;
 
+import com.cf.client.poloniex.wss.bar.BarAggregator;
+import com.cf.client.poloniex.wss.bar.PoloniexBar;
+import com.cf.client.poloniex.wss.book.ConflatedTopOfBook;
+import com.cf.client.poloniex.wss.book.PoloniexBookSignal;
+import com.cf.client.poloniex.wss.book.PoloniexBookSignals;
+import com.cf.client.poloniex.wss.book.PoloniexLiveOrderBook;
+import com.cf.client.poloniex.wss.book.PoloniexTopOfBookTable;
+import com.cf.client.poloniex.wss.decoder.PoloniexSnapshotDecoder;
+import com.cf.client.poloniex.wss.decoder.PoloniexWSSFrameDecoder;
+import com.cf.client.poloniex.wss.model.PoloniexMarketBatch;
 import com.cf.client.poloniex.wss.model.PoloniexOrderBookEntry;
+import com.cf.client.poloniex.wss.model.PoloniexOrderBookEvent;
 import com.cf.client.poloniex.wss.model.PoloniexTradeEntry;
-import com.cf.client.poloniex.wss.model.PoloniexWSSSubscription;
+import com.cf.client.poloniex.wss.model.PoloniexTradeEvent;
+import com.cf.client.poloniex.wss.ticker.PoloniexTicker;
+import com.cf.client.poloniex.wss.ticker.PoloniexTickerTable;
+import com.cf.client.wss.dispatch.DispatchPolicy;
+import com.cf.client.wss.dispatch.Dispatchers;
+import com.cf.client.wss.handler.IFrameMessageHandler;
+import com.cf.client.wss.handler.IMarketEventHandler;
 import com.cf.client.wss.handler.IMessageHandler;
 import com.cf.client.wss.handler.LoggingMessageHandler;
 import com.cf.client.wss.handler.OrderBookMessageHandler;
+import com.cf.client.wss.handler.TickerTableMessageHandler;
+import com.cf.client.wss.journal.FrameJournal;
+import com.cf.client.wss.latency.ChannelLatency;
+import com.cf.client.wss.latency.LatencyMonitor;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.websocketx.*;
+import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Map;
+import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
+/**
+ * Routes WSS messages to the handler of their channel. One router outlives the
+ * connections of its client: it is added to the pipeline of every
+ * (re)connection, replays all subscriptions after each handshake and closes
+ * connections that stopped delivering heartbeats.
+ * <p>
+ * A market channel is subscribed at the exchange with its first listener and
+ * unsubscribed some time after its last one is removed, see
+ * {@link #setUnsubscribeLinger(long)}. Messages of channels without a handler
+ * are dropped before decoding.
+ * <p>
+ * Every frame is stamped with {@link System#nanoTime()} on arrival; with
+ * {@link #setLatencyTracking(boolean) latency tracking} on, the time it takes
+ * to handle it goes into the histograms of its channel, see {@link LatencyMonitor}.
+ */
+@ChannelHandler.Sharable
 public class PoloniexWSSClientRouter extends SimpleChannelInboundHandler<Object> {
     private final static Logger LOG = LogManager.getLogger();
     private static final int MAX_FRAME_LENGTH = 126214400;
     private static final int PULSE = 1010;
+    private static final int TICKER = 1002;
+    private static final int MAX_FRAGMENTED_MESSAGE_BYTES = 1 << 20;
+    private static final AtomicInteger JOURNAL_STREAMS = new AtomicInteger();
+    private static final long BAR_CLOCK_MILLIS = 1000;
 
-    private final WebSocketClientHandshaker handshaker;
-    private ChannelPromise handshakeFuture;
+    private final Supplier<WebSocketClientHandshaker> handshakerFactory;
+    private volatile WebSocketClientHandshaker handshaker;
+    private volatile ChannelPromise handshakeFuture;
     private volatile boolean running;
 
-    private Map<Integer, IMessageHandler> subscriptions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, IMessageHandler> subscriptions = new ConcurrentHashMap<>();
+    private final PoloniexSubscriptionManager subscriptionManager;
     private final IMessageHandler defaultSubscriptionMessageHandler;
-    private Channel channel;
+    private final PoloniexWSSFrameDecoder decoder = new PoloniexWSSFrameDecoder();
+    private final PoloniexSnapshotDecoder snapshotDecoder = new PoloniexSnapshotDecoder(this::marketEventHandler);
+    private CompositeByteBuf fragments;
+    private final LatencyMonitor latencyMonitor = new LatencyMonitor();
+    private final Dispatchers dispatchers = new Dispatchers(Dispatchers.DEFAULT_RING_BUFFER_CAPACITY, this::queueWaitRecorder);
+    private volatile Channel channel;
+    private volatile ScheduledFuture<?> barClock;
+    private volatile boolean reuseEvents;
+    private volatile FrameJournal journal;
+    // journal stream of the current connection and channel of the message being recorded, event loop only
+    private int journalStream;
+    private int journalChannelId = FrameJournal.UNKNOWN_CHANNEL;
+    private final AtomicLong heartbeatTimeoutCount = new AtomicLong();
+    private final AtomicLong skippedMessageCount = new AtomicLong();
+    private final AtomicLong decodeErrorCount = new AtomicLong();
+    private final PoloniexTopOfBookTable topOfBookTable = new PoloniexTopOfBookTable();
 
     public PoloniexWSSClientRouter(URI url) throws URISyntaxException {
-        this(WebSocketClientHandshakerFactory
+        this(() -> WebSocketClientHandshakerFactory
                 .newHandshaker(url, WebSocketVersion.V13, null, true, new DefaultHttpHeaders(), MAX_FRAME_LENGTH));
     }
 
+    /**
+     * The router can only serve a single connection with a fixed handshaker.
+     */
     public PoloniexWSSClientRouter(WebSocketClientHandshaker handshaker) {
-        this.handshaker = handshaker;
+        this(() -> handshaker);
+    }
+
+    /**
+     * @param handshakerFactory creates the handshaker of every new connection
+     */
+    public PoloniexWSSClientRouter(Supplier<WebSocketClientHandshaker> handshakerFactory) {
+        this.handshakerFactory = handshakerFactory;
         this.defaultSubscriptionMessageHandler = new LoggingMessageHandler();
+        this.subscriptionManager = new PoloniexSubscriptionManager(subscriptions, dispatchers::close);
     }
 
     public ChannelFuture handshakeFuture() {
@@ -49,22 +131,103 @@ public class PoloniexWSSClientRouter extends SimpleChannelInboundHandler<Object>
 
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) {
+        handshaker = handshakerFactory.get();
         handshakeFuture = ctx.newPromise();
     }
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         Channel channel = ctx.channel();
+        journalStream = JOURNAL_STREAMS.getAndIncrement();
+        journalChannelId = FrameJournal.UNKNOWN_CHANNEL;
         handshaker.handshake(channel);
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         LOG.trace("WebSocket Client disconnected!");
+        running = false;
+        channel = null;
+        if (barClock != null) {
+            barClock.cancel(false);
+            barClock = null;
+        }
+        subscriptionManager.onDisconnected();
+        releaseFragments();
+        if (!handshakeFuture.isDone()) {
+            handshakeFuture.setFailure(new ClosedChannelException());
+        }
+        orderBookHandlers().forEach(OrderBookMessageHandler::onConnectionLost);
+    }
+
+    /**
+     * Closes the bars of quiet pairs: once per second, at the start of the
+     * second, the watermark of every bar aggregator is moved to the wall clock,
+     * in epoch seconds like the trade timestamps. Runs on the event loop of the
+     * connection, which delivers the trades too, and only while there are
+     * aggregators to move on.
+     */
+    private void updateBarClock() {
+        Channel channel = this.channel;
+        boolean needed = channel != null && orderBookHandlers().anyMatch(OrderBookMessageHandler::hasBarAggregators);
+        if (needed && barClock == null) {
+            long delayMillis = BAR_CLOCK_MILLIS - System.currentTimeMillis() % BAR_CLOCK_MILLIS;
+            barClock = channel.eventLoop().scheduleAtFixedRate(this::advanceBars, delayMillis, BAR_CLOCK_MILLIS, TimeUnit.MILLISECONDS);
+        } else if (!needed && barClock != null) {
+            barClock.cancel(false);
+            barClock = null;
+        }
+    }
+
+    /**
+     * Starts or stops the bar clock on the event loop after a bar aggregator
+     * was added or removed; while disconnected the next handshake decides.
+     */
+    private void scheduleBarClockUpdate() {
+        Channel channel = this.channel;
+        if (channel != null) {
+            channel.eventLoop().execute(() -> {
+                if (this.channel == channel) { //not reconnected meanwhile, possibly on another event loop
+                    updateBarClock();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return {@code true} while the watermark of the bar aggregators follows the wall clock
+     */
+    public boolean isBarClockRunning() {
+        return barClock != null;
+    }
+
+    void advanceBars() {
+        long epochSecond = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        for (IMessageHandler handler : subscriptions.values()) {
+            if (handler instanceof OrderBookMessageHandler) {
+                ((OrderBookMessageHandler) handler).advanceBars(epochSecond);
+            }
+        }
+    }
+
+    /**
+     * An {@link IdleStateEvent} means that not even the 1010 heartbeat arrived
+     * in time, so the link is considered dead and closed.
+     */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            heartbeatTimeoutCount.incrementAndGet();
+            LOG.warn("No message received within the heartbeat timeout, closing connection");
+            ctx.close();
+        } else {
+            super.userEventTriggered(ctx, evt);
+        }
     }
 
     @Override
     public void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+        long receivedNanos = System.nanoTime();
         Channel ch = ctx.channel();
         if (!handshaker.isHandshakeComplete()) {
             try {
@@ -73,7 +236,8 @@ public class PoloniexWSSClientRouter extends SimpleChannelInboundHandler<Object>
                 LOG.trace("WebSocket Client connected!");
                 handshakeFuture.setSuccess();
                 channel = ctx.channel();
-                subscribe(channel);
+                subscriptionManager.onConnected(channel);
+                updateBarClock();
             } catch (WebSocketHandshakeException e) {
                 LOG.trace("WebSocket Client failed to connect");
                 running = false;
@@ -89,33 +253,197 @@ public class PoloniexWSSClientRouter extends SimpleChannelInboundHandler<Object>
         }
 
         WebSocketFrame frame = (WebSocketFrame) msg;
+        FrameJournal journal = this.journal;
+        if (journal != null && (frame instanceof TextWebSocketFrame || frame instanceof ContinuationWebSocketFrame)) {
+            record(journal, frame, receivedNanos);
+        }
+        if (frame instanceof CloseWebSocketFrame) {
+            LOG.trace("WebSocket Client received closing");
+            running = false;
+            ch.close();
+        } else {
+            onFrame(ctx.alloc(), frame, receivedNanos);
+        }
+    }
+
+    /**
+     * Handles a frame exactly like one received on the connection, without a
+     * connection: used to replay captured traffic, see
+     * {@link com.cf.client.wss.journal.FrameReplay}. Must not be called
+     * concurrently with a live connection or another replay.
+     *
+     * @param receivedNanos {@link System#nanoTime()} the frame is considered received at
+     */
+    public void onFrame(WebSocketFrame frame, long receivedNanos) {
+        onFrame(ByteBufAllocator.DEFAULT, frame, receivedNanos);
+    }
+
+    private void onFrame(ByteBufAllocator alloc, WebSocketFrame frame, long receivedNanos) {
+        if (frame instanceof ContinuationWebSocketFrame || frame instanceof TextWebSocketFrame && !frame.isFinalFragment()) {
+            onFragment(alloc, frame, receivedNanos);
+        } else if (frame instanceof TextWebSocketFrame) {
+            onMessage(frame.content(), receivedNanos);
+        }
+    }
+
+    private void record(FrameJournal journal, WebSocketFrame frame, long receivedNanos) {
+        boolean first = frame instanceof TextWebSocketFrame;
+        int flags = (first ? FrameJournal.FIRST : 0) | (frame.isFinalFragment() ? FrameJournal.FINAL : 0);
+        if (first) {
+            journalChannelId = getChannelId(frame.content());
+        }
+        journal.append(journalChannelId, journalStream, flags, receivedNanos, frame.content());
+    }
+
+    private void onMessage(ByteBuf content, long receivedNanos) {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("WebSocket Client received message: {}", content.toString(CharsetUtil.UTF_8));
+        }
+        int channelId = getChannelId(content);
+        if (channelId == PULSE) {
+            return;
+        }
+        IMessageHandler handler = this.subscriptions.get(channelId);
+        if (handler == null) {
+            //not subscribed (any more), e.g. messages in flight after an unsubscribe
+            skippedMessageCount.incrementAndGet();
+            if (LOG.isDebugEnabled()) {
+                defaultSubscriptionMessageHandler.handle(content.toString(CharsetUtil.UTF_8));
+            }
+            return;
+        }
+        if (handler instanceof IFrameMessageHandler) {
+            try {
+                ((IFrameMessageHandler) handler).handle(content);
+            } catch (RuntimeException e) {
+                onDecodeError(channelId, e);
+            }
+            return;
+        }
+        if (handler instanceof IMarketEventHandler) {
+            try {
+                onMarketMessage(channelId, content, (IMarketEventHandler) handler);
+            } catch (RuntimeException e) { //also the JSON errors of the string fallback
+                onDecodeError(channelId, e);
+            } finally {
+                recordLatency(handler, receivedNanos);
+            }
+            return;
+        }
+        handler.handle(content.toString(CharsetUtil.UTF_8));
+    }
+
+    private void onMarketMessage(int channelId, ByteBuf content, IMarketEventHandler handler) {
+        if (decoder.decode(content, handler)) {
+            return;
+        }
+        snapshotDecoder.reset();
+        PoloniexSnapshotDecoder.Status status = snapshotDecoder.decode(content);
+        if (status == PoloniexSnapshotDecoder.Status.COMPLETE) {
+            return;
+        }
+        if (status == PoloniexSnapshotDecoder.Status.BODY) {
+            throw new IllegalArgumentException("Truncated snapshot on channel " + channelId);
+        }
+        handler.handle(content.toString(CharsetUtil.UTF_8));
+    }
+
+    /**
+     * A malformed or truncated message is dropped on its own, the connection
+     * and the other channels are not affected. Part of it may have been
+     * applied already, so the live order book of the channel is resynchronised.
+     */
+    private void onDecodeError(int channelId, RuntimeException e) {
+        decodeErrorCount.incrementAndGet();
+        LOG.warn("Dropping undecodable message on channel {}: {}", channelId, e.getMessage());
+        IMessageHandler handler = subscriptions.get(channelId);
+        if (handler instanceof OrderBookMessageHandler) {
+            ((OrderBookMessageHandler) handler).onDecodeError();
+        }
+    }
+
+    private static void recordLatency(IMessageHandler handler, long receivedNanos) {
+        if (handler instanceof OrderBookMessageHandler) {
+            ChannelLatency latency = ((OrderBookMessageHandler) handler).getLatency();
+            if (latency != null) {
+                latency.endMessage(receivedNanos);
+            }
+        }
+    }
+
+    /**
+     * A message split into a text frame and continuation frames. Snapshots are
+     * parsed chunk by chunk as the frames arrive; any other message is
+     * collected (up to {@value #MAX_FRAGMENTED_MESSAGE_BYTES} bytes) and handled
+     * once complete. Chunks are also collected until the message start shows
+     * whether it is a snapshot. The decode latency of a snapshot is that of its
+     * last frame.
+     */
+    private void onFragment(ByteBufAllocator alloc, WebSocketFrame frame, long receivedNanos) {
         if (frame instanceof TextWebSocketFrame) {
-            TextWebSocketFrame textFrame = (TextWebSocketFrame) frame;
-            String text = textFrame.text();
-            LOG.trace("WebSocket Client received message: " + text);
-            int channelId = getChannelId(text);
-            if (channelId == PULSE) {
+            releaseFragments();
+            snapshotDecoder.reset();
+            fragments = alloc.compositeBuffer(Integer.MAX_VALUE);
+        } else if (fragments == null) {
+            return; //start of the message was dropped
+        }
+
+        PoloniexSnapshotDecoder.Status status = snapshotDecoder.getStatus();
+        if (status == PoloniexSnapshotDecoder.Status.HEADER || status == PoloniexSnapshotDecoder.Status.BODY) {
+            try {
+                status = snapshotDecoder.decode(frame.content());
+            } catch (IllegalArgumentException e) {
+                onDecodeError(snapshotDecoder.getChannelId(), e);
+                releaseFragments();
                 return;
             }
-            this.subscriptions.getOrDefault(channelId, this.defaultSubscriptionMessageHandler).handle(text);
+        }
+        if (status == PoloniexSnapshotDecoder.Status.HEADER || status == PoloniexSnapshotDecoder.Status.REJECTED) {
+            if (fragments.readableBytes() + frame.content().readableBytes() > MAX_FRAGMENTED_MESSAGE_BYTES) {
+                LOG.warn("Dropping fragmented message of more than {} bytes", MAX_FRAGMENTED_MESSAGE_BYTES);
+                releaseFragments();
+                return;
+            }
+            fragments.addComponent(true, frame.content().retain());
+        } else if (fragments.numComponents() > 0) {
+            fragments.removeComponents(0, fragments.numComponents());
+        }
 
-        } else if (frame instanceof CloseWebSocketFrame) {
-            LOG.trace("WebSocket Client received closing");
-            running = false;
-            ch.close();
+        if (frame.isFinalFragment()) {
+            try {
+                if (status == PoloniexSnapshotDecoder.Status.BODY) {
+                    onDecodeError(snapshotDecoder.getChannelId(),
+                            new IllegalArgumentException("Truncated snapshot on channel " + snapshotDecoder.getChannelId()));
+                } else if (status == PoloniexSnapshotDecoder.Status.COMPLETE) {
+                    recordLatency(subscriptions.get(snapshotDecoder.getChannelId()), receivedNanos);
+                } else {
+                    onMessage(fragments, receivedNanos);
+                }
+            } finally {
+                releaseFragments();
+            }
         }
+    }
 
+    private void releaseFragments() {
+        if (fragments != null) {
+            fragments.release();
+            fragments = null;
+        }
+    }
+
+    private IMarketEventHandler marketEventHandler(int channelId) {
+        IMessageHandler handler = subscriptions.get(channelId);
+        return handler instanceof IMarketEventHandler ? (IMarketEventHandler) handler : null;
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        LOG.error("POLONIEX WEBSOCKET ERROR");
-        cause.printStackTrace();
-//        if (!handshakeFuture.isDone()) {
-//            handshakeFuture.setFailure(cause);
-//        }
-//        running = false;
-//        ctx.close();
+        LOG.error("POLONIEX WEBSOCKET ERROR", cause);
+        if (!handshakeFuture.isDone()) {
+            handshakeFuture.setFailure(cause);
+        }
+        ctx.close();
     }
 
     public boolean isRunning() {
@@ -123,73 +451,387 @@ public class PoloniexWSSClientRouter extends SimpleChannelInboundHandler<Object>
     }
 
     public void subscribeOnTrade(Integer currencyPairId, Consumer<PoloniexTradeEntry> tradeListener) {
-        getOrderBookHandler(currencyPairId)
-                .addTradeListener(tradeListener);
+        subscribeOnTrade(currencyPairId, tradeListener, DispatchPolicy.INLINE);
     }
 
-    public void subscribeOnOrderBook(Integer currencyPairId, Consumer<PoloniexOrderBookEntry> orderBookListener) {
-        getOrderBookHandler(currencyPairId)
-                .addOrderBookListener(orderBookListener);
+    public void subscribeOnTrade(Integer currencyPairId, Consumer<PoloniexTradeEntry> tradeListener, DispatchPolicy policy) {
+        subscribe(currencyPairId, handler -> handler
+                .addTradeListener(dispatchers.wrap(currencyPairId, policy, tradeListener, UnaryOperator.identity())));
     }
 
-    private void subscribe(Channel channel) {
-        subscriptions
-                .keySet()
-                .stream()
-                .peek(id -> LOG.trace("Subscribing on channel: {}", id))
-                .map(this::toFrame)
-                .forEach(channel::writeAndFlush);
+    public void subscribeOnOrderBook(Integer currencyPairId, Consumer<PoloniexOrderBookEntry> orderBookListener) {
+        subscribeOnOrderBook(currencyPairId, orderBookListener, DispatchPolicy.INLINE);
     }
 
-    private TextWebSocketFrame toFrame(Integer id) {
-        return new TextWebSocketFrame(new PoloniexWSSSubscription(id).toString());
+    public void subscribeOnOrderBook(Integer currencyPairId, Consumer<PoloniexOrderBookEntry> orderBookListener, DispatchPolicy policy) {
+        subscribe(currencyPairId, handler -> handler
+                .addOrderBookListener(dispatchers.wrap(currencyPairId, policy, orderBookListener, UnaryOperator.identity())));
     }
 
-    private int getChannelId(String text) {
-        int endOfId = text.indexOf(','); //[121,252507198,[["o",0,"6357.13463942","0.00000000"],["o",0,"6361.88463940","0.60000000"]]]
+    /**
+     * Primitive counterpart of {@link #subscribeOnTrade(Integer, Consumer)}.
+     */
+    public void subscribeOnTradeEvent(Integer currencyPairId, Consumer<PoloniexTradeEvent> tradeListener) {
+        subscribeOnTradeEvent(currencyPairId, tradeListener, DispatchPolicy.INLINE);
+    }
 
-        if (endOfId < 0) {
-            endOfId = text.indexOf(']'); //[1010]
+    /**
+     * Events handed over to another thread are copied, so this works with event reuse.
+     */
+    public void subscribeOnTradeEvent(Integer currencyPairId, Consumer<PoloniexTradeEvent> tradeListener, DispatchPolicy policy) {
+        subscribe(currencyPairId, handler -> handler
+                .addTradeEventListener(dispatchers.wrap(currencyPairId, policy, tradeListener, PoloniexTradeEvent::copy)));
+        if (tradeListener instanceof BarAggregator) {
+            scheduleBarClockUpdate();
         }
+    }
 
-        if (endOfId < 3) { //[] o_O
-            return -1;
-        }
-        try {
-            return Integer.parseInt(text.substring(1, endOfId));
-        } catch (NumberFormatException e) {
-            return -1;
+    /**
+     * Primitive counterpart of {@link #subscribeOnOrderBook(Integer, Consumer)}.
+     */
+    public void subscribeOnOrderBookEvent(Integer currencyPairId, Consumer<PoloniexOrderBookEvent> orderBookListener) {
+        subscribeOnOrderBookEvent(currencyPairId, orderBookListener, DispatchPolicy.INLINE);
+    }
+
+    /**
+     * Events handed over to another thread are copied, so this works with event reuse.
+     */
+    public void subscribeOnOrderBookEvent(Integer currencyPairId, Consumer<PoloniexOrderBookEvent> orderBookListener, DispatchPolicy policy) {
+        subscribe(currencyPairId, handler -> handler
+                .addOrderBookEventListener(dispatchers.wrap(currencyPairId, policy, orderBookListener, PoloniexOrderBookEvent::copy)));
+    }
+
+    /**
+     * Listener receives all updates and trades of a message as one batch, see
+     * {@link PoloniexMarketBatch}.
+     */
+    public void subscribeOnBatch(Integer currencyPairId, Consumer<PoloniexMarketBatch> batchListener) {
+        subscribeOnBatch(currencyPairId, batchListener, DispatchPolicy.INLINE);
+    }
+
+    /**
+     * Batches handed over to another thread are copied.
+     */
+    public void subscribeOnBatch(Integer currencyPairId, Consumer<PoloniexMarketBatch> batchListener, DispatchPolicy policy) {
+        subscribe(currencyPairId, handler -> handler
+                .addBatchListener(dispatchers.wrap(currencyPairId, policy, batchListener, PoloniexMarketBatch::copy)));
+    }
+
+    /**
+     * Listener receives the live order book of the pair after every message
+     * that changed it. It is invoked on the Netty event loop, which is the only
+     * thread the book may be read from.
+     */
+    public void subscribeOnLiveOrderBook(Integer currencyPairId, Consumer<PoloniexLiveOrderBook> liveOrderBookListener) {
+        subscribe(currencyPairId, handler -> handler.addLiveOrderBookListener(liveOrderBookListener));
+    }
+
+    /**
+     * Latest best bid and ask of the pair for consumers polling at their own
+     * pace, see {@link ConflatedTopOfBook}.
+     */
+    public ConflatedTopOfBook subscribeOnTopOfBook(Integer currencyPairId) {
+        ConflatedTopOfBook topOfBook = new ConflatedTopOfBook(currencyPairId);
+        subscribeOnLiveOrderBook(currencyPairId, topOfBook);
+        return topOfBook;
+    }
+
+    /**
+     * Best bid and ask of all pairs published with
+     * {@link #publishTopOfBook(Integer)}, readable from any thread without locks.
+     */
+    public PoloniexTopOfBookTable getTopOfBookTable() {
+        return topOfBookTable;
+    }
+
+    /**
+     * Publishes the best bid and ask of the pair into the
+     * {@link #getTopOfBookTable() top of book table} whenever they change.
+     */
+    public void publishTopOfBook(Integer currencyPairId) {
+        subscribeOnLiveOrderBook(currencyPairId, topOfBookTable.publisher());
+    }
+
+    public void unpublishTopOfBook(Integer currencyPairId) {
+        unsubscribeLiveOrderBook(currencyPairId, topOfBookTable.publisher());
+    }
+
+    /**
+     * OHLCV bars of the pair for all the periods, built from its trades as
+     * they arrive, see {@link BarAggregator}. While connected, the watermark
+     * follows the wall clock too, so bars of quiet pairs close once the
+     * allowed lateness has passed. The listener runs on the Netty event loop
+     * and receives a recycled bar.
+     */
+    public BarAggregator subscribeOnBars(Integer currencyPairId, long allowedLatenessSeconds, Consumer<PoloniexBar> barListener,
+                                         long... periodSeconds) {
+        BarAggregator aggregator = new BarAggregator(currencyPairId, allowedLatenessSeconds, barListener, periodSeconds);
+        subscribeOnTradeEvent(currencyPairId, aggregator);
+        return aggregator;
+    }
+
+    /**
+     * Settings of the signals of the pair, see {@link PoloniexBookSignals};
+     * the defaults are used unless this is called before subscribing.
+     */
+    public void enableSignals(Integer currencyPairId, int depthLevels, double spreadEwmaAlpha) {
+        subscribe(currencyPairId, handler -> handler.enableSignals(depthLevels, spreadEwmaAlpha));
+    }
+
+    /**
+     * Listener receives the microstructure signals of the pair after every
+     * message that changed the live order book, see {@link PoloniexBookSignals}.
+     */
+    public void subscribeOnSignals(Integer currencyPairId, Consumer<PoloniexBookSignal> signalListener) {
+        subscribeOnSignals(currencyPairId, signalListener, DispatchPolicy.INLINE);
+    }
+
+    /**
+     * Signals handed over to another thread are copied.
+     */
+    public void subscribeOnSignals(Integer currencyPairId, Consumer<PoloniexBookSignal> signalListener, DispatchPolicy policy) {
+        subscribe(currencyPairId, handler -> handler
+                .addSignalListener(dispatchers.wrap(currencyPairId, policy, signalListener, PoloniexBookSignal::copy)));
+    }
+
+    /**
+     * Resubscribes on the channel so that the exchange sends a fresh snapshot.
+     * The connection itself stays untouched. If we are not connected, the
+     * snapshot arrives anyway with the subscription made on connect.
+     */
+    private void resync(int channelId) {
+        if (!running) {
+            return;
         }
+        LOG.debug("Resynchronising channel {}", channelId);
+        subscriptionManager.resubscribe(channelId);
+    }
+
+    /**
+     * [121,252507198,[["o",0,"6357.13463942","0.00000000"],["o",0,"6361.88463940","0.60000000"]]] or [1010]
+     */
+    static int getChannelId(ByteBuf content) {
+        return PoloniexWSSFrameDecoder.readChannelId(content);
+    }
+
+    /**
+     * Latest tickers of all currency pairs, kept up to date from the ticker
+     * channel which is subscribed on first use and stays subscribed until
+     * {@link #releaseTickerTable()}.
+     */
+    public PoloniexTickerTable getTickerTable() {
+        return subscribeTicker(handler -> handler.setPinned(true)).getTable();
+    }
+
+    /**
+     * Lets the ticker channel be unsubscribed once it has no listeners; the
+     * table returned before stops updating then.
+     */
+    public void releaseTickerTable() {
+        subscriptionManager.release(TICKER, TickerTableMessageHandler.class, handler -> handler.setPinned(false));
+    }
+
+    /**
+     * The listener runs on the event loop for every pair whose ticker changed,
+     * see {@link PoloniexTickerTable}.
+     */
+    public void subscribeOnTicker(Consumer<PoloniexTicker> listener) {
+        subscribeTicker(handler -> handler.getTable().addListener(listener));
     }
 
-    private OrderBookMessageHandler getOrderBookHandler(Integer currencyPairId) {
-        return (OrderBookMessageHandler) subscriptions
-                .computeIfAbsent(currencyPairId, id -> {
-                    OrderBookMessageHandler orderBookMessageHandler = new OrderBookMessageHandler();
-                    if (running) {
-                        PoloniexWSSSubscription subscription = new PoloniexWSSSubscription(id);
-                        WebSocketFrame frame = new TextWebSocketFrame(subscription.toString());
-                        channel.writeAndFlush(frame);
-                    }
-                    return orderBookMessageHandler;
-                });
+    public void unsubscribeTicker(Consumer<PoloniexTicker> listener) {
+        subscriptionManager.release(TICKER, TickerTableMessageHandler.class, handler -> handler.getTable().removeListener(listener));
+    }
+
+    private TickerTableMessageHandler subscribeTicker(Consumer<TickerTableMessageHandler> register) {
+        return subscriptionManager.acquire(TICKER, TickerTableMessageHandler.class,
+                id -> new TickerTableMessageHandler(new PoloniexTickerTable()), register);
+    }
+
+    /**
+     * Registers a listener with the handler of the channel, see {@link PoloniexSubscriptionManager}.
+     */
+    private OrderBookMessageHandler subscribe(Integer currencyPairId, Consumer<OrderBookMessageHandler> register) {
+        return subscriptionManager.acquire(currencyPairId, OrderBookMessageHandler.class, this::newOrderBookHandler, register);
+    }
+
+    private OrderBookMessageHandler newOrderBookHandler(Integer currencyPairId) {
+        OrderBookMessageHandler orderBookMessageHandler = new OrderBookMessageHandler(currencyPairId, this::resync);
+        orderBookMessageHandler.setReuseEvents(reuseEvents);
+        if (latencyMonitor.isEnabled()) {
+            orderBookMessageHandler.setLatency(latencyMonitor.channel(currencyPairId));
+        }
+        return orderBookMessageHandler;
     }
 
     public void unsubscribeOrderBook(Integer channelId, Consumer<PoloniexOrderBookEntry> listener) {
-        subscriptions.computeIfPresent(channelId, (integer, iMessageHandler) -> {
-            ((OrderBookMessageHandler) iMessageHandler).removeOrderBookListener(listener);
-            return iMessageHandler;
-        });
+        subscriptionManager.release(channelId, handler -> handler.removeOrderBookListener(listener));
     }
 
     public void unsubscribeTrade(Integer channelId, Consumer<PoloniexTradeEntry> listener) {
-        subscriptions.computeIfPresent(channelId, (integer, iMessageHandler) -> {
-            ((OrderBookMessageHandler) iMessageHandler).removeTradeListener(listener);
-            return iMessageHandler;
+        subscriptionManager.release(channelId, handler -> handler.removeTradeListener(listener));
+    }
+
+    public void unsubscribeTradeEvent(Integer channelId, Consumer<PoloniexTradeEvent> listener) {
+        subscriptionManager.release(channelId, handler -> handler.removeTradeEventListener(listener));
+        if (listener instanceof BarAggregator) {
+            scheduleBarClockUpdate();
+        }
+    }
+
+    public void unsubscribeOrderBookEvent(Integer channelId, Consumer<PoloniexOrderBookEvent> listener) {
+        subscriptionManager.release(channelId, handler -> handler.removeOrderBookEventListener(listener));
+    }
+
+    public void unsubscribeBatch(Integer channelId, Consumer<PoloniexMarketBatch> listener) {
+        subscriptionManager.release(channelId, handler -> handler.removeBatchListener(listener));
+    }
+
+    public void unsubscribeLiveOrderBook(Integer channelId, Consumer<PoloniexLiveOrderBook> listener) {
+        subscriptionManager.release(channelId, handler -> handler.removeLiveOrderBookListener(listener));
+    }
+
+    public void unsubscribeSignals(Integer channelId, Consumer<PoloniexBookSignal> listener) {
+        subscriptionManager.release(channelId, handler -> handler.removeSignalListener(listener));
+    }
+
+    /**
+     * @see OrderBookMessageHandler#setReuseEvents(boolean)
+     */
+    public void setReuseEvents(boolean reuseEvents) {
+        this.reuseEvents = reuseEvents;
+        orderBookHandlers().forEach(handler -> handler.setReuseEvents(reuseEvents));
+    }
+
+    /**
+     * Starts or stops recording the latencies of all market channels, see
+     * {@link LatencyMonitor}. Recording costs a few {@link System#nanoTime()}
+     * calls per message and per listener call.
+     */
+    public void setLatencyTracking(boolean latencyTracking) {
+        latencyMonitor.setEnabled(latencyTracking);
+        subscriptions.forEach((channelId, handler) -> {
+            if (handler instanceof OrderBookMessageHandler) {
+                ((OrderBookMessageHandler) handler).setLatency(latencyTracking ? latencyMonitor.channel(channelId) : null);
+            }
         });
     }
 
+    /**
+     * Records every text and continuation frame received from now on into the
+     * journal, {@code null} stops recording. Each connection is a stream of its
+     * own, so several routers can share a journal. The journal stays owned by
+     * the caller.
+     */
+    public void setJournal(FrameJournal journal) {
+        this.journal = journal;
+    }
+
+    public LatencyMonitor getLatencyMonitor() {
+        return latencyMonitor;
+    }
+
+    private LongConsumer queueWaitRecorder(int channelId) {
+        return nanos -> {
+            if (latencyMonitor.isEnabled()) {
+                latencyMonitor.channel(channelId).recordQueueWait(nanos);
+            }
+        };
+    }
+
+    /**
+     * How long a market channel stays subscribed at the exchange after its
+     * last listener was removed, {@code 0} unsubscribes at once. Listeners added
+     * within that time reuse the channel and its live order book.
+     */
+    public void setUnsubscribeLinger(long lingerMillis) {
+        subscriptionManager.setLingerMillis(lingerMillis);
+    }
+
+    public long getUnsubscribeLinger() {
+        return subscriptionManager.getLingerMillis();
+    }
+
+    /**
+     * @return number of subscribe and unsubscribe frames written
+     */
+    public long getSubscriptionFrameCount() {
+        return subscriptionManager.getFrameCount();
+    }
+
+    /**
+     * @return number of messages dropped undecoded because their channel is not subscribed
+     */
+    public long getSkippedMessageCount() {
+        return skippedMessageCount.get();
+    }
+
+    /**
+     * @return number of malformed or truncated messages dropped
+     */
+    public long getDecodeErrorCount() {
+        return decodeErrorCount.get();
+    }
+
+    public long getHeartbeatTimeoutCount() {
+        return heartbeatTimeoutCount.get();
+    }
+
+    public long getGapCount() {
+        return orderBookHandlers().mapToLong(OrderBookMessageHandler::getGapCount).sum();
+    }
+
+    public long getResyncCount() {
+        return orderBookHandlers().mapToLong(OrderBookMessageHandler::getResyncCount).sum();
+    }
+
+    public long getGapCount(Integer channelId) {
+        IMessageHandler handler = subscriptions.get(channelId);
+        return handler instanceof OrderBookMessageHandler ? ((OrderBookMessageHandler) handler).getGapCount() : 0;
+    }
+
+    public long getResyncCount(Integer channelId) {
+        IMessageHandler handler = subscriptions.get(channelId);
+        return handler instanceof OrderBookMessageHandler ? ((OrderBookMessageHandler) handler).getResyncCount() : 0;
+    }
+
+    private Stream<OrderBookMessageHandler> orderBookHandlers() {
+        return subscriptions
+                .values()
+                .stream()
+                .filter(OrderBookMessageHandler.class::isInstance)
+                .map(OrderBookMessageHandler.class::cast);
+    }
+
+    /**
+     * Drops the handler and all listeners of the channel and unsubscribes from
+     * it at the exchange.
+     */
+    public void unsubscribeChannel(Integer channelId) {
+        subscriptionManager.remove(channelId);
+        scheduleBarClockUpdate();
+    }
+
+    /**
+     * Runs the task once the dispatchers of the currency pair, closed when its
+     * channel was unsubscribed, have run their queued events, see
+     * {@link Dispatchers#whenDrained(int, Runnable)}.
+     */
+    public void whenDispatched(Integer currencyPairId, Runnable task) {
+        dispatchers.whenDrained(currencyPairId, task);
+    }
+
+    /**
+     * @return number of messages received on the market channel so far
+     */
+    public long getMessageCount(Integer channelId) {
+        IMessageHandler handler = subscriptions.get(channelId);
+        return handler instanceof OrderBookMessageHandler ? ((OrderBookMessageHandler) handler).getMessageCount() : 0;
+    }
+
     public void stop() {
         running = false;
+        dispatchers.close();
+        latencyMonitor.unregisterMBeans();
     }
 }
@@ -0,0 +1,204 @@
+package com.cf.client.poloniex.wss.bar;
+
+import com.cf.client.poloniex.wss.model.PoloniexTradeEvent;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static com.cf.util.FixedPointUtils.multiply;
+
+/**
+ * Builds OHLCV bars of one currency pair for several periods at once from the
+ * {@code "t"} trades of the WSS market channel, as a trade event listener.
+ * <p>
+ * Bars follow the exchange timestamps of the trades. The watermark is the
+ * latest trade time seen minus the allowed lateness; a bar is published as
+ * soon as the watermark passes its end, so a trade that arrives up to the
+ * allowed lateness out of order still lands in its bar. Older trades are
+ * dropped and counted, see {@link #getLateTradeCount()}. Without trades the
+ * watermark is moved on with {@link #advanceTo(long)}, so that quiet periods
+ * close on time too; the router does that once per second from the wall
+ * clock for every aggregator subscribed as an inline trade event listener.
+ * <p>
+ * Open bars are kept in preallocated primitive arrays, a ring of
+ * {@code lateness / period + 2} bars per period, and published through one
+ * recycled {@link PoloniexBar}, so accumulation allocates nothing. Not
+ * thread safe: trades and {@link #advanceTo(long)} must come from the same
+ * thread, which also runs the listener.
+ */
+public class BarAggregator implements Consumer<PoloniexTradeEvent> {
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final int currencyPairId;
+    private final long[] periodSeconds;
+    private final long allowedLatenessSeconds;
+    private final Consumer<PoloniexBar> listener;
+    private final PoloniexBar bar;
+
+    private final int[] slotCounts;
+    private final int[] slotOffsets;
+    private final long[] nextToClose;
+    private final long[] lastClose;
+
+    private final long[] starts;
+    private final long[] opens;
+    private final long[] highs;
+    private final long[] lows;
+    private final long[] closes;
+    private final long[] volumes;
+    private final long[] quoteVolumes;
+    private final long[] tradeCounts;
+
+    private long latestEpochSecond = NOT_STARTED;
+    private long lateTradeCount;
+
+    /**
+     * @param allowedLatenessSeconds how far a trade may arrive out of order and still be counted
+     * @param listener               receives every closed bar of every period, oldest first per period
+     * @param periodSeconds          bar periods, e.g. {@code 300, 900, 7200} like the chart data
+     */
+    public BarAggregator(int currencyPairId, long allowedLatenessSeconds, Consumer<PoloniexBar> listener, long... periodSeconds) {
+        if (periodSeconds.length == 0) {
+            throw new IllegalArgumentException("At least one period is required");
+        }
+        if (allowedLatenessSeconds < 0) {
+            throw new IllegalArgumentException("Allowed lateness must not be negative: " + allowedLatenessSeconds);
+        }
+        this.currencyPairId = currencyPairId;
+        this.periodSeconds = periodSeconds.clone();
+        this.allowedLatenessSeconds = allowedLatenessSeconds;
+        this.listener = listener;
+        this.bar = new PoloniexBar(currencyPairId);
+
+        slotCounts = new int[periodSeconds.length];
+        slotOffsets = new int[periodSeconds.length];
+        int slots = 0;
+        for (int i = 0; i < periodSeconds.length; i++) {
+            long period = periodSeconds[i];
+            if (period <= 0) {
+                throw new IllegalArgumentException("Period must be positive: " + period);
+            }
+            slotOffsets[i] = slots;
+            slotCounts[i] = (int) ((allowedLatenessSeconds + period - 1) / period) + 2;
+            slots += slotCounts[i];
+        }
+        nextToClose = new long[periodSeconds.length];
+        Arrays.fill(nextToClose, NOT_STARTED);
+        lastClose = new long[periodSeconds.length];
+
+        starts = new long[slots];
+        Arrays.fill(starts, NOT_STARTED);
+        opens = new long[slots];
+        highs = new long[slots];
+        lows = new long[slots];
+        closes = new long[slots];
+        volumes = new long[slots];
+        quoteVolumes = new long[slots];
+        tradeCounts = new long[slots];
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    public long[] getPeriodSeconds() {
+        return periodSeconds.clone();
+    }
+
+    public long getAllowedLatenessSeconds() {
+        return allowedLatenessSeconds;
+    }
+
+    /**
+     * @return bars ending at or before this time have been published,
+     * {@link Long#MIN_VALUE} before the first trade
+     */
+    public long getWatermark() {
+        return latestEpochSecond == NOT_STARTED ? NOT_STARTED : latestEpochSecond - allowedLatenessSeconds;
+    }
+
+    /**
+     * @return trades dropped from at least one period because their bar had been published already
+     */
+    public long getLateTradeCount() {
+        return lateTradeCount;
+    }
+
+    @Override
+    public void accept(PoloniexTradeEvent trade) {
+        long epochSecond = trade.getEpochSecond();
+        advanceTo(epochSecond);
+        long rate = trade.getRate();
+        long amount = trade.getAmount();
+        boolean late = false;
+        for (int i = 0; i < periodSeconds.length; i++) {
+            long start = epochSecond - Math.floorMod(epochSecond, periodSeconds[i]);
+            if (nextToClose[i] == NOT_STARTED) {
+                nextToClose[i] = start;
+            } else if (start < nextToClose[i]) {
+                late = true;
+                continue;
+            }
+            int slot = slot(i, start);
+            if (starts[slot] != start) {
+                starts[slot] = start;
+                opens[slot] = rate;
+                highs[slot] = rate;
+                lows[slot] = rate;
+                volumes[slot] = 0;
+                quoteVolumes[slot] = 0;
+                tradeCounts[slot] = 0;
+            } else {
+                highs[slot] = Math.max(highs[slot], rate);
+                lows[slot] = Math.min(lows[slot], rate);
+            }
+            closes[slot] = rate;
+            volumes[slot] += multiply(rate, amount);
+            quoteVolumes[slot] += amount;
+            tradeCounts[slot]++;
+        }
+        if (late) {
+            lateTradeCount++;
+        }
+    }
+
+    /**
+     * Moves the watermark to the given time minus the allowed lateness,
+     * publishing the bars that end before it. Earlier times are ignored.
+     */
+    public void advanceTo(long epochSecond) {
+        if (epochSecond <= latestEpochSecond) {
+            return;
+        }
+        latestEpochSecond = epochSecond;
+        long watermark = epochSecond - allowedLatenessSeconds;
+        for (int i = 0; i < periodSeconds.length; i++) {
+            long period = periodSeconds[i];
+            if (nextToClose[i] == NOT_STARTED) {
+                continue;
+            }
+            while (nextToClose[i] + period <= watermark) {
+                close(i, nextToClose[i]);
+                nextToClose[i] += period;
+            }
+        }
+    }
+
+    private void close(int period, long start) {
+        int slot = slot(period, start);
+        if (starts[slot] == start) {
+            starts[slot] = NOT_STARTED;
+            lastClose[period] = closes[slot];
+            bar.set(periodSeconds[period], start, opens[slot], highs[slot], lows[slot], closes[slot], volumes[slot],
+                    quoteVolumes[slot], tradeCounts[slot]);
+        } else {
+            long close = lastClose[period];
+            bar.set(periodSeconds[period], start, close, close, close, close, 0, 0, 0);
+        }
+        listener.accept(bar);
+    }
+
+    private int slot(int period, long start) {
+        return slotOffsets[period] + (int) Math.floorMod(start / periodSeconds[period], (long) slotCounts[period]);
+    }
+}
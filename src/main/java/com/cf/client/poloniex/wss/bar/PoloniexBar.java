@@ -0,0 +1,139 @@
+package com.cf.client.poloniex.wss.bar;
+
+import com.cf.data.model.poloniex.PoloniexChartData;
+
+import java.time.ZoneOffset;
+
+import static com.cf.util.FixedPointUtils.divide;
+import static com.cf.util.FixedPointUtils.toBigDecimal;
+import static java.time.Instant.ofEpochSecond;
+import static java.time.ZonedDateTime.ofInstant;
+
+/**
+ * OHLCV bar of a currency pair built from WSS trades by a {@link BarAggregator},
+ * with the fields of {@link PoloniexChartData}. Rates and volumes are fixed
+ * point mantissas, see {@link com.cf.util.FixedPointUtils}. As in the chart
+ * data, {@code volume} is in the base currency (rate times amount) and
+ * {@code quoteVolume} in the quote currency (amount). A period without trades
+ * yields a flat bar at the previous close with no volume.
+ * <p>
+ * The aggregator recycles the same instance for every bar it publishes; use
+ * {@link #copy()} to retain it.
+ */
+public class PoloniexBar {
+    private final int currencyPairId;
+    private long periodSeconds;
+    private long startEpochSecond;
+    private long open;
+    private long high;
+    private long low;
+    private long close;
+    private long volume;
+    private long quoteVolume;
+    private long tradeCount;
+
+    public PoloniexBar(int currencyPairId) {
+        this.currencyPairId = currencyPairId;
+    }
+
+    void set(long periodSeconds, long startEpochSecond, long open, long high, long low, long close, long volume, long quoteVolume,
+             long tradeCount) {
+        this.periodSeconds = periodSeconds;
+        this.startEpochSecond = startEpochSecond;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.quoteVolume = quoteVolume;
+        this.tradeCount = tradeCount;
+    }
+
+    public PoloniexBar copy() {
+        PoloniexBar copy = new PoloniexBar(currencyPairId);
+        copy.set(periodSeconds, startEpochSecond, open, high, low, close, volume, quoteVolume, tradeCount);
+        return copy;
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    public long getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    /**
+     * @return start of the period, the {@code date} of the chart data
+     */
+    public long getStartEpochSecond() {
+        return startEpochSecond;
+    }
+
+    public long getOpen() {
+        return open;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public long getClose() {
+        return close;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    public long getQuoteVolume() {
+        return quoteVolume;
+    }
+
+    public long getTradeCount() {
+        return tradeCount;
+    }
+
+    /**
+     * @return volume weighted average rate, the close if there were no trades
+     */
+    public long getWeightedAverage() {
+        return quoteVolume == 0 ? close : divide(volume, quoteVolume);
+    }
+
+    /**
+     * Adapter for consumers of the BigDecimal API, e.g. to append to the
+     * result of {@code returnChartData}.
+     */
+    public PoloniexChartData toChartData() {
+        return new PoloniexChartData(
+                ofInstant(ofEpochSecond(startEpochSecond), ZoneOffset.UTC),
+                toBigDecimal(high),
+                toBigDecimal(low),
+                toBigDecimal(open),
+                toBigDecimal(close),
+                toBigDecimal(volume),
+                toBigDecimal(quoteVolume),
+                toBigDecimal(getWeightedAverage()));
+    }
+
+    @Override
+    public String toString() {
+        return "PoloniexBar{" +
+                "currencyPairId=" + currencyPairId +
+                ", periodSeconds=" + periodSeconds +
+                ", startEpochSecond=" + startEpochSecond +
+                ", open=" + toBigDecimal(open) +
+                ", high=" + toBigDecimal(high) +
+                ", low=" + toBigDecimal(low) +
+                ", close=" + toBigDecimal(close) +
+                ", volume=" + toBigDecimal(volume) +
+                ", quoteVolume=" + toBigDecimal(quoteVolume) +
+                ", tradeCount=" + tradeCount +
+                '}';
+    }
+}
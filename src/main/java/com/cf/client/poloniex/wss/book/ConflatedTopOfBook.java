@@ -0,0 +1,92 @@
+package com.cf.client.poloniex.wss.book;
+
+import com.cf.util.SeqLockTable;
+
+import java.util.function.Consumer;
+
+/**
+ * Latest best bid and ask of a currency pair for consumers that cannot keep up
+ * with every delta. The event loop overwrites a single slot whenever the top
+ * of the book changes; the consumer drains it with {@link #poll(PoloniexTopOfBook)}
+ * at its own pace. Nothing is queued, so a slow consumer neither builds up
+ * memory nor holds up the I/O thread; the states it missed are counted as
+ * conflated. When the book is reset, e.g. after a sequence gap or a lost
+ * connection, the empty state is published, see {@link PoloniexTopOfBook#isEmpty()}.
+ * <p>
+ * Registered as a live order book listener, see
+ * {@code WSSClient#subscribeOnTopOfBook(Integer)}. One thread may poll at a time.
+ */
+public class ConflatedTopOfBook implements Consumer<PoloniexLiveOrderBook> {
+    private static final int BID_RATE = 0;
+    private static final int BID_AMOUNT = 1;
+    private static final int ASK_RATE = 2;
+    private static final int ASK_AMOUNT = 3;
+
+    private final int currencyPairId;
+    private final SeqLockTable slot = new SeqLockTable(1, 4);
+
+    private final long[] values = new long[4];
+    private long delivered;
+    private volatile long conflatedCount;
+
+    public ConflatedTopOfBook(int currencyPairId) {
+        this.currencyPairId = currencyPairId;
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    /**
+     * Publishes the best levels if they differ from the last published ones;
+     * called on the event loop after every message that changed the book and
+     * with the empty book when it was reset.
+     */
+    @Override
+    public void accept(PoloniexLiveOrderBook book) {
+        long bidRate = book.bestBidRate();
+        long bidAmount = book.bestBidAmount();
+        long askRate = book.bestAskRate();
+        long askAmount = book.bestAskAmount();
+        if (bidRate == slot.get(0, BID_RATE) && bidAmount == slot.get(0, BID_AMOUNT)
+                && askRate == slot.get(0, ASK_RATE) && askAmount == slot.get(0, ASK_AMOUNT)) {
+            return;
+        }
+        slot.beginWrite(0);
+        slot.put(0, BID_RATE, bidRate);
+        slot.put(0, BID_AMOUNT, bidAmount);
+        slot.put(0, ASK_RATE, askRate);
+        slot.put(0, ASK_AMOUNT, askAmount);
+        slot.endWrite(0);
+    }
+
+    /**
+     * Copies the latest state into the target if it changed since the last poll.
+     *
+     * @return {@code false} if nothing was published since the last poll
+     */
+    public boolean poll(PoloniexTopOfBook target) {
+        long updates = slot.read(0, values);
+        if (updates == delivered) {
+            return false;
+        }
+        conflatedCount += updates - delivered - 1;
+        delivered = updates;
+        target.set(values[BID_RATE], values[BID_AMOUNT], values[ASK_RATE], values[ASK_AMOUNT], updates);
+        return true;
+    }
+
+    /**
+     * @return number of top of book changes published so far
+     */
+    public long getUpdateCount() {
+        return slot.writes(0);
+    }
+
+    /**
+     * @return number of published states overwritten before a poll picked them up
+     */
+    public long getConflatedCount() {
+        return conflatedCount;
+    }
+}
@@ -0,0 +1,117 @@
+package com.cf.client.poloniex.wss.book;
+
+import java.util.Arrays;
+
+import static com.cf.util.FixedPointUtils.multiply;
+
+/**
+ * Prefix sums of the amounts and notionals of a {@link PoloniexBookSide}, kept
+ * in two Fenwick trees over the array index of the levels. A prefix sum, and
+ * so the sum over the best {@code n} levels, costs {@code O(log n)}.
+ * <p>
+ * A changed amount is a point update. An inserted or removed level shifts the
+ * levels above it, so the nodes from the shift on are rebuilt in
+ * {@code O(shifted levels + log n)}; the side shifts the same levels in its
+ * arrays anyway.
+ */
+class LevelSums {
+    /**
+     * 1-based: node {@code k} holds the sum of the levels {@code (k - lowbit(k), k]},
+     * level {@code k} being array index {@code k - 1}.
+     */
+    private long[] amounts;
+    private long[] notionals;
+
+    LevelSums(int capacity) {
+        amounts = new long[capacity + 1];
+        notionals = new long[capacity + 1];
+    }
+
+    /**
+     * Makes room for {@code capacity} levels, keeping the sums.
+     */
+    void ensureCapacity(int capacity) {
+        if (amounts.length <= capacity) {
+            amounts = Arrays.copyOf(amounts, capacity + 1);
+            notionals = Arrays.copyOf(notionals, capacity + 1);
+        }
+    }
+
+    /**
+     * The amount of the level at the array index changed by the deltas.
+     */
+    void add(int index, long amountDelta, long notionalDelta, int size) {
+        for (int k = index + 1; k <= size; k += k & -k) {
+            amounts[k] += amountDelta;
+            notionals[k] += notionalDelta;
+        }
+    }
+
+    /**
+     * Recomputes the nodes of the levels from the array index on, after the
+     * levels from there on have changed or moved.
+     */
+    void rebuild(long[] rates, long[] levelAmounts, int from, int size) {
+        ensureCapacity(size);
+        for (int k = from + 1; k <= size; k++) {
+            amounts[k] = levelAmounts[k - 1];
+            notionals[k] = multiply(rates[k - 1], levelAmounts[k - 1]);
+        }
+        //nodes below the rebuilt range are complete, add those whose parent is rebuilt
+        for (int k = from; k > 0; k -= k & -k) {
+            propagate(k, size);
+        }
+        for (int k = from + 1; k <= size; k++) {
+            propagate(k, size);
+        }
+    }
+
+    private void propagate(int k, int size) {
+        int parent = k + (k & -k);
+        if (parent <= size) {
+            amounts[parent] += amounts[k];
+            notionals[parent] += notionals[k];
+        }
+    }
+
+    /**
+     * @return sum of the amounts of the levels below the array index
+     */
+    long amountBelow(int index) {
+        long sum = 0;
+        for (int k = index; k > 0; k -= k & -k) {
+            sum += amounts[k];
+        }
+        return sum;
+    }
+
+    /**
+     * @return sum of the notionals of the levels below the array index
+     */
+    long notionalBelow(int index) {
+        long sum = 0;
+        for (int k = index; k > 0; k -= k & -k) {
+            sum += notionals[k];
+        }
+        return sum;
+    }
+
+    /**
+     * Binary descent over the amount tree; amounts are positive, so the
+     * prefix sums are strictly increasing.
+     *
+     * @return the highest array index {@code i} with {@code amountBelow(i) <= limit}
+     */
+    int indexBelowOrAt(long limit, int size) {
+        int index = 0;
+        long sum = 0;
+        for (int step = Integer.highestOneBit(Math.max(size, 1)); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= size && sum + amounts[next] <= limit) {
+                index = next;
+                sum += amounts[next];
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,333 @@
+package com.cf.client.poloniex.wss.book;
+
+import java.util.Arrays;
+
+import static com.cf.util.FixedPointUtils.divide;
+import static com.cf.util.FixedPointUtils.multiply;
+
+/**
+ * One side of a live order book. Levels are kept in parallel primitive arrays
+ * sorted so that the best level sits at the highest index (bids ascending,
+ * asks descending). Most updates happen close to the top of the book, so the
+ * shift on insert/remove touches only a few elements and the best level is
+ * always one array read away.
+ * <p>
+ * Prefix sums of the amounts and notionals are kept alongside, so the depth
+ * queries ({@link #cumulativeAmount(int)}, {@link #amountWithin(long)},
+ * {@link #vwap(long)}, ...) cost {@code O(log n)} instead of a walk over the
+ * levels.
+ * <p>
+ * Level {@code 0} in the public accessors is the best level. Rates and amounts
+ * are fixed point mantissas, see {@link com.cf.util.FixedPointUtils}.
+ * <p>
+ * Not thread safe: the side is mutated by the Netty event loop and must only be
+ * read from that thread (e.g. inside listeners).
+ */
+public class PoloniexBookSide {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final boolean bid;
+    private long[] rates = new long[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private final LevelSums sums = new LevelSums(INITIAL_CAPACITY);
+    private TopLevels topLevels;
+    private int size;
+    private boolean loading;
+
+    public PoloniexBookSide(boolean bid) {
+        this.bid = bid;
+    }
+
+    public boolean isBid() {
+        return bid;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return best rate or {@code 0} if the side is empty
+     */
+    public long bestRate() {
+        return size == 0 ? 0 : rates[size - 1];
+    }
+
+    /**
+     * @return amount at the best rate or {@code 0} if the side is empty
+     */
+    public long bestAmount() {
+        return size == 0 ? 0 : amounts[size - 1];
+    }
+
+    public long rate(int level) {
+        return rates[index(level)];
+    }
+
+    public long amount(int level) {
+        return amounts[index(level)];
+    }
+
+    /**
+     * @return amount resting at the given rate or {@code 0} if there is no such level
+     */
+    public long amountAt(long rate) {
+        int index = search(rate);
+        return index >= 0 ? amounts[index] : 0;
+    }
+
+    /**
+     * @return level (0 = best) of the given rate or a negative value if there is no such level
+     */
+    public int levelOf(long rate) {
+        int index = search(rate);
+        return index >= 0 ? size - 1 - index : -1;
+    }
+
+    /**
+     * Sets the amount resting at the given rate; an amount of {@code 0}
+     * removes the level.
+     */
+    public void update(long rate, long amount) {
+        int index = search(rate);
+        if (index >= 0) {
+            long oldAmount = amounts[index];
+            int level = size - 1 - index;
+            if (amount == 0) {
+                remove(index);
+                if (topLevels != null) {
+                    topLevels.onRemove(level, rate, oldAmount);
+                }
+            } else {
+                sums.add(index, amount - oldAmount, multiply(rate, amount) - multiply(rate, oldAmount), size);
+                amounts[index] = amount;
+                if (topLevels != null) {
+                    topLevels.onChange(level, rate, oldAmount, amount);
+                }
+            }
+        } else if (amount != 0) {
+            index = -index - 1;
+            insert(index, rate, amount);
+            if (topLevels != null) {
+                topLevels.onInsert(size - 1 - index, rate, amount);
+            }
+        }
+    }
+
+    /**
+     * Reports level changes to the running top level sums of the signals,
+     * {@code null} detaches them.
+     */
+    void setTopLevels(TopLevels topLevels) {
+        this.topLevels = topLevels;
+    }
+
+    /**
+     * Copies the best levels, best first, as many as the arrays hold.
+     *
+     * @return number of levels copied
+     */
+    public int levels(long[] rates, long[] amounts) {
+        int levels = Math.min(Math.min(rates.length, amounts.length), size);
+        for (int level = 0; level < levels; level++) {
+            rates[level] = this.rates[size - 1 - level];
+            amounts[level] = this.amounts[size - 1 - level];
+        }
+        return levels;
+    }
+
+    public long totalAmount() {
+        return sums.amountBelow(size);
+    }
+
+    /**
+     * @return summed amount of the best {@code levels} levels
+     */
+    public long cumulativeAmount(int levels) {
+        return sums.amountBelow(size) - sums.amountBelow(size - Math.min(levels, size));
+    }
+
+    /**
+     * @return summed notional (rate times amount) of the best {@code levels} levels
+     */
+    public long cumulativeNotional(int levels) {
+        return sums.notionalBelow(size) - sums.notionalBelow(size - Math.min(levels, size));
+    }
+
+    /**
+     * @return summed amount of the levels at the given rate or better
+     */
+    public long amountWithin(long rate) {
+        int index = search(rate);
+        return sums.amountBelow(size) - sums.amountBelow(index >= 0 ? index : -index - 1);
+    }
+
+    /**
+     * @return number of levels, from the best one on, a market order of the
+     * amount would touch, or {@code -1} if the side holds less than the amount
+     */
+    public int levelsToFill(long amount) {
+        int index = sweepIndex(amount);
+        return index >= 0 ? size - index : -1;
+    }
+
+    /**
+     * @return notional a market order of the amount would trade against this
+     * side, or {@code 0} if the side holds less than the amount
+     */
+    public long sweepNotional(long amount) {
+        int index = sweepIndex(amount);
+        if (index < 0) {
+            return 0;
+        }
+        long filled = sums.amountBelow(size) - sums.amountBelow(index + 1);
+        long notional = sums.notionalBelow(size) - sums.notionalBelow(index + 1);
+        return notional + multiply(rates[index], amount - filled);
+    }
+
+    /**
+     * @return average rate a market order of the amount would get against this
+     * side, or {@code 0} if the side holds less than the amount
+     */
+    public long vwap(long amount) {
+        long notional = sweepNotional(amount);
+        return notional == 0 ? 0 : divide(notional, amount);
+    }
+
+    /**
+     * @return array index of the worst level a market order of the amount
+     * would touch, or {@code -1} if the amount is not positive or the side
+     * holds less than that
+     */
+    private int sweepIndex(long amount) {
+        long total = sums.amountBelow(size);
+        if (amount <= 0 || amount > total) {
+            return -1;
+        }
+        return sums.indexBelowOrAt(total - amount, size);
+    }
+
+    public void clear() {
+        size = 0;
+        loading = false;
+    }
+
+    /**
+     * Adds a level of a snapshot that lists the side best level first, as the
+     * {@code "i"} message does. Levels are appended in arrival order and only
+     * put into side order by {@link #endLoad()}, so a deep snapshot does not
+     * shift the whole side for every level.
+     *
+     * @throws IllegalStateException if the side was not empty when loading started
+     */
+    void load(long rate, long amount) {
+        if (!loading) {
+            if (size > 0) {
+                throw new IllegalStateException("Side must be empty to load a snapshot");
+            }
+            loading = true;
+        }
+        if (amount != 0) {
+            if (size == rates.length) {
+                rates = Arrays.copyOf(rates, size << 1);
+                amounts = Arrays.copyOf(amounts, size << 1);
+            }
+            rates[size] = rate;
+            amounts[size] = amount;
+            size++;
+        }
+    }
+
+    /**
+     * Puts loaded levels into side order: reverses them if they arrived best
+     * first, otherwise inserts them one by one.
+     */
+    void endLoad() {
+        if (!loading) {
+            return;
+        }
+        loading = false;
+        reverse(rates, size);
+        reverse(amounts, size);
+        sums.rebuild(rates, amounts, 0, size);
+        for (int i = 1; i < size; i++) {
+            if (bid ? rates[i - 1] >= rates[i] : rates[i - 1] <= rates[i]) {
+                long[] loadedRates = Arrays.copyOf(rates, size);
+                long[] loadedAmounts = Arrays.copyOf(amounts, size);
+                size = 0;
+                for (int j = loadedRates.length - 1; j >= 0; j--) {
+                    update(loadedRates[j], loadedAmounts[j]);
+                }
+                return;
+            }
+        }
+    }
+
+    private static void reverse(long[] values, int length) {
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            long value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    private int index(int level) {
+        if (level < 0 || level >= size) {
+            throw new IndexOutOfBoundsException("Level: " + level + ", size: " + size);
+        }
+        return size - 1 - level;
+    }
+
+    /**
+     * Binary search over the side ordering, same contract as
+     * {@link Arrays#binarySearch(long[], long)}.
+     */
+    private int search(long rate) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midRate = rates[mid];
+            if (midRate == rate) {
+                return mid;
+            }
+            if (bid ? midRate < rate : midRate > rate) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insert(int index, long rate, long amount) {
+        if (size == rates.length) {
+            rates = Arrays.copyOf(rates, size << 1);
+            amounts = Arrays.copyOf(amounts, size << 1);
+            sums.ensureCapacity(size << 1);
+        }
+        int tail = size - index;
+        if (tail > 0) {
+            System.arraycopy(rates, index, rates, index + 1, tail);
+            System.arraycopy(amounts, index, amounts, index + 1, tail);
+        }
+        rates[index] = rate;
+        amounts[index] = amount;
+        size++;
+        sums.rebuild(rates, amounts, index, size);
+    }
+
+    private void remove(int index) {
+        int tail = size - index - 1;
+        if (tail > 0) {
+            System.arraycopy(rates, index + 1, rates, index, tail);
+            System.arraycopy(amounts, index + 1, amounts, index, tail);
+        }
+        size--;
+        sums.rebuild(rates, amounts, index, size);
+    }
+}
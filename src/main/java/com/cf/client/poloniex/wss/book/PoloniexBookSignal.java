@@ -0,0 +1,139 @@
+package com.cf.client.poloniex.wss.book;
+
+import static com.cf.util.FixedPointUtils.toBigDecimal;
+
+/**
+ * Microstructure signals of a currency pair as read from
+ * {@link PoloniexBookSignals} after a message changed the book. Rates and
+ * amounts are fixed point mantissas, see {@link com.cf.util.FixedPointUtils};
+ * they are all {@code 0} while a side of the book is empty.
+ * <p>
+ * If event reuse is enabled on the handler, the same instance is recycled for
+ * every message of the pair and is only valid during the listener callback;
+ * use {@link #copy()} to retain it.
+ */
+public class PoloniexBookSignal {
+    private final int currencyPairId;
+    private long bidRate;
+    private long askRate;
+    private long midRate;
+    private long spread;
+    private long spreadEwma;
+    private long microprice;
+    private long depthWeightedMid;
+    private long bidDepth;
+    private long askDepth;
+    private double imbalance;
+    private long updates;
+
+    public PoloniexBookSignal(int currencyPairId) {
+        this.currencyPairId = currencyPairId;
+    }
+
+    void set(long bidRate, long askRate, long midRate, long spread, long spreadEwma, long microprice, long depthWeightedMid,
+             long bidDepth, long askDepth, double imbalance, long updates) {
+        this.bidRate = bidRate;
+        this.askRate = askRate;
+        this.midRate = midRate;
+        this.spread = spread;
+        this.spreadEwma = spreadEwma;
+        this.microprice = microprice;
+        this.depthWeightedMid = depthWeightedMid;
+        this.bidDepth = bidDepth;
+        this.askDepth = askDepth;
+        this.imbalance = imbalance;
+        this.updates = updates;
+    }
+
+    public PoloniexBookSignal copy() {
+        PoloniexBookSignal copy = new PoloniexBookSignal(currencyPairId);
+        copy.set(bidRate, askRate, midRate, spread, spreadEwma, microprice, depthWeightedMid, bidDepth, askDepth, imbalance, updates);
+        return copy;
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    public long getBidRate() {
+        return bidRate;
+    }
+
+    public long getAskRate() {
+        return askRate;
+    }
+
+    public long getMidRate() {
+        return midRate;
+    }
+
+    public long getSpread() {
+        return spread;
+    }
+
+    /**
+     * @return exponentially weighted moving average of the spread, updated on every delta
+     */
+    public long getSpreadEwma() {
+        return spreadEwma;
+    }
+
+    /**
+     * @return best rates weighted by the amount on the opposite side:
+     * {@code (bid * askAmount + ask * bidAmount) / (bidAmount + askAmount)}
+     */
+    public long getMicroprice() {
+        return microprice;
+    }
+
+    /**
+     * @return microprice over the top levels: the average rates of the top
+     * levels of each side weighted by the depth of the opposite side
+     */
+    public long getDepthWeightedMid() {
+        return depthWeightedMid;
+    }
+
+    /**
+     * @return summed amount of the top bid levels
+     */
+    public long getBidDepth() {
+        return bidDepth;
+    }
+
+    /**
+     * @return summed amount of the top ask levels
+     */
+    public long getAskDepth() {
+        return askDepth;
+    }
+
+    /**
+     * @return {@code (bidDepth - askDepth) / (bidDepth + askDepth)}, from
+     * {@code -1} (asks only) to {@code 1} (bids only)
+     */
+    public double getImbalance() {
+        return imbalance;
+    }
+
+    /**
+     * @return number of deltas applied to the book since the signals were attached
+     */
+    public long getUpdates() {
+        return updates;
+    }
+
+    @Override
+    public String toString() {
+        return "PoloniexBookSignal{" +
+                "currencyPairId=" + currencyPairId +
+                ", bid=" + toBigDecimal(bidRate) +
+                ", ask=" + toBigDecimal(askRate) +
+                ", spreadEwma=" + toBigDecimal(spreadEwma) +
+                ", microprice=" + toBigDecimal(microprice) +
+                ", depthWeightedMid=" + toBigDecimal(depthWeightedMid) +
+                ", imbalance=" + imbalance +
+                ", updates=" + updates +
+                '}';
+    }
+}
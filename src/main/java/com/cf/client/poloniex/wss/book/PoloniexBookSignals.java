@@ -0,0 +1,116 @@
+package com.cf.client.poloniex.wss.book;
+
+import static com.cf.util.FixedPointUtils.divide;
+import static com.cf.util.FixedPointUtils.multiply;
+
+/**
+ * Signal layer of a {@link PoloniexLiveOrderBook}: order book imbalance,
+ * microprice, depth weighted mid and spread EWMA, kept up to date on every
+ * delta instead of re-scanning the book. The sides report each level change
+ * to running sums of their best {@code depthLevels} levels, so a delta costs
+ * {@code O(1)} on top of the book update and {@link #read(PoloniexBookSignal)}
+ * costs {@code O(1)} whatever the depth of the book.
+ * <p>
+ * Not thread safe: attached to the book and read on the Netty event loop, see
+ * {@code OrderBookMessageHandler#enableSignals(int, double)}.
+ */
+public class PoloniexBookSignals {
+    public static final int DEFAULT_DEPTH_LEVELS = 10;
+    public static final double DEFAULT_SPREAD_EWMA_ALPHA = 0.05;
+
+    private final int depthLevels;
+    private final double spreadEwmaAlpha;
+    private PoloniexLiveOrderBook book;
+    private TopLevels bids;
+    private TopLevels asks;
+    private double spreadEwma;
+    private long updates;
+
+    /**
+     * @param depthLevels     levels per side summed for the imbalance and the depth weighted mid
+     * @param spreadEwmaAlpha weight of the latest spread in its moving average, {@code (0, 1]}
+     */
+    public PoloniexBookSignals(int depthLevels, double spreadEwmaAlpha) {
+        if (depthLevels <= 0) {
+            throw new IllegalArgumentException("Depth levels must be positive: " + depthLevels);
+        }
+        if (!(spreadEwmaAlpha > 0 && spreadEwmaAlpha <= 1)) {
+            throw new IllegalArgumentException("Spread EWMA alpha must be within (0, 1]: " + spreadEwmaAlpha);
+        }
+        this.depthLevels = depthLevels;
+        this.spreadEwmaAlpha = spreadEwmaAlpha;
+    }
+
+    public int getDepthLevels() {
+        return depthLevels;
+    }
+
+    public double getSpreadEwmaAlpha() {
+        return spreadEwmaAlpha;
+    }
+
+    void attach(PoloniexLiveOrderBook book) {
+        if (this.book != null) {
+            throw new IllegalStateException("Signals are attached to the book of " + this.book.getCurrencyPairId());
+        }
+        this.book = book;
+        bids = new TopLevels(book.bids(), depthLevels);
+        asks = new TopLevels(book.asks(), depthLevels);
+        book.bids().setTopLevels(bids);
+        book.asks().setTopLevels(asks);
+        recompute();
+    }
+
+    void detach() {
+        book.bids().setTopLevels(null);
+        book.asks().setTopLevels(null);
+        book = null;
+    }
+
+    /**
+     * Starts over from the current book, after a snapshot or a reset.
+     */
+    void recompute() {
+        bids.recompute();
+        asks.recompute();
+        spreadEwma = book.spread();
+    }
+
+    /**
+     * Called after every delta applied to the book.
+     */
+    void onDelta() {
+        updates++;
+        long spread = book.spread();
+        if (spread != 0) {
+            spreadEwma = spreadEwma == 0 ? spread : spreadEwma + spreadEwmaAlpha * (spread - spreadEwma);
+        }
+    }
+
+    /**
+     * Copies the current signals into the record.
+     */
+    public void read(PoloniexBookSignal target) {
+        PoloniexBookSide bidSide = book.bids();
+        PoloniexBookSide askSide = book.asks();
+        if (bidSide.isEmpty() || askSide.isEmpty()) {
+            target.set(bidSide.bestRate(), askSide.bestRate(), 0, 0, 0, 0, 0, bids.amount(), asks.amount(), 0, updates);
+            return;
+        }
+        long bidRate = bidSide.bestRate();
+        long askRate = askSide.bestRate();
+        long bidAmount = bidSide.bestAmount();
+        long askAmount = askSide.bestAmount();
+        long microprice = divide(multiply(bidRate, askAmount) + multiply(askRate, bidAmount), bidAmount + askAmount);
+
+        long bidDepth = bids.amount();
+        long askDepth = asks.amount();
+        long bidAverage = divide(bids.notional(), bidDepth);
+        long askAverage = divide(asks.notional(), askDepth);
+        long depthWeightedMid = divide(multiply(bidAverage, askDepth) + multiply(askAverage, bidDepth), bidDepth + askDepth);
+        double imbalance = (bidDepth - askDepth) / (double) (bidDepth + askDepth);
+
+        target.set(bidRate, askRate, (bidRate + askRate) / 2, askRate - bidRate, Math.round(spreadEwma),
+                microprice, depthWeightedMid, bidDepth, askDepth, imbalance, updates);
+    }
+}
@@ -0,0 +1,181 @@
+package com.cf.client.poloniex.wss.book;
+
+import com.cf.client.poloniex.wss.model.PoloniexOrderBook;
+import com.cf.client.poloniex.wss.model.PoloniexOrderBookEntry;
+
+import static com.cf.util.FixedPointUtils.toBigDecimal;
+
+/**
+ * Client side L2 order book of a single currency pair, seeded from the WSS
+ * {@code "i"} snapshot and kept up to date by {@code "o"} deltas.
+ * <p>
+ * Not thread safe: the book is mutated by the Netty event loop and must only be
+ * read from that thread (e.g. inside listeners).
+ */
+public class PoloniexLiveOrderBook {
+    private static final long BPS = 10_000;
+
+    private final int currencyPairId;
+    private final PoloniexBookSide bids = new PoloniexBookSide(true);
+    private final PoloniexBookSide asks = new PoloniexBookSide(false);
+    private boolean seeded;
+    private PoloniexBookSignals signals;
+
+    public PoloniexLiveOrderBook(int currencyPairId) {
+        this.currencyPairId = currencyPairId;
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    /**
+     * @return {@code true} once the initial snapshot has been applied
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    public PoloniexBookSide bids() {
+        return bids;
+    }
+
+    public PoloniexBookSide asks() {
+        return asks;
+    }
+
+    public long bestBidRate() {
+        return bids.bestRate();
+    }
+
+    public long bestBidAmount() {
+        return bids.bestAmount();
+    }
+
+    public long bestAskRate() {
+        return asks.bestRate();
+    }
+
+    public long bestAskAmount() {
+        return asks.bestAmount();
+    }
+
+    /**
+     * @return mid of the best rates or {@code 0} if a side is empty
+     */
+    public long midRate() {
+        return bids.isEmpty() || asks.isEmpty() ? 0 : (bids.bestRate() + asks.bestRate()) / 2;
+    }
+
+    /**
+     * @return best ask minus best bid or {@code 0} if a side is empty
+     */
+    public long spread() {
+        return bids.isEmpty() || asks.isEmpty() ? 0 : asks.bestRate() - bids.bestRate();
+    }
+
+    /**
+     * @return summed amount of the side within {@code bps} basis points of
+     * the mid, or {@code 0} if a side is empty
+     */
+    public long amountWithinBps(boolean bid, int bps) {
+        long mid = midRate();
+        if (mid == 0) {
+            return 0;
+        }
+        long offset = mid * bps / BPS;
+        return bid ? bids.amountWithin(mid - offset) : asks.amountWithin(mid + offset);
+    }
+
+    /**
+     * Drops all levels; the book stays unseeded until the next snapshot has
+     * been applied and {@link #markSeeded()} is called.
+     */
+    public void reset() {
+        bids.clear();
+        asks.clear();
+        seeded = false;
+        if (signals != null) {
+            signals.recompute();
+        }
+    }
+
+    /**
+     * Completes the levels added by {@link #load(boolean, long, long)} and
+     * marks the book as seeded.
+     */
+    public void markSeeded() {
+        bids.endLoad();
+        asks.endLoad();
+        seeded = true;
+        if (signals != null) {
+            signals.recompute();
+        }
+    }
+
+    /**
+     * Adds a snapshot level after {@link #reset()}; levels of a side are
+     * expected best first, others are accepted but slower to load.
+     */
+    public void load(boolean bid, long rate, long amount) {
+        (bid ? bids : asks).load(rate, amount);
+    }
+
+    public void update(boolean bid, long rate, long amount) {
+        (bid ? bids : asks).update(rate, amount);
+        if (signals != null) {
+            signals.onDelta();
+        }
+    }
+
+    /**
+     * Attaches the signals, replacing the ones attached before; {@code null}
+     * detaches them. Must be called on the thread that updates the book.
+     */
+    public void setSignals(PoloniexBookSignals signals) {
+        if (this.signals != null) {
+            this.signals.detach();
+        }
+        this.signals = signals;
+        if (signals != null) {
+            signals.attach(this);
+        }
+    }
+
+    /**
+     * @return the attached signals or {@code null}
+     */
+    public PoloniexBookSignals getSignals() {
+        return signals;
+    }
+
+    /**
+     * Copies the book into the {@link PoloniexOrderBook} model for consumers of
+     * the BigDecimal API.
+     */
+    public PoloniexOrderBook toOrderBook() {
+        PoloniexOrderBook orderBook = new PoloniexOrderBook();
+        copy(bids, "buy", orderBook);
+        copy(asks, "sell", orderBook);
+        return orderBook;
+    }
+
+    private static void copy(PoloniexBookSide side, String type, PoloniexOrderBook orderBook) {
+        for (int level = 0; level < side.size(); level++) {
+            PoloniexOrderBookEntry entry = new PoloniexOrderBookEntry(type, toBigDecimal(side.rate(level)), toBigDecimal(side.amount(level)));
+            (side.isBid() ? orderBook.bids : orderBook.asks).put(entry.rate.toPlainString(), entry);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PoloniexLiveOrderBook{" +
+                "currencyPairId=" + currencyPairId +
+                ", seeded=" + seeded +
+                ", bids=" + bids.size() +
+                ", asks=" + asks.size() +
+                ", bestBid=" + toBigDecimal(bestBidRate()) +
+                ", bestAsk=" + toBigDecimal(bestAskRate()) +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+package com.cf.client.poloniex.wss.book;
+
+import static com.cf.util.FixedPointUtils.toBigDecimal;
+
+/**
+ * Best bid and ask of a currency pair as drained from a
+ * {@link ConflatedTopOfBook}. Rates and amounts are fixed point mantissas, see
+ * {@link com.cf.util.FixedPointUtils}; {@code 0} stands for an empty side,
+ * both sides are empty while the book waits for a snapshot.
+ */
+public class PoloniexTopOfBook {
+    private final int currencyPairId;
+    private long bidRate;
+    private long bidAmount;
+    private long askRate;
+    private long askAmount;
+    private long updates;
+
+    public PoloniexTopOfBook(int currencyPairId) {
+        this.currencyPairId = currencyPairId;
+    }
+
+    void set(long bidRate, long bidAmount, long askRate, long askAmount, long updates) {
+        this.bidRate = bidRate;
+        this.bidAmount = bidAmount;
+        this.askRate = askRate;
+        this.askAmount = askAmount;
+        this.updates = updates;
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    public long getBidRate() {
+        return bidRate;
+    }
+
+    public long getBidAmount() {
+        return bidAmount;
+    }
+
+    public long getAskRate() {
+        return askRate;
+    }
+
+    public long getAskAmount() {
+        return askAmount;
+    }
+
+    /**
+     * @return {@code true} if neither side has a level, e.g. after the book was
+     * reset on a sequence gap or a lost connection
+     */
+    public boolean isEmpty() {
+        return bidRate == 0 && askRate == 0;
+    }
+
+    /**
+     * @return number of top of book changes published up to this state
+     */
+    public long getUpdates() {
+        return updates;
+    }
+
+    @Override
+    public String toString() {
+        return "PoloniexTopOfBook{" +
+                "currencyPairId=" + currencyPairId +
+                ", bid=" + toBigDecimal(bidAmount) + "@" + toBigDecimal(bidRate) +
+                ", ask=" + toBigDecimal(askAmount) + "@" + toBigDecimal(askRate) +
+                ", updates=" + updates +
+                '}';
+    }
+}
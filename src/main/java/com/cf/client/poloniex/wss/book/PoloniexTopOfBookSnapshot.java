@@ -0,0 +1,112 @@
+package com.cf.client.poloniex.wss.book;
+
+import java.util.Arrays;
+
+import static com.cf.client.poloniex.wss.book.PoloniexTopOfBookTable.ASK_AMOUNT;
+import static com.cf.client.poloniex.wss.book.PoloniexTopOfBookTable.ASK_RATE;
+import static com.cf.client.poloniex.wss.book.PoloniexTopOfBookTable.BID_AMOUNT;
+import static com.cf.client.poloniex.wss.book.PoloniexTopOfBookTable.BID_RATE;
+import static com.cf.client.poloniex.wss.book.PoloniexTopOfBookTable.FIELDS;
+import static com.cf.util.FixedPointUtils.toBigDecimal;
+
+/**
+ * Best bid and ask of all pairs as copied from a {@link PoloniexTopOfBookTable},
+ * in parallel primitive arrays indexed by position, {@code 0} to
+ * {@link #size()}, in currency pair id order. Rates and amounts are fixed
+ * point mantissas, see {@link com.cf.util.FixedPointUtils}.
+ * <p>
+ * Meant to be reused by one reader thread: taking another snapshot into it
+ * overwrites the previous one and allocates nothing.
+ */
+public class PoloniexTopOfBookSnapshot {
+    private final int[] currencyPairIds;
+    private final int[] positions;
+    private final long[] levels;
+    private final long[] updates;
+    private final long[] values = new long[FIELDS];
+    private int size;
+
+    PoloniexTopOfBookSnapshot(int capacity) {
+        currencyPairIds = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+        levels = new long[capacity * FIELDS];
+        updates = new long[capacity];
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[currencyPairIds[i]] = -1;
+        }
+        size = 0;
+    }
+
+    long[] values() {
+        return values;
+    }
+
+    void add(int currencyPairId, long[] values, long updates) {
+        currencyPairIds[size] = currencyPairId;
+        positions[currencyPairId] = size;
+        System.arraycopy(values, 0, levels, size * FIELDS, FIELDS);
+        this.updates[size] = updates;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return position of the pair in this snapshot or {@code -1} if it is not in it
+     */
+    public int indexOf(int currencyPairId) {
+        return currencyPairId >= 0 && currencyPairId < positions.length ? positions[currencyPairId] : -1;
+    }
+
+    public int currencyPairId(int index) {
+        return currencyPairIds[checkIndex(index)];
+    }
+
+    public long bidRate(int index) {
+        return levels[checkIndex(index) * FIELDS + BID_RATE];
+    }
+
+    public long bidAmount(int index) {
+        return levels[checkIndex(index) * FIELDS + BID_AMOUNT];
+    }
+
+    public long askRate(int index) {
+        return levels[checkIndex(index) * FIELDS + ASK_RATE];
+    }
+
+    public long askAmount(int index) {
+        return levels[checkIndex(index) * FIELDS + ASK_AMOUNT];
+    }
+
+    /**
+     * @return number of changes published for the pair up to this state
+     */
+    public long updates(int index) {
+        return updates[checkIndex(index)];
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("PoloniexTopOfBookSnapshot{");
+        for (int i = 0; i < size; i++) {
+            builder.append(i == 0 ? "" : ", ")
+                    .append(currencyPairIds[i]).append('=')
+                    .append(toBigDecimal(bidRate(i))).append('/')
+                    .append(toBigDecimal(askRate(i)));
+        }
+        return builder.append('}').toString();
+    }
+}
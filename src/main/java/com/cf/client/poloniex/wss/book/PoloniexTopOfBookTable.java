@@ -0,0 +1,152 @@
+package com.cf.client.poloniex.wss.book;
+
+import com.cf.util.SeqLockTable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.function.Consumer;
+
+/**
+ * Best bid and ask of every subscribed currency pair in a {@link SeqLockTable}
+ * slot indexed by the currency pair id: one contiguous primitive array with a
+ * version per slot. The event loop publishes a pair whenever the top of its
+ * book changes, any number of threads read single pairs or
+ * {@link #snapshot(PoloniexTopOfBookSnapshot) snapshot} all of them without
+ * locks and without allocating.
+ * <p>
+ * Every pair in a snapshot is consistent in itself; pairs are read one after
+ * the other, so the snapshot as a whole is not a single point in time. A
+ * reader only retries a pair it raced with a write of the same pair, so readers
+ * never hold up the writers nor each other.
+ * <p>
+ * A pair whose book was reset, e.g. after a sequence gap or a lost connection,
+ * is published with both sides empty until the next snapshot, and so is a pair
+ * {@link #clear(int) cleared} on unsubscribe: {@link #read} reports it as not
+ * available and {@link #snapshot} leaves it out.
+ */
+public class PoloniexTopOfBookTable {
+    private final static Logger LOG = LogManager.getLogger();
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    static final int BID_RATE = 0;
+    static final int BID_AMOUNT = 1;
+    static final int ASK_RATE = 2;
+    static final int ASK_AMOUNT = 3;
+    static final int FIELDS = 4;
+
+    private final SeqLockTable table;
+    private final Consumer<PoloniexLiveOrderBook> publisher = this::publish;
+
+    public PoloniexTopOfBookTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity currency pair ids must be lower than this
+     */
+    public PoloniexTopOfBookTable(int capacity) {
+        this.table = new SeqLockTable(capacity, FIELDS);
+    }
+
+    public int capacity() {
+        return table.slots();
+    }
+
+    /**
+     * Live order book listener that publishes the top of the book into this
+     * table; the same instance serves all pairs, so it can also be used to
+     * unsubscribe.
+     */
+    public Consumer<PoloniexLiveOrderBook> publisher() {
+        return publisher;
+    }
+
+    private void publish(PoloniexLiveOrderBook book) {
+        update(book.getCurrencyPairId(), book.bestBidRate(), book.bestBidAmount(), book.bestAskRate(), book.bestAskAmount());
+    }
+
+    /**
+     * Stores the best levels of the pair; only one thread at a time may update a pair.
+     *
+     * @return {@code false} if they did not change
+     */
+    public boolean update(int currencyPairId, long bidRate, long bidAmount, long askRate, long askAmount) {
+        if (currencyPairId < 0 || currencyPairId >= table.slots()) {
+            LOG.warn("Currency pair id {} exceeds top of book table capacity {}", currencyPairId, table.slots());
+            return false;
+        }
+        if (table.writes(currencyPairId) > 0
+                && bidRate == table.get(currencyPairId, BID_RATE) && bidAmount == table.get(currencyPairId, BID_AMOUNT)
+                && askRate == table.get(currencyPairId, ASK_RATE) && askAmount == table.get(currencyPairId, ASK_AMOUNT)) {
+            return false;
+        }
+        table.beginWrite(currencyPairId);
+        table.put(currencyPairId, BID_RATE, bidRate);
+        table.put(currencyPairId, BID_AMOUNT, bidAmount);
+        table.put(currencyPairId, ASK_RATE, askRate);
+        table.put(currencyPairId, ASK_AMOUNT, askAmount);
+        table.endWrite(currencyPairId);
+        return true;
+    }
+
+    /**
+     * Empties the slot of the pair, once nothing publishes it anymore; must not
+     * race with an update of the pair.
+     */
+    public void clear(int currencyPairId) {
+        update(currencyPairId, 0, 0, 0, 0);
+    }
+
+    /**
+     * Copies the latest best levels of the pair of the target; safe from any thread.
+     *
+     * @param values scratch array of at least {@value #FIELDS} longs, reusable between reads
+     * @return {@code false} if no levels are published for the pair or its id
+     * exceeds the capacity, the target is empty then
+     */
+    public boolean read(PoloniexTopOfBook target, long[] values) {
+        int currencyPairId = target.getCurrencyPairId();
+        if (currencyPairId < 0 || currencyPairId >= table.slots()) {
+            target.set(0, 0, 0, 0, 0);
+            return false;
+        }
+        long updates = table.read(currencyPairId, values);
+        target.set(values[BID_RATE], values[BID_AMOUNT], values[ASK_RATE], values[ASK_AMOUNT], updates);
+        return updates > 0 && !target.isEmpty();
+    }
+
+    /**
+     * @return number of changes published for the pair
+     */
+    public long getUpdateCount(int currencyPairId) {
+        return currencyPairId < 0 || currencyPairId >= table.slots() ? 0 : table.writes(currencyPairId);
+    }
+
+    /**
+     * @return an empty snapshot sized for this table, to be reused with {@link #snapshot(PoloniexTopOfBookSnapshot)}
+     */
+    public PoloniexTopOfBookSnapshot newSnapshot() {
+        return new PoloniexTopOfBookSnapshot(table.slots());
+    }
+
+    /**
+     * Copies the best levels of every pair with a published book into the
+     * snapshot, in currency pair id order; safe from any thread.
+     *
+     * @return number of pairs in the snapshot
+     */
+    public int snapshot(PoloniexTopOfBookSnapshot target) {
+        target.clear();
+        long[] values = target.values();
+        for (int currencyPairId = 0; currencyPairId < table.slots(); currencyPairId++) {
+            if (table.writes(currencyPairId) > 0) {
+                long updates = table.read(currencyPairId, values);
+                if (values[BID_RATE] != 0 || values[ASK_RATE] != 0) {
+                    target.add(currencyPairId, values, updates);
+                }
+            }
+        }
+        return target.size();
+    }
+}
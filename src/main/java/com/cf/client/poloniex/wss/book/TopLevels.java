@@ -0,0 +1,83 @@
+package com.cf.client.poloniex.wss.book;
+
+import static com.cf.util.FixedPointUtils.multiply;
+
+/**
+ * Running amount and notional of the best {@code depth} levels of a
+ * {@link PoloniexBookSide}. The side reports every change of a level and the
+ * sums follow in {@code O(1)}: a change below the top levels is ignored, one
+ * within them adjusts the sums by its delta plus the single level that is
+ * pushed out of or moves into the top levels.
+ */
+class TopLevels {
+    private final PoloniexBookSide side;
+    private final int depth;
+    private long amount;
+    private long notional;
+
+    TopLevels(PoloniexBookSide side, int depth) {
+        this.side = side;
+        this.depth = depth;
+        recompute();
+    }
+
+    long amount() {
+        return amount;
+    }
+
+    long notional() {
+        return notional;
+    }
+
+    /**
+     * Sums the top levels from scratch, e.g. after a snapshot.
+     */
+    void recompute() {
+        amount = 0;
+        notional = 0;
+        for (int level = Math.min(depth, side.size()) - 1; level >= 0; level--) {
+            add(side.rate(level), side.amount(level));
+        }
+    }
+
+    /**
+     * Called after the side changed the amount of the level in place.
+     */
+    void onChange(int level, long rate, long oldAmount, long newAmount) {
+        if (level < depth) {
+            add(rate, newAmount);
+            add(rate, -oldAmount);
+        }
+    }
+
+    /**
+     * Called after the side inserted the level; the level that was at
+     * {@code depth - 1} now sits at {@code depth}.
+     */
+    void onInsert(int level, long rate, long amount) {
+        if (level < depth) {
+            add(rate, amount);
+            if (side.size() > depth) {
+                add(side.rate(depth), -side.amount(depth));
+            }
+        }
+    }
+
+    /**
+     * Called after the side removed the level; the level that was at
+     * {@code depth} now sits at {@code depth - 1}.
+     */
+    void onRemove(int level, long rate, long amount) {
+        if (level < depth) {
+            add(rate, -amount);
+            if (side.size() >= depth) {
+                add(side.rate(depth - 1), side.amount(depth - 1));
+            }
+        }
+    }
+
+    private void add(long rate, long amount) {
+        this.amount += amount;
+        notional += amount >= 0 ? multiply(rate, amount) : -multiply(rate, -amount);
+    }
+}
@@ -0,0 +1,325 @@
+package com.cf.client.poloniex.wss.decoder;
+
+import com.cf.client.wss.handler.IMarketEventHandler;
+import io.netty.buffer.ByteBuf;
+
+import java.util.function.IntFunction;
+
+import static com.cf.util.FixedPointUtils.SCALE;
+import static com.cf.util.FixedPointUtils.rescale;
+
+/**
+ * Resumable parser for {@code "i"} order book snapshots:
+ * <pre>
+ * [121,252507198,[["i",{"currencyPair":"USDT_BTC","orderBook":[{"6361.88463940":"0.60000000",...},{"6357.13463942":"0.20000000",...}]}]]]
+ * </pre>
+ * A deep snapshot may arrive as a text frame followed by continuation frames.
+ * Each chunk is parsed as it arrives and its levels go straight to
+ * {@link IMarketEventHandler#onSnapshotLevel(boolean, long, long)}, so neither
+ * the whole message nor a String or map of it is ever held in memory. All parse
+ * state lives in fields, a chunk may end anywhere, even inside a number.
+ * <p>
+ * The first map of {@code "orderBook"} holds the asks, the second one the bids.
+ * Other keys and values are skipped. An instance parses one message at a time
+ * and must only be used by one thread.
+ */
+public class PoloniexSnapshotDecoder {
+    private static final byte[] ORDER_BOOK = {'o', 'r', 'd', 'e', 'r', 'B', 'o', 'o', 'k'};
+
+    private static final int PAYLOAD_DEPTH = 4;
+    private static final int ORDER_BOOK_DEPTH = 5;
+    private static final int SIDE_DEPTH = 6;
+
+    public enum Status {
+        /**
+         * The message start has not been seen completely yet.
+         */
+        HEADER,
+        /**
+         * Inside a snapshot, more chunks are needed.
+         */
+        BODY,
+        COMPLETE,
+        /**
+         * The message is not a snapshot; nothing has been passed to a handler.
+         */
+        REJECTED
+    }
+
+    private final IntFunction<IMarketEventHandler> handlers;
+
+    private Status status;
+    private int headerState;
+    private int digits;
+    private int channelId;
+    private long sequence;
+    private IMarketEventHandler handler;
+
+    private int depth;
+    private long objectDepths;
+    private boolean expectKey;
+    private boolean inString;
+    private boolean escaped;
+    private boolean stringIsKey;
+    private int keyMatch;
+    private boolean orderBookKey;
+    private boolean inOrderBook;
+    private int side;
+
+    private boolean negative;
+    private long mantissa;
+    private int decimals;
+    private long rate;
+
+    /**
+     * @param handlers resolves the handler of a channel id, {@code null} if
+     *                 the snapshot of the channel is to be skipped
+     */
+    public PoloniexSnapshotDecoder(IntFunction<IMarketEventHandler> handlers) {
+        this.handlers = handlers;
+        reset();
+    }
+
+    /**
+     * Prepares for a new message, dropping the state of an unfinished one.
+     */
+    public void reset() {
+        status = Status.HEADER;
+        headerState = 0;
+        digits = 0;
+        channelId = 0;
+        sequence = 0;
+        handler = null;
+        depth = 0;
+        objectDepths = 0;
+        inString = false;
+        escaped = false;
+        inOrderBook = false;
+        orderBookKey = false;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return channel id of the message, valid once the header has been parsed
+     */
+    public int getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * Parses the readable bytes of the chunk without changing its reader index.
+     *
+     * @throws IllegalArgumentException if the snapshot is malformed
+     */
+    public Status decode(ByteBuf chunk) {
+        int end = chunk.writerIndex();
+        for (int i = chunk.readerIndex(); i < end && status != Status.COMPLETE && status != Status.REJECTED; i++) {
+            byte b = chunk.getByte(i);
+            if (status == Status.HEADER) {
+                header(b);
+            } else {
+                body(b);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * {@code [channelId,sequence,[["i",}
+     */
+    private void header(byte b) {
+        if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+            return;
+        }
+        switch (headerState) {
+            case 0:
+                accept(b == '[');
+                break;
+            case 1:
+                if (isDigit(b)) {
+                    channelId = channelId * 10 + (b - '0');
+                    digits++;
+                } else {
+                    accept(b == ',' && digits > 0);
+                    digits = 0;
+                }
+                break;
+            case 2:
+                if (isDigit(b)) {
+                    sequence = sequence * 10 + (b - '0');
+                    digits++;
+                } else {
+                    accept(b == ',' && digits > 0);
+                }
+                break;
+            case 3:
+            case 4:
+                accept(b == '[');
+                break;
+            case 5:
+            case 7:
+                accept(b == '"');
+                break;
+            case 6:
+                accept(b == 'i');
+                break;
+            default:
+                throw new IllegalStateException("Header state " + headerState);
+        }
+        if (headerState == 8) {
+            startBody();
+        }
+    }
+
+    private void accept(boolean expected) {
+        if (expected) {
+            headerState++;
+        } else {
+            status = Status.REJECTED;
+        }
+    }
+
+    private void startBody() {
+        status = Status.BODY;
+        depth = 3; //message, entry list and entry arrays
+        expectKey = false;
+        side = -1;
+        IMarketEventHandler handler = handlers.apply(channelId);
+        this.handler = handler != null && handler.onSnapshotStart(sequence) ? handler : null;
+    }
+
+    private void body(byte b) {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+                stringByte(b);
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                inString = false;
+                stringEnd();
+            } else {
+                stringByte(b);
+            }
+            return;
+        }
+        switch (b) {
+            case '"':
+                inString = true;
+                stringStart();
+                break;
+            case '{':
+                open(true);
+                if (depth == SIDE_DEPTH && inOrderBook) {
+                    side++;
+                }
+                break;
+            case '[':
+                open(false);
+                if (depth == ORDER_BOOK_DEPTH && orderBookKey) {
+                    inOrderBook = true;
+                }
+                break;
+            case '}':
+            case ']':
+                if (depth == ORDER_BOOK_DEPTH && inOrderBook) {
+                    inOrderBook = false;
+                    endSnapshot();
+                }
+                if (--depth == 0) {
+                    endSnapshot();
+                    status = Status.COMPLETE;
+                }
+                expectKey = false;
+                break;
+            case ':':
+                expectKey = false;
+                break;
+            case ',':
+                expectKey = isObject(depth);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void open(boolean object) {
+        depth++;
+        if (depth >= Long.SIZE) {
+            throw malformed("nesting deeper than " + Long.SIZE);
+        }
+        objectDepths = object ? objectDepths | 1L << depth : objectDepths & ~(1L << depth);
+        expectKey = object;
+    }
+
+    private boolean isObject(int depth) {
+        return (objectDepths & 1L << depth) != 0;
+    }
+
+    private void stringStart() {
+        stringIsKey = expectKey;
+        if (depth == PAYLOAD_DEPTH && stringIsKey) {
+            keyMatch = 0;
+        } else if (depth == SIDE_DEPTH && inOrderBook) {
+            negative = false;
+            mantissa = 0;
+            decimals = -1;
+        }
+    }
+
+    private void stringByte(byte b) {
+        if (depth == PAYLOAD_DEPTH && stringIsKey) {
+            keyMatch = keyMatch >= 0 && keyMatch < ORDER_BOOK.length && ORDER_BOOK[keyMatch] == b ? keyMatch + 1 : -1;
+        } else if (depth == SIDE_DEPTH && inOrderBook) {
+            if (isDigit(b)) {
+                if (decimals < SCALE) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b == '-' && mantissa == 0 && decimals < 0) {
+                negative = true;
+            } else {
+                throw malformed("decimal");
+            }
+        }
+    }
+
+    private void stringEnd() {
+        if (depth == PAYLOAD_DEPTH && stringIsKey) {
+            orderBookKey = keyMatch == ORDER_BOOK.length;
+        } else if (depth == SIDE_DEPTH && inOrderBook) {
+            long value = rescale(mantissa, Math.max(decimals, 0));
+            if (negative) {
+                value = -value;
+            }
+            if (stringIsKey) {
+                rate = value;
+            } else if (handler != null && side < 2) {
+                handler.onSnapshotLevel(side == 1, rate, value);
+            }
+        }
+    }
+
+    private void endSnapshot() {
+        if (handler != null) {
+            IMarketEventHandler handler = this.handler;
+            this.handler = null;
+            handler.onSnapshotEnd();
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private IllegalArgumentException malformed(String expected) {
+        return new IllegalArgumentException("Malformed snapshot of channel " + channelId + ", expected " + expected);
+    }
+}
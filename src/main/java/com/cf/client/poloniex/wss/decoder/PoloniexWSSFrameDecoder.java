@@ -0,0 +1,309 @@
+package com.cf.client.poloniex.wss.decoder;
+
+import com.cf.client.wss.handler.IMarketEventHandler;
+import io.netty.buffer.ByteBuf;
+
+import static com.cf.util.FixedPointUtils.SCALE;
+import static com.cf.util.FixedPointUtils.rescale;
+
+/**
+ * Streaming tokenizer for market channel messages. It reads the Poloniex array
+ * format straight from the frame content and passes typed values to an
+ * {@link IMarketEventHandler}, so that no Strings, Lists or boxed numbers are
+ * created per message:
+ * <pre>
+ * [121,252507198,[["o",0,"6357.13463942","0.00000000"],["t","48555480",1,"6343.06999999","0.00126059",1527763237]]]
+ * </pre>
+ * Anything else (heartbeats, {@code "i"} snapshots, errors) is rejected
+ * before the handler is called, so the caller can fall back to the String API.
+ * Ticker messages are decoded separately by {@link #decodeTicker(ByteBuf, long[])}.
+ * <p>
+ * An instance keeps the read position between calls and must only be used by
+ * one thread at a time.
+ */
+public class PoloniexWSSFrameDecoder {
+    public static final int TICKER_FIELDS = 9;
+
+    private ByteBuf buf;
+    private int pos;
+    private int end;
+
+    /**
+     * @return channel id of the message or {@code -1} if the frame does not
+     * start with a numeric channel id
+     */
+    public static int readChannelId(ByteBuf content) {
+        int i = content.readerIndex();
+        int end = content.writerIndex();
+        if (i >= end || content.getByte(i) != '[') {
+            return -1;
+        }
+        int channelId = 0;
+        int start = ++i;
+        for (; i < end; i++) {
+            byte b = content.getByte(i);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            channelId = channelId * 10 + (b - '0');
+        }
+        if (i == start || i >= end) {
+            return -1;
+        }
+        byte b = content.getByte(i);
+        return b == ',' || b == ']' ? channelId : -1;
+    }
+
+    /**
+     * @return {@code false} if the frame is not an incremental market message;
+     * the handler has not been called then
+     * @throws IllegalArgumentException if the frame is malformed after its header
+     */
+    public boolean decode(ByteBuf content, IMarketEventHandler handler) {
+        buf = content;
+        pos = content.readerIndex();
+        end = content.writerIndex();
+        try {
+            return decodeMessage(handler);
+        } finally {
+            buf = null;
+        }
+    }
+
+    /**
+     * Decodes a ticker channel message into fixed point values, in message order:
+     * <pre>
+     * [1002,null,[121,"7000.1","7001","7000","-0.01","123.4","0.017",0,"7100","6900"]]
+     * </pre>
+     * last, lowest ask, highest bid, percent change, base volume, quote volume,
+     * frozen ({@code 0}/{@code 1}, not scaled), 24h high and 24h low.
+     *
+     * @param fields receives the {@value #TICKER_FIELDS} values
+     * @return currency pair id or {@code -1} if the frame is not a ticker update
+     * (e.g. the subscription acknowledgement {@code [1002,1]})
+     * @throws IllegalArgumentException if the update is malformed
+     */
+    public int decodeTicker(ByteBuf content, long[] fields) {
+        buf = content;
+        pos = content.readerIndex();
+        end = content.writerIndex();
+        try {
+            if (!consume('[') || !isDigit(peek())) {
+                return -1;
+            }
+            readLong(); //channel id
+            if (!consume(',') || !skipNull() || !consume(',') || !consume('[')) {
+                return -1;
+            }
+            int currencyPairId = (int) readLong();
+            for (int i = 0; i < TICKER_FIELDS; i++) {
+                expect(',');
+                fields[i] = peek() == '"' ? readQuotedFixedPoint() : readLong();
+            }
+            return currencyPairId;
+        } finally {
+            buf = null;
+        }
+    }
+
+    private boolean skipNull() {
+        skipWhitespace();
+        if (pos + 4 <= end && buf.getByte(pos) == 'n' && buf.getByte(pos + 1) == 'u'
+                && buf.getByte(pos + 2) == 'l' && buf.getByte(pos + 3) == 'l') {
+            pos += 4;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean decodeMessage(IMarketEventHandler handler) {
+        if (!consume('[') || !isDigit(peek())) {
+            return false;
+        }
+        readLong(); //channel id
+        if (!consume(',') || !isDigit(peek())) {
+            return false;
+        }
+        long sequence = readLong();
+        if (!consume(',') || !consume('[')) {
+            return false;
+        }
+        if (peek() == '[' && isEntry(pos + 1, 'i')) {
+            return false;
+        }
+
+        if (!handler.onMessageStart(sequence)) {
+            return true;
+        }
+        if (!consume(']')) {
+            do {
+                decodeEntry(handler);
+            } while (consume(','));
+            expect(']');
+        }
+        handler.onMessageEnd();
+        return true;
+    }
+
+    private void decodeEntry(IMarketEventHandler handler) {
+        expect('[');
+        skipWhitespace();
+        if (isEntry(pos, 'o')) {
+            pos += 3;
+            expect(',');
+            boolean bid = readLong() == 1;
+            expect(',');
+            long rate = readQuotedFixedPoint();
+            expect(',');
+            long amount = readQuotedFixedPoint();
+            skipRestOfArray();
+            handler.onOrderBookUpdate(bid, rate, amount);
+        } else if (isEntry(pos, 't')) {
+            pos += 3;
+            expect(',');
+            expect('"');
+            long tradeId = readLong();
+            expect('"');
+            expect(',');
+            boolean buy = readLong() == 1;
+            expect(',');
+            long rate = readQuotedFixedPoint();
+            expect(',');
+            long amount = readQuotedFixedPoint();
+            expect(',');
+            long epochSecond = readLong();
+            skipRestOfArray();
+            handler.onTrade(tradeId, buy, rate, amount, epochSecond);
+        } else {
+            skipRestOfArray();
+        }
+    }
+
+    /**
+     * @return {@code true} if a one letter string {@code "type"} starts at index
+     */
+    private boolean isEntry(int index, char type) {
+        return index + 2 < end
+                && buf.getByte(index) == '"'
+                && buf.getByte(index + 1) == type
+                && buf.getByte(index + 2) == '"';
+    }
+
+    private long readLong() {
+        skipWhitespace();
+        int start = pos;
+        long value = 0;
+        while (pos < end) {
+            byte b = buf.getByte(pos);
+            if (!isDigit(b)) {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            pos++;
+        }
+        if (pos == start) {
+            throw malformed("number");
+        }
+        return value;
+    }
+
+    private long readQuotedFixedPoint() {
+        expect('"');
+        boolean negative = pos < end && buf.getByte(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        long mantissa = 0;
+        int decimals = -1;
+        int digits = 0;
+        while (pos < end) {
+            byte b = buf.getByte(pos);
+            if (b == '"') {
+                break;
+            }
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (isDigit(b)) {
+                digits++;
+                if (decimals < SCALE) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                }
+            } else {
+                throw malformed("decimal");
+            }
+            pos++;
+        }
+        if (digits == 0) {
+            throw malformed("decimal");
+        }
+        expect('"');
+        mantissa = rescale(mantissa, Math.max(decimals, 0));
+        return negative ? -mantissa : mantissa;
+    }
+
+    /**
+     * Skips the remaining values of the current array including its closing bracket.
+     */
+    private void skipRestOfArray() {
+        int depth = 1;
+        boolean inString = false;
+        while (pos < end) {
+            byte b = buf.getByte(pos++);
+            if (inString) {
+                if (b == '\\') {
+                    pos++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '[' || b == '{') {
+                depth++;
+            } else if ((b == ']' || b == '}') && --depth == 0) {
+                return;
+            }
+        }
+        throw malformed("]");
+    }
+
+    private boolean consume(char c) {
+        skipWhitespace();
+        if (pos < end && buf.getByte(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw malformed(String.valueOf(c));
+        }
+    }
+
+    private byte peek() {
+        skipWhitespace();
+        return pos < end ? buf.getByte(pos) : 0;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = buf.getByte(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private IllegalArgumentException malformed(String expected) {
+        return new IllegalArgumentException("Malformed market message, expected " + expected + " at " + (pos - buf.readerIndex()));
+    }
+}
@@ -0,0 +1,210 @@
+package com.cf.client.poloniex.wss.model;
+
+import java.util.Arrays;
+
+/**
+ * All order book updates and trades of one market channel message, in
+ * primitive arrays, so that a consumer can apply the message as a whole (no
+ * crossed book between two updates of the same message) and pays one call per
+ * message instead of one per entry. Updates and trades each keep their order
+ * within the message. Rates and amounts are fixed point mantissas, see
+ * {@link com.cf.util.FixedPointUtils}.
+ * <p>
+ * A {@link #isSnapshot() snapshot} batch carries the levels of the
+ * {@code "i"} snapshot the exchange sends on subscribe and after every
+ * resubscription as updates: the consumer clears its book and applies them.
+ * <p>
+ * The handler recycles one instance per currency pair; it is only valid during
+ * the listener callback, use {@link #copy()} to retain it.
+ */
+public class PoloniexMarketBatch {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int currencyPairId;
+    private long sequence;
+    private long receivedNanos;
+    private boolean snapshot;
+
+    private int updateCount;
+    private boolean[] updateBid;
+    private long[] updateRate;
+    private long[] updateAmount;
+
+    private int tradeCount;
+    private long[] tradeId;
+    private boolean[] tradeBuy;
+    private long[] tradeRate;
+    private long[] tradeAmount;
+    private long[] tradeEpochSecond;
+
+    public PoloniexMarketBatch(int currencyPairId) {
+        this(currencyPairId, INITIAL_CAPACITY, INITIAL_CAPACITY);
+    }
+
+    private PoloniexMarketBatch(int currencyPairId, int updateCapacity, int tradeCapacity) {
+        this.currencyPairId = currencyPairId;
+        updateBid = new boolean[updateCapacity];
+        updateRate = new long[updateCapacity];
+        updateAmount = new long[updateCapacity];
+        tradeId = new long[tradeCapacity];
+        tradeBuy = new boolean[tradeCapacity];
+        tradeRate = new long[tradeCapacity];
+        tradeAmount = new long[tradeCapacity];
+        tradeEpochSecond = new long[tradeCapacity];
+    }
+
+    /**
+     * Starts a new message, used by the handler to recycle this instance.
+     */
+    public void begin(long sequence, long receivedNanos) {
+        begin(sequence, receivedNanos, false);
+    }
+
+    /**
+     * @param snapshot the updates to come replace the book
+     */
+    public void begin(long sequence, long receivedNanos, boolean snapshot) {
+        this.sequence = sequence;
+        this.receivedNanos = receivedNanos;
+        this.snapshot = snapshot;
+        updateCount = 0;
+        tradeCount = 0;
+    }
+
+    public void addUpdate(boolean bid, long rate, long amount) {
+        if (updateCount == updateRate.length) {
+            int capacity = updateCount << 1;
+            updateBid = Arrays.copyOf(updateBid, capacity);
+            updateRate = Arrays.copyOf(updateRate, capacity);
+            updateAmount = Arrays.copyOf(updateAmount, capacity);
+        }
+        updateBid[updateCount] = bid;
+        updateRate[updateCount] = rate;
+        updateAmount[updateCount] = amount;
+        updateCount++;
+    }
+
+    public void addTrade(long id, boolean buy, long rate, long amount, long epochSecond) {
+        if (tradeCount == tradeId.length) {
+            int capacity = tradeCount << 1;
+            tradeId = Arrays.copyOf(tradeId, capacity);
+            tradeBuy = Arrays.copyOf(tradeBuy, capacity);
+            tradeRate = Arrays.copyOf(tradeRate, capacity);
+            tradeAmount = Arrays.copyOf(tradeAmount, capacity);
+            tradeEpochSecond = Arrays.copyOf(tradeEpochSecond, capacity);
+        }
+        tradeId[tradeCount] = id;
+        tradeBuy[tradeCount] = buy;
+        tradeRate[tradeCount] = rate;
+        tradeAmount[tradeCount] = amount;
+        tradeEpochSecond[tradeCount] = epochSecond;
+        tradeCount++;
+    }
+
+    public PoloniexMarketBatch copy() {
+        PoloniexMarketBatch copy = new PoloniexMarketBatch(currencyPairId, Math.max(1, updateCount), Math.max(1, tradeCount));
+        copy.begin(sequence, receivedNanos, snapshot);
+        for (int i = 0; i < updateCount; i++) {
+            copy.addUpdate(updateBid[i], updateRate[i], updateAmount[i]);
+        }
+        for (int i = 0; i < tradeCount; i++) {
+            copy.addTrade(tradeId[i], tradeBuy[i], tradeRate[i], tradeAmount[i], tradeEpochSecond[i]);
+        }
+        return copy;
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the message started to be decoded
+     */
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    /**
+     * @return {@code true} if the updates are the levels of a new snapshot,
+     * the book built from earlier batches is to be dropped
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public boolean isEmpty() {
+        return updateCount == 0 && tradeCount == 0;
+    }
+
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    public boolean isUpdateBid(int index) {
+        return updateBid[checkUpdate(index)];
+    }
+
+    public long getUpdateRate(int index) {
+        return updateRate[checkUpdate(index)];
+    }
+
+    /**
+     * @return amount of the update, {@code 0} removes the level
+     */
+    public long getUpdateAmount(int index) {
+        return updateAmount[checkUpdate(index)];
+    }
+
+    public int getTradeCount() {
+        return tradeCount;
+    }
+
+    public long getTradeId(int index) {
+        return tradeId[checkTrade(index)];
+    }
+
+    public boolean isTradeBuy(int index) {
+        return tradeBuy[checkTrade(index)];
+    }
+
+    public long getTradeRate(int index) {
+        return tradeRate[checkTrade(index)];
+    }
+
+    public long getTradeAmount(int index) {
+        return tradeAmount[checkTrade(index)];
+    }
+
+    public long getTradeEpochSecond(int index) {
+        return tradeEpochSecond[checkTrade(index)];
+    }
+
+    private int checkUpdate(int index) {
+        if (index >= updateCount) {
+            throw new IndexOutOfBoundsException("Update: " + index + ", count: " + updateCount);
+        }
+        return index;
+    }
+
+    private int checkTrade(int index) {
+        if (index >= tradeCount) {
+            throw new IndexOutOfBoundsException("Trade: " + index + ", count: " + tradeCount);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "PoloniexMarketBatch{" +
+                "currencyPairId=" + currencyPairId +
+                ", sequence=" + sequence +
+                ", snapshot=" + snapshot +
+                ", updates=" + updateCount +
+                ", trades=" + tradeCount +
+                '}';
+    }
+}
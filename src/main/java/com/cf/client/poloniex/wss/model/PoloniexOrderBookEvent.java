@@ -0,0 +1,73 @@
+package com.cf.client.poloniex.wss.model;
+
+import static com.cf.util.FixedPointUtils.toBigDecimal;
+
+/**
+ * Order book update of the WSS market channel in primitive form. Rate and
+ * amount are fixed point mantissas, see {@link com.cf.util.FixedPointUtils};
+ * an amount of {@code 0} removes the level.
+ * <p>
+ * If event reuse is enabled on the handler, the same instance is recycled for
+ * every update of the pair and is only valid during the listener callback; use
+ * {@link #copy()} to retain it.
+ */
+public class PoloniexOrderBookEvent {
+    private final int currencyPairId;
+    private boolean bid;
+    private long rate;
+    private long amount;
+
+    public PoloniexOrderBookEvent(int currencyPairId, boolean bid, long rate, long amount) {
+        this.currencyPairId = currencyPairId;
+        this.bid = bid;
+        this.rate = rate;
+        this.amount = amount;
+    }
+
+    /**
+     * Overwrites this instance, used by the handler to recycle it.
+     */
+    public PoloniexOrderBookEvent set(boolean bid, long rate, long amount) {
+        this.bid = bid;
+        this.rate = rate;
+        this.amount = amount;
+        return this;
+    }
+
+    public PoloniexOrderBookEvent copy() {
+        return new PoloniexOrderBookEvent(currencyPairId, bid, rate, amount);
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    public boolean isBid() {
+        return bid;
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Adapter for consumers of the BigDecimal API.
+     */
+    public PoloniexOrderBookEntry toOrderBookEntry() {
+        return new PoloniexOrderBookEntry(bid ? "buy" : "sell", toBigDecimal(rate), toBigDecimal(amount));
+    }
+
+    @Override
+    public String toString() {
+        return "PoloniexOrderBookEvent{" +
+                "currencyPairId=" + currencyPairId +
+                ", bid=" + bid +
+                ", rate=" + toBigDecimal(rate) +
+                ", amount=" + toBigDecimal(amount) +
+                '}';
+    }
+}
@@ -0,0 +1,97 @@
+package com.cf.client.poloniex.wss.model;
+
+import java.time.ZoneOffset;
+
+import static com.cf.util.FixedPointUtils.toBigDecimal;
+import static java.time.Instant.ofEpochSecond;
+import static java.time.ZonedDateTime.ofInstant;
+
+/**
+ * Trade of the WSS market channel in primitive form. Rate and amount are fixed
+ * point mantissas, see {@link com.cf.util.FixedPointUtils}.
+ * <p>
+ * If event reuse is enabled on the handler, the same instance is recycled for
+ * every trade of the pair and is only valid during the listener callback; use
+ * {@link #copy()} to retain it.
+ */
+public class PoloniexTradeEvent {
+    private final int currencyPairId;
+    private long tradeId;
+    private boolean buy;
+    private long rate;
+    private long amount;
+    private long epochSecond;
+
+    public PoloniexTradeEvent(int currencyPairId, long tradeId, boolean buy, long rate, long amount, long epochSecond) {
+        this.currencyPairId = currencyPairId;
+        this.tradeId = tradeId;
+        this.buy = buy;
+        this.rate = rate;
+        this.amount = amount;
+        this.epochSecond = epochSecond;
+    }
+
+    /**
+     * Overwrites this instance, used by the handler to recycle it.
+     */
+    public PoloniexTradeEvent set(long tradeId, boolean buy, long rate, long amount, long epochSecond) {
+        this.tradeId = tradeId;
+        this.buy = buy;
+        this.rate = rate;
+        this.amount = amount;
+        this.epochSecond = epochSecond;
+        return this;
+    }
+
+    public PoloniexTradeEvent copy() {
+        return new PoloniexTradeEvent(currencyPairId, tradeId, buy, rate, amount, epochSecond);
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    public long getTradeId() {
+        return tradeId;
+    }
+
+    public boolean isBuy() {
+        return buy;
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    /**
+     * Adapter for consumers of the BigDecimal API.
+     */
+    public PoloniexTradeEntry toTradeEntry() {
+        return new PoloniexTradeEntry(
+                Long.toString(tradeId),
+                buy ? "buy" : "sell",
+                toBigDecimal(rate),
+                toBigDecimal(amount),
+                ofInstant(ofEpochSecond(epochSecond), ZoneOffset.UTC));
+    }
+
+    @Override
+    public String toString() {
+        return "PoloniexTradeEvent{" +
+                "currencyPairId=" + currencyPairId +
+                ", tradeId=" + tradeId +
+                ", buy=" + buy +
+                ", rate=" + toBigDecimal(rate) +
+                ", amount=" + toBigDecimal(amount) +
+                ", epochSecond=" + epochSecond +
+                '}';
+    }
+}
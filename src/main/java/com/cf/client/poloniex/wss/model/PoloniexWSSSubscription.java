@@ -24,6 +24,9 @@ import java.util.Objects;
  * 187: BTC_GNO 188: ETH_GNO 189: BTC_BCH 190: ETH_BCH 191: USDT_BCH 192:
  * BTC_ZRX 193: ETH_ZRX 194: BTC_CVC 195: ETH_CVC 196: BTC_OMG 197: ETH_OMG 198:
  * BTC_GAS 199: ETH_GAS 200: BTC_STORJ
+ * <p>
+ * The list is not maintained; current ids, including newly listed markets,
+ * are available from {@link com.cf.client.poloniex.PoloniexCurrencyPairRegistry}.
  *
  * @author David
  */
@@ -39,14 +42,22 @@ public class PoloniexWSSSubscription {
     public final String channel;
 
     public PoloniexWSSSubscription(String channel) {
-        this.command = "subscribe";
-        this.channel = channel;
+        this("subscribe", channel);
     }
 
     public PoloniexWSSSubscription(Integer channelId) {
         this(Objects.toString(channelId));
     }
 
+    public PoloniexWSSSubscription(String command, String channel) {
+        this.command = command;
+        this.channel = channel;
+    }
+
+    public static PoloniexWSSSubscription unsubscribe(Integer channelId) {
+        return new PoloniexWSSSubscription("unsubscribe", Objects.toString(channelId));
+    }
+
     @Override
     public String toString() {
         return JsonUtils.GSON.toJson(this);
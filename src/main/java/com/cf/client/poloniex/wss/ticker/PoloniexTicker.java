@@ -0,0 +1,139 @@
+package com.cf.client.poloniex.wss.ticker;
+
+import java.util.Arrays;
+
+import static com.cf.util.FixedPointUtils.toBigDecimal;
+
+/**
+ * Ticker of a currency pair as kept by {@link PoloniexTickerTable}. Prices,
+ * volumes and the percent change are fixed point mantissas, see
+ * {@link com.cf.util.FixedPointUtils}. {@link #getChangedFields()} tells which
+ * fields the last update changed, as a bitmask of the field constants.
+ * <p>
+ * Ticker listeners receive the same instance for every update; it is only
+ * valid during the callback, use {@link #copy()} to retain it.
+ */
+public class PoloniexTicker {
+    public static final int LAST = 1;
+    public static final int LOWEST_ASK = 1 << 1;
+    public static final int HIGHEST_BID = 1 << 2;
+    public static final int PERCENT_CHANGE = 1 << 3;
+    public static final int BASE_VOLUME = 1 << 4;
+    public static final int QUOTE_VOLUME = 1 << 5;
+    public static final int FROZEN = 1 << 6;
+    public static final int HIGH_24H = 1 << 7;
+    public static final int LOW_24H = 1 << 8;
+
+    static final int FIELDS = 9;
+
+    private int currencyPairId;
+    private final long[] values = new long[FIELDS];
+    private int changedFields;
+    private long updates;
+
+    void set(int currencyPairId, long[] values, int changedFields, long updates) {
+        this.currencyPairId = currencyPairId;
+        System.arraycopy(values, 0, this.values, 0, FIELDS);
+        this.changedFields = changedFields;
+        this.updates = updates;
+    }
+
+    public PoloniexTicker copy() {
+        PoloniexTicker copy = new PoloniexTicker();
+        copy.set(currencyPairId, values, changedFields, updates);
+        return copy;
+    }
+
+    public int getCurrencyPairId() {
+        return currencyPairId;
+    }
+
+    public long getLast() {
+        return values[0];
+    }
+
+    public long getLowestAsk() {
+        return values[1];
+    }
+
+    public long getHighestBid() {
+        return values[2];
+    }
+
+    public long getPercentChange() {
+        return values[3];
+    }
+
+    public long getBaseVolume() {
+        return values[4];
+    }
+
+    public long getQuoteVolume() {
+        return values[5];
+    }
+
+    public boolean isFrozen() {
+        return values[6] != 0;
+    }
+
+    public long getHigh24h() {
+        return values[7];
+    }
+
+    public long getLow24h() {
+        return values[8];
+    }
+
+    /**
+     * @return bitmask of the fields changed by the last update, e.g. {@link #LAST}
+     */
+    public int getChangedFields() {
+        return changedFields;
+    }
+
+    public boolean hasChanged(int field) {
+        return (changedFields & field) != 0;
+    }
+
+    /**
+     * @return number of updates of the pair up to this state, {@code 0} if no
+     * ticker was received for it yet
+     */
+    public long getUpdates() {
+        return updates;
+    }
+
+    @Override
+    public String toString() {
+        return "PoloniexTicker{" +
+                "currencyPairId=" + currencyPairId +
+                ", last=" + toBigDecimal(getLast()) +
+                ", lowestAsk=" + toBigDecimal(getLowestAsk()) +
+                ", highestBid=" + toBigDecimal(getHighestBid()) +
+                ", percentChange=" + toBigDecimal(getPercentChange()) +
+                ", baseVolume=" + toBigDecimal(getBaseVolume()) +
+                ", quoteVolume=" + toBigDecimal(getQuoteVolume()) +
+                ", frozen=" + isFrozen() +
+                ", high24h=" + toBigDecimal(getHigh24h()) +
+                ", low24h=" + toBigDecimal(getLow24h()) +
+                ", changedFields=" + Integer.toBinaryString(changedFields) +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PoloniexTicker that = (PoloniexTicker) o;
+        return currencyPairId == that.currencyPairId && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * currencyPairId + Arrays.hashCode(values);
+    }
+}
@@ -0,0 +1,125 @@
+package com.cf.client.poloniex.wss.ticker;
+
+import com.cf.client.wss.handler.ListenerSet;
+import com.cf.util.SeqLockTable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.function.Consumer;
+
+/**
+ * Latest ticker of every currency pair in a {@link SeqLockTable} slot indexed
+ * by the currency pair id, so any thread can read a consistent ticker without
+ * locks while the event loop keeps updating the table from the 1002 channel.
+ * Listeners are called on the event loop for pairs whose fields changed only.
+ */
+public class PoloniexTickerTable {
+    private final static Logger LOG = LogManager.getLogger();
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int CHANGED_FIELDS = PoloniexTicker.FIELDS;
+
+    private final SeqLockTable table;
+    private final ListenerSet<PoloniexTicker> listeners = new ListenerSet<>();
+    private final PoloniexTicker event = new PoloniexTicker();
+
+    public PoloniexTickerTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity currency pair ids must be lower than this
+     */
+    public PoloniexTickerTable(int capacity) {
+        this.table = new SeqLockTable(capacity, PoloniexTicker.FIELDS + 1);
+    }
+
+    public int capacity() {
+        return table.slots();
+    }
+
+    /**
+     * Stores the ticker of the pair; called by the single thread decoding the
+     * ticker channel.
+     *
+     * @param values fields in the order of the ticker message
+     * @return bitmask of the changed fields, {@code 0} if nothing changed
+     */
+    public int update(int currencyPairId, long[] values) {
+        if (currencyPairId < 0 || currencyPairId >= table.slots()) {
+            LOG.warn("Currency pair id {} exceeds ticker table capacity {}", currencyPairId, table.slots());
+            return 0;
+        }
+        int changed = 0;
+        boolean known = table.writes(currencyPairId) > 0;
+        for (int i = 0; i < PoloniexTicker.FIELDS; i++) {
+            if (!known || table.get(currencyPairId, i) != values[i]) {
+                changed |= 1 << i;
+            }
+        }
+        if (changed == 0) {
+            return 0;
+        }
+        table.beginWrite(currencyPairId);
+        for (int i = 0; i < PoloniexTicker.FIELDS; i++) {
+            table.put(currencyPairId, i, values[i]);
+        }
+        table.put(currencyPairId, CHANGED_FIELDS, changed);
+        table.endWrite(currencyPairId);
+
+        if (!listeners.isEmpty()) {
+            event.set(currencyPairId, values, changed, table.writes(currencyPairId));
+            listeners.broadcast(event);
+        }
+        return changed;
+    }
+
+    /**
+     * Copies the latest ticker of the pair; safe from any thread.
+     *
+     * @param values scratch array from {@link #newBuffer()}, reusable between reads
+     * @return {@code false} if no ticker was received for the pair yet or its id
+     * exceeds the capacity
+     */
+    public boolean read(int currencyPairId, PoloniexTicker target, long[] values) {
+        if (currencyPairId < 0 || currencyPairId >= table.slots()) {
+            return false;
+        }
+        long updates = table.read(currencyPairId, values);
+        target.set(currencyPairId, values, (int) values[CHANGED_FIELDS], updates);
+        return updates > 0;
+    }
+
+    /**
+     * Allocating convenience variant of {@link #read(int, PoloniexTicker, long[])}.
+     *
+     * @return latest ticker or {@code null} if none was received for the pair yet
+     */
+    public PoloniexTicker get(int currencyPairId) {
+        PoloniexTicker ticker = new PoloniexTicker();
+        return read(currencyPairId, ticker, newBuffer()) ? ticker : null;
+    }
+
+    /**
+     * @return scratch array for {@link #read(int, PoloniexTicker, long[])}
+     */
+    public long[] newBuffer() {
+        return new long[table.fields()];
+    }
+
+    /**
+     * The listener runs on the event loop and receives a recycled ticker.
+     */
+    public void addListener(Consumer<PoloniexTicker> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<PoloniexTicker> listener) {
+        listeners.remove(listener);
+    }
+
+    public int getListenerCount() {
+        return listeners.size();
+    }
+}
@@ -0,0 +1,26 @@
+package com.cf.client.wss.dispatch;
+
+/**
+ * Where listener callbacks run. Every policy delivers the events of a currency
+ * pair in the order they were received.
+ */
+public enum DispatchPolicy {
+    /**
+     * On the Netty event loop, a slow listener stalls socket reads.
+     */
+    INLINE,
+    /**
+     * On a single threaded executor per currency pair.
+     */
+    ORDERED_EXECUTOR,
+    /**
+     * Through a bounded lock-free ring buffer drained by a dedicated thread per
+     * currency pair. When the ring is full new events are dropped and counted,
+     * the event loop never waits, see {@link RingBufferDispatcher}.
+     */
+    RING_BUFFER,
+    /**
+     * On virtual threads, one pair at a time. Requires JDK 21+.
+     */
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,161 @@
+package com.cf.client.wss.dispatch;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps one dispatcher per currency pair and policy, so that all listeners of
+ * a pair using the same policy observe its events in order. The dispatchers
+ * of a pair, and their threads, live until {@link #close(int)} is called for
+ * it or this is closed.
+ */
+public class Dispatchers implements AutoCloseable {
+    public static final int DEFAULT_RING_BUFFER_CAPACITY = 8192;
+
+    private final Map<Long, IDispatcher> dispatchers = new ConcurrentHashMap<>();
+    private final Map<Integer, CompletableFuture<Void>> draining = new ConcurrentHashMap<>();
+    private final int ringBufferCapacity;
+    private final IntFunction<LongConsumer> queueWaits;
+    private final AtomicLong closedDroppedCount = new AtomicLong();
+
+    public Dispatchers() {
+        this(DEFAULT_RING_BUFFER_CAPACITY);
+    }
+
+    public Dispatchers(int ringBufferCapacity) {
+        this(ringBufferCapacity, currencyPairId -> null);
+    }
+
+    /**
+     * @param queueWaits resolves the recorder of the time events of a currency
+     *                   pair wait in its dispatchers, see {@link DispatchingListener}
+     */
+    public Dispatchers(int ringBufferCapacity, IntFunction<LongConsumer> queueWaits) {
+        this.ringBufferCapacity = ringBufferCapacity;
+        this.queueWaits = queueWaits;
+    }
+
+    /**
+     * @return the listener itself for {@link DispatchPolicy#INLINE}, a
+     * {@link DispatchingListener} otherwise
+     */
+    public <T> Consumer<T> wrap(int currencyPairId, DispatchPolicy policy, Consumer<T> listener, UnaryOperator<T> detach) {
+        if (policy == DispatchPolicy.INLINE) {
+            return listener;
+        }
+        return new DispatchingListener<>(get(currencyPairId, policy), listener, detach, queueWaits.apply(currencyPairId));
+    }
+
+    public IDispatcher get(int currencyPairId, DispatchPolicy policy) {
+        if (policy == DispatchPolicy.INLINE) {
+            return InlineDispatcher.INSTANCE;
+        }
+        return dispatchers.computeIfAbsent(key(currencyPairId, policy), k -> create(currencyPairId, policy));
+    }
+
+    private static long key(int currencyPairId, DispatchPolicy policy) {
+        return ((long) currencyPairId << 8) | policy.ordinal();
+    }
+
+    /**
+     * Closes and forgets the dispatchers of the currency pair, once it has no
+     * dispatched listeners left; tasks already queued still run, then their
+     * threads end.
+     */
+    public void close(int currencyPairId) {
+        List<CompletableFuture<Void>> drained = new ArrayList<>();
+        for (DispatchPolicy policy : DispatchPolicy.values()) {
+            IDispatcher dispatcher = dispatchers.remove(key(currencyPairId, policy));
+            if (dispatcher != null) {
+                dispatcher.close();
+                drained.add(dispatcher.drained().toCompletableFuture());
+                if (dispatcher instanceof RingBufferDispatcher) {
+                    closedDroppedCount.addAndGet(((RingBufferDispatcher) dispatcher).getDroppedCount());
+                }
+            }
+        }
+        if (!drained.isEmpty()) {
+            CompletableFuture<Void> all = CompletableFuture.allOf(drained.toArray(new CompletableFuture[0]));
+            draining.put(currencyPairId, all);
+            all.thenRun(() -> draining.remove(currencyPairId, all));
+        }
+    }
+
+    /**
+     * Runs the task once the dispatchers closed for the currency pair have run
+     * their queued tasks, at once if there are none; so the listeners they
+     * served can be handed to other dispatchers without running on two
+     * threads at a time.
+     */
+    public void whenDrained(int currencyPairId, Runnable task) {
+        CompletableFuture<Void> drained = draining.get(currencyPairId);
+        if (drained == null) {
+            task.run();
+        } else {
+            drained.thenRun(task);
+        }
+    }
+
+    /**
+     * @return number of open dispatchers, each but the virtual thread ones owning a thread
+     */
+    public int size() {
+        return dispatchers.size();
+    }
+
+    /**
+     * @return number of events dropped by full ring buffers so far
+     */
+    public long getDroppedCount() {
+        long dropped = closedDroppedCount.get();
+        for (IDispatcher dispatcher : dispatchers.values()) {
+            if (dispatcher instanceof RingBufferDispatcher) {
+                dropped += ((RingBufferDispatcher) dispatcher).getDroppedCount();
+            }
+        }
+        return dropped;
+    }
+
+    private IDispatcher create(int currencyPairId, DispatchPolicy policy) {
+        String threadName = "poloniex-" + policy.name().toLowerCase() + "-" + currencyPairId;
+        switch (policy) {
+            case ORDERED_EXECUTOR:
+                return new ExecutorDispatcher(threadName);
+            case RING_BUFFER:
+                return new RingBufferDispatcher(threadName, ringBufferCapacity);
+            case VIRTUAL_THREADS:
+                return new SerialDispatcher(newVirtualThreadPerTaskExecutor());
+            default:
+                throw new IllegalArgumentException("Unsupported dispatch policy " + policy);
+        }
+    }
+
+    /**
+     * Looked up reflectively, the library itself is built for Java 8.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        dispatchers.values().forEach(IDispatcher::close);
+        dispatchers.clear();
+    }
+}
@@ -0,0 +1,53 @@
+package com.cf.client.wss.dispatch;
+
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Hands events over to a dispatcher instead of running the listener on the
+ * calling thread.
+ */
+public class DispatchingListener<T> implements Consumer<T> {
+    private final IDispatcher dispatcher;
+    private final Consumer<T> delegate;
+    private final UnaryOperator<T> detach;
+    private final LongConsumer queueWait;
+
+    /**
+     * @param detach turns the event into an instance that may outlive the
+     *               callback (e.g. copies recycled events)
+     */
+    public DispatchingListener(IDispatcher dispatcher, Consumer<T> delegate, UnaryOperator<T> detach) {
+        this(dispatcher, delegate, detach, null);
+    }
+
+    /**
+     * @param queueWait receives the nanoseconds each event waited in the
+     *                  dispatcher, may be {@code null}
+     */
+    public DispatchingListener(IDispatcher dispatcher, Consumer<T> delegate, UnaryOperator<T> detach, LongConsumer queueWait) {
+        this.dispatcher = dispatcher;
+        this.delegate = delegate;
+        this.detach = detach;
+        this.queueWait = queueWait;
+    }
+
+    @Override
+    public void accept(T event) {
+        T detached = detach.apply(event);
+        if (queueWait == null) {
+            dispatcher.execute(() -> delegate.accept(detached));
+            return;
+        }
+        long enqueuedNanos = System.nanoTime();
+        dispatcher.execute(() -> {
+            queueWait.accept(System.nanoTime() - enqueuedNanos);
+            delegate.accept(detached);
+        });
+    }
+
+    public Consumer<T> getDelegate() {
+        return delegate;
+    }
+}
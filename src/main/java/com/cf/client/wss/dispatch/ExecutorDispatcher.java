@@ -0,0 +1,51 @@
+package com.cf.client.wss.dispatch;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs tasks on a dedicated single threaded executor.
+ */
+public class ExecutorDispatcher implements IDispatcher {
+    private final static Logger LOG = LogManager.getLogger();
+
+    private final ExecutorService executor;
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+
+    public ExecutorDispatcher(String threadName) {
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                LOG.warn(e);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!executor.isShutdown()) {
+            executor.execute(() -> drained.complete(null));
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public CompletionStage<Void> drained() {
+        return drained;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cf.client.wss.dispatch;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the listener tasks of one currency pair in submission order.
+ */
+public interface IDispatcher extends Executor, AutoCloseable {
+
+    /**
+     * Stops accepting tasks; tasks already submitted are still run.
+     */
+    @Override
+    void close();
+
+    /**
+     * @return completes once the dispatcher is closed and the tasks submitted
+     * before have run, on the thread that ran the last of them
+     */
+    CompletionStage<Void> drained();
+}
@@ -0,0 +1,28 @@
+package com.cf.client.wss.dispatch;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Runs tasks on the calling thread.
+ */
+public class InlineDispatcher implements IDispatcher {
+    public static final InlineDispatcher INSTANCE = new InlineDispatcher();
+
+    private static final CompletableFuture<Void> DRAINED = CompletableFuture.completedFuture(null);
+
+    @Override
+    public void execute(Runnable task) {
+        task.run();
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    @Override
+    public CompletionStage<Void> drained() {
+        return DRAINED;
+    }
+}
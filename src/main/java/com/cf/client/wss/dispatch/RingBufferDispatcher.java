@@ -0,0 +1,132 @@
+package com.cf.client.wss.dispatch;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single producer / single consumer ring buffer drained by a dedicated
+ * thread. The producer is the Netty event loop of the connection; no locks are
+ * taken on either side.
+ * <p>
+ * The producer never waits: a task submitted while the ring is full is
+ * dropped and counted, see {@link #getDroppedCount()}, so a listener that
+ * cannot keep up loses events instead of stalling the reads of every pair on
+ * the connection or growing an unbounded queue. Size the ring for the bursts
+ * the listener has to absorb.
+ */
+public class RingBufferDispatcher implements IDispatcher {
+    private final static Logger LOG = LogManager.getLogger();
+    private static final int SPINS_BEFORE_PARK = 1000;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Runnable[] ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot to consume
+    private final AtomicLong tail = new AtomicLong(); // next slot to publish
+    private final Thread consumer;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+    private volatile boolean parked;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    public RingBufferDispatcher(String threadName, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.ring = new Runnable[size];
+        this.mask = size - 1;
+        this.consumer = new Thread(this::consume, threadName);
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Queues the task, or drops it if the ring is full.
+     *
+     * @throws RejectedExecutionException if the dispatcher is closed
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (closed) {
+            throw new RejectedExecutionException("Dispatcher is closed");
+        }
+        long slot = tail.get();
+        if (slot - head.get() >= ring.length) {
+            long dropped = droppedCount.incrementAndGet();
+            if (Long.bitCount(dropped) == 1) {
+                LOG.warn("Ring buffer of {} is full, {} tasks dropped so far", consumer.getName(), dropped);
+            }
+            return;
+        }
+        ring[(int) slot & mask] = task;
+        tail.set(slot + 1);
+        if (parked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void consume() {
+        long slot = head.get();
+        int idle = 0;
+        while (!closed || slot < tail.get()) {
+            if (slot < tail.get()) {
+                int index = (int) slot & mask;
+                Runnable task = ring[index];
+                ring[index] = null;
+                head.lazySet(++slot);
+                idle = 0;
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    LOG.warn(e);
+                }
+            } else if (++idle < SPINS_BEFORE_PARK) {
+                Thread.yield();
+            } else {
+                parked = true;
+                if (slot == tail.get() && !closed) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+        drained.complete(null);
+    }
+
+    /**
+     * @return number of tasks waiting in the ring
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * @return number of tasks dropped because the ring was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+    }
+
+    @Override
+    public CompletionStage<Void> drained() {
+        return drained;
+    }
+}
@@ -0,0 +1,74 @@
+package com.cf.client.wss.dispatch;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks one at a time and in submission order on top of an executor that
+ * may run them concurrently (e.g. a thread pool or virtual threads).
+ */
+public class SerialDispatcher implements IDispatcher {
+    private final static Logger LOG = LogManager.getLogger();
+
+    private final ExecutorService executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+    private volatile boolean closed;
+
+    public SerialDispatcher(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (closed) {
+            throw new RejectedExecutionException("Dispatcher is closed");
+        }
+        submit(task);
+    }
+
+    private void submit(Runnable task) {
+        tasks.offer(task);
+        if (pending.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    LOG.warn(e);
+                }
+            }
+            missed = pending.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            submit(() -> drained.complete(null));
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public CompletionStage<Void> drained() {
+        return drained;
+    }
+}
@@ -0,0 +1,15 @@
+package com.cf.client.wss.handler;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Handler that decodes the frame content itself, so the router does not turn
+ * the message into a String first.
+ */
+public interface IFrameMessageHandler extends IMessageHandler {
+
+    /**
+     * @param content frame content; must not be retained or consumed
+     */
+    void handle(ByteBuf content);
+}
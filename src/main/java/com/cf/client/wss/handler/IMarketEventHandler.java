@@ -0,0 +1,35 @@
+package com.cf.client.wss.handler;
+
+/**
+ * Receives market channel messages already decoded into primitives, see
+ * {@link com.cf.client.poloniex.wss.decoder.PoloniexWSSFrameDecoder}. Rates and
+ * amounts are fixed point mantissas, see {@link com.cf.util.FixedPointUtils}.
+ * Messages the decoder does not understand still go through
+ * {@link #handle(String)}.
+ */
+public interface IMarketEventHandler extends IMessageHandler {
+
+    /**
+     * @return {@code false} to skip the rest of the message
+     */
+    boolean onMessageStart(long sequence);
+
+    void onOrderBookUpdate(boolean bid, long rate, long amount);
+
+    void onTrade(long tradeId, boolean buy, long rate, long amount, long epochSecond);
+
+    void onMessageEnd();
+
+    /**
+     * Start of an {@code "i"} order book snapshot, see
+     * {@link com.cf.client.poloniex.wss.decoder.PoloniexSnapshotDecoder}. Its
+     * levels follow, possibly spread over several WebSocket frames.
+     *
+     * @return {@code false} to skip the levels of the snapshot
+     */
+    boolean onSnapshotStart(long sequence);
+
+    void onSnapshotLevel(boolean bid, long rate, long amount);
+
+    void onSnapshotEnd();
+}
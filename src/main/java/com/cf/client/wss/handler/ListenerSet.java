@@ -0,0 +1,103 @@
+package com.cf.client.wss.handler;
+
+import com.cf.client.wss.dispatch.DispatchingListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Copy-on-write set of listeners. Listeners are added and removed rarely
+ * compared to broadcasts, so broadcasting walks a plain array and allocates
+ * nothing (unlike iterating a concurrent set).
+ */
+public class ListenerSet<T> {
+    private final static Logger LOG = LogManager.getLogger();
+
+    @SuppressWarnings("unchecked")
+    private volatile Consumer<T>[] listeners = (Consumer<T>[]) new Consumer<?>[0];
+
+    public synchronized void add(Consumer<T> listener) {
+        if (indexOf(listener) < 0) {
+            Consumer<T>[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+            updated[listeners.length] = listener;
+            listeners = updated;
+        }
+    }
+
+    public synchronized void remove(Consumer<T> listener) {
+        int index = indexOf(listener);
+        if (index >= 0) {
+            Consumer<T>[] updated = Arrays.copyOf(listeners, listeners.length - 1);
+            System.arraycopy(listeners, index + 1, updated, index, listeners.length - index - 1);
+            listeners = updated;
+        }
+    }
+
+    public boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    public int size() {
+        return listeners.length;
+    }
+
+    /**
+     * Passes the event to every listener; a failing listener does not affect the others.
+     */
+    public void broadcast(T event) {
+        for (Consumer<T> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (Exception e) {
+                LOG.warn(e);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if a listener of the given type was added as is,
+     * see {@link #forEach(Class, Consumer)}
+     */
+    public boolean contains(Class<?> type) {
+        for (Consumer<T> listener : listeners) {
+            if (type.isInstance(listener)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the action for every listener of the given type that was added as
+     * is, i.e. is called on the broadcasting thread; dispatched listeners are
+     * left out.
+     */
+    public <L> void forEach(Class<L> type, Consumer<? super L> action) {
+        for (Consumer<T> listener : listeners) {
+            if (type.isInstance(listener)) {
+                try {
+                    action.accept(type.cast(listener));
+                } catch (Exception e) {
+                    LOG.warn(e);
+                }
+            }
+        }
+    }
+
+    private static boolean isDispatching(Consumer<?> registered, Consumer<?> listener) {
+        return registered instanceof DispatchingListener
+                && ((DispatchingListener<?>) registered).getDelegate().equals(listener);
+    }
+
+    private int indexOf(Consumer<T> listener) {
+        Consumer<T>[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(listener) || isDispatching(current[i], listener)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
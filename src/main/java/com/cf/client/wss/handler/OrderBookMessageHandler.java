@@ -1,38 +1,103 @@
 package com.cf.client.wss.handler;
 
+import com.cf.client.poloniex.wss.bar.BarAggregator;
+import com.cf.client.poloniex.wss.book.PoloniexBookSignal;
+import com.cf.client.poloniex.wss.book.PoloniexBookSignals;
+import com.cf.client.poloniex.wss.book.PoloniexLiveOrderBook;
+import com.cf.client.poloniex.wss.model.PoloniexMarketBatch;
 import com.cf.client.poloniex.wss.model.PoloniexOrderBookEntry;
+import com.cf.client.poloniex.wss.model.PoloniexOrderBookEvent;
 import com.cf.client.poloniex.wss.model.PoloniexTradeEntry;
+import com.cf.client.poloniex.wss.model.PoloniexTradeEvent;
+import com.cf.client.wss.latency.ChannelLatency;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.math.BigDecimal;
-import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
+import static com.cf.util.FixedPointUtils.parse;
 import static com.cf.util.JsonUtils.GSON;
-import static java.time.Instant.ofEpochSecond;
-import static java.time.ZonedDateTime.ofInstant;
 
 /**
  * @author Vitalii Sereda
  */
-public class OrderBookMessageHandler implements IMessageHandler {
+public class OrderBookMessageHandler implements IMarketEventHandler {
     private final static Logger LOG = LogManager.getLogger();
-    private static final ZoneOffset ZONE_OFFSET = ZoneOffset.UTC;
-    private final Set<Consumer<PoloniexTradeEntry>> tradeListeners = ConcurrentHashMap.newKeySet();
-    private final Set<Consumer<PoloniexOrderBookEntry>> orderBookListeners = ConcurrentHashMap.newKeySet();
+
+    public static final long DEFAULT_RESYNC_TIMEOUT_MILLIS = 10000;
+    private final ListenerSet<PoloniexTradeEntry> tradeListeners = new ListenerSet<>();
+    private final ListenerSet<PoloniexOrderBookEntry> orderBookListeners = new ListenerSet<>();
+    private final ListenerSet<PoloniexTradeEvent> tradeEventListeners = new ListenerSet<>();
+    private final ListenerSet<PoloniexOrderBookEvent> orderBookEventListeners = new ListenerSet<>();
+    private final ListenerSet<PoloniexLiveOrderBook> liveOrderBookListeners = new ListenerSet<>();
+    private final ListenerSet<PoloniexMarketBatch> batchListeners = new ListenerSet<>();
+    private final ListenerSet<PoloniexBookSignal> signalListeners = new ListenerSet<>();
+    private final PoloniexLiveOrderBook liveOrderBook;
+    private volatile boolean liveOrderBookEnabled;
+    private volatile PoloniexBookSignals signals;
+
+    private final IntConsumer resyncRequest;
+    private final AtomicBoolean resyncPending = new AtomicBoolean();
+    private volatile long resyncDeadline;
+    private volatile long resyncTimeoutMillis = DEFAULT_RESYNC_TIMEOUT_MILLIS;
+    private final AtomicLong gapCount = new AtomicLong();
+    private final AtomicLong resyncCount = new AtomicLong();
+    private volatile long lastSequence = -1;
+    private volatile boolean stale;
+    private long messageCount;
+
+    private final PoloniexTradeEvent reusableTradeEvent;
+    private final PoloniexOrderBookEvent reusableOrderBookEvent;
+    private final PoloniexBookSignal reusableSignal;
+    private final PoloniexMarketBatch batch;
+    private volatile boolean reuseEvents;
+    private volatile ChannelLatency latency;
+
+    // state of the message being handled, touched by the event loop only
+    private boolean hasTradeListeners;
+    private boolean hasOrderBookListeners;
+    private boolean hasBatchListeners;
+    private boolean maintainOrderBook;
+    private boolean orderBookChanged;
+    private ChannelLatency messageLatency;
+
+    public OrderBookMessageHandler(int currencyPairId) {
+        this(currencyPairId, id -> {
+        });
+    }
+
+    /**
+     * @param resyncRequest invoked with the currency pair id when the live order
+     *                      book lost track of the channel and needs a fresh snapshot
+     */
+    public OrderBookMessageHandler(int currencyPairId, IntConsumer resyncRequest) {
+        this.liveOrderBook = new PoloniexLiveOrderBook(currencyPairId);
+        this.resyncRequest = resyncRequest;
+        this.reusableTradeEvent = new PoloniexTradeEvent(currencyPairId, 0, false, 0, 0, 0);
+        this.reusableOrderBookEvent = new PoloniexOrderBookEvent(currencyPairId, false, 0, 0);
+        this.reusableSignal = new PoloniexBookSignal(currencyPairId);
+        this.batch = new PoloniexMarketBatch(currencyPairId);
+    }
 
     @SuppressWarnings("unchecked")
     @Override
     public void handle(String message) {
-        boolean hasTradeListeners = !tradeListeners.isEmpty();
-        boolean hasOrderBookListeners = !orderBookListeners.isEmpty();
-        if ((hasTradeListeners && message.contains("\"t\"")) //has trade events
-                || (hasOrderBookListeners && (message.contains("\"o\"") || message.contains("\"i\"")))) { //hale order book events
+        int endOfSequence = endOfSequence(message);
+        long sequence = parseSequence(message, endOfSequence);
+        boolean snapshot = endOfSequence > 0 && message.startsWith("[[\"i\"", endOfSequence + 1);
+        if (!startMessage(sequence, snapshot)) {
+            return;
+        }
+
+        if (((hasTradeListeners || hasBatchListeners) && message.contains("\"t\"")) //has trade events
+                || ((hasOrderBookListeners || hasBatchListeners || maintainOrderBook) && (message.contains("\"o\"") || message.contains("\"i\"")))) { //hale order book events
 
             List<?> event = toList(message);
 
@@ -40,45 +105,289 @@ public class OrderBookMessageHandler implements IMessageHandler {
                 return;
             }
 
-            Double sequence = (Double) event.get(1);
             List<List> dataList = (List<List>) event.get(2);
             for (List<?> data : dataList) {
-                if (hasTradeListeners && Objects.equals("t", data.get(0))) {
-                    PoloniexTradeEntry tradeEntry = toTradeEntry(data);
-                    broadcastSafety(tradeListeners, tradeEntry);
-                } else if (hasOrderBookListeners && Objects.equals("o", data.get(0))) {
-                    PoloniexOrderBookEntry orderBookEntry = toOrderBookEntry(data);
-                    broadcastSafety(orderBookListeners, orderBookEntry);
+                if (Objects.equals("t", data.get(0))) {
+                    onTrade(
+                            Long.parseLong((String) data.get(1)),
+                            !Objects.equals(0.0, data.get(2)),
+                            parse((String) data.get(3)),
+                            parse((String) data.get(4)),
+                            ((Double) data.get(5)).longValue());
+                } else if (Objects.equals("o", data.get(0))) {
+                    onOrderBookUpdate(
+                            !Objects.equals(0.0, data.get(1)),
+                            parse((String) data.get(2)),
+                            parse((String) data.get(3)));
+                } else if ((maintainOrderBook || hasBatchListeners) && Objects.equals("i", data.get(0))) {
+                    seedOrderBook((Map<String, ?>) data.get(1));
                 }
             }
+            onMessageEnd();
+        }
+    }
+
+    @Override
+    public boolean onMessageStart(long sequence) {
+        return startMessage(sequence, false);
+    }
+
+    @Override
+    public void onOrderBookUpdate(boolean bid, long rate, long amount) {
+        if (maintainOrderBook && liveOrderBook.isSeeded()) {
+            liveOrderBook.update(bid, rate, amount);
+            orderBookChanged = true;
+        }
+        if (hasBatchListeners) {
+            batch.addUpdate(bid, rate, amount);
+        }
+        if (hasOrderBookListeners) {
+            PoloniexOrderBookEvent event = reuseEvents
+                    ? reusableOrderBookEvent.set(bid, rate, amount)
+                    : new PoloniexOrderBookEvent(liveOrderBook.getCurrencyPairId(), bid, rate, amount);
+            broadcast(orderBookEventListeners, event);
+            if (!orderBookListeners.isEmpty()) {
+                broadcast(orderBookListeners, event.toOrderBookEntry());
+            }
+        }
+    }
+
+    @Override
+    public void onTrade(long tradeId, boolean buy, long rate, long amount, long epochSecond) {
+        if (messageLatency != null) {
+            messageLatency.recordExchangeLag(epochSecond);
+        }
+        if (hasBatchListeners) {
+            batch.addTrade(tradeId, buy, rate, amount, epochSecond);
+        }
+        if (hasTradeListeners) {
+            PoloniexTradeEvent event = reuseEvents
+                    ? reusableTradeEvent.set(tradeId, buy, rate, amount, epochSecond)
+                    : new PoloniexTradeEvent(liveOrderBook.getCurrencyPairId(), tradeId, buy, rate, amount, epochSecond);
+            broadcast(tradeEventListeners, event);
+            if (!tradeListeners.isEmpty()) {
+                broadcast(tradeListeners, event.toTradeEntry());
+            }
         }
     }
 
-    private <T> void broadcastSafety(Set<Consumer<T>> orderBookListeners, T entry) {
-        for (Consumer<T> consumer : orderBookListeners) {
-            try {
-                consumer.accept(entry);
-            } catch (Exception e) {
-                LOG.warn(e);
+    @Override
+    public void onMessageEnd() {
+        if (hasBatchListeners && (!batch.isEmpty() || batch.isSnapshot())) {
+            broadcast(batchListeners, batch);
+        }
+        if (orderBookChanged) {
+            orderBookChanged = false;
+            broadcast(liveOrderBookListeners, liveOrderBook);
+            PoloniexBookSignals signals = liveOrderBook.getSignals();
+            if (signals != null && !signalListeners.isEmpty()) {
+                PoloniexBookSignal signal = reuseEvents ? reusableSignal : new PoloniexBookSignal(liveOrderBook.getCurrencyPairId());
+                signals.read(signal);
+                broadcast(signalListeners, signal);
             }
         }
     }
 
-    private PoloniexTradeEntry toTradeEntry(List<?> data) {
-        return new PoloniexTradeEntry(
-                (String) data.get(1),
-                Objects.equals(0.0, data.get(2)) ? "sell" : "buy",
-                new BigDecimal((String) data.get(3)),
-                new BigDecimal((String) data.get(4)),
-                ofInstant(ofEpochSecond(((Double) data.get(5)).longValue()), ZONE_OFFSET));
+    /**
+     * Adds the time spent in the listeners to the listener latency of the message.
+     */
+    private <T> void broadcast(ListenerSet<T> listeners, T event) {
+        ChannelLatency latency = messageLatency;
+        if (latency == null) {
+            listeners.broadcast(event);
+            return;
+        }
+        long start = System.nanoTime();
+        listeners.broadcast(event);
+        latency.addListenerNanos(System.nanoTime() - start);
+    }
+
+    @Override
+    public boolean onSnapshotStart(long sequence) {
+        if (!startMessage(sequence, true) || !maintainOrderBook && !hasBatchListeners) {
+            return false;
+        }
+        if (maintainOrderBook) {
+            liveOrderBook.reset();
+        }
+        return true;
+    }
+
+    @Override
+    public void onSnapshotLevel(boolean bid, long rate, long amount) {
+        if (maintainOrderBook) {
+            liveOrderBook.load(bid, rate, amount);
+        }
+        if (hasBatchListeners) {
+            batch.addUpdate(bid, rate, amount);
+        }
+    }
+
+    @Override
+    public void onSnapshotEnd() {
+        if (maintainOrderBook) {
+            finishSnapshot();
+        }
+        onMessageEnd();
+    }
+
+    private boolean startMessage(long sequence, boolean snapshot) {
+        messageCount++;
+        if (!trackSequence(sequence, snapshot)) {
+            return false;
+        }
+        if (stale && !snapshot) {
+            retryOverdueResync();
+        }
+        hasTradeListeners = !tradeListeners.isEmpty() || !tradeEventListeners.isEmpty();
+        hasOrderBookListeners = !orderBookListeners.isEmpty() || !orderBookEventListeners.isEmpty();
+        hasBatchListeners = !batchListeners.isEmpty();
+        if (hasBatchListeners) {
+            batch.begin(sequence, System.nanoTime(), snapshot);
+        }
+        maintainOrderBook = liveOrderBookEnabled;
+        if (!hasTradeListeners && !hasOrderBookListeners && !hasBatchListeners && !maintainOrderBook) {
+            return false; //nobody listens, e.g. while the channel lingers before it is unsubscribed
+        }
+        orderBookChanged = false;
+        PoloniexBookSignals signals = this.signals;
+        if (maintainOrderBook && liveOrderBook.getSignals() != signals) {
+            liveOrderBook.setSignals(signals);
+        }
+        messageLatency = latency;
+        return true;
+    }
+
+    /**
+     * Every message of a market channel carries a sequence number that grows
+     * by one, the {@code "i"} snapshot starts a new sequence.
+     *
+     * @return {@code false} if the message is out of date and must be dropped
+     */
+    private boolean trackSequence(long sequence, boolean snapshot) {
+        if (sequence < 0) {
+            return true;
+        }
+        if (snapshot) {
+            lastSequence = sequence;
+            return true;
+        }
+
+        long last = lastSequence;
+        if (last >= 0) {
+            if (sequence <= last) {
+                LOG.debug("Dropping out of date message {} on channel {}, last sequence {}", sequence, liveOrderBook.getCurrencyPairId(), last);
+                return false;
+            }
+            if (sequence != last + 1) {
+                onSequenceGap(last, sequence);
+            }
+        }
+        lastSequence = sequence;
+        return true;
+    }
+
+    /**
+     * [121,252507198,[["o",0,"6357.13463942","0.00000000"],...]]
+     *
+     * @return index of the comma after the sequence number or {@code -1}
+     */
+    private static int endOfSequence(String message) {
+        int start = message.indexOf(',') + 1;
+        return start > 0 ? message.indexOf(',', start) : -1;
+    }
+
+    private static long parseSequence(String message, int endOfSequence) {
+        if (endOfSequence < 0) {
+            return -1;
+        }
+        long sequence = 0;
+        for (int i = message.indexOf(',') + 1; i < endOfSequence; i++) {
+            char c = message.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1; //e.g. null sequence of the ticker channel
+            }
+            sequence = sequence * 10 + (c - '0');
+        }
+        return sequence;
+    }
+
+    private void onSequenceGap(long last, long sequence) {
+        gapCount.incrementAndGet();
+        LOG.warn("Sequence gap on channel {}: expected {}, received {}", liveOrderBook.getCurrencyPairId(), last + 1, sequence);
+        if (liveOrderBookEnabled) {
+            invalidateOrderBook();
+            requestResync();
+        }
+    }
+
+    /**
+     * Drops the levels of the live order book and hands the empty, unseeded
+     * book to its listeners, so that nobody keeps serving the levels from
+     * before as current.
+     */
+    private void invalidateOrderBook() {
+        stale = true;
+        liveOrderBook.reset();
+        liveOrderBookListeners.broadcast(liveOrderBook);
+    }
+
+    private void requestResync() {
+        if (resyncPending.compareAndSet(false, true)) {
+            sendResync();
+        }
+    }
+
+    /**
+     * Requests the snapshot again if the one requested before did not arrive
+     * within the resync timeout, e.g. because the command got lost.
+     */
+    private void retryOverdueResync() {
+        if (resyncPending.get() && System.nanoTime() - resyncDeadline >= 0) {
+            LOG.warn("No snapshot on channel {} within {} ms, requesting it again", liveOrderBook.getCurrencyPairId(), resyncTimeoutMillis);
+            sendResync();
+        }
     }
 
-    private PoloniexOrderBookEntry toOrderBookEntry(List<?> data) {
-        return new PoloniexOrderBookEntry(
-                Objects.equals(0.0, data.get(1)) ? "sell" : "buy",
-                new BigDecimal((String) data.get(2)),
-                new BigDecimal((String) data.get(3))
-        );
+    private void sendResync() {
+        resyncDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(resyncTimeoutMillis);
+        resyncCount.incrementAndGet();
+        resyncRequest.accept(liveOrderBook.getCurrencyPairId());
+    }
+
+    /**
+     * {"currencyPair":"USDT_BTC","orderBook":[{"6361.88463940":"0.60000000",...},{"6357.13463942":"0.20000000",...}]}
+     * The first map holds the asks, the second one the bids.
+     */
+    @SuppressWarnings("unchecked")
+    private void seedOrderBook(Map<String, ?> snapshot) {
+        List<Map<String, String>> sides = (List<Map<String, String>>) snapshot.get("orderBook");
+        if (maintainOrderBook) {
+            liveOrderBook.reset();
+        }
+        for (int i = 0; i < sides.size() && i < 2; i++) {
+            boolean bid = i == 1;
+            for (Map.Entry<String, String> level : sides.get(i).entrySet()) {
+                long rate = parse(level.getKey());
+                long amount = parse(level.getValue());
+                if (maintainOrderBook) {
+                    liveOrderBook.load(bid, rate, amount);
+                }
+                if (hasBatchListeners) {
+                    batch.addUpdate(bid, rate, amount);
+                }
+            }
+        }
+        if (maintainOrderBook) {
+            finishSnapshot();
+        }
+    }
+
+    private void finishSnapshot() {
+        liveOrderBook.markSeeded();
+        stale = false;
+        resyncPending.set(false);
+        orderBookChanged = true;
     }
 
     private static List<?> toList(String message) {
@@ -104,4 +413,212 @@ public class OrderBookMessageHandler implements IMessageHandler {
     public void removeTradeListener(Consumer<PoloniexTradeEntry> listener) {
         tradeListeners.remove(listener);
     }
+
+    public void addTradeEventListener(Consumer<PoloniexTradeEvent> listener) {
+        tradeEventListeners.add(listener);
+    }
+
+    public void removeTradeEventListener(Consumer<PoloniexTradeEvent> listener) {
+        tradeEventListeners.remove(listener);
+    }
+
+    public void addOrderBookEventListener(Consumer<PoloniexOrderBookEvent> listener) {
+        orderBookEventListeners.add(listener);
+    }
+
+    public void removeOrderBookEventListener(Consumer<PoloniexOrderBookEvent> listener) {
+        orderBookEventListeners.remove(listener);
+    }
+
+    /**
+     * When enabled, primitive event listeners receive the same mutable
+     * {@link PoloniexTradeEvent}/{@link PoloniexOrderBookEvent} instance for
+     * every update, so that steady state processing allocates nothing. The
+     * event is only valid for the duration of the callback; listeners that
+     * retain it must take a {@code copy()}.
+     */
+    public void setReuseEvents(boolean reuseEvents) {
+        this.reuseEvents = reuseEvents;
+    }
+
+    public boolean isReuseEvents() {
+        return reuseEvents;
+    }
+
+    /**
+     * The listener receives all updates and trades of a message at once, after
+     * they were applied to the live order book, and every snapshot as a batch
+     * that replaces the book. The batch is recycled, see
+     * {@link PoloniexMarketBatch}.
+     */
+    public void addBatchListener(Consumer<PoloniexMarketBatch> listener) {
+        batchListeners.add(listener);
+    }
+
+    public void removeBatchListener(Consumer<PoloniexMarketBatch> listener) {
+        batchListeners.remove(listener);
+    }
+
+    /**
+     * Moves the watermark of the {@link BarAggregator}s among the inline
+     * trade event listeners on, so that their bars close without trades.
+     * Must run on the thread that delivers the trades.
+     */
+    public void advanceBars(long epochSecond) {
+        tradeEventListeners.forEach(BarAggregator.class, aggregator -> aggregator.advanceTo(epochSecond));
+    }
+
+    /**
+     * @return {@code true} if {@link #advanceBars(long)} has any aggregator to move on
+     */
+    public boolean hasBarAggregators() {
+        return tradeEventListeners.contains(BarAggregator.class);
+    }
+
+    /**
+     * Records listener time and trade lag into the given histograms, {@code null}
+     * stops recording. The decode time is recorded by the caller, see
+     * {@link ChannelLatency#endMessage(long)}.
+     */
+    public void setLatency(ChannelLatency latency) {
+        this.latency = latency;
+    }
+
+    public ChannelLatency getLatency() {
+        return latency;
+    }
+
+    /**
+     * The listener receives the book after every message that changed it, and
+     * the empty, unseeded book whenever it is reset after a gap, a decode
+     * error or a lost connection.
+     */
+    public void addLiveOrderBookListener(Consumer<PoloniexLiveOrderBook> listener) {
+        enableLiveOrderBook();
+        liveOrderBookListeners.add(listener);
+    }
+
+    public void removeLiveOrderBookListener(Consumer<PoloniexLiveOrderBook> listener) {
+        liveOrderBookListeners.remove(listener);
+    }
+
+    /**
+     * Maintains the live order book with the given signals attached, replacing
+     * the signals enabled before. The event loop attaches them at the start of
+     * the next message.
+     */
+    public PoloniexBookSignals enableSignals(int depthLevels, double spreadEwmaAlpha) {
+        PoloniexBookSignals signals = new PoloniexBookSignals(depthLevels, spreadEwmaAlpha);
+        this.signals = signals;
+        enableLiveOrderBook();
+        return signals;
+    }
+
+    /**
+     * The listener receives the signals of the pair after every message that
+     * changed the book; signals with the default settings are enabled unless
+     * {@link #enableSignals(int, double)} was called before. The record is
+     * recycled if event reuse is enabled, see {@link PoloniexBookSignal}.
+     */
+    public void addSignalListener(Consumer<PoloniexBookSignal> listener) {
+        if (signals == null) {
+            enableSignals(PoloniexBookSignals.DEFAULT_DEPTH_LEVELS, PoloniexBookSignals.DEFAULT_SPREAD_EWMA_ALPHA);
+        }
+        signalListeners.add(listener);
+    }
+
+    public void removeSignalListener(Consumer<PoloniexBookSignal> listener) {
+        signalListeners.remove(listener);
+    }
+
+    /**
+     * @return number of listeners of all kinds registered with this handler
+     */
+    public int getListenerCount() {
+        return tradeListeners.size() + orderBookListeners.size() + tradeEventListeners.size()
+                + orderBookEventListeners.size() + liveOrderBookListeners.size() + batchListeners.size()
+                + signalListeners.size();
+    }
+
+    /**
+     * Starts maintaining the live order book. The book is seeded by the next
+     * {@code "i"} snapshot received on this channel.
+     */
+    public PoloniexLiveOrderBook enableLiveOrderBook() {
+        boolean wasEnabled = liveOrderBookEnabled;
+        liveOrderBookEnabled = true;
+        if (!wasEnabled && lastSequence >= 0) { //snapshot of this channel already passed by
+            stale = true;
+            requestResync();
+        }
+        return liveOrderBook;
+    }
+
+    /**
+     * A message of the channel could not be decoded, possibly after part of
+     * it was applied: like after a gap, the live order book waits for a fresh
+     * snapshot.
+     */
+    public void onDecodeError() {
+        if (liveOrderBookEnabled) {
+            invalidateOrderBook();
+            requestResync();
+        }
+    }
+
+    /**
+     * The connection went down: the sequence starts over and the live order
+     * book waits for the snapshot sent after resubscribing.
+     */
+    public void onConnectionLost() {
+        lastSequence = -1;
+        resyncPending.set(false); //superseded by the snapshot after resubscribing
+        if (liveOrderBookEnabled) {
+            invalidateOrderBook();
+        }
+    }
+
+    public PoloniexLiveOrderBook getLiveOrderBook() {
+        return liveOrderBook;
+    }
+
+    /**
+     * @return {@code true} while the live order book waits for a fresh snapshot
+     * after a sequence gap
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * @param resyncTimeoutMillis how long a requested snapshot may take before
+     *                            the next message of the channel requests it again
+     */
+    public void setResyncTimeoutMillis(long resyncTimeoutMillis) {
+        this.resyncTimeoutMillis = resyncTimeoutMillis;
+    }
+
+    public long getResyncTimeoutMillis() {
+        return resyncTimeoutMillis;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return number of messages received on the channel; written by the event
+     * loop only, so the value read from other threads may lag slightly
+     */
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public long getGapCount() {
+        return gapCount.get();
+    }
+
+    public long getResyncCount() {
+        return resyncCount.get();
+    }
 }
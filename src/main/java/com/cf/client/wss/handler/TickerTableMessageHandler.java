@@ -0,0 +1,55 @@
+package com.cf.client.wss.handler;
+
+import com.cf.client.poloniex.wss.decoder.PoloniexWSSFrameDecoder;
+import com.cf.client.poloniex.wss.ticker.PoloniexTickerTable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+/**
+ * Decodes the ticker channel (1002) straight from the frame into a
+ * {@link PoloniexTickerTable}, without the BigDecimals of
+ * {@link TickerMessageHandler}.
+ */
+public class TickerTableMessageHandler implements IFrameMessageHandler {
+    private final PoloniexTickerTable table;
+    private final PoloniexWSSFrameDecoder decoder = new PoloniexWSSFrameDecoder();
+    private final long[] values = new long[PoloniexWSSFrameDecoder.TICKER_FIELDS];
+    private volatile boolean pinned;
+
+    public TickerTableMessageHandler(PoloniexTickerTable table) {
+        this.table = table;
+    }
+
+    public PoloniexTickerTable getTable() {
+        return table;
+    }
+
+    /**
+     * Keeps the channel subscribed for readers of the table that do not
+     * register listeners.
+     */
+    public void setPinned(boolean pinned) {
+        this.pinned = pinned;
+    }
+
+    /**
+     * @return table listeners plus one while the table is pinned
+     */
+    public int getListenerCount() {
+        return table.getListenerCount() + (pinned ? 1 : 0);
+    }
+
+    @Override
+    public void handle(ByteBuf content) {
+        int currencyPairId = decoder.decodeTicker(content, values);
+        if (currencyPairId >= 0) {
+            table.update(currencyPairId, values);
+        }
+    }
+
+    @Override
+    public void handle(String message) {
+        handle(Unpooled.wrappedBuffer(message.getBytes(CharsetUtil.UTF_8)));
+    }
+}
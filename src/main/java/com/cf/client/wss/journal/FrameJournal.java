@@ -0,0 +1,284 @@
+package com.cf.client.wss.journal;
+
+import io.netty.buffer.ByteBuf;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Appends raw WSS frames to rolling, memory-mapped journal files, for
+ * post-mortems and research. Appending copies the frame bytes into the mapped
+ * file and nothing else: no String, no allocation and no system call per
+ * frame. The next file is created and mapped ahead on a background thread,
+ * which also writes a finished file back to disk, so rolling over to it costs
+ * the appending thread only the file header. Frames are durable once the OS
+ * writes the pages back, or on {@link #flush()} and {@link #close()}. A file
+ * mapped ahead but never started is deleted on close; readers skip it if it
+ * is left behind.
+ * <p>
+ * Files are named {@code <name>-<index>.journal} with an eight digit index
+ * counting up from 0; a new journal continues after the highest existing
+ * index. All numbers are little endian. Each file has the fixed size given on
+ * construction and starts with a {@value #FILE_HEADER_BYTES} byte header:
+ * <pre>
+ * offset  size  field
+ *      0     4  magic, {@value #MAGIC} ("PWJ1" when read as bytes)
+ *      4     4  version, {@value #VERSION}
+ *      8     8  epoch milliseconds when the file was started
+ *     16     8  nanoTime when the file was started, to relate record times to wall clock time
+ *     24     8  file size
+ * </pre>
+ * followed by records aligned to 8 bytes:
+ * <pre>
+ * offset  size  field
+ *      0     4  payload length in bytes; 0 ends the written part of the file,
+ *               {@value #END_OF_FILE} means the next record is in the next file
+ *      4     4  flags, {@link #FIRST} and {@link #FINAL}
+ *      8     4  channel id of the message, {@value #UNKNOWN_CHANNEL} for
+ *               messages without one
+ *     12     4  stream id, the connection the frame arrived on
+ *     16     8  {@link System#nanoTime()} when the frame arrived
+ *     24     n  frame payload (UTF-8 JSON), padded with zeros to 8 bytes
+ * </pre>
+ * The length is written last, so a reader tailing a journal being written stops
+ * at the first record not written completely (on platforms that keep the order
+ * of stores to a mapped file, such as x86). See {@link FrameJournalReader}.
+ * <p>
+ * Appending is thread-safe, so one journal can record all connections of a
+ * {@link com.cf.client.WSSClientPool}. The frames of a fragmented message are
+ * only consecutive within their stream, readers reassemble messages by stream
+ * id, see {@link FrameReplay}.
+ */
+public class FrameJournal implements AutoCloseable {
+    private final static Logger LOG = LogManager.getLogger();
+
+    public static final int MAGIC = 0x314A5750;
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_BYTES = 32;
+    public static final int RECORD_HEADER_BYTES = 24;
+    public static final int END_OF_FILE = -1;
+    public static final int UNKNOWN_CHANNEL = -1;
+    public static final int DEFAULT_FILE_SIZE = 64 << 20;
+    static final String SUFFIX = ".journal";
+
+    /**
+     * Text frame starting a message, unset for continuation frames.
+     */
+    public static final int FIRST = 1;
+    /**
+     * Last frame of a message.
+     */
+    public static final int FINAL = 1 << 1;
+
+    private final Path directory;
+    private final String name;
+    private final int fileSize;
+
+    private final ExecutorService roller;
+    private MappedByteBuffer file;
+    private Future<MappedByteBuffer> next;
+    private int fileIndex;
+    private int position;
+    private boolean closed;
+
+    private long frameCount;
+    private long byteCount;
+    private long droppedCount;
+
+    public FrameJournal(Path directory, String name) throws IOException {
+        this(directory, name, DEFAULT_FILE_SIZE);
+    }
+
+    public FrameJournal(Path directory, String name, int fileSize) throws IOException {
+        if (fileSize < FILE_HEADER_BYTES + RECORD_HEADER_BYTES + 8) {
+            throw new IllegalArgumentException("File size too small: " + fileSize);
+        }
+        this.directory = directory;
+        this.name = name;
+        this.fileSize = fileSize & ~7;
+        Files.createDirectories(directory);
+        List<Path> existing = FrameJournalReader.files(directory, name);
+        this.fileIndex = existing.isEmpty() ? 0 : FrameJournalReader.indexOf(existing.get(existing.size() - 1), name) + 1;
+        this.roller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.file = map(fileIndex);
+        startFile();
+    }
+
+    /**
+     * Appends the readable bytes of the frame without changing its reader index.
+     * Empty frames carry nothing and are skipped.
+     *
+     * @param flags    {@link #FIRST} and/or {@link #FINAL}
+     * @param streamId distinguishes the connections recorded into one journal
+     * @return {@code false} if the frame was dropped, because the journal is
+     * closed or failed or the frame is larger than a file
+     */
+    public synchronized boolean append(int channelId, int streamId, int flags, long receivedNanos, ByteBuf content) {
+        int length = content.readableBytes();
+        if (length == 0) {
+            return true;
+        }
+        int recordBytes = align(RECORD_HEADER_BYTES + length);
+        if (closed || recordBytes > fileSize - FILE_HEADER_BYTES) {
+            droppedCount++;
+            return false;
+        }
+        if (position + recordBytes > fileSize) {
+            if (position + Integer.BYTES <= fileSize) {
+                file.putInt(position, END_OF_FILE);
+            }
+            if (!roll()) {
+                droppedCount++;
+                return false;
+            }
+        }
+        file.putInt(position + 4, flags);
+        file.putInt(position + 8, channelId);
+        file.putInt(position + 12, streamId);
+        file.putLong(position + 16, receivedNanos);
+        int payload = position + RECORD_HEADER_BYTES;
+        ((Buffer) file).limit(payload + length).position(payload); //MappedByteBuffer overrides these from Java 13 on
+        content.getBytes(content.readerIndex(), file);
+        ((Buffer) file).limit(fileSize);
+        for (int i = payload + length; i < position + recordBytes; i++) {
+            file.put(i, (byte) 0);
+        }
+        file.putInt(position, length);
+        position += recordBytes;
+        frameCount++;
+        byteCount += length;
+        return true;
+    }
+
+    /**
+     * Continues in the file mapped ahead and hands the finished one to the
+     * background thread; waits only if the next file is not mapped yet.
+     *
+     * @return {@code false} if the journal failed and was closed
+     */
+    private boolean roll() {
+        MappedByteBuffer finished = file;
+        try {
+            file = next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while rolling journal {}, dropping further frames", name);
+            return fail(finished);
+        } catch (ExecutionException e) {
+            LOG.error("Could not roll journal {}, dropping further frames", name, e.getCause());
+            return fail(finished);
+        }
+        fileIndex++;
+        startFile();
+        roller.execute(finished::force);
+        return true;
+    }
+
+    private boolean fail(MappedByteBuffer finished) {
+        file = finished;
+        next = null;
+        close();
+        return false;
+    }
+
+    private MappedByteBuffer map(int index) throws IOException {
+        Path path = directory.resolve(fileName(name, index));
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        LOG.debug("Journal {} mapped {}", name, path);
+        return mapped;
+    }
+
+    /**
+     * Writes the header of the current file and maps the one after it in the background.
+     */
+    private void startFile() {
+        file.putInt(4, VERSION);
+        file.putLong(8, System.currentTimeMillis());
+        file.putLong(16, System.nanoTime());
+        file.putLong(24, fileSize);
+        file.putInt(0, MAGIC);
+        position = FILE_HEADER_BYTES;
+        int nextIndex = fileIndex + 1;
+        next = roller.submit(() -> map(nextIndex));
+    }
+
+    static String fileName(String name, int index) {
+        return String.format("%s-%08d%s", name, index, SUFFIX);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    /**
+     * Writes the mapped pages of the current file back to disk.
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            file.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        file.force();
+        if (next != null) {
+            try {
+                next.get();
+                Files.deleteIfExists(directory.resolve(fileName(name, fileIndex + 1)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | IOException e) {
+                LOG.debug("Journal {} could not drop the file mapped ahead", name, e);
+            }
+        }
+        roller.shutdown();
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return payload bytes written, without headers and padding
+     */
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return index of the file being written
+     */
+    public synchronized int getFileIndex() {
+        return fileIndex;
+    }
+}
@@ -0,0 +1,174 @@
+package com.cf.client.wss.journal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.cf.client.wss.journal.FrameJournal.END_OF_FILE;
+import static com.cf.client.wss.journal.FrameJournal.FILE_HEADER_BYTES;
+import static com.cf.client.wss.journal.FrameJournal.FINAL;
+import static com.cf.client.wss.journal.FrameJournal.FIRST;
+import static com.cf.client.wss.journal.FrameJournal.MAGIC;
+import static com.cf.client.wss.journal.FrameJournal.RECORD_HEADER_BYTES;
+import static com.cf.client.wss.journal.FrameJournal.SUFFIX;
+import static com.cf.client.wss.journal.FrameJournal.VERSION;
+
+/**
+ * Cursor over the frames of a journal written by {@link FrameJournal}, file
+ * after file. The payload is a view of the mapped file that is reused for
+ * every record, it is only valid until the next call of {@link #next()}.
+ */
+public class FrameJournalReader implements AutoCloseable {
+    private final List<Path> files;
+    private int fileIndex = -1;
+    private MappedByteBuffer file;
+    private ByteBuf view;
+    private int position;
+
+    private int flags;
+    private int channelId;
+    private int streamId;
+    private long receivedNanos;
+    private long fileStartEpochMillis;
+    private long fileStartNanos;
+
+    public FrameJournalReader(Path directory, String name) throws IOException {
+        this.files = files(directory, name);
+    }
+
+    /**
+     * @return the files of the journal in the order they were written
+     */
+    static List<Path> files(Path directory, String name) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, name + "-????????" + SUFFIX)) {
+                stream.forEach(files::add);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    static int indexOf(Path file, String name) {
+        String fileName = file.getFileName().toString();
+        return Integer.parseInt(fileName.substring(name.length() + 1, fileName.length() - SUFFIX.length()));
+    }
+
+    public List<Path> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return {@code false} at the end of the journal
+     * @throws IllegalStateException if a file is not a journal file
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (file == null && !openNextFile()) {
+                return false;
+            }
+            int length = position + RECORD_HEADER_BYTES <= file.capacity() ? file.getInt(position) : END_OF_FILE;
+            if (length > 0) {
+                flags = file.getInt(position + 4);
+                channelId = file.getInt(position + 8);
+                streamId = file.getInt(position + 12);
+                receivedNanos = file.getLong(position + 16);
+                int payload = position + RECORD_HEADER_BYTES;
+                view.setIndex(payload, payload + length);
+                position += (RECORD_HEADER_BYTES + length + 7) & ~7;
+                return true;
+            }
+            file = null;
+            view = null;
+        }
+    }
+
+    private boolean openNextFile() throws IOException {
+        while (++fileIndex < files.size()) {
+            Path path = files.get(fileIndex);
+            MappedByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.capacity() >= FILE_HEADER_BYTES && mapped.getInt(0) == 0) {
+                continue; //mapped ahead by the journal but never started
+            }
+            if (mapped.capacity() < FILE_HEADER_BYTES || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IllegalStateException("Not a version " + VERSION + " journal file: " + path);
+            }
+            file = mapped;
+            fileStartEpochMillis = file.getLong(8);
+            fileStartNanos = file.getLong(16);
+            view = Unpooled.wrappedBuffer(file);
+            position = FILE_HEADER_BYTES;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return frame payload, valid until the next call of {@link #next()}
+     */
+    public ByteBuf getPayload() {
+        return view;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return {@code true} for a text frame, {@code false} for a continuation frame
+     */
+    public boolean isFirst() {
+        return (flags & FIRST) != 0;
+    }
+
+    public boolean isFinal() {
+        return (flags & FINAL) != 0;
+    }
+
+    public int getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * @return connection the frame arrived on; the frames of one message share it
+     */
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    /**
+     * @return wall clock time of the record, derived from the start of its file
+     */
+    public long getReceivedEpochMillis() {
+        return fileStartEpochMillis + (receivedNanos - fileStartNanos) / 1_000_000;
+    }
+
+    @Override
+    public void close() {
+        file = null;
+        view = null;
+        fileIndex = files.size();
+    }
+}
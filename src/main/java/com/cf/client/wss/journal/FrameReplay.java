@@ -0,0 +1,205 @@
+package com.cf.client.wss.journal;
+
+import com.cf.client.poloniex.PoloniexWSSClientRouter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a journal recorded by {@link FrameJournal} through a
+ * {@link PoloniexWSSClientRouter}, i.e. through the same decoders, handlers and
+ * listeners as live traffic, without a network. Subscribe on the router first;
+ * it needs no connection for that.
+ * <p>
+ * Frames are replayed on the calling thread, either paced like they were
+ * received, optionally sped up, or {@link #AS_FAST_AS_POSSIBLE} to measure
+ * throughput. Pacing sleeps while the next frame is far off and spins for the
+ * last {@value #SPIN_NANOS} ns, so frames are due with microsecond accuracy.
+ * <p>
+ * A journal shared by several connections interleaves the fragments of their
+ * messages. The fragments of a message are held back, keyed by stream id, and
+ * handed to the router one after the other once its final frame was read.
+ * Fragments of a message that never completed, e.g. because its connection
+ * was lost, are dropped.
+ */
+public class FrameReplay {
+    public static final double ORIGINAL_SPEED = 1;
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private static final long SPIN_NANOS = 100_000;
+
+    private final PoloniexWSSClientRouter router;
+
+    public FrameReplay(PoloniexWSSClientRouter router) {
+        this.router = router;
+    }
+
+    /**
+     * Replays the whole journal.
+     *
+     * @param speed factor the recorded pacing is sped up by, {@link #ORIGINAL_SPEED}
+     *              or {@link #AS_FAST_AS_POSSIBLE} for instance
+     */
+    public ReplayResult replay(FrameJournalReader reader, double speed) throws IOException {
+        return replay(reader, speed, Long.MAX_VALUE);
+    }
+
+    /**
+     * Replays up to {@code maxFrames} journal records, e.g. to reproduce an
+     * incident up to the frame of interest.
+     */
+    public ReplayResult replay(FrameJournalReader reader, double speed, long maxFrames) throws IOException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive: " + speed);
+        }
+        boolean paced = speed != AS_FAST_AS_POSSIBLE;
+        long frames = 0;
+        long messages = 0;
+        long bytes = 0;
+        long maxLateNanos = 0;
+        long firstRecordedNanos = 0;
+        long startNanos = System.nanoTime();
+        Map<Integer, List<WebSocketFrame>> fragments = new HashMap<>();
+        long records = 0;
+        try {
+            while (records < maxFrames && reader.next()) {
+                if (records++ == 0) {
+                    firstRecordedNanos = reader.getReceivedNanos();
+                }
+                if (paced) {
+                    long dueNanos = startNanos + (long) ((reader.getReceivedNanos() - firstRecordedNanos) / speed);
+                    maxLateNanos = Math.max(maxLateNanos, awaitNanos(dueNanos));
+                }
+                ByteBuf payload = reader.getPayload().slice();
+                List<WebSocketFrame> pending = fragments.get(reader.getStreamId());
+                if (reader.isFirst() && pending != null) {
+                    release(pending); //its connection was lost before the message was complete
+                    pending = null;
+                }
+                if (!reader.isFirst() && pending == null) {
+                    continue; //the journal starts within the message
+                }
+                if (!reader.isFinal()) {
+                    if (pending == null) {
+                        pending = new ArrayList<>();
+                        fragments.put(reader.getStreamId(), pending);
+                    }
+                    pending.add(frame(reader.isFirst(), false, Unpooled.copiedBuffer(payload)));
+                    continue;
+                }
+                if (pending != null) {
+                    fragments.remove(reader.getStreamId());
+                    for (WebSocketFrame fragment : pending) {
+                        frames++;
+                        bytes += fragment.content().readableBytes();
+                        router.onFrame(fragment, System.nanoTime());
+                        fragment.release();
+                    }
+                }
+                router.onFrame(frame(reader.isFirst(), true, payload), System.nanoTime());
+                frames++;
+                bytes += payload.readableBytes();
+                messages++;
+            }
+        } finally {
+            fragments.values().forEach(FrameReplay::release);
+        }
+        return new ReplayResult(frames, messages, bytes, System.nanoTime() - startNanos, maxLateNanos);
+    }
+
+    private static WebSocketFrame frame(boolean first, boolean last, ByteBuf payload) {
+        return first ? new TextWebSocketFrame(last, 0, payload) : new ContinuationWebSocketFrame(last, 0, payload);
+    }
+
+    private static void release(List<WebSocketFrame> frames) {
+        frames.forEach(WebSocketFrame::release);
+    }
+
+    /**
+     * @return how late the frame is, {@code 0} if it was awaited
+     */
+    private static long awaitNanos(long dueNanos) {
+        long remaining = dueNanos - System.nanoTime();
+        if (remaining < 0) {
+            return -remaining;
+        }
+        while (remaining > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+            remaining = dueNanos - System.nanoTime();
+        }
+        while (System.nanoTime() < dueNanos) {
+            //spin
+        }
+        return 0;
+    }
+
+    /**
+     * Achieved rates of a replay.
+     */
+    public static class ReplayResult {
+        private final long frameCount;
+        private final long messageCount;
+        private final long byteCount;
+        private final long elapsedNanos;
+        private final long maxLateNanos;
+
+        ReplayResult(long frameCount, long messageCount, long byteCount, long elapsedNanos, long maxLateNanos) {
+            this.frameCount = frameCount;
+            this.messageCount = messageCount;
+            this.byteCount = byteCount;
+            this.elapsedNanos = elapsedNanos;
+            this.maxLateNanos = maxLateNanos;
+        }
+
+        public long getFrameCount() {
+            return frameCount;
+        }
+
+        /**
+         * @return complete messages, i.e. final frames
+         */
+        public long getMessageCount() {
+            return messageCount;
+        }
+
+        public long getByteCount() {
+            return byteCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return largest delay of a paced frame behind its schedule, i.e. how
+         * far the handlers fell behind the recorded rate
+         */
+        public long getMaxLateNanos() {
+            return maxLateNanos;
+        }
+
+        public double getMessagesPerSecond() {
+            return elapsedNanos > 0 ? messageCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos > 0 ? byteCount * 1e3 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d messages (%d frames, %d bytes) in %.3f ms: %.0f msg/s, %.1f MB/s, max %d ns late",
+                    messageCount, frameCount, byteCount, elapsedNanos / 1e6, getMessagesPerSecond(), getMegabytesPerSecond(), maxLateNanos);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.cf.client.wss.latency;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HDR histograms of the {@link LatencyMetric}s of one market channel.
+ * Recording is wait-free and allocation free from any thread; reading drains
+ * the recorders into cumulative histograms, so readers never stall the event
+ * loop.
+ * <p>
+ * Values are tracked with two significant digits (1% precision) up to
+ * {@link #HIGHEST_TRACKABLE_NANOS}, larger values are recorded as that. The
+ * recorders are sized for that range up front, about 250 KB per channel, so
+ * that recording never resizes them; the cumulative histograms of the readers
+ * grow with the recorded range.
+ */
+public class ChannelLatency implements ChannelLatencyMXBean {
+    public static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final LatencyMetric[] METRICS = LatencyMetric.values();
+
+    private final int channelId;
+    private final Recorder[] recorders = new Recorder[METRICS.length];
+    private final Histogram[] totals = new Histogram[METRICS.length];
+    private final Histogram[] intervals = new Histogram[METRICS.length];
+
+    // listener time of the message being handled, touched by the event loop only
+    private long listenerNanos;
+
+    public ChannelLatency(int channelId) {
+        this.channelId = channelId;
+        for (int i = 0; i < METRICS.length; i++) {
+            recorders[i] = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+            totals[i] = new Histogram(SIGNIFICANT_DIGITS);
+        }
+    }
+
+    @Override
+    public int getChannelId() {
+        return channelId;
+    }
+
+    public void record(LatencyMetric metric, long nanos) {
+        recorders[metric.ordinal()].recordValue(Math.max(0, Math.min(nanos, HIGHEST_TRACKABLE_NANOS)));
+    }
+
+    /**
+     * Adds time spent in inline listeners to the message being handled.
+     */
+    public void addListenerNanos(long nanos) {
+        listenerNanos += nanos;
+    }
+
+    /**
+     * Records the decode and listener time of the message that arrived at
+     * {@code receivedNanos} ({@link System#nanoTime()}), on the event loop.
+     */
+    public void endMessage(long receivedNanos) {
+        long total = System.nanoTime() - receivedNanos;
+        long listener = listenerNanos;
+        listenerNanos = 0;
+        record(LatencyMetric.DECODE, total - listener);
+        if (listener > 0) {
+            record(LatencyMetric.LISTENER, listener);
+        }
+    }
+
+    public void recordQueueWait(long nanos) {
+        record(LatencyMetric.QUEUE_WAIT, nanos);
+    }
+
+    public void recordExchangeLag(long epochSecond) {
+        record(LatencyMetric.EXCHANGE_LAG, TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - TimeUnit.SECONDS.toNanos(epochSecond));
+    }
+
+    /**
+     * @return copy of all histograms since start or the last {@link #reset()}
+     */
+    public synchronized LatencySnapshot snapshot() {
+        EnumMap<LatencyMetric, Histogram> histograms = new EnumMap<>(LatencyMetric.class);
+        for (LatencyMetric metric : METRICS) {
+            histograms.put(metric, drain(metric).copy());
+        }
+        return new LatencySnapshot(channelId, histograms);
+    }
+
+    public synchronized LatencySummary summary(LatencyMetric metric) {
+        return LatencySummary.of(drain(metric));
+    }
+
+    @Override
+    public LatencySummary getDecode() {
+        return summary(LatencyMetric.DECODE);
+    }
+
+    @Override
+    public LatencySummary getQueueWait() {
+        return summary(LatencyMetric.QUEUE_WAIT);
+    }
+
+    @Override
+    public LatencySummary getListener() {
+        return summary(LatencyMetric.LISTENER);
+    }
+
+    @Override
+    public LatencySummary getExchangeLag() {
+        return summary(LatencyMetric.EXCHANGE_LAG);
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (LatencyMetric metric : METRICS) {
+            drain(metric).reset();
+        }
+    }
+
+    private Histogram drain(LatencyMetric metric) {
+        int i = metric.ordinal();
+        intervals[i] = recorders[i].getIntervalHistogram(intervals[i]);
+        totals[i].add(intervals[i]);
+        return totals[i];
+    }
+}
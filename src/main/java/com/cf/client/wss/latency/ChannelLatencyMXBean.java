@@ -0,0 +1,19 @@
+package com.cf.client.wss.latency;
+
+/**
+ * JMX view of the latencies of one market channel since start or the last
+ * {@link #reset()}, in nanoseconds.
+ */
+public interface ChannelLatencyMXBean {
+    int getChannelId();
+
+    LatencySummary getDecode();
+
+    LatencySummary getQueueWait();
+
+    LatencySummary getListener();
+
+    LatencySummary getExchangeLag();
+
+    void reset();
+}
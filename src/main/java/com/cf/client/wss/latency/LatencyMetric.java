@@ -0,0 +1,27 @@
+package com.cf.client.wss.latency;
+
+/**
+ * Latencies recorded per market channel, all in nanoseconds.
+ */
+public enum LatencyMetric {
+    /**
+     * From the arrival of a frame on the event loop until it has been handled,
+     * less the time spent in listeners.
+     */
+    DECODE,
+    /**
+     * Time an event waited in a dispatcher before its listener ran, only for
+     * listeners that are not {@link com.cf.client.wss.dispatch.DispatchPolicy#INLINE}.
+     */
+    QUEUE_WAIT,
+    /**
+     * Time spent in the inline listeners of one message.
+     */
+    LISTENER,
+    /**
+     * Local receive time of a trade minus its exchange timestamp. The exchange
+     * stamps trades in whole seconds, so this is only good for spotting lags
+     * and clock skew of more than a second.
+     */
+    EXCHANGE_LAG
+}
@@ -0,0 +1,107 @@
+package com.cf.client.wss.latency;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link ChannelLatency} of every market channel of a client. Once
+ * {@link #registerMBeans(String) registered}, each channel is published as a
+ * {@link ChannelLatencyMXBean} named
+ * {@code com.cf.client:type=ChannelLatency,client=<name>,channel=<id>}.
+ */
+public class LatencyMonitor {
+    private final static Logger LOG = LogManager.getLogger();
+    private static final String DOMAIN = "com.cf.client";
+
+    private final Map<Integer, ChannelLatency> channels = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private String clientName;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public ChannelLatency channel(int channelId) {
+        ChannelLatency latency = channels.get(channelId);
+        return latency != null ? latency : channels.computeIfAbsent(channelId, this::create);
+    }
+
+    /**
+     * @return latencies of the channel, {@code null} if none were recorded
+     */
+    public LatencySnapshot snapshot(int channelId) {
+        ChannelLatency latency = channels.get(channelId);
+        return latency != null ? latency.snapshot() : null;
+    }
+
+    /**
+     * @return latencies of all channels by channel id
+     */
+    public Map<Integer, LatencySnapshot> snapshots() {
+        Map<Integer, LatencySnapshot> snapshots = new TreeMap<>();
+        channels.forEach((channelId, latency) -> snapshots.put(channelId, latency.snapshot()));
+        return snapshots;
+    }
+
+    public synchronized void registerMBeans(String clientName) {
+        unregisterMBeans();
+        this.clientName = clientName;
+        channels.values().forEach(this::register);
+    }
+
+    public synchronized void unregisterMBeans() {
+        if (clientName != null) {
+            channels.values().forEach(this::unregister);
+            clientName = null;
+        }
+    }
+
+    private synchronized ChannelLatency create(int channelId) {
+        ChannelLatency latency = new ChannelLatency(channelId);
+        if (clientName != null) {
+            register(latency);
+        }
+        return latency;
+    }
+
+    private void register(ChannelLatency latency) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = objectName(latency);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(latency, name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Could not register latency MBean of channel {}", latency.getChannelId(), e);
+        }
+    }
+
+    private void unregister(ChannelLatency latency) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = objectName(latency);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Could not unregister latency MBean of channel {}", latency.getChannelId(), e);
+        }
+    }
+
+    private ObjectName objectName(ChannelLatency latency) throws JMException {
+        return new ObjectName(DOMAIN + ":type=ChannelLatency,client=" + ObjectName.quote(clientName)
+                + ",channel=" + latency.getChannelId());
+    }
+}
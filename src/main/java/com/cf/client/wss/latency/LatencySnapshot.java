@@ -0,0 +1,46 @@
+package com.cf.client.wss.latency;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Copy of the histograms of one market channel, see {@link ChannelLatency#snapshot()}.
+ */
+public class LatencySnapshot {
+    private final int channelId;
+    private final Map<LatencyMetric, Histogram> histograms;
+
+    LatencySnapshot(int channelId, EnumMap<LatencyMetric, Histogram> histograms) {
+        this.channelId = channelId;
+        this.histograms = histograms;
+    }
+
+    public int getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * @return histogram of the metric in nanoseconds, owned by this snapshot
+     */
+    public Histogram getHistogram(LatencyMetric metric) {
+        return histograms.get(metric);
+    }
+
+    public long getCount(LatencyMetric metric) {
+        return histograms.get(metric).getTotalCount();
+    }
+
+    public long getValueAtPercentile(LatencyMetric metric, double percentile) {
+        return histograms.get(metric).getValueAtPercentile(percentile);
+    }
+
+    public long getMax(LatencyMetric metric) {
+        return histograms.get(metric).getMaxValue();
+    }
+
+    public LatencySummary getSummary(LatencyMetric metric) {
+        return LatencySummary.of(histograms.get(metric));
+    }
+}
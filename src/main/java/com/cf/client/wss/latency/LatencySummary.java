@@ -0,0 +1,66 @@
+package com.cf.client.wss.latency;
+
+import org.HdrHistogram.Histogram;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Percentiles of one {@link LatencyMetric} in nanoseconds, the JMX view of a
+ * histogram.
+ */
+public class LatencySummary {
+    private final long count;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    @ConstructorProperties({"count", "p50", "p99", "p999", "max"})
+    public LatencySummary(long count, long p50, long p99, long p999, long max) {
+        this.count = count;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    static LatencySummary of(Histogram histogram) {
+        return new LatencySummary(
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue());
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySummary{" +
+                "count=" + count +
+                ", p50=" + p50 +
+                ", p99=" + p99 +
+                ", p999=" + p999 +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -0,0 +1,13 @@
+package com.cf.client.wss.reactive;
+
+/**
+ * Signalled to a subscriber using {@link OverflowStrategy#ERROR} that did not
+ * request events fast enough.
+ */
+public class BufferOverflowException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public BufferOverflowException(String message) {
+        super(message);
+    }
+}
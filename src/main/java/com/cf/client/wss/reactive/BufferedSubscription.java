@@ -0,0 +1,239 @@
+package com.cf.client.wss.reactive;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Subscription of one subscriber to an {@link EventPublisher}. The event loop
+ * appends to a bounded ring buffer through {@link #accept(Object)}; all
+ * signals, {@code onSubscribe} included, are sent by a drain loop on the
+ * executor that never runs twice at the same time, so they are serialized as
+ * the specification requires.
+ * <p>
+ * The counters are meant for monitoring slow subscribers: how much is buffered,
+ * how close the buffer came to overflowing and how much was lost to overflow.
+ */
+public class BufferedSubscription<T> implements Subscription, Consumer<T> {
+    private final static Logger LOG = LogManager.getLogger();
+
+    private final Subscriber<? super T> subscriber;
+    private final OverflowStrategy strategy;
+    private final UnaryOperator<T> detach;
+    private final Executor executor;
+    private final Consumer<BufferedSubscription<T>> onCancel;
+
+    private final Object[] buffer;
+    private int head;
+    private int size;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+    private boolean subscribed;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+
+    private volatile long receivedCount;
+    private volatile long deliveredCount;
+    private volatile long droppedCount;
+    private volatile long conflatedCount;
+    private volatile int highWaterMark;
+
+    BufferedSubscription(Subscriber<? super T> subscriber, OverflowStrategy strategy, int bufferSize, UnaryOperator<T> detach,
+                         Executor executor, Consumer<BufferedSubscription<T>> onCancel) {
+        this.subscriber = subscriber;
+        this.strategy = strategy;
+        this.buffer = new Object[bufferSize];
+        this.detach = detach;
+        this.executor = executor;
+        this.onCancel = onCancel;
+    }
+
+    void start() {
+        schedule();
+    }
+
+    /**
+     * Called by the event loop for every event.
+     */
+    @Override
+    public void accept(T event) {
+        if (cancelled || error != null) {
+            return;
+        }
+        T detached = detach.apply(event);
+        boolean overflow = false;
+        synchronized (this) {
+            receivedCount++;
+            if (size < buffer.length) {
+                buffer[(head + size) % buffer.length] = detached;
+                size++;
+                highWaterMark = Math.max(highWaterMark, size);
+            } else {
+                switch (strategy) {
+                    case DROP_OLDEST:
+                        buffer[head] = detached;
+                        head = (head + 1) % buffer.length;
+                        droppedCount++;
+                        break;
+                    case CONFLATE:
+                        buffer[(head + size - 1) % buffer.length] = detached;
+                        conflatedCount++;
+                        break;
+                    default:
+                        droppedCount++;
+                        overflow = true;
+                        break;
+                }
+            }
+        }
+        if (overflow) {
+            error = new BufferOverflowException("Subscriber did not keep up, " + buffer.length + " events buffered");
+        }
+        if (overflow || requested.get() > 0) {
+            schedule();
+        }
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            error = new IllegalArgumentException("Rule 3.9: requested " + n + ", must be positive");
+        } else {
+            requested.accumulateAndGet(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+        }
+        schedule();
+    }
+
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            onCancel.accept(this);
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (pending.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            if (!subscribed) {
+                subscribed = true;
+                subscriber.onSubscribe(this);
+            }
+            long demand = requested.get();
+            long emitted = 0;
+            while (emitted != demand && !cancelled && error == null) {
+                T event = poll();
+                if (event == null) {
+                    break;
+                }
+                try {
+                    subscriber.onNext(event);
+                } catch (Exception e) {
+                    LOG.warn("Subscriber failed, cancelling its subscription", e);
+                    cancel();
+                }
+                emitted++;
+            }
+            if (emitted != 0) {
+                deliveredCount += emitted;
+                if (demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+            }
+            if (cancelled) {
+                clear();
+            } else if (error != null) {
+                cancel();
+                clear();
+                subscriber.onError(error);
+            }
+            missed = pending.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized T poll() {
+        if (size == 0) {
+            return null;
+        }
+        T event = (T) buffer[head];
+        buffer[head] = null;
+        head = (head + 1) % buffer.length;
+        size--;
+        return event;
+    }
+
+    private synchronized void clear() {
+        Arrays.fill(buffer, null);
+        head = 0;
+        size = 0;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return events waiting for demand
+     */
+    public synchronized int getBufferedCount() {
+        return size;
+    }
+
+    public int getBufferSize() {
+        return buffer.length;
+    }
+
+    /**
+     * @return largest number of events buffered at once
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return outstanding demand, {@link Long#MAX_VALUE} if unbounded
+     */
+    public long getRequested() {
+        return requested.get();
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return events lost to {@link OverflowStrategy#DROP_OLDEST} or to the
+     * overflow that failed an {@link OverflowStrategy#ERROR} subscription
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return events replaced by a newer one under {@link OverflowStrategy#CONFLATE}
+     */
+    public long getConflatedCount() {
+        return conflatedCount;
+    }
+}
@@ -0,0 +1,84 @@
+package com.cf.client.wss.reactive;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reactive Streams source of one event type of one currency pair. Every
+ * subscriber gets its own listener on the event loop and its own bounded
+ * buffer, which is drained on the executor as far as the subscriber requested;
+ * a slow subscriber overflows according to the {@link OverflowStrategy} and
+ * never blocks the event loop or the other subscribers.
+ * <p>
+ * The library targets Java 8, so this implements {@code org.reactivestreams}
+ * rather than {@code java.util.concurrent.Flow}; {@code org.reactivestreams.FlowAdapters},
+ * shipped with reactive-streams 1.0.3, converts between the two on Java 9 and later.
+ */
+public class EventPublisher<T> implements Publisher<T> {
+    private final Consumer<Consumer<T>> register;
+    private final Consumer<Consumer<T>> unregister;
+    private final UnaryOperator<T> detach;
+    private final OverflowStrategy strategy;
+    private final int bufferSize;
+    private final Executor executor;
+    private final List<BufferedSubscription<T>> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param register   adds a listener for the events, called once per subscriber
+     * @param unregister removes a listener again when its subscription is cancelled
+     * @param detach     turns the event into an instance that may outlive the
+     *                   listener callback (e.g. copies recycled events)
+     * @param executor   runs the signals to the subscribers, one task at a time
+     *                   per subscriber
+     */
+    public EventPublisher(Consumer<Consumer<T>> register, Consumer<Consumer<T>> unregister, UnaryOperator<T> detach,
+                          OverflowStrategy strategy, int bufferSize, Executor executor) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.register = register;
+        this.unregister = unregister;
+        this.detach = detach;
+        this.strategy = strategy;
+        this.bufferSize = bufferSize;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        BufferedSubscription<T> subscription = new BufferedSubscription<>(subscriber, strategy, bufferSize, detach, executor,
+                this::cancelled);
+        subscriptions.add(subscription);
+        register.accept(subscription);
+        subscription.start();
+    }
+
+    private void cancelled(BufferedSubscription<T> subscription) {
+        unregister.accept(subscription);
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * @return the active subscriptions, e.g. to read their buffer metrics
+     */
+    public List<BufferedSubscription<T>> getSubscriptions() {
+        return new ArrayList<>(subscriptions);
+    }
+
+    public OverflowStrategy getStrategy() {
+        return strategy;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,23 @@
+package com.cf.client.wss.reactive;
+
+/**
+ * What an {@link EventPublisher} does with an event arriving while the buffer
+ * of a subscriber is full, i.e. the subscriber requests less than the market
+ * produces.
+ */
+public enum OverflowStrategy {
+    /**
+     * Evicts the oldest buffered event.
+     */
+    DROP_OLDEST,
+    /**
+     * Replaces the newest buffered event, so the subscriber always ends up with
+     * the latest one; meant for state like snapshots and batches rather than
+     * for trades.
+     */
+    CONFLATE,
+    /**
+     * Cancels the subscription and signals a {@link BufferOverflowException}.
+     */
+    ERROR
+}
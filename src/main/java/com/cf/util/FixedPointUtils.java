@@ -0,0 +1,105 @@
+package com.cf.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Poloniex prices and amounts carry at most 8 decimals, so they are kept as
+ * {@code long} mantissas scaled by 10^8 on the hot path.
+ */
+public class FixedPointUtils {
+    public static final int SCALE = 8;
+    public static final long ONE = 100_000_000L;
+
+    private FixedPointUtils() {
+    }
+
+    /**
+     * Parses a plain decimal such as {@code "6357.13463942"} into a scaled
+     * mantissa. Digits beyond the 8th decimal are truncated.
+     */
+    public static long parse(CharSequence value) {
+        return parse(value, 0, value.length());
+    }
+
+    public static long parse(CharSequence value, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("Empty fixed point value");
+        }
+        boolean negative = value.charAt(from) == '-';
+        int i = negative ? from + 1 : from;
+        long mantissa = 0;
+        int decimals = -1;
+        for (; i < to; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (decimals >= 0) {
+                    throw new NumberFormatException("Invalid fixed point value: " + value.subSequence(from, to));
+                }
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (decimals < SCALE) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                }
+            } else {
+                throw new NumberFormatException("Invalid fixed point value: " + value.subSequence(from, to));
+            }
+        }
+        mantissa = rescale(mantissa, Math.max(decimals, 0));
+        return negative ? -mantissa : mantissa;
+    }
+
+    /**
+     * Scales a mantissa with {@code decimals} decimals up to {@link #SCALE}.
+     */
+    public static long rescale(long mantissa, int decimals) {
+        for (int d = decimals; d < SCALE; d++) {
+            mantissa *= 10;
+        }
+        return mantissa;
+    }
+
+    /**
+     * Product of two non negative mantissas, e.g. the notional of a rate and an
+     * amount, truncated to {@link #SCALE} decimals. Exact as long as the
+     * product and the integer part of one operand times the fraction of the
+     * other fit a long, i.e. for any realistic rate and amount.
+     */
+    public static long multiply(long a, long b) {
+        long aInteger = a / ONE;
+        long aFraction = a % ONE;
+        long bInteger = b / ONE;
+        long bFraction = b % ONE;
+        return aInteger * bInteger * ONE + aInteger * bFraction + aFraction * bInteger + aFraction * bFraction / ONE;
+    }
+
+    /**
+     * Quotient of two positive mantissas, e.g. the average rate of a notional
+     * and an amount, truncated to {@link #SCALE} decimals. Long division, so
+     * it does not overflow for divisors below {@code Long.MAX_VALUE / 10}.
+     */
+    public static long divide(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        for (int d = 0; d < SCALE; d++) {
+            remainder *= 10;
+            quotient = quotient * 10 + remainder / divisor;
+            remainder %= divisor;
+        }
+        return quotient;
+    }
+
+    public static BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+
+    public static long fromBigDecimal(BigDecimal value) {
+        return value.movePointRight(SCALE).longValue();
+    }
+
+    public static double toDouble(long value) {
+        return value / (double) ONE;
+    }
+}
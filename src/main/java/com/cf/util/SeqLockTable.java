@@ -0,0 +1,96 @@
+package com.cf.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size table of slots holding a few {@code long} fields each, written by
+ * a single thread per slot and readable from any thread without locks. Every
+ * slot is guarded by a version (seqlock): the writer makes it odd, stores the
+ * fields and makes it even again; a reader copies the fields and retries if
+ * the version was odd or changed meanwhile.
+ * <p>
+ * The odd version is a volatile store and the fields and even version are
+ * ordered stores, so a reader never sees new fields under an old even version.
+ * Slots are padded to whole cache lines, writers of neighbouring slots do not
+ * disturb each other.
+ */
+public class SeqLockTable {
+    private static final int LONGS_PER_CACHE_LINE = 8;
+
+    private final int slots;
+    private final int fields;
+    private final int stride;
+    private final AtomicLongArray data;
+
+    public SeqLockTable(int slots, int fields) {
+        this.slots = slots;
+        this.fields = fields;
+        this.stride = (fields + 1 + LONGS_PER_CACHE_LINE - 1) / LONGS_PER_CACHE_LINE * LONGS_PER_CACHE_LINE;
+        this.data = new AtomicLongArray(slots * stride);
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    public int fields() {
+        return fields;
+    }
+
+    /**
+     * Starts an update of the slot; only one thread may write a slot.
+     */
+    public void beginWrite(int slot) {
+        int base = slot * stride;
+        data.set(base, data.get(base) + 1);
+    }
+
+    public void put(int slot, int field, long value) {
+        data.lazySet(slot * stride + 1 + field, value);
+    }
+
+    /**
+     * Publishes the fields put since {@link #beginWrite(int)}.
+     */
+    public void endWrite(int slot) {
+        int base = slot * stride;
+        data.lazySet(base, data.get(base) + 1);
+    }
+
+    /**
+     * Value of a field as last put by the writer; only meant for the writer
+     * itself, other threads must use {@link #read(int, long[])}.
+     */
+    public long get(int slot, int field) {
+        return data.get(slot * stride + 1 + field);
+    }
+
+    /**
+     * Copies a consistent state of the slot.
+     *
+     * @param target receives the fields, at least {@link #fields()} long
+     * @return number of writes the state reflects
+     */
+    public long read(int slot, long[] target) {
+        int base = slot * stride;
+        while (true) {
+            long version = data.get(base);
+            if ((version & 1) == 0) {
+                for (int field = 0; field < fields; field++) {
+                    target[field] = data.get(base + 1 + field);
+                }
+                if (data.get(base) == version) {
+                    return version >>> 1;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @return number of completed writes of the slot
+     */
+    public long writes(int slot) {
+        return data.get(slot * stride) >>> 1;
+    }
+}
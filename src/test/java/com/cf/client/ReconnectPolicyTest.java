@@ -0,0 +1,31 @@
+package com.cf.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class ReconnectPolicyTest {
+
+    private final ReconnectPolicy policy = new ReconnectPolicy(100, 30_000, 10_000, 5_000);
+
+    @Test
+    public void backoffDoublesWithJitterBetweenHalfAndFull() {
+        for (int attempt = 0; attempt < 8; attempt++) {
+            long backoff = 100L << attempt;
+            for (int i = 0; i < 1000; i++) {
+                long delay = policy.delayMillis(attempt);
+                assertTrue(attempt + ": " + delay, delay >= backoff / 2 && delay <= backoff);
+            }
+        }
+    }
+
+    @Test
+    public void backoffIsCappedAtMaxDelay() {
+        for (int attempt : new int[]{9, 30, 31, 64, Integer.MAX_VALUE}) {
+            for (int i = 0; i < 1000; i++) {
+                long delay = policy.delayMillis(attempt);
+                assertTrue(attempt + ": " + delay, delay >= 15_000 && delay <= 30_000);
+            }
+        }
+    }
+}
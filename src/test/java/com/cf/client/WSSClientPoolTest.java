@@ -0,0 +1,156 @@
+package com.cf.client;
+
+import com.cf.client.poloniex.wss.book.ConflatedTopOfBook;
+import com.cf.client.poloniex.wss.book.PoloniexTopOfBook;
+import com.cf.client.poloniex.wss.model.PoloniexOrderBookEvent;
+import com.cf.client.poloniex.wss.stub.PoloniexStubServer;
+import com.cf.client.poloniex.wss.stub.SyntheticMarket;
+import com.cf.client.wss.dispatch.DispatchPolicy;
+import com.cf.util.FixedPointUtils;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WSSClientPoolTest {
+
+    @Test
+    public void spreadsNewPairsOverConnections() throws Exception {
+        try (WSSClientPool pool = new WSSClientPool("wss://api2.poloniex.com", null, 3)) {
+            for (int pairId = 1; pairId <= 6; pairId++) {
+                pool.subscribeOnTradeEvent(pairId, trade -> {
+                });
+            }
+            pool.subscribeOnOrderBookEvent(1, update -> {
+            });
+
+            int[] pairs = new int[pool.getConnectionCount()];
+            for (int pairId = 1; pairId <= 6; pairId++) {
+                pairs[pool.getConnectionOf(pairId)]++;
+            }
+            assertEquals(2, pairs[0]);
+            assertEquals(2, pairs[1]);
+            assertEquals(2, pairs[2]);
+            assertEquals(-1, pool.getConnectionOf(7));
+        }
+    }
+
+    @Test
+    public void selectsPairThatEvensOutRates() {
+        Map<Integer, Long> rates = new HashMap<>();
+        rates.put(121, 900L);
+        rates.put(148, 300L);
+        rates.put(7, 20L);
+
+        assertEquals(148, (int) WSSClientPool.selectPairToMove(rates, 700));
+        assertEquals(7, (int) WSSClientPool.selectPairToMove(rates, 50));
+        assertNull(WSSClientPool.selectPairToMove(rates, 10));
+    }
+
+    @Test
+    public void rebalancedPairKeepsFeedingItsListeners() throws Exception {
+        try (PoloniexStubServer server = new PoloniexStubServer();
+             WSSClientPool pool = new WSSClientPool(server.getUrl(), null, 2, new ReconnectPolicy(10, 100, 1_000, 1_000), 0)) {
+            SyntheticMarket[] markets = {
+                    new SyntheticMarket(121, "USDT_BTC", 6350 * FixedPointUtils.ONE, 42),
+                    new SyntheticMarket(148, "BTC_ETH", FixedPointUtils.ONE / 10, 7),
+                    new SyntheticMarket(149, "BTC_XMR", FixedPointUtils.ONE / 100, 9)};
+            for (SyntheticMarket market : markets) {
+                server.addMarket(market);
+            }
+            server.startHeartbeats(100);
+            ConflatedTopOfBook usdtBtc = pool.subscribeOnTopOfBook(121);
+            ConflatedTopOfBook btcEth = pool.subscribeOnTopOfBook(148);
+            ConflatedTopOfBook btcXmr = pool.subscribeOnTopOfBook(149);
+            AtomicLong trades = new AtomicLong();
+            pool.subscribeOnTradeEvent(121, trade -> trades.incrementAndGet());
+            pool.subscribeOnTradeEvent(149, trade -> trades.incrementAndGet());
+            SingleThreadCheck[] dispatched = {new SingleThreadCheck(), new SingleThreadCheck()};
+            pool.subscribeOnOrderBookEvent(121, dispatched[0], DispatchPolicy.RING_BUFFER);
+            pool.subscribeOnOrderBookEvent(149, dispatched[1], DispatchPolicy.RING_BUFFER);
+            assertEquals(pool.getConnectionOf(121), pool.getConnectionOf(149));
+            pool.getConnection(pool.getConnectionOf(148)).setUnsubscribeLinger(0);
+            pool.run();
+            pool.unsubscribeTopOfBook(btcEth); //leaves one connection idle
+            await(() -> server.getSubscriberCount(121) == 1 && server.getSubscriberCount(148) == 0 && server.getSubscriberCount(149) == 1);
+
+            server.startActivity(5_000);
+            Thread.sleep(200);
+            pool.rebalance();
+            server.stopActivity();
+
+            assertEquals(1, pool.getMoveCount());
+            assertNotEquals(pool.getConnectionOf(121), pool.getConnectionOf(149));
+            await(() -> server.getSubscriberCount(121) == 1 && server.getSubscriberCount(149) == 1);
+            long before = trades.get();
+            server.startActivity(5_000);
+            Thread.sleep(200);
+            server.stopActivity();
+            assertTrue(trades.get() > before);
+            awaitBookMatchesMarket(server, markets[0], usdtBtc);
+            awaitBookMatchesMarket(server, markets[2], btcXmr);
+            for (SingleThreadCheck check : dispatched) {
+                assertTrue(check.events.get() > 0);
+                assertEquals("Dispatched listener ran on two threads at once", 0, check.overlaps.get());
+            }
+        }
+    }
+
+    /**
+     * Slow listener counting the events it received while another thread was
+     * still inside it.
+     */
+    private static class SingleThreadCheck implements Consumer<PoloniexOrderBookEvent> {
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicLong events = new AtomicLong();
+        final AtomicLong overlaps = new AtomicLong();
+
+        @Override
+        public void accept(PoloniexOrderBookEvent event) {
+            if (inside.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            events.incrementAndGet();
+            long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(50);
+            while (System.nanoTime() < until) {
+                Thread.yield();
+            }
+            inside.decrementAndGet();
+        }
+    }
+
+    private static void awaitBookMatchesMarket(PoloniexStubServer server, SyntheticMarket market, ConflatedTopOfBook topOfBook)
+            throws InterruptedException {
+        long[] expected = new long[4];
+        server.onEventLoop(() -> {
+            expected[0] = market.bestBidRate();
+            expected[1] = market.bestBidAmount();
+            expected[2] = market.bestAskRate();
+            expected[3] = market.bestAskAmount();
+        });
+        PoloniexTopOfBook top = new PoloniexTopOfBook(topOfBook.getCurrencyPairId());
+        await(() -> {
+            topOfBook.poll(top);
+            return top.getBidRate() == expected[0] && top.getBidAmount() == expected[1]
+                    && top.getAskRate() == expected[2] && top.getAskAmount() == expected[3];
+        });
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
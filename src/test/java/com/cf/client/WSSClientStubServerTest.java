@@ -0,0 +1,309 @@
+package com.cf.client;
+
+import com.cf.client.poloniex.wss.bar.BarAggregator;
+import com.cf.client.poloniex.wss.bar.PoloniexBar;
+import com.cf.client.poloniex.wss.book.ConflatedTopOfBook;
+import com.cf.client.poloniex.wss.book.PoloniexTopOfBook;
+import com.cf.client.poloniex.wss.stub.PoloniexStubServer;
+import com.cf.client.poloniex.wss.stub.SyntheticMarket;
+import com.cf.client.poloniex.wss.ticker.PoloniexTicker;
+import com.cf.util.FixedPointUtils;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs a client against synthetic markets of the local stand-in server,
+ * including the faults the exchange is known for.
+ */
+public class WSSClientStubServerTest {
+    private static final int USDT_BTC = 121;
+    private static final int BTC_ETH = 148;
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final ReconnectPolicy FAST_RECONNECT = new ReconnectPolicy(10, 100, 1_000, 1_000);
+
+    private PoloniexStubServer server;
+    private SyntheticMarket market;
+    private WSSClient client;
+    private ConflatedTopOfBook topOfBook;
+    private final PoloniexTopOfBook top = new PoloniexTopOfBook(USDT_BTC);
+
+    @BeforeClass
+    public static void quietLogging() {
+        Configurator.setLevel("com.cf", Level.WARN);
+    }
+
+    @Before
+    public void start() throws Exception {
+        server = new PoloniexStubServer();
+        market = new SyntheticMarket(USDT_BTC, "USDT_BTC", 6350 * FixedPointUtils.ONE, 42);
+        server.addMarket(market);
+        server.addMarket(new SyntheticMarket(BTC_ETH, "BTC_ETH", FixedPointUtils.ONE / 10, 7));
+        server.startHeartbeats(100);
+        client = new WSSClient(server.getUrl(), null, FAST_RECONNECT);
+    }
+
+    @After
+    public void stop() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void liveBookFollowsMarketUnderLoad() throws Exception {
+        connect();
+
+        runActivity(50_000, 300);
+
+        awaitBookMatchesMarket();
+        assertEquals(0, client.getGapCount());
+        assertTrue(client.getMessageCount(USDT_BTC) > 1000);
+    }
+
+    @Test
+    public void gapIsDetectedAndBookResynchronised() throws Exception {
+        connect();
+
+        server.injectGap(USDT_BTC);
+        runActivity(5_000, 100);
+
+        await(() -> client.getResyncCount() >= 1);
+        awaitBookMatchesMarket();
+        assertTrue(client.getGapCount() >= 1);
+    }
+
+    @Test
+    public void fragmentedSnapshotSeedsBook() throws Exception {
+        server.setFragmentBytes(256);
+        connect();
+
+        runActivity(5_000, 100);
+
+        awaitBookMatchesMarket();
+    }
+
+    @Test
+    public void droppedConnectionIsRestoredWithSubscriptions() throws Exception {
+        connect();
+
+        server.disconnectAll();
+        await(() -> client.getReconnectCount() >= 1 && server.getSubscriberCount(USDT_BTC) == 1);
+        runActivity(5_000, 100);
+
+        awaitBookMatchesMarket();
+    }
+
+    @Test
+    public void everyDropIsCountedAndAllChannelsResubscribed() throws Exception {
+        connect();
+
+        for (int drop = 1; drop <= 3; drop++) {
+            long reconnects = drop;
+            server.disconnectAll();
+            await(() -> client.getReconnectCount() == reconnects && client.isConnected()
+                    && server.getSubscriberCount(USDT_BTC) == 1 && server.getSubscriberCount(BTC_ETH) == 1);
+        }
+        assertEquals(1, server.getConnectionCount());
+        assertTrue(client.getMaxReconnectMillis() >= client.getLastReconnectMillis());
+        assertTrue(client.getTotalDowntimeMillis() >= client.getMaxReconnectMillis());
+        runActivity(5_000, 100);
+        awaitBookMatchesMarket();
+    }
+
+    @Test
+    public void reconnectBacksOffUntilTheServerIsBack() throws Exception {
+        connect();
+        int port = server.getPort();
+
+        server.close();
+        await(() -> !client.isConnected());
+        Thread.sleep(500); //several failed attempts, at most 100 ms apart
+        assertEquals(0, client.getReconnectCount());
+
+        server = new PoloniexStubServer(port);
+        market = new SyntheticMarket(USDT_BTC, "USDT_BTC", 6350 * FixedPointUtils.ONE, 43);
+        server.addMarket(market);
+        server.startHeartbeats(100);
+        await(() -> client.getReconnectCount() == 1 && server.getSubscriberCount(USDT_BTC) == 1);
+        assertTrue(client.getLastReconnectMillis() >= 500);
+        runActivity(5_000, 100);
+        awaitBookMatchesMarket();
+    }
+
+    @Test
+    public void missingHeartbeatsCloseTheConnection() throws Exception {
+        connect();
+
+        server.stopHeartbeats();
+
+        await(() -> client.getHeartbeatTimeoutCount() >= 1);
+    }
+
+    @Test
+    public void heartbeatTimeoutReconnectsAndResubscribes() throws Exception {
+        connect();
+
+        server.stopHeartbeats();
+        await(() -> client.getHeartbeatTimeoutCount() >= 1);
+        server.startHeartbeats(100);
+
+        await(() -> client.getReconnectCount() >= 1 && server.getSubscriberCount(USDT_BTC) == 1);
+        runActivity(5_000, 100);
+        awaitBookMatchesMarket();
+    }
+
+    @Test
+    public void tickerTableIsFedByTheTickerChannel() throws Exception {
+        connect();
+        client.getTickerTable();
+        await(() -> server.getSubscriberCount(1002) == 1);
+
+        runActivity(5_000, 100);
+
+        await(() -> client.getTickerTable().get(BTC_ETH) != null && client.getTickerTable().get(USDT_BTC) != null);
+        PoloniexTicker ticker = client.getTickerTable().get(USDT_BTC);
+        assertNotNull(ticker);
+        assertTrue(ticker.getLowestAsk() > ticker.getHighestBid());
+    }
+
+    @Test
+    public void idleChannelIsUnsubscribedAfterTheLinger() throws Exception {
+        connect();
+        client.setUnsubscribeLinger(300);
+
+        client.unsubscribeTopOfBook(topOfBook);
+        topOfBook = client.subscribeOnTopOfBook(USDT_BTC); //back within the linger
+        Thread.sleep(500);
+        assertEquals(1, server.getSubscriberCount(USDT_BTC));
+        runActivity(5_000, 100);
+        awaitBookMatchesMarket();
+
+        client.unsubscribeTopOfBook(topOfBook);
+        await(() -> server.getSubscriberCount(USDT_BTC) == 0);
+        assertEquals(1, server.getSubscriberCount(BTC_ETH));
+    }
+
+    @Test
+    public void listenerReAddedAsTheLingerFiresKeepsTheChannel() throws Exception {
+        connect();
+        client.setUnsubscribeLinger(20);
+        Random random = new Random(11);
+
+        for (int i = 0; i < 30; i++) {
+            client.unsubscribeTopOfBook(topOfBook);
+            TimeUnit.MICROSECONDS.sleep(18_000 + random.nextInt(4_000)); //around the linger
+            topOfBook = client.subscribeOnTopOfBook(USDT_BTC);
+            Thread.sleep(10); //lets a late unsubscribe reach the server
+            await(() -> server.getSubscriberCount(USDT_BTC) == 1);
+        }
+        runActivity(5_000, 100);
+        awaitBookMatchesMarket();
+    }
+
+    @Test
+    public void tickerChannelIsUnsubscribedWithItsLastListener() throws Exception {
+        connect();
+        client.setUnsubscribeLinger(0);
+        Consumer<PoloniexTicker> listener = ticker -> {
+        };
+
+        client.subscribeOnTicker(listener);
+        await(() -> server.getSubscriberCount(1002) == 1);
+        client.unsubscribeTicker(listener);
+        await(() -> server.getSubscriberCount(1002) == 0);
+
+        client.getTickerTable();
+        client.subscribeOnTicker(listener);
+        client.unsubscribeTicker(listener);
+        Thread.sleep(100);
+        assertEquals("pinned by the table", 1, server.getSubscriberCount(1002));
+        client.releaseTickerTable();
+        await(() -> server.getSubscriberCount(1002) == 0);
+    }
+
+    @Test
+    public void barsOfAQuietPairCloseOnTheClock() throws Exception {
+        List<PoloniexBar> bars = new CopyOnWriteArrayList<>();
+        client.subscribeOnBars(USDT_BTC, 0, bar -> bars.add(bar.copy()), 1);
+        connect();
+        runActivity(1_000, 50); //opens the first bar
+
+        await(() -> bars.size() >= 3); //no trades after the first second
+        long start = bars.get(0).getStartEpochSecond();
+        for (int i = 0; i < bars.size(); i++) {
+            assertEquals(start + i, bars.get(i).getStartEpochSecond());
+        }
+        assertEquals(0, bars.get(bars.size() - 1).getTradeCount());
+    }
+
+    @Test
+    public void barClockRunsWhileThereAreAggregators() throws Exception {
+        connect();
+        Thread.sleep(100);
+        assertFalse(client.isBarClockRunning());
+
+        BarAggregator first = client.subscribeOnBars(USDT_BTC, 0, bar -> {
+        }, 1);
+        BarAggregator second = client.subscribeOnBars(BTC_ETH, 0, bar -> {
+        }, 60);
+        await(client::isBarClockRunning);
+
+        client.unsubscribeBars(first);
+        Thread.sleep(100);
+        assertTrue(client.isBarClockRunning());
+        client.unsubscribeBars(second);
+        await(() -> !client.isBarClockRunning());
+    }
+
+    private void connect() throws Exception {
+        topOfBook = client.subscribeOnTopOfBook(USDT_BTC);
+        client.subscribeOnTradeEvent(BTC_ETH, trade -> {
+        });
+        client.run();
+        await(() -> server.getSubscriberCount(USDT_BTC) == 1 && server.getSubscriberCount(BTC_ETH) == 1);
+    }
+
+    private void runActivity(int messagesPerSecond, long millis) throws InterruptedException {
+        server.startActivity(messagesPerSecond);
+        Thread.sleep(millis);
+        server.stopActivity();
+    }
+
+    private void awaitBookMatchesMarket() throws InterruptedException {
+        long[] expected = new long[4];
+        server.onEventLoop(() -> {
+            expected[0] = market.bestBidRate();
+            expected[1] = market.bestBidAmount();
+            expected[2] = market.bestAskRate();
+            expected[3] = market.bestAskAmount();
+        });
+        await(() -> {
+            topOfBook.poll(top);
+            return top.getBidRate() == expected[0] && top.getBidAmount() == expected[1]
+                    && top.getAskRate() == expected[2] && top.getAskAmount() == expected[3];
+        });
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
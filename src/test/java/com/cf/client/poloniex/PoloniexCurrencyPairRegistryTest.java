@@ -0,0 +1,116 @@
+package com.cf.client.poloniex;
+
+import com.cf.data.model.poloniex.PoloniexCurrency;
+import com.cf.data.model.poloniex.PoloniexTicker;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PoloniexCurrencyPairRegistryTest {
+
+    @Test
+    public void mapsIdsAndSymbolsBothWays() {
+        PoloniexCurrencyPairRegistry registry = new PoloniexCurrencyPairRegistry(
+                tickers(121, "USDT_BTC", 149, "USDT_ETH", 148, "BTC_ETH"),
+                Arrays.asList(currency(28, "BTC"), currency(267, "ETH"), currency(214, "USDT")));
+
+        assertEquals(3, registry.getCurrencyPairCount());
+        assertArrayEquals(new int[]{121, 148, 149}, registry.getCurrencyPairIds());
+        assertEquals(121, registry.getCurrencyPairId("USDT_BTC"));
+        assertEquals(148, registry.getCurrencyPairId(new String("BTC_ETH")));
+        assertEquals(-1, registry.getCurrencyPairId("USDT_XRP"));
+        assertSame("USDT_ETH", registry.getSymbol(149));
+        assertNull(registry.getSymbol(150));
+        assertNull(registry.getSymbol(-1));
+        assertNull(registry.getSymbol(5000));
+
+        assertEquals(214, registry.getBaseCurrencyId(121));
+        assertEquals(28, registry.getQuoteCurrencyId(121));
+        assertEquals("ETH", registry.getCurrencySymbol(registry.getQuoteCurrencyId(148)));
+        assertEquals(-1, registry.getBaseCurrencyId(150));
+    }
+
+    @Test
+    public void reportsNewlyListedMarkets() {
+        PoloniexCurrencyPairRegistry registry = new PoloniexCurrencyPairRegistry(
+                tickers(121, "USDT_BTC"), Arrays.asList(currency(28, "BTC"), currency(214, "USDT")));
+        List<Integer> listed = new ArrayList<>();
+        registry.addListingListener(listed::add);
+
+        assertEquals(1, registry.refresh(tickers(121, "USDT_BTC", 300, "USDT_NEW"),
+                Arrays.asList(currency(28, "BTC"), currency(214, "USDT"), currency(400, "NEW"))));
+        assertEquals(Arrays.asList(300), listed);
+        assertEquals(300, registry.getCurrencyPairId("USDT_NEW"));
+        assertEquals(400, registry.getQuoteCurrencyId(300));
+
+        assertEquals(0, registry.refresh(tickers(300, "USDT_NEW"), Arrays.asList(currency(400, "NEW"))));
+        assertEquals(121, registry.getCurrencyPairId("USDT_BTC")); //delisted markets keep their id
+    }
+
+    @Test
+    public void scheduledRefreshPicksUpNewListings() throws Exception {
+        PoloniexCurrencyPairRegistry registry = new PoloniexCurrencyPairRegistry(
+                tickers(121, "USDT_BTC"), Arrays.asList(currency(28, "BTC"), currency(214, "USDT")));
+        AtomicInteger calls = new AtomicInteger();
+        PoloniexExchangeService service = new PoloniexExchangeService("", "", null) {
+            @Override
+            public Map<String, PoloniexTicker> returnTicker() {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("exchange unavailable");
+                }
+                return tickers(121, "USDT_BTC", 300, "USDT_NEW");
+            }
+
+            @Override
+            public List<PoloniexCurrency> getCurrencies() {
+                return Arrays.asList(currency(28, "BTC"), currency(214, "USDT"), currency(400, "NEW"));
+            }
+        };
+        CountDownLatch listed = new CountDownLatch(1);
+        registry.addListingListener(id -> listed.countDown());
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ScheduledFuture<?> refresh = registry.scheduleRefresh(executor, service, 10, TimeUnit.MILLISECONDS);
+
+            assertTrue(listed.await(10, TimeUnit.SECONDS)); //after the failed first refresh
+            refresh.cancel(false);
+            assertEquals(300, registry.getCurrencyPairId("USDT_NEW"));
+            assertEquals(400, registry.getQuoteCurrencyId(300));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<String, PoloniexTicker> tickers(Object... idsAndSymbols) {
+        Map<String, PoloniexTicker> tickers = new LinkedHashMap<>();
+        for (int i = 0; i < idsAndSymbols.length; i += 2) {
+            tickers.put((String) idsAndSymbols[i + 1], new PoloniexTicker((Integer) idsAndSymbols[i],
+                    BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE));
+        }
+        return tickers;
+    }
+
+    private static PoloniexCurrency currency(int id, String symbol) {
+        PoloniexCurrency currency = new PoloniexCurrency();
+        currency.setId(id);
+        currency.setSymbol(symbol);
+        return currency;
+    }
+}
@@ -0,0 +1,48 @@
+package com.cf.client.poloniex;
+
+import com.cf.client.wss.handler.IMessageHandler;
+import com.cf.client.wss.handler.OrderBookMessageHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Drives a subscription manager over an embedded channel.
+ */
+public class PoloniexSubscriptionManagerTest {
+
+    @Test
+    public void commandsQueuedWhileDisconnectedAreWrittenOnceOnConnect() {
+        PoloniexSubscriptionManager manager = new PoloniexSubscriptionManager(new ConcurrentHashMap<Integer, IMessageHandler>(), id -> {
+        });
+        manager.setLingerMillis(0);
+        manager.acquire(121, OrderBookMessageHandler.class, OrderBookMessageHandler::new, handler -> handler.addLiveOrderBookListener(book -> {
+        }));
+        manager.acquire(148, OrderBookMessageHandler.class, OrderBookMessageHandler::new, handler -> {
+        });
+        manager.release(148, handler -> {
+        });
+
+        EmbeddedChannel channel = new EmbeddedChannel();
+        manager.onConnected(channel);
+
+        assertEquals(asList("{\"command\":\"subscribe\",\"channel\":\"121\"}"), written(channel));
+        assertEquals(1, manager.getFlushCount());
+    }
+
+    private static List<String> written(EmbeddedChannel channel) {
+        List<String> written = new ArrayList<>();
+        for (TextWebSocketFrame frame; (frame = channel.readOutbound()) != null; ) {
+            written.add(frame.text());
+            frame.release();
+        }
+        return written;
+    }
+}
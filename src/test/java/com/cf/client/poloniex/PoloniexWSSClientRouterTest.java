@@ -0,0 +1,60 @@
+package com.cf.client.poloniex;
+
+import com.cf.client.poloniex.wss.book.PoloniexLiveOrderBook;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.cf.util.FixedPointUtils.parse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds frames to a router without a connection.
+ */
+public class PoloniexWSSClientRouterTest {
+    private static final String SNAPSHOT = "[121,100,[[\"i\",{\"currencyPair\":\"USDT_BTC\",\"orderBook\":["
+            + "{\"101.00000000\":\"1.00000000\"},{\"100.00000000\":\"3.00000000\"}]}]]]";
+
+    @BeforeClass
+    public static void quietLogging() {
+        Configurator.setLevel("com.cf", Level.ERROR);
+    }
+
+    @Test
+    public void malformedMessageResynchronisesItsChannelOnly() throws Exception {
+        PoloniexWSSClientRouter router = new PoloniexWSSClientRouter(new URI("wss://api2.poloniex.com"));
+        AtomicReference<PoloniexLiveOrderBook> usdtBtc = new AtomicReference<>();
+        AtomicReference<PoloniexLiveOrderBook> btcEth = new AtomicReference<>();
+        router.subscribeOnLiveOrderBook(121, usdtBtc::set);
+        router.subscribeOnLiveOrderBook(148, btcEth::set);
+        frame(router, SNAPSHOT);
+        frame(router, SNAPSHOT.replace("121", "148"));
+
+        frame(router, "[121,101,[[\"o\",1,\"100.50000000\",\"2.00000000\"],[\"o\",1,\"10x\"]]]");
+
+        assertEquals(1, router.getDecodeErrorCount());
+        assertEquals(1, router.getResyncCount(121));
+        assertFalse(usdtBtc.get().isSeeded());
+        assertEquals(0, router.getResyncCount(148));
+
+        frame(router, "[148,101,[[\"o\",1,\"100.50000000\",\"2.00000000\"]]]");
+        assertTrue(btcEth.get().isSeeded());
+        assertEquals(parse("100.5"), btcEth.get().bestBidRate());
+    }
+
+    static void frame(PoloniexWSSClientRouter router, String message) {
+        TextWebSocketFrame frame = new TextWebSocketFrame(message);
+        try {
+            router.onFrame(frame, System.nanoTime());
+        } finally {
+            frame.release();
+        }
+    }
+}
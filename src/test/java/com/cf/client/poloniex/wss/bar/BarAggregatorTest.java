@@ -0,0 +1,86 @@
+package com.cf.client.poloniex.wss.bar;
+
+import com.cf.client.poloniex.wss.model.PoloniexTradeEvent;
+import com.cf.data.model.poloniex.PoloniexChartData;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.cf.util.FixedPointUtils.parse;
+import static org.junit.Assert.assertEquals;
+
+public class BarAggregatorTest {
+    private final List<PoloniexBar> bars = new ArrayList<>();
+    private final PoloniexTradeEvent trade = new PoloniexTradeEvent(121, 0, true, 0, 0, 0);
+    private long tradeId;
+
+    @Test
+    public void buildsBarsOfSeveralPeriods() {
+        BarAggregator aggregator = new BarAggregator(121, 0, bar -> bars.add(bar.copy()), 60, 300);
+        trade(aggregator, 1200, "100", "1");
+        trade(aggregator, 1210, "104", "2");
+        trade(aggregator, 1250, "98", "1");
+        trade(aggregator, 1259, "101", "2");
+        trade(aggregator, 1260, "102", "1");
+        assertEquals(1, bars.size());
+
+        PoloniexBar bar = bars.get(0);
+        assertEquals(60, bar.getPeriodSeconds());
+        assertEquals(1200, bar.getStartEpochSecond());
+        assertEquals(parse("100"), bar.getOpen());
+        assertEquals(parse("104"), bar.getHigh());
+        assertEquals(parse("98"), bar.getLow());
+        assertEquals(parse("101"), bar.getClose());
+        assertEquals(parse("6"), bar.getQuoteVolume());
+        assertEquals(parse("608"), bar.getVolume());
+        assertEquals(parse("101.33333333"), bar.getWeightedAverage());
+        assertEquals(4, bar.getTradeCount());
+
+        trade(aggregator, 1500, "103", "1");
+        assertEquals(1 + 4 + 1, bars.size()); //1260 with a trade, 1320 to 1440 flat, then the 300s bar
+        assertEquals(parse("102"), bars.get(2).getOpen());
+        assertEquals(0, bars.get(2).getVolume());
+        assertEquals(1320, bars.get(2).getStartEpochSecond());
+
+        PoloniexBar fiveMinutes = bars.get(5);
+        assertEquals(300, fiveMinutes.getPeriodSeconds());
+        assertEquals(1200, fiveMinutes.getStartEpochSecond());
+        assertEquals(parse("100"), fiveMinutes.getOpen());
+        assertEquals(parse("102"), fiveMinutes.getClose());
+        assertEquals(parse("7"), fiveMinutes.getQuoteVolume());
+
+        PoloniexChartData chartData = fiveMinutes.toChartData();
+        assertEquals(1200, chartData.date.toEpochSecond());
+        assertEquals(0, new BigDecimal("104").compareTo(chartData.high));
+        assertEquals(0, new BigDecimal("710").compareTo(chartData.volume));
+    }
+
+    @Test
+    public void keepsLateTradesWithinTheAllowedLateness() {
+        BarAggregator aggregator = new BarAggregator(121, 10, bar -> bars.add(bar.copy()), 60);
+        trade(aggregator, 1230, "100", "1");
+        trade(aggregator, 1265, "101", "1");
+        trade(aggregator, 1258, "99", "1"); //late, the watermark is at 1255
+        assertEquals(0, bars.size());
+
+        aggregator.advanceTo(1270);
+        assertEquals(1, bars.size());
+        assertEquals(parse("99"), bars.get(0).getClose());
+        assertEquals(2, bars.get(0).getTradeCount());
+
+        trade(aggregator, 1259, "98", "1"); //too late, its bar is out
+        assertEquals(1, aggregator.getLateTradeCount());
+        assertEquals(1260, aggregator.getWatermark());
+
+        aggregator.advanceTo(1330);
+        assertEquals(2, bars.size());
+        assertEquals(parse("101"), bars.get(1).getClose());
+        assertEquals(1, bars.get(1).getTradeCount());
+    }
+
+    private void trade(BarAggregator aggregator, long epochSecond, String rate, String amount) {
+        aggregator.accept(trade.set(++tradeId, true, parse(rate), parse(amount), epochSecond));
+    }
+}
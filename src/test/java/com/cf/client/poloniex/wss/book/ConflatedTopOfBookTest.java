@@ -0,0 +1,66 @@
+package com.cf.client.poloniex.wss.book;
+
+import com.cf.client.wss.handler.OrderBookMessageHandler;
+import org.junit.Test;
+
+import static com.cf.util.FixedPointUtils.parse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConflatedTopOfBookTest {
+    private static final String SNAPSHOT = "[121,100,[[\"i\",{\"currencyPair\":\"USDT_BTC\",\"orderBook\":["
+            + "{\"6361.88463940\":\"0.60000000\",\"6400.00000000\":\"1.00000000\"},"
+            + "{\"6357.13463942\":\"0.20000000\",\"6300.50000000\":\"0.10000000\"}]}]]]";
+
+    private final OrderBookMessageHandler handler = new OrderBookMessageHandler(121);
+    private final ConflatedTopOfBook topOfBook = new ConflatedTopOfBook(121);
+    private final PoloniexTopOfBook state = new PoloniexTopOfBook(121);
+
+    @Test
+    public void keepsOnlyLatestStateAndCountsConflatedOnes() {
+        handler.addLiveOrderBookListener(topOfBook);
+        assertFalse(topOfBook.poll(state));
+
+        handler.handle(SNAPSHOT);
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]");
+        handler.handle("[121,102,[[\"o\",0,\"6400.00000000\",\"2.00000000\"]]]"); //below the top, not published
+        handler.handle("[121,103,[[\"o\",0,\"6361.00000000\",\"0.30000000\"]]]");
+
+        assertTrue(topOfBook.poll(state));
+        assertEquals(parse("6358"), state.getBidRate());
+        assertEquals(parse("1.5"), state.getBidAmount());
+        assertEquals(parse("6361"), state.getAskRate());
+        assertEquals(parse("0.3"), state.getAskAmount());
+        assertEquals(3, state.getUpdates());
+        assertEquals(2, topOfBook.getConflatedCount());
+        assertFalse(topOfBook.poll(state));
+
+        handler.handle("[121,104,[[\"o\",0,\"6361.00000000\",\"0.00000000\"]]]");
+
+        assertTrue(topOfBook.poll(state));
+        assertEquals(parse("6361.8846394"), state.getAskRate());
+        assertEquals(2, topOfBook.getConflatedCount());
+        assertEquals(4, topOfBook.getUpdateCount());
+    }
+
+    @Test
+    public void publishesTheEmptyBookWhenItIsReset() {
+        handler.addLiveOrderBookListener(topOfBook);
+        handler.handle(SNAPSHOT);
+        assertTrue(topOfBook.poll(state));
+        assertFalse(state.isEmpty());
+
+        handler.handle("[121,103,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]"); //gap
+
+        assertTrue(topOfBook.poll(state));
+        assertTrue(state.isEmpty());
+
+        handler.handle(SNAPSHOT);
+        handler.onConnectionLost();
+
+        assertTrue(topOfBook.poll(state));
+        assertTrue(state.isEmpty());
+        assertEquals(1, topOfBook.getConflatedCount()); //the snapshot in between
+    }
+}
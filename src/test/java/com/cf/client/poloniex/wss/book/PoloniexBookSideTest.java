@@ -0,0 +1,109 @@
+package com.cf.client.poloniex.wss.book;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.cf.util.FixedPointUtils.ONE;
+import static com.cf.util.FixedPointUtils.multiply;
+import static com.cf.util.FixedPointUtils.parse;
+import static org.junit.Assert.assertEquals;
+
+public class PoloniexBookSideTest {
+
+    @Test
+    public void sweepsAcrossLevels() {
+        PoloniexBookSide asks = new PoloniexBookSide(false);
+        asks.update(parse("100"), parse("1"));
+        asks.update(parse("101"), parse("2"));
+        asks.update(parse("103"), parse("1"));
+
+        assertEquals(parse("4"), asks.totalAmount());
+        assertEquals(parse("3"), asks.cumulativeAmount(2));
+        assertEquals(parse("302"), asks.cumulativeNotional(2));
+        assertEquals(parse("3"), asks.amountWithin(parse("102")));
+        assertEquals(parse("1"), asks.amountWithin(parse("100")));
+
+        assertEquals(1, asks.levelsToFill(parse("1")));
+        assertEquals(2, asks.levelsToFill(parse("2")));
+        assertEquals(parse("201"), asks.sweepNotional(parse("2")));
+        assertEquals(parse("100.5"), asks.vwap(parse("2")));
+        assertEquals(parse("101.25"), asks.vwap(parse("4")));
+        assertEquals(-1, asks.levelsToFill(parse("4.1")));
+        assertEquals(0, asks.vwap(parse("4.1")));
+    }
+
+    @Test
+    public void depthQueriesMatchAWalkOverTheLevels() {
+        Random random = new Random(42);
+        for (boolean bid : new boolean[]{true, false}) {
+            PoloniexBookSide side = new PoloniexBookSide(bid);
+            for (int i = 0; i < 5000; i++) {
+                long rate = parse("6300") + random.nextInt(200) * parse("0.5");
+                side.update(rate, random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(1000) * ONE / 100);
+
+                int levels = random.nextInt(side.size() + 2);
+                long amount = 0;
+                long notional = 0;
+                for (int level = 0; level < Math.min(levels, side.size()); level++) {
+                    amount += side.amount(level);
+                    notional += multiply(side.rate(level), side.amount(level));
+                }
+                assertEquals(amount, side.cumulativeAmount(levels));
+                assertEquals(notional, side.cumulativeNotional(levels));
+                assertEquals(side.cumulativeAmount(side.size()), side.totalAmount());
+
+                if (!side.isEmpty()) {
+                    long limit = side.rate(random.nextInt(side.size())) + (random.nextBoolean() ? 1 : 0);
+                    long within = 0;
+                    for (int level = 0; level < side.size(); level++) {
+                        if (bid ? side.rate(level) >= limit : side.rate(level) <= limit) {
+                            within += side.amount(level);
+                        }
+                    }
+                    assertEquals(within, side.amountWithin(limit));
+
+                    long order = 1 + (long) (random.nextDouble() * side.totalAmount());
+                    assertEquals(walkNotional(side, order), side.sweepNotional(order));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void queriesSeededBook() {
+        PoloniexLiveOrderBook book = new PoloniexLiveOrderBook(121);
+        book.load(false, parse("100.10"), parse("1"));
+        book.load(false, parse("100.20"), parse("2"));
+        book.load(false, parse("101"), parse("4"));
+        book.load(true, parse("99.90"), parse("3"));
+        book.load(true, parse("99.50"), parse("5"));
+        book.markSeeded();
+
+        assertEquals(parse("100"), book.midRate());
+        assertEquals(parse("0.2"), book.spread());
+        assertEquals(parse("3"), book.amountWithinBps(false, 20));
+        assertEquals(parse("3"), book.amountWithinBps(true, 20));
+        assertEquals(parse("8"), book.amountWithinBps(true, 50));
+
+        book.update(false, parse("100.15"), parse("0.5"));
+        book.update(false, parse("100.10"), 0);
+        assertEquals(parse("2.5"), book.amountWithinBps(false, 20));
+
+        long[] rates = new long[2];
+        long[] amounts = new long[2];
+        assertEquals(2, book.asks().levels(rates, amounts));
+        assertEquals(parse("100.15"), rates[0]);
+        assertEquals(parse("2"), amounts[1]);
+    }
+
+    private static long walkNotional(PoloniexBookSide side, long amount) {
+        long notional = 0;
+        for (int level = 0; amount > 0; level++) {
+            long taken = Math.min(amount, side.amount(level));
+            notional += multiply(side.rate(level), taken);
+            amount -= taken;
+        }
+        return notional;
+    }
+}
@@ -0,0 +1,95 @@
+package com.cf.client.poloniex.wss.book;
+
+import com.cf.client.wss.handler.OrderBookMessageHandler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.cf.util.FixedPointUtils.ONE;
+import static com.cf.util.FixedPointUtils.divide;
+import static com.cf.util.FixedPointUtils.multiply;
+import static com.cf.util.FixedPointUtils.parse;
+import static org.junit.Assert.assertEquals;
+
+public class PoloniexBookSignalsTest {
+    private static final String SNAPSHOT = "[121,100,[[\"i\",{\"currencyPair\":\"USDT_BTC\",\"orderBook\":["
+            + "{\"101.00000000\":\"1.00000000\",\"102.00000000\":\"3.00000000\",\"103.00000000\":\"5.00000000\"},"
+            + "{\"100.00000000\":\"3.00000000\",\"99.00000000\":\"1.00000000\",\"98.00000000\":\"5.00000000\"}]}]]]";
+
+    @Test
+    public void publishesSignalsAfterEveryMessage() {
+        OrderBookMessageHandler handler = new OrderBookMessageHandler(121);
+        handler.enableSignals(2, 0.5);
+        List<PoloniexBookSignal> signals = new ArrayList<>();
+        handler.addSignalListener(signals::add);
+
+        handler.handle(SNAPSHOT);
+        PoloniexBookSignal signal = signals.get(0);
+        assertEquals(parse("100"), signal.getBidRate());
+        assertEquals(parse("101"), signal.getAskRate());
+        assertEquals(parse("100.5"), signal.getMidRate());
+        assertEquals(parse("1"), signal.getSpread());
+        assertEquals(parse("1"), signal.getSpreadEwma());
+        assertEquals(parse("100.75"), signal.getMicroprice()); //(100 * 1 + 101 * 3) / 4
+        assertEquals(parse("4"), signal.getBidDepth());
+        assertEquals(parse("4"), signal.getAskDepth());
+        assertEquals(0, signal.getImbalance(), 0);
+        assertEquals(parse("100.75"), signal.getDepthWeightedMid()); //(99.75 * 4 + 101.75 * 4) / 8
+
+        handler.handle("[121,101,[[\"o\",1,\"100.50000000\",\"4.00000000\"]]]");
+        signal = signals.get(1);
+        assertEquals(parse("0.5"), signal.getSpread());
+        assertEquals(parse("0.75"), signal.getSpreadEwma());
+        assertEquals(parse("7"), signal.getBidDepth()); //99 is pushed out of the top 2
+        assertEquals(3 / 11.0, signal.getImbalance(), 1e-12);
+        assertEquals(1, signal.getUpdates());
+
+        handler.handle("[121,102,[[\"o\",0,\"101.00000000\",\"0.00000000\"]]]");
+        signal = signals.get(2);
+        assertEquals(parse("102"), signal.getAskRate());
+        assertEquals(parse("8"), signal.getAskDepth()); //103 moves into the top 2
+    }
+
+    @Test
+    public void runningSumsMatchARescan() {
+        Random random = new Random(7);
+        PoloniexLiveOrderBook book = new PoloniexLiveOrderBook(121);
+        for (int level = 0; level < 20; level++) {
+            book.load(true, parse("6300") - level * ONE, ONE);
+            book.load(false, parse("6301") + level * ONE, ONE);
+        }
+        book.markSeeded();
+        PoloniexBookSignals signals = new PoloniexBookSignals(5, 0.1);
+        book.setSignals(signals);
+        PoloniexBookSignal signal = new PoloniexBookSignal(121);
+
+        for (int i = 0; i < 20_000; i++) {
+            boolean bid = random.nextBoolean();
+            long rate = bid ? parse("6280") + random.nextInt(21) * ONE : parse("6301") + random.nextInt(21) * ONE;
+            book.update(bid, rate, random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(500) * ONE / 100);
+            if (book.bids().isEmpty() || book.asks().isEmpty()) {
+                continue;
+            }
+            signals.read(signal);
+
+            long bidDepth = book.bids().cumulativeAmount(5);
+            long askDepth = book.asks().cumulativeAmount(5);
+            assertEquals(bidDepth, signal.getBidDepth());
+            assertEquals(askDepth, signal.getAskDepth());
+            long bidAverage = divide(notional(book.bids(), 5), bidDepth);
+            long askAverage = divide(notional(book.asks(), 5), askDepth);
+            assertEquals(divide(multiply(bidAverage, askDepth) + multiply(askAverage, bidDepth), bidDepth + askDepth),
+                    signal.getDepthWeightedMid());
+        }
+    }
+
+    private static long notional(PoloniexBookSide side, int levels) {
+        long notional = 0;
+        for (int level = 0; level < Math.min(levels, side.size()); level++) {
+            notional += multiply(side.rate(level), side.amount(level));
+        }
+        return notional;
+    }
+}
@@ -0,0 +1,135 @@
+package com.cf.client.poloniex.wss.book;
+
+import com.cf.client.wss.handler.OrderBookMessageHandler;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.cf.util.FixedPointUtils.parse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PoloniexTopOfBookTableTest {
+
+    @Test
+    public void snapshotsPublishedPairs() {
+        PoloniexTopOfBookTable table = new PoloniexTopOfBookTable();
+        PoloniexLiveOrderBook book = new PoloniexLiveOrderBook(121);
+        book.load(true, parse("100"), parse("2"));
+        book.load(false, parse("101"), parse("3"));
+        book.markSeeded();
+        table.publisher().accept(book);
+        table.publisher().accept(book);
+        assertTrue(table.update(7, parse("0.05"), parse("10"), parse("0.06"), parse("20")));
+
+        PoloniexTopOfBookSnapshot snapshot = table.newSnapshot();
+        assertEquals(2, table.snapshot(snapshot));
+        assertEquals(7, snapshot.currencyPairId(0));
+        assertEquals(1, snapshot.indexOf(121));
+        assertEquals(parse("100"), snapshot.bidRate(1));
+        assertEquals(parse("3"), snapshot.askAmount(1));
+        assertEquals(1, snapshot.updates(1)); //the second publish did not change anything
+        assertEquals(-1, snapshot.indexOf(50));
+
+        PoloniexTopOfBook topOfBook = new PoloniexTopOfBook(7);
+        assertTrue(table.read(topOfBook, new long[4]));
+        assertEquals(parse("0.06"), topOfBook.getAskRate());
+        assertFalse(table.read(new PoloniexTopOfBook(50), new long[4]));
+        assertFalse(table.update(2000, 1, 1, 1, 1));
+    }
+
+    @Test
+    public void pairIsNotServedAfterAGapOrOnceCleared() {
+        PoloniexTopOfBookTable table = new PoloniexTopOfBookTable();
+        OrderBookMessageHandler handler = new OrderBookMessageHandler(121);
+        handler.addLiveOrderBookListener(table.publisher());
+        handler.handle("[121,100,[[\"i\",{\"currencyPair\":\"USDT_BTC\",\"orderBook\":["
+                + "{\"6361.88463940\":\"0.60000000\"},{\"6357.13463942\":\"0.20000000\"}]}]]]");
+        PoloniexTopOfBook topOfBook = new PoloniexTopOfBook(121);
+        PoloniexTopOfBookSnapshot snapshot = table.newSnapshot();
+        assertTrue(table.read(topOfBook, new long[4]));
+        assertEquals(1, table.snapshot(snapshot));
+
+        handler.handle("[121,105,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]"); //101 to 104 missing
+
+        assertTrue(handler.isStale());
+        assertFalse(table.read(topOfBook, new long[4]));
+        assertTrue(topOfBook.isEmpty());
+        assertEquals(0, table.snapshot(snapshot));
+
+        table.update(7, parse("0.05"), parse("10"), parse("0.06"), parse("20"));
+        table.clear(7);
+        assertFalse(table.read(new PoloniexTopOfBook(7), new long[4]));
+        assertEquals(0, table.snapshot(snapshot));
+    }
+
+    @Test
+    public void pairsBeyondTheCapacityAreNotFound() {
+        PoloniexTopOfBookTable table = new PoloniexTopOfBookTable(10);
+        PoloniexTopOfBook topOfBook = new PoloniexTopOfBook(121);
+
+        assertFalse(table.read(topOfBook, new long[4]));
+        assertTrue(topOfBook.isEmpty());
+        assertEquals(0, table.getUpdateCount(121));
+    }
+
+    @Test
+    public void readersSeeConsistentPairsWhileWritersPublish() throws InterruptedException {
+        int pairs = 200;
+        PoloniexTopOfBookTable table = new PoloniexTopOfBookTable();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        //two writers owning half of the pairs each, like two event loops
+        Thread[] writers = new Thread[2];
+        for (int w = 0; w < writers.length; w++) {
+            int first = w;
+            writers[w] = new Thread(() -> {
+                for (long i = 1; running.get(); i++) {
+                    for (int pair = first; pair < pairs; pair += 2) {
+                        table.update(pair, i * 100 + pair, i, i * 100 + pair + 1, i * 2);
+                    }
+                }
+            });
+        }
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                PoloniexTopOfBookSnapshot snapshot = table.newSnapshot();
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        int size = table.snapshot(snapshot);
+                        for (int index = 0; index < size; index++) {
+                            int pair = snapshot.currencyPairId(index);
+                            long generation = snapshot.bidAmount(index);
+                            assertEquals(generation * 100 + pair, snapshot.bidRate(index));
+                            assertEquals(generation * 100 + pair + 1, snapshot.askRate(index));
+                            assertEquals(generation * 2, snapshot.askAmount(index));
+                            assertEquals(generation, snapshot.updates(index));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.cf.client.poloniex.wss.decoder;
+
+import com.cf.client.poloniex.wss.book.PoloniexLiveOrderBook;
+import com.cf.client.wss.handler.OrderBookMessageHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.cf.client.poloniex.wss.decoder.PoloniexSnapshotDecoder.Status.BODY;
+import static com.cf.client.poloniex.wss.decoder.PoloniexSnapshotDecoder.Status.COMPLETE;
+import static com.cf.client.poloniex.wss.decoder.PoloniexSnapshotDecoder.Status.HEADER;
+import static com.cf.client.poloniex.wss.decoder.PoloniexSnapshotDecoder.Status.REJECTED;
+import static com.cf.util.FixedPointUtils.parse;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PoloniexSnapshotDecoderTest {
+    private static final String SNAPSHOT = "[121,100,[[\"i\",{\"currencyPair\":\"USDT_BTC\",\"orderBook\":["
+            + "{\"6361.88463940\":\"0.60000000\",\"6400.00000000\":\"1.00000000\"},"
+            + "{\"6357.13463942\":\"0.20000000\",\"6300.5\":\"3\"}]}]]]";
+
+    private final RecordingHandler handler = new RecordingHandler();
+    private final PoloniexSnapshotDecoder decoder = new PoloniexSnapshotDecoder(channelId -> channelId == 121 ? handler : null);
+
+    @Test
+    public void decodesSnapshotLevels() {
+        assertEquals(COMPLETE, decoder.decode(buf(SNAPSHOT)));
+
+        assertEquals(expectedEvents(), handler.events);
+    }
+
+    @Test
+    public void resumesAtEveryChunkBoundary() {
+        for (int split = 1; split < SNAPSHOT.length(); split++) {
+            handler.events.clear();
+            decoder.reset();
+
+            PoloniexSnapshotDecoder.Status first = decoder.decode(buf(SNAPSHOT.substring(0, split)));
+
+            assertTrue("split at " + split, first == HEADER || first == BODY);
+            assertEquals("split at " + split, COMPLETE, decoder.decode(buf(SNAPSHOT.substring(split))));
+            assertEquals("split at " + split, expectedEvents(), handler.events);
+        }
+    }
+
+    @Test
+    public void rejectsOtherMessages() {
+        assertEquals(REJECTED, decoder.decode(buf("[121,5,[[\"o\",1,\"1.00000000\",\"2.00000000\"]]]")));
+        decoder.reset();
+        assertEquals(REJECTED, decoder.decode(buf("[1002,null,[149,\"382.98901522\"]]")));
+
+        assertTrue(handler.events.isEmpty());
+    }
+
+    @Test
+    public void skipsSnapshotOfUnknownChannel() {
+        assertEquals(COMPLETE, decoder.decode(buf(SNAPSHOT.replace("[121,", "[148,"))));
+
+        assertEquals(148, decoder.getChannelId());
+        assertTrue(handler.events.isEmpty());
+    }
+
+    @Test
+    public void seedsSameBookAsStringPath() {
+        OrderBookMessageHandler streamed = new OrderBookMessageHandler(121);
+        OrderBookMessageHandler parsed = new OrderBookMessageHandler(121);
+        PoloniexLiveOrderBook streamedBook = streamed.enableLiveOrderBook();
+        PoloniexLiveOrderBook parsedBook = parsed.enableLiveOrderBook();
+        PoloniexSnapshotDecoder decoder = new PoloniexSnapshotDecoder(channelId -> streamed);
+
+        for (int i = 0; i < SNAPSHOT.length(); i += 7) {
+            decoder.decode(buf(SNAPSHOT.substring(i, Math.min(SNAPSHOT.length(), i + 7))));
+        }
+        parsed.handle(SNAPSHOT);
+
+        assertTrue(streamedBook.isSeeded());
+        assertEquals(100, streamed.getLastSequence());
+        assertEquals(parsedBook.toString(), streamedBook.toString());
+        assertEquals(parsedBook.bids().size(), streamedBook.bids().size());
+        for (int level = 0; level < parsedBook.bids().size(); level++) {
+            assertEquals(parsedBook.bids().rate(level), streamedBook.bids().rate(level));
+            assertEquals(parsedBook.bids().amount(level), streamedBook.bids().amount(level));
+        }
+        assertEquals(parse("6361.8846394"), streamedBook.bestAskRate());
+    }
+
+    private static List<String> expectedEvents() {
+        return asList(
+                "snapshot 100",
+                "level false " + parse("6361.8846394") + " " + parse("0.6"),
+                "level false " + parse("6400") + " " + parse("1"),
+                "level true " + parse("6357.13463942") + " " + parse("0.2"),
+                "level true " + parse("6300.5") + " " + parse("3"),
+                "snapshot end");
+    }
+
+    private static ByteBuf buf(String text) {
+        return Unpooled.copiedBuffer(text, CharsetUtil.UTF_8);
+    }
+}
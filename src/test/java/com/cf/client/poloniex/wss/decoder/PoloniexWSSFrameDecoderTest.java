@@ -0,0 +1,85 @@
+package com.cf.client.poloniex.wss.decoder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static com.cf.util.FixedPointUtils.parse;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PoloniexWSSFrameDecoderTest {
+
+    private final PoloniexWSSFrameDecoder decoder = new PoloniexWSSFrameDecoder();
+    private final RecordingHandler handler = new RecordingHandler();
+
+    @Test
+    public void readChannelId() {
+        assertEquals(121, PoloniexWSSFrameDecoder.readChannelId(buf("[121,252507198,[]]")));
+        assertEquals(1010, PoloniexWSSFrameDecoder.readChannelId(buf("[1010]")));
+        assertEquals(-1, PoloniexWSSFrameDecoder.readChannelId(buf("[]")));
+        assertEquals(-1, PoloniexWSSFrameDecoder.readChannelId(buf("{\"error\":\"Invalid channel.\"}")));
+    }
+
+    @Test
+    public void decodesOrderBookUpdatesAndTrades() {
+        ByteBuf content = buf("[121,252507198,[[\"o\",0,\"6357.13463942\",\"0.00000000\"],"
+                + "[\"o\",1,\"6361.8846394\",\"0.6\"],"
+                + "[\"t\",\"48555480\",1,\"6343.06999999\",\"0.00126059\",1527763237]]]");
+
+        assertTrue(decoder.decode(content, handler));
+
+        assertEquals(asList(
+                "start 252507198",
+                "o false " + parse("6357.13463942") + " 0",
+                "o true " + parse("6361.8846394") + " " + parse("0.6"),
+                "t 48555480 true " + parse("6343.06999999") + " " + parse("0.00126059") + " 1527763237",
+                "end"), handler.events);
+        assertEquals("content must not be consumed", 0, content.readerIndex());
+    }
+
+    @Test
+    public void skipsUnknownEntriesAndExtraFields() {
+        assertTrue(decoder.decode(buf("[121,5,[[\"x\",{\"a\":[1,\"]\"]}],[\"o\",1,\"1.00000000\",\"2.00000000\",\"1527763237123\"]]]"), handler));
+
+        assertEquals(asList("start 5", "o true " + parse("1") + " " + parse("2"), "end"), handler.events);
+    }
+
+    @Test
+    public void rejectsMessagesItDoesNotUnderstand() {
+        assertFalse(decoder.decode(buf("[1010]"), handler));
+        assertFalse(decoder.decode(buf("[1002,null,[149,\"382.98901522\"]]"), handler));
+        assertFalse(decoder.decode(buf("[121,1,[[\"i\",{\"currencyPair\":\"USDT_BTC\",\"orderBook\":[{},{}]}]]]"), handler));
+        assertFalse(decoder.decode(buf("{\"error\":\"Invalid channel.\"}"), handler));
+
+        assertTrue(handler.events.isEmpty());
+    }
+
+    @Test
+    public void rejectsMalformedDecimals() {
+        for (String rate : asList("1.2.3", "", ".", "-", "1..0")) {
+            try {
+                decoder.decode(buf("[121,5,[[\"o\",1,\"" + rate + "\",\"2.00000000\"]]]"), handler);
+                fail("Accepted rate \"" + rate + "\"");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void skipsMessageRejectedByHandler() {
+        handler.accept = false;
+
+        assertTrue(decoder.decode(buf("[121,5,[[\"o\",1,\"1.00000000\",\"2.00000000\"]]]"), handler));
+
+        assertEquals(asList("start 5"), handler.events);
+    }
+
+    private static ByteBuf buf(String text) {
+        return Unpooled.copiedBuffer(text, CharsetUtil.UTF_8);
+    }
+}
@@ -0,0 +1,56 @@
+package com.cf.client.poloniex.wss.decoder;
+
+import com.cf.client.wss.handler.IMarketEventHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records decoder callbacks as readable strings.
+ */
+class RecordingHandler implements IMarketEventHandler {
+    final List<String> events = new ArrayList<>();
+    boolean accept = true;
+
+    @Override
+    public boolean onMessageStart(long sequence) {
+        events.add("start " + sequence);
+        return accept;
+    }
+
+    @Override
+    public void onOrderBookUpdate(boolean bid, long rate, long amount) {
+        events.add("o " + bid + " " + rate + " " + amount);
+    }
+
+    @Override
+    public void onTrade(long tradeId, boolean buy, long rate, long amount, long epochSecond) {
+        events.add("t " + tradeId + " " + buy + " " + rate + " " + amount + " " + epochSecond);
+    }
+
+    @Override
+    public void onMessageEnd() {
+        events.add("end");
+    }
+
+    @Override
+    public boolean onSnapshotStart(long sequence) {
+        events.add("snapshot " + sequence);
+        return accept;
+    }
+
+    @Override
+    public void onSnapshotLevel(boolean bid, long rate, long amount) {
+        events.add("level " + bid + " " + rate + " " + amount);
+    }
+
+    @Override
+    public void onSnapshotEnd() {
+        events.add("snapshot end");
+    }
+
+    @Override
+    public void handle(String message) {
+        events.add("handle " + message);
+    }
+}
@@ -0,0 +1,304 @@
+package com.cf.client.poloniex.wss.stub;
+
+import com.cf.client.poloniex.wss.model.PoloniexWSSSubscription;
+import com.google.gson.Gson;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Poloniex WebSocket endpoint: accepts plain
+ * {@code ws://} connections, records subscribe and unsubscribe commands and
+ * publishes whatever messages the test hands it to the subscribers of a channel.
+ * <p>
+ * For load and soak tests it also speaks the push protocol on its own:
+ * {@link #addMarket(SyntheticMarket) synthetic markets} send an {@code "i"}
+ * snapshot on subscribe and {@code "o"}/{@code "t"} deltas with sequence
+ * numbers once {@link #startActivity(int) activity} is started, along with
+ * 1002 ticker updates and 1010 heartbeats. Faults can be injected: dropped
+ * connections, sequence gaps, missing heartbeats and messages split into
+ * fragments.
+ * <p>
+ * Markets are only touched on the single event loop of the server, so their
+ * snapshots and deltas are always consistent.
+ */
+public class PoloniexStubServer implements AutoCloseable {
+    private static final int TICKER = 1002;
+    private static final String HEARTBEAT = "[1010]";
+    private static final int TICKER_EVERY_MESSAGES = 20;
+    private static final long TICK_MICROS = 1000;
+
+    private final Gson gson = new Gson();
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    private final ChannelGroup connections = new DefaultChannelGroup(group.next());
+    private final Map<Integer, Set<Channel>> subscribers = new ConcurrentHashMap<>();
+    private final Map<Integer, String> snapshots = new ConcurrentHashMap<>();
+    private final Map<Integer, SyntheticMarket> markets = new ConcurrentHashMap<>();
+    private final Channel serverChannel;
+    private final AtomicLong sentCount = new AtomicLong();
+    private volatile int fragmentBytes;
+    private ScheduledFuture<?> activity;
+    private ScheduledFuture<?> heartbeats;
+    private long messageDebt;
+    private long messageIndex;
+
+    public PoloniexStubServer() throws InterruptedException {
+        this(0);
+    }
+
+    /**
+     * @param port to listen on, e.g. of a stopped server the client keeps reconnecting to; {@code 0} for any free one
+     */
+    public PoloniexStubServer(int port) throws InterruptedException {
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        connections.add(ch);
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536),
+                                new WebSocketServerProtocolHandler("/"), new CommandHandler());
+                    }
+                })
+                .bind("127.0.0.1", port)
+                .sync()
+                .channel();
+    }
+
+    public int getPort() {
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    public String getUrl() {
+        return "ws://127.0.0.1:" + getPort();
+    }
+
+    /**
+     * @param snapshot sent to every new subscriber of the channel before any published message
+     */
+    public void setSnapshot(int channelId, String snapshot) {
+        snapshots.put(channelId, snapshot);
+    }
+
+    /**
+     * Serves the channel of the market: subscribers get its current snapshot,
+     * then its deltas while activity runs.
+     */
+    public void addMarket(SyntheticMarket market) {
+        markets.put(market.getChannelId(), market);
+    }
+
+    public int getSubscriberCount(int channelId) {
+        return subscribers.getOrDefault(channelId, new CopyOnWriteArraySet<>()).size();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return messages sent to subscribers so far, heartbeats excluded
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public void publish(int channelId, String message) {
+        for (Channel channel : subscribers.getOrDefault(channelId, new CopyOnWriteArraySet<>())) {
+            send(channel, message, true);
+        }
+    }
+
+    /**
+     * Sends the deltas of all markets, round robin, at the given total rate;
+     * every {@value #TICKER_EVERY_MESSAGES}th message of a market is followed by
+     * a ticker update. Messages are written in bursts once per millisecond and flushed
+     * once per burst, so rates of several hundred thousand messages per second
+     * are possible, as far as the single server thread keeps up.
+     */
+    public void startActivity(int messagesPerSecond) {
+        stopActivity();
+        long perTick = Math.max(1, messagesPerSecond * TICK_MICROS / TimeUnit.SECONDS.toMicros(1));
+        activity = group.next().scheduleAtFixedRate(() -> tick(perTick), TICK_MICROS, TICK_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Stops the deltas; returns once the last burst has been written.
+     */
+    public void stopActivity() {
+        if (activity != null) {
+            activity.cancel(false);
+            activity = null;
+            onEventLoop(() -> connections.flush());
+        }
+    }
+
+    private void tick(long perTick) {
+        List<SyntheticMarket> active = new ArrayList<>(markets.values());
+        if (active.isEmpty()) {
+            return;
+        }
+        messageDebt += perTick;
+        for (; messageDebt > 0; messageDebt--) {
+            SyntheticMarket market = active.get((int) (messageIndex++ % active.size()));
+            String delta = market.nextDelta();
+            for (Channel channel : subscribers.getOrDefault(market.getChannelId(), new CopyOnWriteArraySet<>())) {
+                send(channel, delta, false);
+            }
+            if (market.getSequence() % TICKER_EVERY_MESSAGES == 0) {
+                String ticker = market.ticker();
+                for (Channel channel : subscribers.getOrDefault(TICKER, new CopyOnWriteArraySet<>())) {
+                    send(channel, ticker, false);
+                }
+            }
+        }
+        connections.flush();
+    }
+
+    /**
+     * Sends {@code [1010]} to every connection at the interval, like the
+     * exchange does when a connection has nothing else to send.
+     */
+    public void startHeartbeats(long intervalMillis) {
+        stopHeartbeats();
+        heartbeats = group.next().scheduleAtFixedRate(
+                () -> connections.writeAndFlush(new TextWebSocketFrame(HEARTBEAT)), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fault: silent connections, the client's heartbeat timeout should fire.
+     */
+    public void stopHeartbeats() {
+        if (heartbeats != null) {
+            heartbeats.cancel(false);
+            heartbeats = null;
+        }
+    }
+
+    /**
+     * Fault: drops every connection, like a network failure or an exchange restart.
+     */
+    public void disconnectAll() throws InterruptedException {
+        connections.close().sync();
+    }
+
+    /**
+     * Fault: the next delta of the channel skips a sequence number.
+     */
+    public void injectGap(int channelId) {
+        onEventLoop(() -> markets.get(channelId).skipSequence());
+    }
+
+    /**
+     * Fault: messages longer than this are sent as a text frame followed by
+     * continuation frames of at most this many bytes, {@code 0} sends every
+     * message in one frame.
+     */
+    public void setFragmentBytes(int fragmentBytes) {
+        this.fragmentBytes = fragmentBytes;
+    }
+
+    /**
+     * Runs the task on the event loop, e.g. to read a market consistently.
+     */
+    public void onEventLoop(Runnable task) {
+        try {
+            group.next().submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void send(Channel channel, String message, boolean flush) {
+        sentCount.incrementAndGet();
+        int fragmentBytes = this.fragmentBytes;
+        if (fragmentBytes <= 0 || message.length() <= fragmentBytes) {
+            write(channel, new TextWebSocketFrame(message), flush);
+            return;
+        }
+        ByteBuf content = Unpooled.wrappedBuffer(message.getBytes(StandardCharsets.UTF_8));
+        int length = content.readableBytes();
+        for (int offset = 0; offset < length; offset += fragmentBytes) {
+            int size = Math.min(fragmentBytes, length - offset);
+            boolean last = offset + size == length;
+            ByteBuf fragment = content.retainedSlice(offset, size);
+            write(channel, offset == 0 ? new TextWebSocketFrame(last, 0, fragment) : new ContinuationWebSocketFrame(last, 0, fragment), flush && last);
+        }
+        content.release();
+    }
+
+    private static void write(Channel channel, Object frame, boolean flush) {
+        if (flush) {
+            channel.writeAndFlush(frame);
+        } else {
+            channel.write(frame);
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        stopActivity();
+        stopHeartbeats();
+        serverChannel.close().sync();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+
+    private class CommandHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame frame) {
+            PoloniexWSSSubscription command = gson.fromJson(frame.text(), PoloniexWSSSubscription.class);
+            int channelId = Integer.parseInt(command.channel);
+            if ("subscribe".equals(command.command)) {
+                SyntheticMarket market = markets.get(channelId);
+                String snapshot = market != null ? market.snapshot() : snapshots.get(channelId);
+                if (channelId == TICKER) {
+                    send(ctx.channel(), "[1002,1]", true);
+                } else if (snapshot != null) {
+                    send(ctx.channel(), snapshot, true);
+                }
+                subscribers.computeIfAbsent(channelId, id -> new CopyOnWriteArraySet<>()).add(ctx.channel());
+            } else if ("unsubscribe".equals(command.command)) {
+                subscribers.getOrDefault(channelId, new CopyOnWriteArraySet<>()).remove(ctx.channel());
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            subscribers.values().forEach(channels -> channels.remove(ctx.channel()));
+        }
+    }
+}
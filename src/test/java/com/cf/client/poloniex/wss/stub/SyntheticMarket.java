@@ -0,0 +1,191 @@
+package com.cf.client.poloniex.wss.stub;
+
+import com.cf.util.FixedPointUtils;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Random but consistent order book of one currency pair, producing Poloniex
+ * push messages: {@code "i"} snapshots of the current book and {@code "o"}/
+ * {@code "t"} deltas with consecutive sequence numbers, plus 1002 ticker
+ * updates. Applying the deltas to the snapshot yields the book of this class.
+ * Not thread-safe, {@link PoloniexStubServer} only uses it on its event loop.
+ */
+public class SyntheticMarket {
+    private static final int LEVELS = 50;
+
+    private final int channelId;
+    private final long tick;
+    private final String currencyPair;
+    private final Random random;
+    private final NavigableMap<Long, Long> bids = new TreeMap<>();
+    private final NavigableMap<Long, Long> asks = new TreeMap<>();
+    private final StringBuilder message = new StringBuilder(256);
+    private long sequence;
+    private long tradeId;
+    private long lastRate;
+
+    public SyntheticMarket(int channelId, String currencyPair, long midRate, long seed) {
+        this.channelId = channelId;
+        this.currencyPair = currencyPair;
+        this.random = new Random(seed);
+        this.sequence = 1000;
+        this.lastRate = midRate;
+        this.tick = Math.max(1, midRate / 10_000);
+        for (int level = 1; level <= LEVELS; level++) {
+            bids.put(midRate - level * tick, randomAmount());
+            asks.put(midRate + level * tick, randomAmount());
+        }
+    }
+
+    public int getChannelId() {
+        return channelId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long bestBidRate() {
+        return bids.lastKey();
+    }
+
+    public long bestAskRate() {
+        return asks.firstKey();
+    }
+
+    public long bestBidAmount() {
+        return bids.lastEntry().getValue();
+    }
+
+    public long bestAskAmount() {
+        return asks.firstEntry().getValue();
+    }
+
+    /**
+     * The next delta skips a sequence number, as if a message got lost.
+     */
+    public void skipSequence() {
+        sequence++;
+    }
+
+    /**
+     * @return {@code [channelId,sequence,[["i",{"currencyPair":...,"orderBook":[{asks},{bids}]}]]]}
+     */
+    public String snapshot() {
+        StringBuilder snapshot = new StringBuilder(64 * (bids.size() + asks.size()));
+        snapshot.append('[').append(channelId).append(',').append(sequence)
+                .append(",[[\"i\",{\"currencyPair\":\"").append(currencyPair).append("\",\"orderBook\":[");
+        appendSide(snapshot, asks);
+        snapshot.append(',');
+        appendSide(snapshot, bids.descendingMap());
+        return snapshot.append("]}]]]").toString();
+    }
+
+    private static void appendSide(StringBuilder snapshot, Map<Long, Long> side) {
+        snapshot.append('{');
+        boolean first = true;
+        for (Map.Entry<Long, Long> level : side.entrySet()) {
+            if (!first) {
+                snapshot.append(',');
+            }
+            first = false;
+            appendDecimal(snapshot.append('"'), level.getKey()).append("\":\"");
+            appendDecimal(snapshot, level.getValue()).append('"');
+        }
+        snapshot.append('}');
+    }
+
+    /**
+     * @return one to three book updates, with a trade in one message out of ten
+     */
+    public String nextDelta() {
+        message.setLength(0);
+        message.append('[').append(channelId).append(',').append(++sequence).append(",[");
+        int updates = 1 + random.nextInt(3);
+        for (int i = 0; i < updates; i++) {
+            if (i > 0) {
+                message.append(',');
+            }
+            appendUpdate();
+        }
+        if (random.nextInt(10) == 0) {
+            appendTrade();
+        }
+        return message.append("]]").toString();
+    }
+
+    /**
+     * @return {@code [1002,null,[pairId,"last","lowestAsk","highestBid","percentChange","baseVolume","quoteVolume",isFrozen,"high24hr","low24hr"]]}
+     */
+    public String ticker() {
+        StringBuilder ticker = new StringBuilder(160);
+        ticker.append("[1002,null,[").append(channelId).append(',');
+        appendDecimal(ticker.append('"'), lastRate).append("\",");
+        appendDecimal(ticker.append('"'), bestAskRate()).append("\",");
+        appendDecimal(ticker.append('"'), bestBidRate()).append("\",");
+        ticker.append("\"0.01000000\",\"1000.00000000\",\"0.15000000\",0,");
+        appendDecimal(ticker.append('"'), lastRate + 100 * tick).append("\",");
+        appendDecimal(ticker.append('"'), lastRate - 100 * tick).append("\"]]");
+        return ticker.toString();
+    }
+
+    private void appendUpdate() {
+        boolean bid = random.nextBoolean();
+        NavigableMap<Long, Long> side = bid ? bids : asks;
+        long best = bid ? bestBidRate() : bestAskRate();
+        long opposite = bid ? bestAskRate() : bestBidRate();
+        long rate = best + (bid ? -1 : 1) * (random.nextInt(LEVELS) - 2) * tick;
+        if (bid ? rate >= opposite : rate <= opposite) {
+            rate = best;
+        }
+        long amount = side.size() > LEVELS / 2 && side.containsKey(rate) && random.nextInt(4) == 0 ? 0 : randomAmount();
+        if (amount == 0) {
+            side.remove(rate);
+        } else {
+            side.put(rate, amount);
+        }
+        message.append("[\"o\",").append(bid ? 1 : 0).append(",\"");
+        appendDecimal(message, rate).append("\",\"");
+        appendDecimal(message, amount).append("\"]");
+    }
+
+    /**
+     * A market order taking half of the best level of one side.
+     */
+    private void appendTrade() {
+        boolean buy = random.nextBoolean();
+        NavigableMap<Long, Long> side = buy ? asks : bids;
+        Map.Entry<Long, Long> best = buy ? side.firstEntry() : side.lastEntry();
+        long amount = best.getValue() / 2;
+        if (amount == 0) {
+            return;
+        }
+        long remaining = best.getValue() - amount;
+        side.put(best.getKey(), remaining);
+        lastRate = best.getKey();
+        message.append(",[\"o\",").append(buy ? 0 : 1).append(",\"");
+        appendDecimal(message, best.getKey()).append("\",\"");
+        appendDecimal(message, remaining).append("\"],[\"t\",\"").append(++tradeId).append("\",")
+                .append(buy ? 1 : 0).append(",\"");
+        appendDecimal(message, best.getKey()).append("\",\"");
+        appendDecimal(message, amount).append("\",").append(System.currentTimeMillis() / 1000).append(']');
+    }
+
+    private long randomAmount() {
+        return 1 + (long) (random.nextDouble() * 5 * FixedPointUtils.ONE);
+    }
+
+    static StringBuilder appendDecimal(StringBuilder out, long value) {
+        long integer = value / FixedPointUtils.ONE;
+        long fraction = value % FixedPointUtils.ONE;
+        out.append(integer).append('.');
+        for (long digit = FixedPointUtils.ONE / 10; digit > 0; digit /= 10) {
+            out.append((char) ('0' + fraction / digit % 10));
+        }
+        return out;
+    }
+}
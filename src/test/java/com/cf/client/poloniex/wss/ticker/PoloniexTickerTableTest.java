@@ -0,0 +1,70 @@
+package com.cf.client.poloniex.wss.ticker;
+
+import com.cf.client.wss.handler.TickerTableMessageHandler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.cf.util.FixedPointUtils.parse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PoloniexTickerTableTest {
+    private static final String TICKER = "[1002,null,[121,\"7000.10000000\",\"7001.00000000\",\"7000.00000000\",\"-0.01234567\","
+            + "\"1234.56789012\",\"0.17000000\",0,\"7100.00000000\",\"6900.00000000\"]]";
+
+    private final PoloniexTickerTable table = new PoloniexTickerTable();
+    private final TickerTableMessageHandler handler = new TickerTableMessageHandler(table);
+    private final List<PoloniexTicker> updates = new ArrayList<>();
+
+    @Test
+    public void decodesTickerIntoTable() {
+        handler.handle("[1002,1]");
+        assertNull(table.get(121));
+
+        handler.handle(TICKER);
+
+        PoloniexTicker ticker = table.get(121);
+        assertEquals(121, ticker.getCurrencyPairId());
+        assertEquals(parse("7000.1"), ticker.getLast());
+        assertEquals(parse("7001"), ticker.getLowestAsk());
+        assertEquals(parse("7000"), ticker.getHighestBid());
+        assertEquals(parse("-0.01234567"), ticker.getPercentChange());
+        assertEquals(parse("1234.56789012"), ticker.getBaseVolume());
+        assertEquals(parse("0.17"), ticker.getQuoteVolume());
+        assertFalse(ticker.isFrozen());
+        assertEquals(parse("7100"), ticker.getHigh24h());
+        assertEquals(parse("6900"), ticker.getLow24h());
+        assertEquals(1, ticker.getUpdates());
+    }
+
+    @Test
+    public void notifiesOnlyChangedPairsWithChangedFields() {
+        table.addListener(ticker -> updates.add(ticker.copy()));
+
+        handler.handle(TICKER);
+        handler.handle(TICKER);
+        handler.handle(TICKER.replace("\"7000.10000000\"", "\"7000.20000000\"").replace(",0,", ",1,"));
+
+        assertEquals(2, updates.size());
+        assertEquals((1 << 9) - 1, updates.get(0).getChangedFields());
+        PoloniexTicker changed = updates.get(1);
+        assertTrue(changed.hasChanged(PoloniexTicker.LAST));
+        assertTrue(changed.hasChanged(PoloniexTicker.FROZEN));
+        assertEquals(PoloniexTicker.LAST | PoloniexTicker.FROZEN, changed.getChangedFields());
+        assertTrue(changed.isFrozen());
+        assertEquals(2, table.get(121).getUpdates());
+    }
+
+    @Test
+    public void pairsBeyondTheCapacityAreNotFound() {
+        PoloniexTickerTable table = new PoloniexTickerTable(10);
+
+        assertFalse(table.read(10, new PoloniexTicker(), table.newBuffer()));
+        assertFalse(table.read(-1, new PoloniexTicker(), table.newBuffer()));
+        assertNull(table.get(121));
+    }
+}
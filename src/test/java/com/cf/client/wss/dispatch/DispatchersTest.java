@@ -0,0 +1,195 @@
+package com.cf.client.wss.dispatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DispatchersTest {
+    private static final int EVENTS = 100_000;
+
+    private final Dispatchers dispatchers = new Dispatchers(64);
+
+    @After
+    public void close() {
+        dispatchers.close();
+    }
+
+    @Test
+    public void inlineReturnsListenerItself() {
+        Consumer<Integer> listener = i -> {
+        };
+
+        assertSame(listener, dispatchers.wrap(121, DispatchPolicy.INLINE, listener, UnaryOperator.identity()));
+    }
+
+    @Test
+    public void orderedExecutorPreservesOrder() throws InterruptedException {
+        assertOrdered(DispatchPolicy.ORDERED_EXECUTOR);
+    }
+
+    @Test
+    public void ringBufferPreservesOrder() throws InterruptedException {
+        try (Dispatchers large = new Dispatchers(2 * EVENTS)) {
+            assertOrdered(large, DispatchPolicy.RING_BUFFER);
+        }
+    }
+
+    @Test
+    public void fullRingBufferDropsInsteadOfBlocking() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        Consumer<Integer> listener = dispatchers.wrap(121, DispatchPolicy.RING_BUFFER, i -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(i);
+        }, UnaryOperator.identity());
+
+        for (int i = 0; i < 1000; i++) {
+            listener.accept(i); //returns at once although the consumer is stuck
+        }
+        release.countDown();
+
+        long dropped = dispatchers.getDroppedCount();
+        assertTrue(dropped >= 1000 - 64 - 1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < 1000 - dropped && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1000 - dropped, received.size());
+        assertEquals((Integer) 0, received.get(0));
+    }
+
+    @Test
+    public void closingAPairEndsItsThreads() throws InterruptedException {
+        dispatchers.get(121, DispatchPolicy.RING_BUFFER);
+        dispatchers.get(121, DispatchPolicy.ORDERED_EXECUTOR).execute(() -> {
+        });
+        dispatchers.get(148, DispatchPolicy.RING_BUFFER);
+        assertEquals(3, dispatchers.size());
+
+        dispatchers.close(121);
+
+        assertEquals(1, dispatchers.size());
+        assertTrue(awaitNoThread("poloniex-ring_buffer-121") && awaitNoThread("poloniex-ordered_executor-121"));
+    }
+
+    @Test
+    public void whenDrainedWaitsForTheQueuedTasksOfAClosedPair() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        for (DispatchPolicy policy : new DispatchPolicy[]{DispatchPolicy.RING_BUFFER, DispatchPolicy.ORDERED_EXECUTOR}) {
+            IDispatcher dispatcher = dispatchers.get(121, policy);
+            dispatcher.execute(() -> await(release));
+            dispatcher.execute(() -> ran.add(policy.name()));
+        }
+        CountDownLatch drained = new CountDownLatch(1);
+
+        dispatchers.close(121);
+        dispatchers.whenDrained(121, () -> {
+            ran.add("drained");
+            drained.countDown();
+        });
+
+        assertFalse(drained.await(50, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        assertEquals(3, ran.size());
+        assertEquals("drained", ran.get(2));
+
+        CountDownLatch immediate = new CountDownLatch(1);
+        dispatchers.whenDrained(148, immediate::countDown); //nothing to wait for
+        assertEquals(0, immediate.getCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static boolean awaitNoThread(String name) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals(name))) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    @Test
+    public void virtualThreadsPreserveOrderOrAreUnsupported() throws InterruptedException {
+        try {
+            dispatchers.get(121, DispatchPolicy.VIRTUAL_THREADS);
+        } catch (UnsupportedOperationException e) {
+            return; //running on JDK < 21
+        }
+        assertOrdered(DispatchPolicy.VIRTUAL_THREADS);
+    }
+
+    @Test
+    public void listenersRunOffTheCallingThread() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        Consumer<Integer> listener = dispatchers.wrap(121, DispatchPolicy.RING_BUFFER, i -> {
+            threads.add(Thread.currentThread());
+            done.countDown();
+        }, UnaryOperator.identity());
+
+        listener.accept(1);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNotEquals(Thread.currentThread(), threads.get(0));
+    }
+
+    private void assertOrdered(DispatchPolicy policy) throws InterruptedException {
+        assertOrdered(dispatchers, policy);
+    }
+
+    private static void assertOrdered(Dispatchers dispatchers, DispatchPolicy policy) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(2);
+        List<Integer> first = new ArrayList<>();
+        List<Integer> second = new ArrayList<>();
+        Consumer<Integer> firstListener = dispatchers.wrap(121, policy, collect(first, done), UnaryOperator.identity());
+        Consumer<Integer> secondListener = dispatchers.wrap(121, policy, collect(second, done), UnaryOperator.identity());
+
+        for (int i = 0; i < EVENTS; i++) {
+            firstListener.accept(i);
+            secondListener.accept(i);
+        }
+
+        assertTrue(policy + " did not deliver all events", done.await(30, TimeUnit.SECONDS));
+        for (int i = 0; i < EVENTS; i++) {
+            assertEquals((Integer) i, first.get(i));
+            assertEquals((Integer) i, second.get(i));
+        }
+    }
+
+    private static Consumer<Integer> collect(List<Integer> events, CountDownLatch done) {
+        return i -> {
+            events.add(i);
+            if (events.size() == EVENTS) {
+                done.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package com.cf.client.wss.handler;
+
+import com.cf.client.poloniex.wss.decoder.PoloniexWSSFrameDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays the USDT_BTC corpus through the decoder and the handler with event
+ * reuse enabled and checks that the steady state allocates nothing. The corpus
+ * is synthetic, not captured traffic: a 40 level snapshot followed by 1500
+ * contiguous messages of one to four updates and trades in the wire format of
+ * the exchange, enough to reach every decoding and dispatch path.
+ */
+public class OrderBookMessageHandlerAllocationTest {
+    private static final int WARM_UP_ROUNDS = 30;
+    private static final long ALLOWED_BYTES = 1024;
+
+    private final PoloniexWSSFrameDecoder decoder = new PoloniexWSSFrameDecoder();
+    private final long[] sink = new long[4];
+
+    @Test
+    public void steadyStateDispatchDoesNotAllocate() throws IOException {
+        com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+        List<String> corpus = readCorpus("/wss/usdt_btc.txt");
+        String snapshot = corpus.get(0);
+        ByteBuf[] deltas = corpus
+                .subList(1, corpus.size())
+                .stream()
+                .map(message -> Unpooled.directBuffer().writeBytes(message.getBytes(StandardCharsets.UTF_8)))
+                .toArray(ByteBuf[]::new);
+
+        long allocated;
+        OrderBookMessageHandler handler;
+        try {
+            for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+                replay(seededHandler(snapshot), deltas);
+            }
+
+            handler = seededHandler(snapshot);
+            long threadId = Thread.currentThread().getId();
+            long measurementOverhead = -threadMXBean.getThreadAllocatedBytes(threadId) + threadMXBean.getThreadAllocatedBytes(threadId);
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            replay(handler, deltas);
+            allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before - measurementOverhead;
+        } finally {
+            for (ByteBuf delta : deltas) {
+                delta.release();
+            }
+        }
+
+        assertTrue("Corpus must produce events", sink[0] > 0 && sink[1] > 0 && sink[2] > 0 && sink[3] > 0);
+        assertTrue("Order book must stay seeded", handler.getLiveOrderBook().isSeeded() && !handler.isStale());
+        assertTrue("Allocated " + allocated + " bytes for " + deltas.length + " messages", allocated < ALLOWED_BYTES);
+    }
+
+    private OrderBookMessageHandler seededHandler(String snapshot) {
+        OrderBookMessageHandler handler = new OrderBookMessageHandler(121);
+        handler.setReuseEvents(true);
+        handler.addTradeEventListener(trade -> sink[0] += trade.getAmount());
+        handler.addOrderBookEventListener(update -> sink[1] += update.getRate());
+        handler.addLiveOrderBookListener(book -> sink[2] += book.bestBidRate() + book.bestAskRate());
+        handler.addBatchListener(batch -> sink[3] += batch.getUpdateCount() + batch.getTradeCount());
+        handler.handle(snapshot);
+        return handler;
+    }
+
+    private void replay(OrderBookMessageHandler handler, ByteBuf[] deltas) {
+        for (ByteBuf delta : deltas) {
+            if (!decoder.decode(delta, handler)) {
+                throw new IllegalStateException("Corpus message was not decoded");
+            }
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        return threadMXBean;
+    }
+
+    static List<String> readCorpus(String resource) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                OrderBookMessageHandlerAllocationTest.class.getResourceAsStream(resource), StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.cf.client.wss.handler;
+
+import com.cf.client.poloniex.wss.book.PoloniexBookSide;
+import com.cf.client.poloniex.wss.book.PoloniexLiveOrderBook;
+import com.cf.client.poloniex.wss.decoder.PoloniexSnapshotDecoder;
+import com.cf.client.poloniex.wss.model.PoloniexMarketBatch;
+import com.cf.client.poloniex.wss.model.PoloniexTradeEntry;
+import com.cf.client.poloniex.wss.model.PoloniexTradeEvent;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.cf.util.FixedPointUtils.parse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrderBookMessageHandlerTest {
+    private static final String SNAPSHOT = "[121,100,[[\"i\",{\"currencyPair\":\"USDT_BTC\",\"orderBook\":["
+            + "{\"6361.88463940\":\"0.60000000\",\"6400.00000000\":\"1.00000000\",\"10000.00000000\":\"2.00000000\"},"
+            + "{\"6357.13463942\":\"0.20000000\",\"999.00000000\":\"3.00000000\",\"6300.50000000\":\"0.10000000\"}]}]]]";
+
+    private final OrderBookMessageHandler handler = new OrderBookMessageHandler(121);
+
+    @Test
+    public void seedsLiveOrderBookFromSnapshotInNumericOrder() {
+        PoloniexLiveOrderBook book = handler.enableLiveOrderBook();
+        assertFalse(book.isSeeded());
+
+        handler.handle(SNAPSHOT);
+
+        assertTrue(book.isSeeded());
+        PoloniexBookSide bids = book.bids();
+        assertEquals(3, bids.size());
+        assertEquals(parse("6357.13463942"), bids.rate(0));
+        assertEquals(parse("6300.5"), bids.rate(1));
+        assertEquals(parse("999"), bids.rate(2));
+
+        PoloniexBookSide asks = book.asks();
+        assertEquals(3, asks.size());
+        assertEquals(parse("6361.8846394"), asks.rate(0));
+        assertEquals(parse("6400"), asks.rate(1));
+        assertEquals(parse("10000"), asks.rate(2));
+        assertEquals(parse("0.6"), book.bestAskAmount());
+    }
+
+    @Test
+    public void appliesDeltasInPlace() {
+        PoloniexLiveOrderBook book = handler.enableLiveOrderBook();
+        AtomicInteger notifications = new AtomicInteger();
+        handler.addLiveOrderBookListener(b -> notifications.incrementAndGet());
+        handler.handle(SNAPSHOT);
+
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"1.50000000\"],[\"o\",0,\"6361.88463940\",\"0.00000000\"],[\"o\",1,\"999.00000000\",\"4.00000000\"]]]");
+
+        assertEquals(2, notifications.get());
+        assertEquals(parse("6358"), book.bestBidRate());
+        assertEquals(parse("1.5"), book.bestBidAmount());
+        assertEquals(4, book.bids().size());
+        assertEquals(parse("4"), book.bids().amountAt(parse("999")));
+        assertEquals(3, book.bids().levelOf(parse("999")));
+        assertEquals(parse("6400"), book.bestAskRate());
+        assertEquals(2, book.asks().size());
+        assertEquals(-1, book.asks().levelOf(parse("6361.8846394")));
+    }
+
+    @Test
+    public void ignoresDeltasUntilSeeded() {
+        PoloniexLiveOrderBook book = handler.enableLiveOrderBook();
+
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]");
+
+        assertFalse(book.isSeeded());
+        assertTrue(book.bids().isEmpty());
+    }
+
+    @Test
+    public void legacyOrderBookListenersStillReceiveEntries() {
+        AtomicInteger entries = new AtomicInteger();
+        handler.addOrderBookListener(e -> entries.incrementAndGet());
+
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"1.50000000\"],[\"t\",\"1\",1,\"6358.00000000\",\"0.1\",1527500000]]]");
+
+        assertEquals(1, entries.get());
+    }
+
+    @Test
+    public void sequenceGapMarksBookStaleAndRequestsSingleResync() {
+        List<Integer> resyncs = new ArrayList<>();
+        OrderBookMessageHandler handler = new OrderBookMessageHandler(121, resyncs::add);
+        PoloniexLiveOrderBook book = handler.enableLiveOrderBook();
+        handler.handle(SNAPSHOT);
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]");
+
+        handler.handle("[121,103,[[\"o\",1,\"6359.00000000\",\"1.50000000\"]]]");
+        handler.handle("[121,105,[[\"o\",1,\"6360.00000000\",\"1.50000000\"]]]");
+
+        assertEquals(2, handler.getGapCount());
+        assertEquals(1, handler.getResyncCount());
+        assertEquals(1, resyncs.size());
+        assertEquals(121, (int) resyncs.get(0));
+        assertTrue(handler.isStale());
+        assertFalse(book.isSeeded());
+        assertTrue(book.bids().isEmpty());
+
+        handler.handle(SNAPSHOT.replace("[121,100,", "[121,500,"));
+        handler.handle("[121,501,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]");
+
+        assertFalse(handler.isStale());
+        assertTrue(book.isSeeded());
+        assertEquals(parse("6358"), book.bestBidRate());
+        assertEquals(2, handler.getGapCount());
+    }
+
+    @Test
+    public void requestsResyncAgainWhenTheSnapshotIsOverdue() throws InterruptedException {
+        List<Integer> resyncs = new ArrayList<>();
+        OrderBookMessageHandler handler = new OrderBookMessageHandler(121, resyncs::add);
+        handler.setResyncTimeoutMillis(50);
+        PoloniexLiveOrderBook book = handler.enableLiveOrderBook();
+        handler.handle(SNAPSHOT);
+        handler.handle("[121,103,[[\"o\",1,\"6359.00000000\",\"1.50000000\"]]]");
+        handler.handle("[121,104,[[\"o\",1,\"6360.00000000\",\"1.50000000\"]]]");
+        assertEquals(1, resyncs.size());
+
+        Thread.sleep(100);
+        handler.handle("[121,105,[[\"o\",1,\"6361.00000000\",\"1.50000000\"]]]");
+        handler.handle("[121,106,[[\"o\",1,\"6362.00000000\",\"1.50000000\"]]]");
+
+        assertEquals(2, handler.getResyncCount());
+        assertEquals(2, resyncs.size());
+        assertTrue(handler.isStale());
+
+        handler.handle(SNAPSHOT.replace("[121,100,", "[121,500,"));
+        Thread.sleep(100);
+        handler.handle("[121,501,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]");
+
+        assertFalse(handler.isStale());
+        assertTrue(book.isSeeded());
+        assertEquals(2, handler.getResyncCount());
+    }
+
+    @Test
+    public void dropsOutOfDateMessages() {
+        PoloniexLiveOrderBook book = handler.enableLiveOrderBook();
+        handler.handle(SNAPSHOT);
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]");
+
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"0.00000000\"]]]");
+
+        assertEquals(parse("6358"), book.bestBidRate());
+        assertEquals(0, handler.getGapCount());
+    }
+
+    @Test
+    public void enablingBookOnRunningChannelRequestsResync() {
+        List<Integer> resyncs = new ArrayList<>();
+        OrderBookMessageHandler handler = new OrderBookMessageHandler(121, resyncs::add);
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]");
+
+        handler.enableLiveOrderBook();
+
+        assertTrue(handler.isStale());
+        assertEquals(1, resyncs.size());
+    }
+
+    @Test
+    public void primitiveAndLegacyListenersSeeTheSameTrade() {
+        List<PoloniexTradeEvent> events = new ArrayList<>();
+        List<PoloniexTradeEntry> entries = new ArrayList<>();
+        handler.addTradeEventListener(events::add);
+        handler.addTradeListener(entries::add);
+
+        handler.handle("[121,101,[[\"t\",\"48555480\",0,\"6343.06999999\",\"0.00126059\",1527763237]]]");
+
+        assertEquals(1, events.size());
+        PoloniexTradeEvent event = events.get(0);
+        assertEquals(121, event.getCurrencyPairId());
+        assertEquals(48555480L, event.getTradeId());
+        assertFalse(event.isBuy());
+        assertEquals(parse("6343.06999999"), event.getRate());
+        assertEquals(parse("0.00126059"), event.getAmount());
+        assertEquals(1527763237L, event.getEpochSecond());
+
+        assertEquals(1, entries.size());
+        PoloniexTradeEntry entry = entries.get(0);
+        assertEquals("48555480", entry.tradeID);
+        assertEquals("sell", entry.type);
+        assertEquals("6343.06999999", entry.rate.toString());
+        assertEquals("0.00126059", entry.amount.toString());
+        assertEquals(1527763237L, entry.date.toEpochSecond());
+    }
+
+    @Test
+    public void batchListenerSeesWholeMessageAfterItWasApplied() {
+        PoloniexLiveOrderBook book = handler.enableLiveOrderBook();
+        List<PoloniexMarketBatch> batches = new ArrayList<>();
+        List<Long> bestBids = new ArrayList<>();
+        handler.addBatchListener(batch -> {
+            batches.add(batch.copy());
+            bestBids.add(book.bestBidRate());
+        });
+        handler.handle(SNAPSHOT);
+
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"1.50000000\"],[\"t\",\"7\",1,\"6361.88463940\",\"0.6\",1527500000],"
+                + "[\"o\",0,\"6361.88463940\",\"0.00000000\"],[\"o\",1,\"6359.00000000\",\"0.50000000\"]]]");
+
+        assertEquals(2, batches.size());
+        PoloniexMarketBatch batch = batches.get(1);
+        assertFalse(batch.isSnapshot());
+        assertEquals(121, batch.getCurrencyPairId());
+        assertEquals(101, batch.getSequence());
+        assertEquals(3, batch.getUpdateCount());
+        assertTrue(batch.isUpdateBid(0));
+        assertEquals(parse("6358"), batch.getUpdateRate(0));
+        assertFalse(batch.isUpdateBid(1));
+        assertEquals(0, batch.getUpdateAmount(1));
+        assertEquals(parse("6359"), batch.getUpdateRate(2));
+        assertEquals(1, batch.getTradeCount());
+        assertEquals(7, batch.getTradeId(0));
+        assertEquals(parse("0.6"), batch.getTradeAmount(0));
+        assertEquals(1527500000L, batch.getTradeEpochSecond(0));
+        assertEquals(parse("6357.13463942"), (long) bestBids.get(0)); //snapshot seeded before the listener ran
+        assertEquals(parse("6359"), (long) bestBids.get(1));
+    }
+
+    @Test
+    public void batchListenerSeesSnapshotAsBookReplacement() {
+        List<PoloniexMarketBatch> batches = new ArrayList<>();
+        handler.addBatchListener(batch -> batches.add(batch.copy()));
+
+        handler.handle(SNAPSHOT);
+        handler.handle("[121,101,[[\"o\",1,\"6358.00000000\",\"1.50000000\"]]]");
+        handler.onConnectionLost();
+        decodeSnapshot(SNAPSHOT.replace("[121,100,", "[121,5,"));
+
+        assertEquals(3, batches.size());
+        assertSnapshot(batches.get(0), 100);
+        assertFalse(batches.get(1).isSnapshot());
+        assertSnapshot(batches.get(2), 5);
+    }
+
+    private void decodeSnapshot(String message) {
+        ByteBuf content = Unpooled.copiedBuffer(message, CharsetUtil.UTF_8);
+        assertEquals(PoloniexSnapshotDecoder.Status.COMPLETE, new PoloniexSnapshotDecoder(channelId -> handler).decode(content));
+        content.release();
+    }
+
+    private static void assertSnapshot(PoloniexMarketBatch batch, long sequence) {
+        assertTrue(batch.isSnapshot());
+        assertEquals(sequence, batch.getSequence());
+        assertEquals(6, batch.getUpdateCount());
+        assertEquals(0, batch.getTradeCount());
+        int bids = 0;
+        for (int i = 0; i < batch.getUpdateCount(); i++) {
+            bids += batch.isUpdateBid(i) ? 1 : 0;
+            if (batch.getUpdateRate(i) == parse("6357.13463942")) {
+                assertTrue(batch.isUpdateBid(i));
+                assertEquals(parse("0.2"), batch.getUpdateAmount(i));
+            }
+        }
+        assertEquals(3, bids);
+    }
+}
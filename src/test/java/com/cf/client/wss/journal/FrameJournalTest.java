@@ -0,0 +1,98 @@
+package com.cf.client.wss.journal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameJournalTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void framesRollOverFilesAndReadBackInOrder() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        List<String> written = new ArrayList<>();
+        try (FrameJournal journal = new FrameJournal(directory, "usdt_btc", 256)) {
+            for (int i = 0; i < 20; i++) {
+                String message = "[121," + i + ",[[\"o\",1,\"6357.13463942\",\"0.0" + i + "\"]]]";
+                written.add(message);
+                ByteBuf frame = buffer(message);
+                assertTrue(journal.append(121, 0, FrameJournal.FIRST | FrameJournal.FINAL, 1000 + i, frame));
+                assertEquals("Reader index must not move", 0, frame.readerIndex());
+            }
+            assertTrue(journal.getFileIndex() > 0);
+            assertEquals(20, journal.getFrameCount());
+        }
+
+        try (FrameJournalReader reader = new FrameJournalReader(directory, "usdt_btc")) {
+            for (int i = 0; i < written.size(); i++) {
+                assertTrue(reader.next());
+                assertEquals(written.get(i), reader.getPayload().toString(StandardCharsets.UTF_8));
+                assertEquals(121, reader.getChannelId());
+                assertEquals(1000 + i, reader.getReceivedNanos());
+                assertTrue(reader.isFirst() && reader.isFinal());
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void keepsFragmentsAndSkipsOversizedFrames() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (FrameJournal journal = new FrameJournal(directory, "fragments", 128)) {
+            journal.append(121, 7, FrameJournal.FIRST, 1, buffer("[121,5,[[\"i\","));
+            assertFalse(journal.append(121, 7, 0, 2, Unpooled.wrappedBuffer(new byte[256])));
+            journal.append(121, 7, FrameJournal.FINAL, 3, buffer("{}]]]"));
+            assertEquals(1, journal.getDroppedCount());
+        }
+
+        try (FrameJournalReader reader = new FrameJournalReader(directory, "fragments")) {
+            assertTrue(reader.next());
+            assertTrue(reader.isFirst() && !reader.isFinal());
+            assertEquals(7, reader.getStreamId());
+            assertTrue(reader.next());
+            assertEquals(121, reader.getChannelId());
+            assertEquals(7, reader.getStreamId());
+            assertTrue(!reader.isFirst() && reader.isFinal());
+            assertEquals("{}]]]", reader.getPayload().toString(StandardCharsets.UTF_8));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void newJournalContinuesAfterExistingFiles() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (FrameJournal journal = new FrameJournal(directory, "session")) {
+            journal.append(121, 0, FrameJournal.FIRST | FrameJournal.FINAL, 1, buffer("[1010]"));
+        }
+        try (FrameJournal journal = new FrameJournal(directory, "session")) {
+            assertEquals(1, journal.getFileIndex());
+            journal.append(121, 0, FrameJournal.FIRST | FrameJournal.FINAL, 2, buffer("[1010]"));
+        }
+
+        try (FrameJournalReader reader = new FrameJournalReader(directory, "session")) {
+            assertEquals(2, reader.getFiles().size());
+            assertTrue(reader.next());
+            assertEquals(1, reader.getReceivedNanos());
+            assertTrue(reader.next());
+            assertEquals(2, reader.getReceivedNanos());
+            assertFalse(reader.next());
+        }
+    }
+
+    private static ByteBuf buffer(String message) {
+        return Unpooled.wrappedBuffer(message.getBytes(StandardCharsets.UTF_8));
+    }
+}
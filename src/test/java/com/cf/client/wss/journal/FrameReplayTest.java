@@ -0,0 +1,172 @@
+package com.cf.client.wss.journal;
+
+import com.cf.client.poloniex.PoloniexWSSClientRouter;
+import com.cf.client.poloniex.wss.book.PoloniexBookSide;
+import com.cf.client.poloniex.wss.book.PoloniexLiveOrderBook;
+import com.cf.client.wss.handler.OrderBookMessageHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameReplayTest {
+    private static final int SNAPSHOT_CHUNK_BYTES = 1000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replayedCorpusBuildsTheSameBookAsLiveHandling() throws Exception {
+        List<String> corpus = readCorpus();
+        Path directory = folder.getRoot().toPath();
+        try (FrameJournal journal = new FrameJournal(directory, "usdt_btc")) {
+            record(journal, corpus, TimeUnit.MICROSECONDS.toNanos(10));
+        }
+        OrderBookMessageHandler expected = new OrderBookMessageHandler(121);
+        expected.enableLiveOrderBook();
+        corpus.forEach(expected::handle);
+
+        PoloniexWSSClientRouter router = new PoloniexWSSClientRouter(new URI("wss://api2.poloniex.com"));
+        AtomicReference<PoloniexLiveOrderBook> book = new AtomicReference<>();
+        router.subscribeOnLiveOrderBook(121, book::set);
+        FrameReplay.ReplayResult result;
+        try (FrameJournalReader reader = new FrameJournalReader(directory, "usdt_btc")) {
+            result = new FrameReplay(router).replay(reader, FrameReplay.AS_FAST_AS_POSSIBLE);
+        }
+
+        assertEquals(corpus.size(), result.getMessageCount());
+        assertTrue("Snapshot must be fragmented", result.getFrameCount() > result.getMessageCount());
+        assertTrue(result.getMessagesPerSecond() > 0);
+        assertSame(expected.getLiveOrderBook().bids(), book.get().bids());
+        assertSame(expected.getLiveOrderBook().asks(), book.get().asks());
+    }
+
+    @Test
+    public void pacedReplayKeepsTheRecordedIntervals() throws Exception {
+        List<String> corpus = readCorpus().subList(1, 11);
+        Path directory = folder.getRoot().toPath();
+        try (FrameJournal journal = new FrameJournal(directory, "paced")) {
+            record(journal, corpus, TimeUnit.MILLISECONDS.toNanos(4));
+        }
+
+        PoloniexWSSClientRouter router = new PoloniexWSSClientRouter(new URI("wss://api2.poloniex.com"));
+        FrameReplay.ReplayResult result;
+        try (FrameJournalReader reader = new FrameJournalReader(directory, "paced")) {
+            result = new FrameReplay(router).replay(reader, 2);
+        }
+
+        assertEquals(10, result.getMessageCount());
+        assertTrue(result.toString(), result.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(18));
+    }
+
+    @Test
+    public void interleavedConnectionsAreReassembledPerStream() throws Exception {
+        List<String> usdtBtc = readCorpus();
+        List<String> usdtEth = usdtBtc.stream().map(message -> message.replace("[121,", "[149,")).collect(Collectors.toList());
+        List<Frame> frames = new ArrayList<>();
+        frames(usdtBtc, 121, 0, frames);
+        frames(usdtEth, 149, 1, frames);
+        frames.sort(Comparator.comparingLong(frame -> frame.nanos)); //fragments of both snapshots alternate
+        Path directory = folder.getRoot().toPath();
+        try (FrameJournal journal = new FrameJournal(directory, "pool")) {
+            for (Frame frame : frames) {
+                journal.append(frame.channelId, frame.streamId, frame.flags, frame.nanos, frame.content);
+            }
+        }
+        OrderBookMessageHandler expected = new OrderBookMessageHandler(121);
+        expected.enableLiveOrderBook();
+        usdtBtc.forEach(expected::handle);
+
+        PoloniexWSSClientRouter router = new PoloniexWSSClientRouter(new URI("wss://api2.poloniex.com"));
+        AtomicReference<PoloniexLiveOrderBook> btcBook = new AtomicReference<>();
+        AtomicReference<PoloniexLiveOrderBook> ethBook = new AtomicReference<>();
+        router.subscribeOnLiveOrderBook(121, btcBook::set);
+        router.subscribeOnLiveOrderBook(149, ethBook::set);
+        FrameReplay.ReplayResult result;
+        try (FrameJournalReader reader = new FrameJournalReader(directory, "pool")) {
+            result = new FrameReplay(router).replay(reader, FrameReplay.AS_FAST_AS_POSSIBLE);
+        }
+
+        assertEquals(2 * usdtBtc.size(), result.getMessageCount());
+        assertEquals(frames.size(), result.getFrameCount());
+        assertEquals(0, router.getDecodeErrorCount());
+        assertSame(expected.getLiveOrderBook().bids(), btcBook.get().bids());
+        assertSame(expected.getLiveOrderBook().asks(), ethBook.get().asks());
+    }
+
+    private static void record(FrameJournal journal, List<String> messages, long intervalNanos) {
+        List<Frame> frames = new ArrayList<>();
+        frames(messages, 121, 0, frames);
+        for (Frame frame : frames) {
+            journal.append(frame.channelId, frame.streamId, frame.flags, frame.nanos * intervalNanos, frame.content);
+        }
+    }
+
+    /**
+     * Snapshots go in as a text frame and continuation frames, like a deep
+     * snapshot arrives; {@link Frame#nanos} counts the frames of the stream.
+     */
+    private static void frames(List<String> messages, int channelId, int streamId, List<Frame> frames) {
+        long index = 0;
+        for (String message : messages) {
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            if (message.contains("\"i\"") && bytes.length > SNAPSHOT_CHUNK_BYTES) {
+                for (int offset = 0; offset < bytes.length; offset += SNAPSHOT_CHUNK_BYTES) {
+                    int length = Math.min(SNAPSHOT_CHUNK_BYTES, bytes.length - offset);
+                    int flags = (offset == 0 ? FrameJournal.FIRST : 0) | (offset + length == bytes.length ? FrameJournal.FINAL : 0);
+                    frames.add(new Frame(channelId, streamId, flags, index++, Unpooled.wrappedBuffer(bytes, offset, length)));
+                }
+            } else {
+                frames.add(new Frame(channelId, streamId, FrameJournal.FIRST | FrameJournal.FINAL, index++, Unpooled.wrappedBuffer(bytes)));
+            }
+        }
+    }
+
+    private static class Frame {
+        final int channelId;
+        final int streamId;
+        final int flags;
+        final long nanos;
+        final ByteBuf content;
+
+        Frame(int channelId, int streamId, int flags, long nanos, ByteBuf content) {
+            this.channelId = channelId;
+            this.streamId = streamId;
+            this.flags = flags;
+            this.nanos = nanos;
+            this.content = content;
+        }
+    }
+
+    private static void assertSame(PoloniexBookSide expected, PoloniexBookSide actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int level = 0; level < expected.size(); level++) {
+            assertEquals(expected.rate(level), actual.rate(level));
+            assertEquals(expected.amount(level), actual.amount(level));
+        }
+    }
+
+    private static List<String> readCorpus() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                FrameReplayTest.class.getResourceAsStream("/wss/usdt_btc.txt"), StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.cf.client.wss.latency;
+
+import com.cf.client.poloniex.wss.decoder.PoloniexWSSFrameDecoder;
+import com.cf.client.wss.handler.OrderBookMessageHandler;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyMonitorTest {
+    private final LatencyMonitor monitor = new LatencyMonitor();
+
+    @After
+    public void unregister() {
+        monitor.unregisterMBeans();
+    }
+
+    @Test
+    public void snapshotAccumulatesRecordedValues() {
+        ChannelLatency latency = monitor.channel(121);
+        for (long micros = 1; micros <= 1000; micros++) {
+            latency.record(LatencyMetric.QUEUE_WAIT, TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        LatencySnapshot first = monitor.snapshot(121);
+        latency.record(LatencyMetric.QUEUE_WAIT, TimeUnit.SECONDS.toNanos(1));
+        LatencySnapshot second = monitor.snapshot(121);
+
+        assertEquals(1000, first.getCount(LatencyMetric.QUEUE_WAIT));
+        assertEquals(990_000, first.getValueAtPercentile(LatencyMetric.QUEUE_WAIT, 99), 990_000 * 0.01);
+        assertEquals(1001, second.getCount(LatencyMetric.QUEUE_WAIT));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), second.getMax(LatencyMetric.QUEUE_WAIT), TimeUnit.SECONDS.toNanos(1) * 0.01);
+        assertNull(monitor.snapshot(148));
+    }
+
+    @Test
+    public void handlerRecordsListenerTimeAndExchangeLag() {
+        ChannelLatency latency = monitor.channel(121);
+        OrderBookMessageHandler handler = new OrderBookMessageHandler(121);
+        handler.setLatency(latency);
+        handler.addTradeEventListener(trade -> sleep(20));
+        long epochSecond = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - 5;
+        String message = "[121,1,[[\"t\",\"1\",1,\"0.1\",\"0.2\"," + epochSecond + "]]]";
+
+        PoloniexWSSFrameDecoder decoder = new PoloniexWSSFrameDecoder();
+        decoder.decode(Unpooled.wrappedBuffer(message.getBytes(StandardCharsets.UTF_8)), new OrderBookMessageHandler(121)); //class loading
+
+        long receivedNanos = System.nanoTime();
+        decoder.decode(Unpooled.wrappedBuffer(message.getBytes(StandardCharsets.UTF_8)), handler);
+        latency.endMessage(receivedNanos);
+        long elapsedNanos = System.nanoTime() - receivedNanos;
+
+        LatencySnapshot snapshot = monitor.snapshot(121);
+        assertEquals(1, snapshot.getCount(LatencyMetric.DECODE));
+        assertEquals(1, snapshot.getCount(LatencyMetric.LISTENER));
+        assertEquals(0, snapshot.getCount(LatencyMetric.QUEUE_WAIT));
+        assertEquals(1, snapshot.getCount(LatencyMetric.EXCHANGE_LAG));
+        long listener = snapshot.getMax(LatencyMetric.LISTENER);
+        long decode = snapshot.getMax(LatencyMetric.DECODE);
+        assertTrue(listener >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(decode >= 0);
+        assertTrue(decode + listener <= elapsedNanos * 1.01); //histogram values are within 1%
+        assertTrue(snapshot.getMax(LatencyMetric.EXCHANGE_LAG) >= TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        ChannelLatency latency = monitor.channel(121);
+        latency.record(LatencyMetric.DECODE, 1); //class loading
+        long threadId = Thread.currentThread().getId();
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (long nanos = 1; nanos < ChannelLatency.HIGHEST_TRACKABLE_NANOS; nanos *= 3) {
+            latency.record(LatencyMetric.DECODE, nanos);
+        }
+        latency.record(LatencyMetric.DECODE, Long.MAX_VALUE);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+        assertEquals(ChannelLatency.HIGHEST_TRACKABLE_NANOS, monitor.snapshot(121).getMax(LatencyMetric.DECODE),
+                ChannelLatency.HIGHEST_TRACKABLE_NANOS * 0.01);
+    }
+
+    @Test
+    public void channelsArePublishedOverJmx() throws Exception {
+        monitor.channel(121).record(LatencyMetric.DECODE, 1000);
+        monitor.registerMBeans("test");
+        monitor.channel(148);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.cf.client:type=ChannelLatency,client=\"test\",channel=121");
+        CompositeData decode = (CompositeData) server.getAttribute(name, "Decode");
+        assertEquals(1L, decode.get("count"));
+        assertTrue(server.isRegistered(new ObjectName("com.cf.client:type=ChannelLatency,client=\"test\",channel=148")));
+
+        monitor.unregisterMBeans();
+        assertFalse(server.isRegistered(name));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.cf.client.wss.reactive;
+
+import com.cf.client.wss.handler.ListenerSet;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the subscribers on the calling thread, so every signal has been sent
+ * when {@code publish} or {@code request} returns.
+ */
+public class EventPublisherTest {
+    private static final Executor DIRECT = Runnable::run;
+
+    private final ListenerSet<Integer> listeners = new ListenerSet<>();
+
+    @Test
+    public void deliversOnlyWhatWasRequested() {
+        RecordingSubscriber subscriber = subscribe(OverflowStrategy.ERROR, 4);
+
+        publish(1, 2, 3);
+        assertEquals(Arrays.asList(), subscriber.received);
+
+        subscriber.subscription.request(2);
+        assertEquals(Arrays.asList(1, 2), subscriber.received);
+
+        subscriber.subscription.request(5);
+        publish(4);
+        assertEquals(Arrays.asList(1, 2, 3, 4), subscriber.received);
+    }
+
+    @Test
+    public void dropOldestKeepsTheNewestEvents() {
+        EventPublisher<Integer> publisher = publisher(OverflowStrategy.DROP_OLDEST, 3);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        publish(1, 2, 3, 4, 5);
+        BufferedSubscription<Integer> metrics = publisher.getSubscriptions().get(0);
+        assertEquals(3, metrics.getBufferedCount());
+        assertEquals(2, metrics.getDroppedCount());
+        assertEquals(3, metrics.getHighWaterMark());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(Arrays.asList(3, 4, 5), subscriber.received);
+        assertEquals(3, metrics.getDeliveredCount());
+        assertEquals(0, metrics.getBufferedCount());
+    }
+
+    @Test
+    public void conflateReplacesTheNewestEvent() {
+        EventPublisher<Integer> publisher = publisher(OverflowStrategy.CONFLATE, 2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        publish(1, 2, 3, 4);
+        subscriber.subscription.request(10);
+
+        assertEquals(Arrays.asList(1, 4), subscriber.received);
+        assertEquals(2, publisher.getSubscriptions().get(0).getConflatedCount());
+    }
+
+    @Test
+    public void errorCancelsTheSubscriptionOnOverflow() {
+        EventPublisher<Integer> publisher = publisher(OverflowStrategy.ERROR, 2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        publish(1, 2, 3);
+
+        assertTrue(subscriber.error instanceof BufferOverflowException);
+        assertTrue(listeners.isEmpty());
+        assertTrue(publisher.getSubscriptions().isEmpty());
+    }
+
+    @Test
+    public void cancelRemovesTheListener() {
+        RecordingSubscriber subscriber = subscribe(OverflowStrategy.DROP_OLDEST, 2);
+        assertEquals(1, listeners.size());
+
+        subscriber.subscription.cancel();
+        publish(1);
+        subscriber.subscription.request(1);
+
+        assertTrue(listeners.isEmpty());
+        assertEquals(Arrays.asList(), subscriber.received);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void nonPositiveRequestIsAnError() {
+        RecordingSubscriber subscriber = subscribe(OverflowStrategy.DROP_OLDEST, 2);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(listeners.isEmpty());
+    }
+
+    private EventPublisher<Integer> publisher(OverflowStrategy strategy, int bufferSize) {
+        return new EventPublisher<>(listeners::add, listeners::remove, UnaryOperator.identity(), strategy, bufferSize, DIRECT);
+    }
+
+    private RecordingSubscriber subscribe(OverflowStrategy strategy, int bufferSize) {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher(strategy, bufferSize).subscribe(subscriber);
+        return subscriber;
+    }
+
+    private void publish(Integer... events) {
+        for (Integer event : events) {
+            listeners.broadcast(event);
+        }
+    }
+
+    private static class RecordingSubscriber implements Subscriber<Integer> {
+        private final List<Integer> received = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Integer event) {
+            received.add(event);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.cf.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+public class SeqLockTableTest {
+
+    @Test
+    public void readsWhatWasWritten() {
+        SeqLockTable table = new SeqLockTable(3, 2);
+        table.beginWrite(1);
+        table.put(1, 0, 42);
+        table.put(1, 1, 43);
+        table.endWrite(1);
+
+        long[] values = new long[2];
+        assertEquals(1, table.read(1, values));
+        assertEquals(42, values[0]);
+        assertEquals(43, values[1]);
+        assertEquals(0, table.read(0, values));
+        assertEquals(0, values[0]);
+    }
+
+    @Test
+    public void readerNeverSeesTornSlot() throws InterruptedException {
+        SeqLockTable table = new SeqLockTable(1, 6);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (long i = 1; running.get(); i++) {
+                table.beginWrite(0);
+                for (int field = 0; field < table.fields(); field++) {
+                    table.put(0, field, i);
+                }
+                table.endWrite(0);
+            }
+        });
+        writer.start();
+        try {
+            long[] values = new long[table.fields()];
+            for (int read = 0; read < 200_000; read++) {
+                table.read(0, values);
+                for (int field = 1; field < values.length; field++) {
+                    assertEquals(values[0], values[field]);
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}